@@ -0,0 +1,18 @@
+package ca.etsmtl.intuitree.benchmark;
+
+import java.io.OutputStream;
+
+/**
+ * Output which discards everything, so that benchmarks measure the logger rather than the disk.
+ */
+class DiscardOutputStream extends OutputStream {
+
+    @Override
+    public void write(int b) {
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+    }
+
+}
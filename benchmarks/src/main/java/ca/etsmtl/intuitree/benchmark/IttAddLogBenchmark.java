@@ -0,0 +1,67 @@
+package ca.etsmtl.intuitree.benchmark;
+
+import ca.etsmtl.intuitree.IttLogger;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+import ca.etsmtl.intuitree.pojo.IttTagValue;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of adding a single log, by number of tags and by the way the status is given, and cost of a disabled logger.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class IttAddLogBenchmark {
+
+    @Param({"0", "1", "5"})
+    public int tagCount;
+
+    private IttLogger logger;
+    private IttLogger disabledLogger;
+    private IttStatus status;
+    private IttTagValue[] tagValues;
+
+    @Setup
+    public void setUp() throws IOException {
+        logger = new IttLogger(new DiscardOutputStream(), true);
+        disabledLogger = new IttLogger(new DiscardOutputStream(), false);
+        status = logger.addStatus("ok", "green");
+        disabledLogger.addStatus("ok", "green");
+        tagValues = new IttTagValue[tagCount];
+        for (int i = 0; i < tagCount; i++) {
+            IttTag tag = logger.addTag("tag" + i);
+            tagValues[i] = logger.tagValue(tag, "value" + i);
+        }
+        logger.startExecution("Benchmark", "addLog");
+        disabledLogger.startExecution("Benchmark", "addLog");
+    }
+
+    @TearDown
+    public void tearDown() {
+        logger.endExecution();
+        disabledLogger.endExecution();
+    }
+
+    @Benchmark
+    public long addLogWithStatus() {
+        return logger.addLog("title", "message", status, tagValues);
+    }
+
+    @Benchmark
+    public long addLogWithStatusName() {
+        return logger.addLog("title", "message", "ok", tagValues);
+    }
+
+    @Benchmark
+    public long addLogDisabled() {
+        return disabledLogger.addLog("title", "message", status, tagValues);
+    }
+
+}
@@ -0,0 +1,53 @@
+package ca.etsmtl.intuitree.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs every benchmark with the GC profiler, which reports the allocation rate, and the contention benchmark at
+ * 1 to 32 threads. JMH command line options, for example "-wi 1 -i 2", override the defaults of the benchmarks.
+ * Results of every run are written together as CSV to the file given as the system property "intuitree.results",
+ * by default "results.csv".
+ */
+public class IttBenchmarks {
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32};
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, FileNotFoundException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        List<RunResult> results = new ArrayList<>();
+
+        results.addAll(new Runner(new OptionsBuilder()
+                .parent(commandLineOptions)
+                .include(IttAddLogBenchmark.class.getSimpleName())
+                .include(IttNestingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run());
+
+        for (int threadCount : THREAD_COUNTS) {
+            results.addAll(new Runner(new OptionsBuilder()
+                    .parent(commandLineOptions)
+                    .include(IttContentionBenchmark.class.getSimpleName())
+                    .threads(threadCount)
+                    .addProfiler(GCProfiler.class)
+                    .build()).run());
+        }
+
+        try (PrintStream out = new PrintStream(System.getProperty("intuitree.results", "results.csv"))) {
+            ResultFormatFactory.getInstance(ResultFormatType.CSV, out).writeOut(results);
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+package ca.etsmtl.intuitree.benchmark;
+
+import ca.etsmtl.intuitree.IttLogger;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of adding logs to a logger shared by every benchmark thread. The number of threads is set by
+ * {@link IttBenchmarks}, or with the -t option of JMH.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IttContentionBenchmark {
+
+    private IttLogger logger;
+    private IttStatus status;
+    private IttTag tag;
+
+    @Setup
+    public void setUp() throws IOException {
+        logger = new IttLogger(new DiscardOutputStream(), true);
+        status = logger.addStatus("ok", "green");
+        tag = logger.addTag("tag");
+        logger.startExecution("Benchmark", "contention");
+    }
+
+    @TearDown
+    public void tearDown() {
+        logger.endExecution();
+    }
+
+    @Benchmark
+    public long addLog() {
+        return logger.addLog("title", "message", status, logger.tagValue(tag, "value"));
+    }
+
+}
@@ -0,0 +1,61 @@
+package ca.etsmtl.intuitree.benchmark;
+
+import ca.etsmtl.intuitree.IttLogger;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link IttLogger#startLogTrack()} and {@link IttLogger#endLogTrack()}: each operation adds
+ * {@link #LOGS_PER_OPERATION} logs, either flat at the root level or each one nested under the previous one,
+ * which grows the track stacks to that depth.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@OperationsPerInvocation(IttNestingBenchmark.LOGS_PER_OPERATION)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class IttNestingBenchmark {
+
+    static final int LOGS_PER_OPERATION = 256;
+
+    private IttLogger logger;
+    private IttStatus status;
+
+    @Setup
+    public void setUp() throws IOException {
+        logger = new IttLogger(new DiscardOutputStream(), true);
+        status = logger.addStatus("ok", "green");
+        logger.startExecution("Benchmark", "nesting");
+    }
+
+    @TearDown
+    public void tearDown() {
+        logger.endExecution();
+    }
+
+    @Benchmark
+    public void flat() {
+        for (int i = 0; i < LOGS_PER_OPERATION; i++) {
+            logger.addLog("title", "message", status);
+            logger.startLogTrack();
+            logger.endLogTrack();
+        }
+    }
+
+    @Benchmark
+    public void deep() {
+        for (int i = 0; i < LOGS_PER_OPERATION; i++) {
+            logger.addLog("title", "message", status);
+            logger.startLogTrack();
+        }
+        for (int i = 0; i < LOGS_PER_OPERATION; i++) {
+            logger.endLogTrack();
+        }
+    }
+
+}
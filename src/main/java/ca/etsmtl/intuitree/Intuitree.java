@@ -6,19 +6,32 @@ import java.io.OutputStream;
 /**
  * A facade that gives access to a singleton instance of IttLogger, allowing for simple access through all classes,
  * which is sufficient for most common use cases.
+ * For many concurrent executions, for example one per request, it also gives access to loggers by key through a
+ * shared {@link IttRegistry}.
  */
 public class Intuitree {
 
+    /**
+     * Default registry settings: writer threads, logs held by the ring of each thread, and registered loggers.
+     */
+    private static final int DEFAULT_THREAD_COUNT = Math.min(4, Runtime.getRuntime().availableProcessors());
+    private static final int DEFAULT_CAPACITY = 8192;
+    private static final int DEFAULT_MAX_LOGGERS = 10000;
+
     private static IttLogger loggerSingleton = null;
 
+    private static IttRegistry registry = null;
+
     /**
      * Create an enabled logger which sends its output to the given filename.
      *
      * @param filename Filename to output to.
      * @return An IttLogger instance with a handle on the file specified by filename.
-     * @throws IOException Thrown if the file or OutputStream can't be created.
+     * @throws IOException           Thrown if the file or OutputStream can't be created.
+     * @throws IllegalStateException Thrown if the execution of the current instance is active.
      */
     public static synchronized IttLogger create(String filename) throws IOException {
+        checkSingletonReplaceable();
         loggerSingleton = new IttLogger(filename);
         return loggerSingleton;
     }
@@ -29,9 +42,11 @@ public class Intuitree {
      * @param filename Filename to output to.
      * @param enabled  Initial enabled status.
      * @return An IttLogger instance with a handle on the file specified by filename.
-     * @throws IOException Thrown if the file or OutputStream can't be created.
+     * @throws IOException           Thrown if the file or OutputStream can't be created.
+     * @throws IllegalStateException Thrown if the execution of the current instance is active.
      */
     public static synchronized IttLogger create(String filename, boolean enabled) throws IOException {
+        checkSingletonReplaceable();
         loggerSingleton = new IttLogger(filename, enabled);
         return loggerSingleton;
     }
@@ -42,9 +57,11 @@ public class Intuitree {
      * @param outputStream Output stream to output to.
      * @param enabled      Initial enabled status.
      * @return An IttLogger instance with a handle on the file specified by filename.
-     * @throws IOException Thrown if the file or OutputStream can't be created.
+     * @throws IOException           Thrown if the file or OutputStream can't be created.
+     * @throws IllegalStateException Thrown if the execution of the current instance is active.
      */
     public static synchronized IttLogger create(OutputStream outputStream, boolean enabled) throws IOException {
+        checkSingletonReplaceable();
         loggerSingleton = new IttLogger(outputStream, enabled);
         return loggerSingleton;
     }
@@ -58,6 +75,75 @@ public class Intuitree {
         return loggerSingleton;
     }
 
+    /**
+     * Get the registry of loggers by key, creating it with default settings on first use unless it was set with
+     * {@link #setRegistry(IttRegistry)}.
+     *
+     * @return The shared registry.
+     */
+    public static synchronized IttRegistry registry() {
+        if (registry == null) {
+            registry = new IttRegistry(DEFAULT_THREAD_COUNT, DEFAULT_CAPACITY, IttWaitStrategy.BLOCK,
+                    DEFAULT_MAX_LOGGERS);
+        }
+        return registry;
+    }
+
+    /**
+     * Set the registry returned by {@link #registry()}, to choose its settings. Must be done before it is used.
+     *
+     * @param newRegistry The registry to share.
+     */
+    public static synchronized void setRegistry(IttRegistry newRegistry) {
+        if (newRegistry == null) {
+            throw new NullPointerException("newRegistry can't be null");
+        }
+        if (registry != null) {
+            throw new IllegalStateException("The registry is already in use.");
+        }
+        registry = newRegistry;
+    }
+
+    /**
+     * Create a logger in the shared registry which sends its output to the given filename.
+     * See {@link IttRegistry#create(String, String)}.
+     *
+     * @param key      Key of the logger, which must not be registered already.
+     * @param filename Filename to output to.
+     * @return The logger, whose execution must still be started.
+     * @throws IOException Thrown if the file can't be created.
+     */
+    public static IttLogger create(String key, String filename) throws IOException {
+        return registry().create(key, filename);
+    }
+
+    /**
+     * Get a logger of the shared registry.
+     *
+     * @param key Key of the logger.
+     * @return The registered logger, or null if there is no logger with this key.
+     */
+    public static IttLogger get(String key) {
+        return registry().get(key);
+    }
+
+    /**
+     * End a logger of the shared registry. See {@link IttRegistry#end(String)}.
+     *
+     * @param key Key of the logger.
+     * @return false if there is no logger with this key.
+     */
+    public static boolean end(String key) {
+        return registry().end(key);
+    }
+
+    private static void checkSingletonReplaceable() {
+        if (loggerSingleton != null && loggerSingleton.isExecutionActive()) {
+            throw new IllegalStateException("The execution of the current logger is active. End it before " +
+                    "creating a new one, or use the registry for concurrent executions.");
+        }
+    }
+
     /**
      * Private constructor for static class.
      */
@@ -0,0 +1,107 @@
+package ca.etsmtl.intuitree;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Dedicated writer thread which drains an {@link IttRingBuffer} in batches into a handler.
+ * The handler is only ever called from this thread, so it doesn't need any synchronization of its own.
+ */
+class IttAsyncWriter implements Runnable {
+
+    /**
+     * Maximum number of records processed before the consumed sequence is advanced and waiting producers released.
+     */
+    private static final int MAX_BATCH = 256;
+
+    /**
+     * Number of empty drain attempts before the writer thread parks.
+     */
+    private static final int IDLE_SPINS = 64;
+
+    /**
+     * Upper bound on a single park, as a safety net against a missed wake-up.
+     */
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final IttRingBuffer ringBuffer;
+    private final IttRingBuffer.Handler handler;
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    /**
+     * First IOException thrown by the handler. Once set, the remaining records are drained without being written.
+     */
+    private volatile IOException failure;
+
+    IttAsyncWriter(IttRingBuffer ringBuffer, IttRingBuffer.Handler handler) {
+        this(ringBuffer, handler, "intuitree-writer");
+    }
+
+    IttAsyncWriter(IttRingBuffer ringBuffer, IttRingBuffer.Handler handler, String threadName) {
+        this.ringBuffer = ringBuffer;
+        this.handler = handler;
+        this.thread = new Thread(this, threadName);
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        IttRingBuffer.Handler discard = record -> {
+        };
+        int idle = 0;
+        while (running || !ringBuffer.isEmpty()) {
+            int count;
+            try {
+                count = ringBuffer.drain(failure == null ? handler : discard, MAX_BATCH);
+                if (failure == null) {
+                    handler.afterDrain();
+                }
+            } catch (IOException e) {
+                failure = e;
+                count = 1;
+            }
+
+            if (count > 0) {
+                idle = 0;
+            } else if (++idle > IDLE_SPINS) {
+                ringBuffer.awaitPublished(PARK_NANOS);
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Wait until every published record has been handled, then stop the writer thread.
+     */
+    void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return The first IOException raised while writing, or null if there was none.
+     */
+    IOException getFailure() {
+        return failure;
+    }
+
+}
@@ -0,0 +1,20 @@
+package ca.etsmtl.intuitree;
+
+/**
+ * Determines what happens to the children of a log rejected by the filter of a logger
+ * (see {@link IttLogger#setFilter(IttLogFilter, IttFilterPolicy)}).
+ */
+public enum IttFilterPolicy {
+
+    /**
+     * Children of a rejected log are attached to its parent, as if the rejected log had never been added.
+     * Rejected logs at the root level leave their children at the root level.
+     */
+    REPARENT,
+
+    /**
+     * The whole subtree of a rejected log is dropped, whatever the filter says about its children.
+     */
+    DROP
+
+}
@@ -0,0 +1,28 @@
+package ca.etsmtl.intuitree;
+
+/**
+ * What made a logger flush its output, as counted by {@link IttMetricsSnapshot#getFlushCount(IttFlushCause)}.
+ */
+public enum IttFlushCause {
+
+    /**
+     * The number of logs given to {@link IttFlushPolicy} were written since the last flush.
+     */
+    LOG_COUNT,
+
+    /**
+     * The interval given to {@link IttFlushPolicy} elapsed with logs written since the last flush.
+     */
+    TIMER,
+
+    /**
+     * A log had one of the statuses given to {@link IttFlushPolicy}.
+     */
+    STATUS,
+
+    /**
+     * The execution ended while the policy forces the output to the device.
+     */
+    END
+
+}
@@ -0,0 +1,65 @@
+package ca.etsmtl.intuitree;
+
+import ca.etsmtl.intuitree.pojo.IttStatus;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Decides when a logger flushes its output (see {@link IttLogger#setFlushPolicy(IttFlushPolicy)}), trading
+ * throughput for the amount of logs which a crash can lose. Without a policy, the output is only flushed when the
+ * buffers of the writer are full and when the execution ends.
+ * <p>
+ * A flush hands the buffered logs to the operating system, which keeps them if the process crashes. Forcing also
+ * waits until the file is on its device, which keeps them if the machine crashes. Every flush writes all the logs
+ * buffered since the previous one, so a single force commits the whole group.
+ */
+public class IttFlushPolicy {
+
+    private final int everyLogs;
+    private final long everyMillis;
+    private final boolean force;
+    private final Set<String> flushStatusNames = new HashSet<>();
+
+    /**
+     * @param everyLogs     Flush after this number of logs were written since the last flush, 0 to disable.
+     * @param everyMillis   Flush at this interval from a background timer if logs were written since the last flush,
+     *                      0 to disable.
+     * @param force         Whether every flush also forces the file to its device with
+     *                      {@link java.nio.channels.FileChannel#force(boolean)}, as does the end of the execution.
+     *                      Requires a logger writing to a file.
+     * @param flushStatuses Statuses which make the output flushed right after a log with one of them is written.
+     */
+    public IttFlushPolicy(int everyLogs, long everyMillis, boolean force, IttStatus... flushStatuses) {
+        if (everyLogs < 0 || everyMillis < 0) {
+            throw new IllegalArgumentException("everyLogs and everyMillis can't be negative");
+        }
+        this.everyLogs = everyLogs;
+        this.everyMillis = everyMillis;
+        this.force = force;
+        for (IttStatus status : flushStatuses) {
+            flushStatusNames.add(status.getName());
+        }
+    }
+
+    public int getEveryLogs() {
+        return everyLogs;
+    }
+
+    public long getEveryMillis() {
+        return everyMillis;
+    }
+
+    public boolean isForce() {
+        return force;
+    }
+
+    /**
+     * @param status Status of a log.
+     * @return true if the output must be flushed after a log with this status.
+     */
+    boolean isFlushStatus(IttStatus status) {
+        return !flushStatusNames.isEmpty() && flushStatusNames.contains(status.getName());
+    }
+
+}
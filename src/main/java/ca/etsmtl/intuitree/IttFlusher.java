@@ -0,0 +1,133 @@
+package ca.etsmtl.intuitree;
+
+import ca.etsmtl.intuitree.format.IttWriter;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies an {@link IttFlushPolicy} to the writer of an execution. Its flushes run on the thread which writes the
+ * logs, inside the write section in synchronous mode and on the writer thread otherwise: the timer only marks a
+ * flush as due, and the writing side performs it.
+ */
+class IttFlusher {
+
+    /**
+     * Single timer thread shared by every logger, created on first use.
+     */
+    private static ScheduledExecutorService timerExecutor;
+
+    private final IttFlushPolicy policy;
+    private final IttWriter writer;
+    private final Forcer forcer;
+    private final IttMetrics metrics;
+
+    /**
+     * Logs written since the last flush. Only used by the writing thread.
+     */
+    private int unflushedLogs;
+
+    private volatile boolean timerDue;
+    private ScheduledFuture<?> timer;
+
+    /**
+     * @param forcer  Forces the output file to its device, required if the policy forces the output, null otherwise.
+     * @param metrics Metrics of the logger, or null.
+     */
+    IttFlusher(IttFlushPolicy policy, IttWriter writer, Forcer forcer, IttMetrics metrics) {
+        this.policy = policy;
+        this.writer = writer;
+        this.forcer = forcer;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Start the timer of the policy, if it has an interval.
+     *
+     * @param onDue Called by the timer thread after a flush became due, to have the writing side perform it.
+     */
+    void startTimer(Runnable onDue) {
+        if (policy.getEveryMillis() == 0) {
+            return;
+        }
+        timer = getTimerExecutor().scheduleAtFixedRate(() -> {
+            timerDue = true;
+            onDue.run();
+        }, policy.getEveryMillis(), policy.getEveryMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void stopTimer() {
+        if (timer != null) {
+            timer.cancel(false);
+        }
+    }
+
+    /**
+     * Called by the writing side after a log was written.
+     */
+    void logWritten(IttLogRecord record) throws IOException {
+        unflushedLogs++;
+        if (policy.isFlushStatus(record.getStatus())) {
+            flush(IttFlushCause.STATUS);
+        } else if (policy.getEveryLogs() > 0 && unflushedLogs >= policy.getEveryLogs()) {
+            flush(IttFlushCause.LOG_COUNT);
+        }
+    }
+
+    /**
+     * Called by the writing side to perform the flush of the timer, if it is due.
+     */
+    void flushIfDue() throws IOException {
+        if (timerDue) {
+            timerDue = false;
+            if (unflushedLogs > 0) {
+                flush(IttFlushCause.TIMER);
+            }
+        }
+    }
+
+    /**
+     * Called by the writing side after the footer was written, before the writer is closed.
+     */
+    void beforeClose() throws IOException {
+        if (policy.isForce()) {
+            flush(IttFlushCause.END);
+        }
+    }
+
+    private void flush(IttFlushCause cause) throws IOException {
+        unflushedLogs = 0;
+        long start = metrics != null ? System.nanoTime() : 0;
+        writer.flush();
+        long flushed = metrics != null ? System.nanoTime() : 0;
+        if (policy.isForce()) {
+            forcer.force();
+        }
+        if (metrics != null) {
+            metrics.flushed(cause, flushed - start, policy.isForce() ? System.nanoTime() - flushed : -1);
+        }
+    }
+
+    /**
+     * Forces the output file of a logger to its device, such as {@link java.nio.channels.FileChannel#force(boolean)}.
+     */
+    interface Forcer {
+        void force() throws IOException;
+    }
+
+    private static synchronized ScheduledExecutorService getTimerExecutor() {
+        if (timerExecutor == null) {
+            timerExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "intuitree-flush-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return timerExecutor;
+    }
+
+}
@@ -0,0 +1,181 @@
+package ca.etsmtl.intuitree;
+
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+
+import java.util.function.Supplier;
+
+/**
+ * Fluent builder for a single log, obtained with {@link IttLogger#log()}.
+ * Each thread has a single builder per logger which is reset and reused after every {@link #emit()},
+ * so once warmed up, logging through the builder doesn't allocate any object.
+ * A log must therefore be emitted before {@link IttLogger#log()} is called again on the same thread,
+ * and the builder must not be shared with another thread.
+ * The builder only references its logger from {@link IttLogger#log()} to {@link #emit()}, so the context of a
+ * thread, which holds the builder, doesn't keep an ended logger reachable.
+ */
+public class IttLogBuilder {
+
+    /**
+     * Logger which returned this builder, null once the log was emitted.
+     */
+    private IttLogger logger;
+
+    private final IttLogRecord record = new IttLogRecord();
+
+    /**
+     * Explicit parent ID, or {@link IttLogger#CURRENT_TRACK} to add the log at the current track of the thread.
+     */
+    private long parentId = IttLogger.CURRENT_TRACK;
+
+    /**
+     * Suppliers of the title and message, called only if the log is accepted by the filter of the logger.
+     */
+    private Supplier<String> titleSupplier;
+    private Supplier<String> messageSupplier;
+
+    IttLogBuilder() {
+        reset();
+    }
+
+    /**
+     * Bind the builder to the logger which returns it, until the log is emitted.
+     */
+    IttLogBuilder bind(IttLogger logger) {
+        this.logger = logger;
+        return this;
+    }
+
+    /**
+     * @param title The log title (must be short; displayed in small area of the UI).
+     * @return This builder.
+     */
+    public IttLogBuilder title(String title) {
+        record.setTitle(title != null ? title : "");
+        titleSupplier = null;
+        return this;
+    }
+
+    /**
+     * @param title Supplier of the log title, called only if the log is accepted by the filter of the logger
+     *              (see {@link IttLogger#setFilter(IttLogFilter, IttFilterPolicy)}).
+     * @return This builder.
+     */
+    public IttLogBuilder lazyTitle(Supplier<String> title) {
+        if (title == null) {
+            throw new NullPointerException("title can't be null");
+        }
+        record.setTitle(null);
+        titleSupplier = title;
+        return this;
+    }
+
+    /**
+     * @param message The log message (can be very long; displayed in a large area of the UI).
+     * @return This builder.
+     */
+    public IttLogBuilder message(String message) {
+        record.setMessage(message != null ? message : "");
+        messageSupplier = null;
+        return this;
+    }
+
+    /**
+     * @param message Supplier of the log message, called only if the log is accepted by the filter of the logger
+     *                (see {@link IttLogger#setFilter(IttLogFilter, IttFilterPolicy)}).
+     * @return This builder.
+     */
+    public IttLogBuilder lazyMessage(Supplier<String> message) {
+        if (message == null) {
+            throw new NullPointerException("message can't be null");
+        }
+        record.setMessage(null);
+        messageSupplier = message;
+        return this;
+    }
+
+    /**
+     * @param status The log status.
+     * @return This builder.
+     */
+    public IttLogBuilder status(IttStatus status) {
+        if (status == null) {
+            throw new NullPointerException("status can't be null");
+        }
+        record.setStatus(status);
+        return this;
+    }
+
+    /**
+     * @param statusName The string corresponding to the log status.
+     *                   Must have been created with {@link IttLogger#addStatus(String, String)}.
+     * @return This builder.
+     */
+    public IttLogBuilder status(String statusName) {
+        if (statusName == null) {
+            throw new NullPointerException("statusName can't be null.");
+        }
+        record.setStatus(logger.getStatus(statusName));
+        return this;
+    }
+
+    /**
+     * Add a tag value to the log.
+     *
+     * @param tag   Tag instance returned from {@link IttLogger#addTag(String)}.
+     * @param value Value of the tag.
+     * @return This builder.
+     */
+    public IttLogBuilder tag(IttTag tag, String value) {
+        if (tag == null) {
+            throw new NullPointerException("tag can't be null.");
+        }
+        record.addTag(tag, value != null ? value : "");
+        return this;
+    }
+
+    /**
+     * Add the log as a child of the given parent instead of at the current track.
+     * The current track of the thread is then left unchanged, as with
+     * {@link IttLogger#addLog(long, String, String, IttStatus, ca.etsmtl.intuitree.pojo.IttTagValue...)}.
+     *
+     * @param parentId The ID of the parent log, or 0 to add the log at the root level.
+     *                 A log whose parent is {@link IttLogger#DROPPED_LOG_ID} is dropped.
+     * @return This builder.
+     */
+    public IttLogBuilder parent(long parentId) {
+        if (parentId < 0 && parentId != IttLogger.DROPPED_LOG_ID) {
+            throw new IllegalArgumentException("parentId can't be negative");
+        }
+        this.parentId = parentId;
+        return this;
+    }
+
+    /**
+     * Add the log and reset this builder for the next log.
+     *
+     * @return The ID of the new log, or 0 if the logger is disabled.
+     */
+    public long emit() {
+        try {
+            if (record.getStatus() == null) {
+                throw new NullPointerException("status can't be null");
+            }
+            return logger.emit(record, parentId, titleSupplier, messageSupplier);
+        } finally {
+            reset();
+        }
+    }
+
+    private void reset() {
+        record.clear();
+        record.setTitle("");
+        record.setMessage("");
+        parentId = IttLogger.CURRENT_TRACK;
+        titleSupplier = null;
+        messageSupplier = null;
+        logger = null;
+    }
+
+}
@@ -0,0 +1,96 @@
+package ca.etsmtl.intuitree;
+
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Decides which logs are written by a logger (see {@link IttLogger#setFilter(IttLogFilter, IttFilterPolicy)}).
+ * The filter runs on the logging thread before the log gets an ID, and before the title and message of logs added
+ * with suppliers are computed, so rejected logs cost almost nothing.
+ */
+@FunctionalInterface
+public interface IttLogFilter {
+
+    /**
+     * @param log The log to add. Its status and tags are set, but not its IDs, and its title and message are null
+     *            if they are given by suppliers. Must not be modified or kept after this call.
+     * @return true if the log must be written, false if it must be rejected.
+     */
+    boolean accept(IttLogRecord log);
+
+    /**
+     * @param other Another filter.
+     * @return A filter which accepts the logs accepted by both filters.
+     */
+    default IttLogFilter and(IttLogFilter other) {
+        return log -> accept(log) && other.accept(log);
+    }
+
+    /**
+     * @param other Another filter.
+     * @return A filter which accepts the logs accepted by either filter.
+     */
+    default IttLogFilter or(IttLogFilter other) {
+        return log -> accept(log) || other.accept(log);
+    }
+
+    /**
+     * @return A filter which accepts the logs rejected by this filter.
+     */
+    default IttLogFilter negate() {
+        return log -> !accept(log);
+    }
+
+    /**
+     * @param statuses The statuses to accept.
+     * @return A filter which accepts the logs having one of the given statuses.
+     */
+    static IttLogFilter statuses(IttStatus... statuses) {
+        String[] names = new String[statuses.length];
+        for (int i = 0; i < statuses.length; i++) {
+            names[i] = statuses[i].getName();
+        }
+        return statusNames(names);
+    }
+
+    /**
+     * @param statusNames The names of the statuses to accept.
+     * @return A filter which accepts the logs having a status with one of the given names.
+     */
+    static IttLogFilter statusNames(String... statusNames) {
+        Set<String> names = new HashSet<>(Arrays.asList(statusNames));
+        return log -> names.contains(log.getStatus().getName());
+    }
+
+    /**
+     * @param tag            The tag to look for.
+     * @param valuePredicate Predicate on the value of the tag.
+     * @return A filter which accepts the logs having the given tag with a value matching the predicate.
+     */
+    static IttLogFilter tag(IttTag tag, Predicate<String> valuePredicate) {
+        return tag(tag.getName(), valuePredicate);
+    }
+
+    /**
+     * @param tagName        The name of the tag to look for.
+     * @param valuePredicate Predicate on the value of the tag.
+     * @return A filter which accepts the logs having a tag with the given name and a value matching the predicate.
+     */
+    static IttLogFilter tag(String tagName, Predicate<String> valuePredicate) {
+        return log -> {
+            for (int i = 0; i < log.getTagCount(); i++) {
+                if (log.getTag(i).getName().equals(tagName) && valuePredicate.test(log.getTagValue(i))) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+}
@@ -1,18 +1,28 @@
 package ca.etsmtl.intuitree;
 
+import ca.etsmtl.intuitree.format.IttFormat;
+import ca.etsmtl.intuitree.format.IttIndexedJsonWriter;
+import ca.etsmtl.intuitree.format.IttJsonWriter;
+import ca.etsmtl.intuitree.format.IttWriter;
+import ca.etsmtl.intuitree.io.IttCountingOutputStream;
+import ca.etsmtl.intuitree.io.IttMappedFileOutputStream;
 import ca.etsmtl.intuitree.pojo.*;
-import com.fasterxml.jackson.core.JsonEncoding;
-import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.*;
-import java.util.ArrayDeque;
-import java.util.Arrays;
-import java.util.Deque;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * The main and only class which is needed to interact with the Intuitree library.
@@ -20,22 +30,23 @@ import java.util.concurrent.ConcurrentMap;
 public class IttLogger {
 
     /**
-     * Jackson ObjectMapper in order to write POJOs as JSON.
+     * ID returned for a log dropped by the filter with {@link IttFilterPolicy#DROP}.
+     * Logs added with this ID as their parent are dropped as well.
      */
-    private static ObjectMapper MAPPER = new ObjectMapper();
+    public static final long DROPPED_LOG_ID = -1;
 
     /**
-     * Jackson JsonFactory in order to create a JsonGenerator and stream data.
+     * Parent ID given to {@link #emit(IttLogRecord, long)} to add a log at the current track of the calling thread.
      */
-    private static JsonFactory FACTORY = new JsonFactory();
+    static final long CURRENT_TRACK = Long.MIN_VALUE;
 
     /**
-     * Jackson JsonGenerator in order to generate JSON in a stream.
+     * Writer which serializes the execution and its logs to the output.
      */
-    private JsonGenerator generator;
+    private IttWriter writer;
 
     /**
-     * OutputStream which is sent to the JsonGenerator.
+     * OutputStream which is sent to the writer. Null if the logger was created with its own writer.
      */
     private OutputStream outputStream;
 
@@ -67,26 +78,119 @@ public class IttLogger {
     private ConcurrentMap<String, IttTag> tagMap;
 
     /**
-     * A stack representing the parent IDs in the order that leads from the first parent to the root.
+     * The position of each logging thread in the tree. Threads start at the root level.
+     * Contexts are only referenced by their thread, so they are collected with it, and they don't reference the
+     * logger, so the entries of pooled threads become stale once it is unreachable. A context holds no log once
+     * its thread is back at the root level.
      */
-    private Deque<Integer> parentLogIdStack = new ArrayDeque<>();
+    private final ThreadLocal<IttTrackContext> trackContext = ThreadLocal.withInitial(IttTrackContext::new);
 
     /**
      * The current maximal log ID which determines the ID of the next generated log.
      */
-    private int maxLogId;
+    private final AtomicLong maxLogId = new AtomicLong();
 
     /**
-     * The current parent ID, which is kept separately to alleviate checks when adding new logs.
-     * 0, the default value, means there is no parent at the current level (root level).
+     * Filter deciding which logs are written, null to write every log.
      */
-    private int currentParentId;
+    private IttLogFilter filter;
 
     /**
-     * The current log ID, which is used when creating a new track to add the right parent ID.
-     * 0, the default value, means that creating a new track will have no effect (stays on the same track).
+     * What happens to the children of the logs rejected by the filter.
      */
-    private int currentLogId;
+    private IttFilterPolicy filterPolicy = IttFilterPolicy.REPARENT;
+
+    /**
+     * Policy deciding which tracks are kept, null to write every log as it is added.
+     */
+    private IttSamplingPolicy samplingPolicy;
+
+    /**
+     * Ring buffer which captures logs when the logger is in asynchronous mode, null in synchronous mode.
+     */
+    private IttRingBuffer ringBuffer;
+
+    /**
+     * Writer thread which drains the ring buffer into the JsonGenerator when the logger is in asynchronous mode.
+     */
+    private IttAsyncWriter asyncWriter;
+
+    /**
+     * Shared writer threads of the registry which created the logger, null if the logger has its own output.
+     */
+    private IttWriterPool writerPool;
+
+    /**
+     * Output through the writer pool once the execution started, null if the logger has no writer pool.
+     */
+    private IttPooledOutput pooledOutput;
+
+    /**
+     * Called once when the execution ends, or when the logger is discarded, null if nothing has to be notified.
+     */
+    private Runnable endListener;
+
+    /**
+     * Metrics of the logger, null if they are not enabled.
+     */
+    private IttMetrics metrics;
+
+    /**
+     * Flush policy, null to only flush when the buffers of the writer are full.
+     */
+    private IttFlushPolicy flushPolicy;
+
+    /**
+     * Applies the flush policy to the writer while the execution is active, null without a flush policy.
+     */
+    private IttFlusher flusher;
+
+    /**
+     * Forces the output file to its device, null if the output is not a file.
+     */
+    private IttFlusher.Forcer forcer;
+
+    /**
+     * Channel of the output file, null if the output is not a file stream.
+     */
+    private FileChannel channel;
+
+    /**
+     * Size and number of the off-heap buffers of each logging thread, 0 if direct buffers are not enabled.
+     */
+    private int directBufferSize;
+    private int directBufferCount;
+
+    /**
+     * Staging areas of the threads which logged with direct buffers, to write what they hold when the execution ends
+     * or their thread dies. The areas of dead threads are closed when a new thread starts staging.
+     */
+    private final Queue<IttStagingArea> stagingAreas = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Area for the logs written with direct buffers once the execution is ending, used under the write section.
+     */
+    private IttStagingArea endingArea;
+
+    /**
+     * Whether the execution is ending: its staging areas are being closed, and new logs are written synchronously.
+     */
+    private boolean ending;
+
+    /**
+     * Whether staged logs were written, after which every log is preceded by a comma.
+     */
+    private boolean stagedLogsWritten;
+
+    /**
+     * Time totals of the closed spans.
+     */
+    private final IttSpanRollup spanRollup = new IttSpanRollup();
+
+    /**
+     * Value of {@link System#nanoTime()} when the execution started, which the start of the spans is relative to.
+     */
+    private long startNanos;
 
     /**
      * Create an enabled logger which sends its output to the given filename.
@@ -109,6 +213,19 @@ public class IttLogger {
         this(createFileOutputStream(filename), enabled);
     }
 
+    /**
+     * Create a logger which sends its output to the given filename.
+     *
+     * @param filename     Filename to output to.
+     * @param enabled      Initial enabled status.
+     * @param memoryMapped If true, the file is written through memory-mapped chunks instead of write syscalls
+     *                     (see {@link IttMappedFileOutputStream}), which is faster at high logging rates.
+     * @throws IOException Thrown if there is a problem writing to the specified filename.
+     */
+    public IttLogger(String filename, boolean enabled, boolean memoryMapped) throws IOException {
+        this(memoryMapped ? new IttMappedFileOutputStream(filename) : createFileOutputStream(filename), enabled);
+    }
+
     /**
      * Create a logger which sends its output to the given output stream.
      *
@@ -129,23 +246,54 @@ public class IttLogger {
      * @throws IOException Thrown if the JsonGenerator has a problem with the OutputStream.
      */
     public IttLogger(OutputStream outputStream, boolean enabled, boolean throwUncheckedIoException) throws IOException {
-        this(FACTORY.createGenerator(outputStream, JsonEncoding.UTF8), outputStream, enabled,
+        this(new IttCountingOutputStream(outputStream), enabled, throwUncheckedIoException);
+        if (outputStream instanceof FileOutputStream) {
+            FileChannel channel = ((FileOutputStream) outputStream).getChannel();
+            this.channel = channel;
+            forcer = () -> channel.force(false);
+        } else if (outputStream instanceof IttMappedFileOutputStream) {
+            forcer = ((IttMappedFileOutputStream) outputStream)::force;
+        }
+    }
+
+    /**
+     * Create a logger which counts the bytes of its output, for its metrics.
+     */
+    private IttLogger(IttCountingOutputStream outputStream, boolean enabled, boolean throwUncheckedIoException) {
+        this(IttFormat.JSON_V1.createWriter(outputStream), outputStream, enabled,
                 throwUncheckedIoException, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
     }
 
+    /**
+     * Create a logger which serializes its output with the given writer.
+     *
+     * @param writer                    Writer to serialize the execution with.
+     * @param enabled                   If true, logging will be done, if not, every method call will do nothing.
+     * @param throwUncheckedIoException If true, an UncheckedIOException will be thrown if an IOException is catched.
+     */
+    public IttLogger(IttWriter writer, boolean enabled, boolean throwUncheckedIoException) {
+        this(writer, null, enabled, throwUncheckedIoException, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    }
+
     /**
      * Constructor which allows for parameter injection. Used for testing purposes.
      */
     IttLogger(JsonGenerator generator, OutputStream outputStream, boolean enabled,
               boolean throwUncheckedIoException, ConcurrentMap<String, IttStatus> statusMap, ConcurrentMap<String, IttTag> tagMap) {
-        this.generator = generator;
+        this(new IttJsonWriter(generator), outputStream, enabled, throwUncheckedIoException, statusMap, tagMap);
+    }
+
+    /**
+     * Constructor which allows for parameter injection. Used for testing purposes.
+     */
+    IttLogger(IttWriter writer, OutputStream outputStream, boolean enabled,
+              boolean throwUncheckedIoException, ConcurrentMap<String, IttStatus> statusMap, ConcurrentMap<String, IttTag> tagMap) {
+        this.writer = writer;
         this.outputStream = outputStream;
         this.enabled = enabled;
         this.throwUncheckedIoException = throwUncheckedIoException;
         this.statusMap = statusMap;
         this.tagMap = tagMap;
-
-        this.generator.setCodec(MAPPER);
     }
 
     /**
@@ -189,6 +337,243 @@ public class IttLogger {
 
     }
 
+    /**
+     * Select the output format. Must be done before {@link #startExecution(java.lang.String, java.lang.String)}
+     * is called. The default is {@link IttFormat#JSON_V1}, which is read directly by the UI.
+     *
+     * @param format The output format.
+     */
+    public void setFormat(IttFormat format) {
+        if (format == null) {
+            throw new NullPointerException("format can't be null");
+        }
+        if (!enabled) return;
+
+        synchronized (this) {
+            if (execution != null) {
+                throw new IllegalStateException("The format must be selected before the execution is started.");
+            }
+            if (outputStream == null) {
+                throw new IllegalStateException("The format can't be selected for a logger created with its own writer.");
+            }
+            // Nothing was written yet, so the previous writer can simply be replaced.
+            writer = format.createWriter(outputStream);
+        }
+    }
+
+    /**
+     * Write a sidecar index along with the execution, which allows to read any log or subtree directly
+     * (see {@link ca.etsmtl.intuitree.format.IttIndexedJsonReader}). Only available for the
+     * {@link IttFormat#JSON_V1} format. Must be done before {@link #startExecution(java.lang.String, java.lang.String)}
+     * is called.
+     *
+     * @param indexOutputStream Output stream for the index. It is closed when the execution ends.
+     */
+    public void enableIndex(OutputStream indexOutputStream) {
+        if (indexOutputStream == null) {
+            throw new NullPointerException("indexOutputStream can't be null");
+        }
+        if (!enabled) return;
+
+        synchronized (this) {
+            if (execution != null) {
+                throw new IllegalStateException("The index must be enabled before the execution is started.");
+            }
+            if (outputStream == null) {
+                throw new IllegalStateException("The index can't be enabled for a logger created with its own writer.");
+            }
+            if (writer.getVersion() != IttFormat.JSON_V1.getVersion()) {
+                throw new IllegalStateException("The index is only available for the JSON_V1 format.");
+            }
+            // Nothing was written yet, so the previous writer can simply be replaced.
+            writer = new IttIndexedJsonWriter(outputStream, indexOutputStream);
+        }
+    }
+
+    /**
+     * Select which logs are written. Must be done before {@link #startExecution(java.lang.String, java.lang.String)}
+     * is called. Logs are filtered on the logging thread before they get an ID and before the suppliers given to
+     * {@link #addLazyLog(Supplier, Supplier, IttStatus, IttTagValue...)} are called.
+     * A rejected log doesn't get an ID: addLog returns the ID its children should be attached to instead,
+     * which is its parent's ID with {@link IttFilterPolicy#REPARENT}, or {@link #DROPPED_LOG_ID}
+     * with {@link IttFilterPolicy#DROP}. Tracks started after a rejected log follow the same policy.
+     *
+     * @param filter The filter, or null to write every log.
+     * @param policy What happens to the children of rejected logs.
+     */
+    public void setFilter(IttLogFilter filter, IttFilterPolicy policy) {
+        if (policy == null) {
+            throw new NullPointerException("policy can't be null");
+        }
+        if (!enabled) return;
+
+        synchronized (this) {
+            if (execution != null) {
+                throw new IllegalStateException("The filter must be set before the execution is started.");
+            }
+            this.filter = filter;
+            this.filterPolicy = policy;
+        }
+    }
+
+    /**
+     * Sample the subtrees of the logger, deciding which ones are written once they are complete.
+     * Must be done before {@link #startExecution(java.lang.String, java.lang.String)} is called.
+     * The logs of a track are held in memory by the logging thread until {@link #endLogTrack()}, when the track is
+     * kept or discarded as a whole according to the policy. Discarded tracks leave gaps in the IDs.
+     * Root-level logs are always written, and logs of a kept track are written when its root-level track ends,
+     * so that every written log has its parent written.
+     * Logs added with an explicit parent ID are written immediately and may reference a discarded log,
+     * and the logs of tracks still open when the execution ends are not written.
+     *
+     * @param policy The sampling policy, or null to write every log.
+     */
+    public void setSampling(IttSamplingPolicy policy) {
+        if (!enabled) return;
+
+        synchronized (this) {
+            if (execution != null) {
+                throw new IllegalStateException("Sampling must be set before the execution is started.");
+            }
+            this.samplingPolicy = policy;
+        }
+    }
+
+    /**
+     * Switch the logger to asynchronous mode. Must be done before
+     * {@link #startExecution(java.lang.String, java.lang.String)} is called.
+     * In asynchronous mode, logging methods only capture the log into a preallocated ring buffer,
+     * and a dedicated writer thread serializes and writes the logs in batches.
+     * {@link #endExecution()} waits until every captured log has been written before closing the output.
+     *
+     * @param capacity     Number of logs the ring buffer can hold, rounded up to the next power of two.
+     * @param waitStrategy What logging threads do when the ring buffer is full.
+     */
+    public void enableAsync(int capacity, IttWaitStrategy waitStrategy) {
+        if (waitStrategy == null) {
+            throw new NullPointerException("waitStrategy can't be null");
+        }
+        if (!enabled) return;
+
+        synchronized (this) {
+            if (execution != null) {
+                throw new IllegalStateException("Asynchronous mode must be enabled before the execution is started.");
+            }
+            if (writerPool != null) {
+                throw new IllegalStateException("Loggers of a registry already write through its writer threads.");
+            }
+            if (directBufferSize > 0) {
+                throw new IllegalStateException("Direct buffers and asynchronous mode can't be combined.");
+            }
+            ringBuffer = new IttRingBuffer(capacity, waitStrategy);
+        }
+    }
+
+    /**
+     * Encode the logs of each thread into its own off-heap buffers, outside of the write section, and write them to
+     * the file once all the buffers of the thread are full, in a single gathering write.
+     * The logging path then allocates almost nothing on the heap, and the file gets fewer, larger writes.
+     * Must be done before {@link #startExecution(java.lang.String, java.lang.String)} is called.
+     * <p>
+     * Only available for a logger writing the {@link IttFormat#JSON_V1} format to a file stream, in synchronous mode
+     * and without a flush policy. Logs of different threads are written in chunks, so the file is not in ID order;
+     * readers such as {@link ca.etsmtl.intuitree.format.IttTreeBuilder} accept that. The logs held by a thread are
+     * written when its buffers are full and when the execution ends.
+     * Each logging thread uses bufferSize * bufferCount bytes of off-heap memory.
+     *
+     * @param bufferSize  Size of each buffer in bytes. A log larger than this is rejected with an
+     *                    IllegalArgumentException.
+     * @param bufferCount Number of buffers of each thread, written together.
+     */
+    public void enableDirectBuffers(int bufferSize, int bufferCount) {
+        if (bufferSize < 1 || bufferCount < 1) {
+            throw new IllegalArgumentException("bufferSize and bufferCount must be positive");
+        }
+        if (!enabled) return;
+
+        synchronized (this) {
+            if (execution != null) {
+                throw new IllegalStateException("Direct buffers must be enabled before the execution is started.");
+            }
+            if (channel == null) {
+                throw new IllegalStateException("Only a logger writing to a file stream can use direct buffers.");
+            }
+            if (ringBuffer != null || writerPool != null) {
+                throw new IllegalStateException("Direct buffers and asynchronous mode can't be combined.");
+            }
+            directBufferSize = bufferSize;
+            directBufferCount = bufferCount;
+        }
+    }
+
+    /**
+     * Collect metrics on the cost of the logger: logs and bytes written, time spent writing and waiting for the
+     * write section, track depth and IOExceptions. Must be done before
+     * {@link #startExecution(java.lang.String, java.lang.String)} is called.
+     * Bytes are only counted when the logger was created with a filename or an output stream.
+     *
+     * @return The metrics, which can also be registered with JMX, or null if the logger is disabled.
+     */
+    public IttMetrics enableMetrics() {
+        if (!enabled) return null;
+
+        synchronized (this) {
+            if (execution != null) {
+                throw new IllegalStateException("Metrics must be enabled before the execution is started.");
+            }
+            if (metrics == null) {
+                metrics = new IttMetrics(this, outputStream instanceof IttCountingOutputStream
+                        ? (IttCountingOutputStream) outputStream : null);
+            }
+            return metrics;
+        }
+    }
+
+    /**
+     * Flush the output according to a policy, to bound the logs lost if the process or the machine crashes.
+     * Must be done before {@link #startExecution(java.lang.String, java.lang.String)} is called.
+     * Flushes run where the logs are written: under the write section in synchronous mode, on the writer thread in
+     * asynchronous mode. With metrics enabled, the flushes are counted by cause with the time they took.
+     *
+     * @param policy The flush policy, or null to only flush when the buffers of the writer are full.
+     * @throws IllegalStateException Thrown if the policy forces the output and the logger doesn't write to a file.
+     */
+    public void setFlushPolicy(IttFlushPolicy policy) {
+        if (!enabled) return;
+
+        synchronized (this) {
+            if (execution != null) {
+                throw new IllegalStateException("The flush policy must be set before the execution is started.");
+            }
+            if (policy != null && policy.isForce() && forcer == null) {
+                throw new IllegalStateException("Only a logger writing to a file can force its output.");
+            }
+            this.flushPolicy = policy;
+        }
+    }
+
+    /**
+     * @return The metrics enabled with {@link #enableMetrics()}, or null if they are not enabled.
+     */
+    public IttMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Get the number of logs dropped because the ring buffer was full.
+     * Always 0 unless asynchronous mode is enabled with {@link IttWaitStrategy#DROP}.
+     *
+     * @return The number of dropped logs.
+     */
+    public long getDroppedLogCount() {
+        IttPooledOutput pooledOutput = this.pooledOutput;
+        if (pooledOutput != null) {
+            return pooledOutput.getDroppedCount();
+        }
+        IttRingBuffer ringBuffer = this.ringBuffer;
+        return ringBuffer != null ? ringBuffer.getDroppedCount() : 0;
+    }
+
     /**
      * Start the current execution. Must be called before any logging function and after adding at least one status
      * ({@link #addStatus(String, String)}) and one tag ({@link #addTag(String)}).
@@ -210,50 +595,69 @@ public class IttLogger {
                         "if you wish to log different executions simultaneoulsy.");
             }
 
-            execution = new IttExecution(title, message);
-
-            try {
-                generator.writeStartObject();
-                generator.writeObjectField("execution", execution);
+            if (directBufferSize > 0 && (writer.getClass() != IttJsonWriter.class || flushPolicy != null)) {
+                throw new IllegalStateException("Direct buffers need the JSON_V1 format, without an index or a " +
+                        "flush policy.");
+            }
 
-                generator.writeArrayFieldStart("statuses");
-                for (Map.Entry<String, IttStatus> entry : statusMap.entrySet()) {
-                    generator.writeObject(entry.getValue());
-                }
-                generator.writeEndArray();
+            execution = new IttExecution(title, message, writer.getVersion());
+            startNanos = System.nanoTime();
 
-                generator.writeArrayFieldStart("tags");
-                for (Map.Entry<String, IttTag> entry : tagMap.entrySet()) {
-                    generator.writeObject(entry.getValue());
+            try {
+                writer.writeHeader(execution, statusMap.values(), tagMap.values());
+                if (directBufferSize > 0) {
+                    // Staged logs are written to the file channel, after the header
+                    writer.flush();
                 }
-                generator.writeEndArray();
-
-                generator.writeArrayFieldStart("logs");
             } catch (IOException e) {
                 handleIoException(e);
             }
 
+            if (flushPolicy != null) {
+                flusher = new IttFlusher(flushPolicy, writer, flushPolicy.isForce() ? forcer : null, metrics);
+            }
+
+            if (writerPool != null) {
+                pooledOutput = writerPool.assign(writer, metrics, flusher);
+                pooledOutput.startFlushTimer();
+            } else if (ringBuffer != null) {
+                IttWriter writer = this.writer;
+                IttMetrics metrics = this.metrics;
+                IttRingBuffer.Handler handler = writer::writeLog;
+                if (metrics != null) {
+                    handler = record -> {
+                        long start = System.nanoTime();
+                        writer.writeLog(record);
+                        metrics.logWritten(0, System.nanoTime() - start);
+                    };
+                }
+                if (flusher != null) {
+                    handler = new FlushingHandler(handler, flusher);
+                    // The writer thread checks for a due flush after each drain attempt
+                    flusher.startTimer(() -> {
+                    });
+                }
+                asyncWriter = new IttAsyncWriter(ringBuffer, handler);
+                asyncWriter.start();
+            } else if (flusher != null) {
+                flusher.startTimer(this::flushIfDue);
+            }
+
             return execution;
         }
     }
 
     /**
      * Starts a new "track" (hierarchical level) from the current log node.
-     * All further {@link #addLog(String, String, IttStatus, IttTagValue...)} calls
+     * All further {@link #addLog(String, String, IttStatus, IttTagValue...)} calls from the same thread
      * until {@link #endLogTrack()} is called will add logs
      * that are children of the current (last added) log.
+     * Each thread has its own current track, starting at the root level.
      */
     public void startLogTrack() {
         if (!enabled) return;
 
-        // Synchronize all logging logic to ensure safe state between threads.
-        synchronized (this) {
-            if (currentLogId != 0) {
-                parentLogIdStack.push(currentLogId);
-                currentParentId = currentLogId;
-                currentLogId = 0;
-            }
-        }
+        startTrack(trackContext.get());
     }
 
     /**
@@ -265,21 +669,15 @@ public class IttLogger {
      *                   Must have been created with {@link #addStatus(String, String)}.
      * @param tags       A list of TagValues representing the tags on this node,
      *                   which can be generated using the tagValue methods.
+     * @return The ID of the new log, or 0 if the logger is disabled.
      */
-    public void addLog(String title, String message, String statusName, IttTagValue... tags) {
+    public long addLog(String title, String message, String statusName, IttTagValue... tags) {
         if (statusName == null) {
             throw new NullPointerException("statusName can't be null.");
         }
-        if (!enabled) return;
-
-        IttStatus status = statusMap.get(statusName);
+        if (!enabled) return 0;
 
-        if (status != null) {
-            addLog(title, message, status, tags);
-        } else {
-            throw new IllegalArgumentException("Status with name \"" + statusName + "\" was not registered. Register a status with" +
-                    " addStatus before using it.");
-        }
+        return addLog(title, message, getStatus(statusName), tags);
     }
 
 
@@ -291,81 +689,436 @@ public class IttLogger {
      * @param status  The log status.
      * @param tags    A list of TagValues representing the tags on this node,
      *                which can be generated using the tagValue methods.
+     * @return The ID of the new log, or 0 if the logger is disabled.
      */
-    public void addLog(String title, String message, IttStatus status, IttTagValue... tags) {
+    public long addLog(String title, String message, IttStatus status, IttTagValue... tags) {
         if (status == null) {
             throw new NullPointerException("status can't be null");
         }
-        if (!enabled) return;
+        if (!enabled) return 0;
 
-        // Synchronize all logging logic to ensure safe state between threads.
-        synchronized (this) {
-            IttLog log = new IttLog(currentParentId, ++maxLogId, title != null ? title : "", message != null ? message : "", status, Arrays.asList(tags));
-            try {
-                generator.writeObject(log);
-            } catch (IOException e) {
-                handleIoException(e);
-            }
-            currentLogId = log.getId();
+        IttTrackContext context = trackContext.get();
+        IttLogRecord record = context.acquireRecord();
+        try {
+            record.set(0, 0, title != null ? title : "", message != null ? message : "", status, tags);
+            return emit(record, CURRENT_TRACK);
+        } finally {
+            context.releaseRecord();
         }
     }
 
-    /*
-     * TODO make the API more flexible, especially for multi-threaded environments.
-     * Idea :
-     * - Return the log ID when addLog is called
-     * - Add a special addLog signature which allows to specify a parent ID
-     *  -> When this method is called, the parent ID of the log is the one specified
-     *  -> The currentLogId property is not changed for this special implementation
-     *  -> This would allow to retroactively, or separately from different threads,
-     *     add logs wherever in the tree, without following the main logging flow.
+    /**
+     * Adds a log at the current "track" (hierarchical level), computing its title and message only if the log
+     * is accepted by the filter (see {@link #setFilter(IttLogFilter, IttFilterPolicy)}).
      *
-     * In order to have a 100% multithread-capable API, we would need something more complex.
+     * @param title      Supplier of the log title (must be short; displayed in small area of the UI).
+     * @param message    Supplier of the log message (can be very long; displayed in a large area of the UI).
+     * @param statusName The string corresponding to the log status.
+     *                   Must have been created with {@link #addStatus(String, String)}.
+     * @param tags       A list of TagValues representing the tags on this node,
+     *                   which can be generated using the tagValue methods.
+     * @return The ID of the new log, or 0 if the logger is disabled.
      */
+    public long addLazyLog(Supplier<String> title, Supplier<String> message, String statusName, IttTagValue... tags) {
+        if (statusName == null) {
+            throw new NullPointerException("statusName can't be null.");
+        }
+        if (!enabled) return 0;
+
+        return addLazyLog(title, message, getStatus(statusName), tags);
+    }
 
     /**
-     * Ends the current "track", returning to the previous hierarchical level (parent log node).
+     * Adds a log at the current "track" (hierarchical level), computing its title and message only if the log
+     * is accepted by the filter (see {@link #setFilter(IttLogFilter, IttFilterPolicy)}).
+     *
+     * @param title   Supplier of the log title (must be short; displayed in small area of the UI).
+     * @param message Supplier of the log message (can be very long; displayed in a large area of the UI).
+     * @param status  The log status.
+     * @param tags    A list of TagValues representing the tags on this node,
+     *                which can be generated using the tagValue methods.
+     * @return The ID of the new log, or 0 if the logger is disabled.
      */
-    public void endLogTrack() {
-        if (!enabled) return;
+    public long addLazyLog(Supplier<String> title, Supplier<String> message, IttStatus status, IttTagValue... tags) {
+        if (title == null || message == null || status == null) {
+            throw new NullPointerException("title, message and status can't be null");
+        }
+        if (!enabled) return 0;
 
-        // Synchronize all logging logic to ensure safe state between threads.
-        synchronized (this) {
-            if (parentLogIdStack.size() > 0) {
-                currentLogId = parentLogIdStack.pop();
-                if (parentLogIdStack.size() > 0) {
-                    currentParentId = parentLogIdStack.peekFirst();
-                } else {
-                    currentParentId = 0;
-                }
-            }
+        // The suppliers may log on this thread, which then uses the next record
+        IttTrackContext context = trackContext.get();
+        IttLogRecord record = context.acquireRecord();
+        try {
+            record.set(0, 0, null, null, status, tags);
+            return emit(record, CURRENT_TRACK, title, message);
+        } finally {
+            context.releaseRecord();
         }
     }
 
     /**
-     * Ends the whole execution and closes the output stream.
-     * The instance can't be used after this.
-     */
-    public void endExecution() {
-        if (!enabled) return;
-
-        // Synchronize all logging logic to ensure safe state between threads.
+     * Adds a log as a child of the given parent, anywhere in the tree.
+     * The current "track" of the calling thread is not changed, which allows to add logs retroactively,
+     * or separately from different threads, without following the main logging flow.
+     *
+     * @param parentId   The ID of the parent log, as returned by addLog, or 0 to add the log at the root level.
+     *                   A log whose parent is {@link #DROPPED_LOG_ID} is dropped.
+     * @param title      The log title (must be short; displayed in small area of the UI).
+     * @param message    The log message (can be very long; displayed in a large area of the UI).
+     * @param statusName The string corresponding to the log status.
+     *                   Must have been created with {@link #addStatus(String, String)}.
+     * @param tags       A list of TagValues representing the tags on this node,
+     *                   which can be generated using the tagValue methods.
+     * @return The ID of the new log, or 0 if the logger is disabled.
+     */
+    public long addLog(long parentId, String title, String message, String statusName, IttTagValue... tags) {
+        if (statusName == null) {
+            throw new NullPointerException("statusName can't be null.");
+        }
+        if (!enabled) return 0;
+
+        return addLog(parentId, title, message, getStatus(statusName), tags);
+    }
+
+    /**
+     * Adds a log as a child of the given parent, anywhere in the tree.
+     * The current "track" of the calling thread is not changed, which allows to add logs retroactively,
+     * or separately from different threads, without following the main logging flow.
+     *
+     * @param parentId The ID of the parent log, as returned by addLog, or 0 to add the log at the root level.
+     *                 A log whose parent is {@link #DROPPED_LOG_ID} is dropped.
+     * @param title    The log title (must be short; displayed in small area of the UI).
+     * @param message  The log message (can be very long; displayed in a large area of the UI).
+     * @param status   The log status.
+     * @param tags     A list of TagValues representing the tags on this node,
+     *                 which can be generated using the tagValue methods.
+     * @return The ID of the new log, or 0 if the logger is disabled.
+     */
+    public long addLog(long parentId, String title, String message, IttStatus status, IttTagValue... tags) {
+        if (status == null) {
+            throw new NullPointerException("status can't be null");
+        }
+        if (parentId < 0 && parentId != DROPPED_LOG_ID) {
+            throw new IllegalArgumentException("parentId can't be negative");
+        }
+        if (!enabled) return 0;
+
+        IttTrackContext context = trackContext.get();
+        IttLogRecord record = context.acquireRecord();
+        try {
+            record.set(0, 0, title != null ? title : "", message != null ? message : "", status, tags);
+            return emit(record, parentId);
+        } finally {
+            context.releaseRecord();
+        }
+    }
+
+    /**
+     * Get the log builder of the calling thread, which allows to add a log without allocating any object.
+     * The builder is reused: the log must be emitted before this method is called again on the same thread.
+     * Example: {@code logger.log().title("title").message("message").status(status).tag(tag, "value").emit();}
+     *
+     * @return The log builder of the calling thread, reset to an empty log.
+     */
+    public IttLogBuilder log() {
+        return trackContext.get().getBuilder().bind(this);
+    }
+
+    /**
+     * Ends the current "track", returning to the previous hierarchical level (parent log node).
+     */
+    public void endLogTrack() {
+        if (!enabled) return;
+
+        endTrack(trackContext.get());
+    }
+
+    /**
+     * Opens a timed span: adds a log at the current "track" and starts a track under it, like
+     * {@link #addLog(String, String, String, IttTagValue...)} followed by {@link #startLogTrack()}.
+     * Closing the span ends the track and writes the log with its duration. See {@link IttSpan}.
+     * Example: {@code try (IttSpan span = logger.span("title", "message", "status")) { ... }}
+     *
+     * @param title      The log title (must be short; displayed in small area of the UI).
+     * @param message    The log message (can be very long; displayed in a large area of the UI).
+     * @param statusName The string corresponding to the log status.
+     *                   Must have been created with {@link #addStatus(String, String)}.
+     * @param tags       A list of TagValues representing the tags on this node,
+     *                   which can be generated using the tagValue methods.
+     * @return The open span, which must be closed on the calling thread.
+     */
+    public IttSpan span(String title, String message, String statusName, IttTagValue... tags) {
+        if (statusName == null) {
+            throw new NullPointerException("statusName can't be null.");
+        }
+        if (!enabled) return IttSpan.DISABLED;
+
+        return span(title, message, getStatus(statusName), tags);
+    }
+
+    /**
+     * Opens a timed span: adds a log at the current "track" and starts a track under it, like
+     * {@link #addLog(String, String, IttStatus, IttTagValue...)} followed by {@link #startLogTrack()}.
+     * Closing the span ends the track and writes the log with its duration. See {@link IttSpan}.
+     *
+     * @param title   The log title (must be short; displayed in small area of the UI).
+     * @param message The log message (can be very long; displayed in a large area of the UI).
+     * @param status  The log status.
+     * @param tags    A list of TagValues representing the tags on this node,
+     *                which can be generated using the tagValue methods.
+     * @return The open span, which must be closed on the calling thread.
+     */
+    public IttSpan span(String title, String message, IttStatus status, IttTagValue... tags) {
+        if (status == null) {
+            throw new NullPointerException("status can't be null");
+        }
+        if (!enabled) return IttSpan.DISABLED;
+
+        IttTrackContext context = trackContext.get();
+        IttSpan span = new IttSpan(this, context, false);
+        IttLogRecord record = span.getRecord();
+        record.set(0, 0, title != null ? title : "", message != null ? message : "", status, tags);
+        long id = emit(record, CURRENT_TRACK, null, null, false);
+        boolean tracked = startTrack(context);
+        span.opened(id, record.getId() != 0, tracked, context.getDepth(), System.nanoTime());
+        return span;
+    }
+
+    /**
+     * Get the time totals of the spans closed so far by status, which are written at the end of the execution.
+     * The time of a span includes the time of the spans inside it.
+     *
+     * @return The totals, from the longest to the shortest.
+     */
+    public List<IttSpanTotal> getSpanStatusTotals() {
+        return spanRollup.getStatusTotals();
+    }
+
+    /**
+     * Get the time totals of the spans closed so far by tag value, which are written at the end of the execution.
+     * Each tag has at most 256 values, in the order they were seen; the spans of its later values are counted
+     * under {@link IttSpanTotal#OTHER_VALUE}, so high-cardinality tags such as request IDs don't grow the totals.
+     *
+     * @return The totals, from the longest to the shortest.
+     */
+    public List<IttSpanTotal> getSpanTagTotals() {
+        return spanRollup.getTagTotals();
+    }
+
+    /**
+     * Wrap a task so that it logs at the current position of the calling thread, wherever it runs.
+     * The position is captured now: logs which the task adds at its first level are siblings of the next log added
+     * on the calling thread, under the same parent. The thread running the task gets its own position back after it,
+     * and the tracks which the task leaves open are ended.
+     *
+     * @param task The task to wrap.
+     * @return The wrapped task, or the task itself if the logger is disabled.
+     */
+    public Runnable wrap(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException("task can't be null");
+        }
+        if (!enabled) return task;
+
+        long parentId = trackContext.get().getCurrentParentId();
+        return () -> {
+            IttTrackContext context = enterTask(parentId);
+            try {
+                task.run();
+            } finally {
+                exitTask(context);
+            }
+        };
+    }
+
+    /**
+     * Wrap a task so that it logs at the current position of the calling thread, wherever it runs.
+     * See {@link #wrap(Runnable)}.
+     *
+     * @param task The task to wrap.
+     * @param <T>  The result type of the task.
+     * @return The wrapped task, or the task itself if the logger is disabled.
+     */
+    public <T> Callable<T> wrap(Callable<T> task) {
+        if (task == null) {
+            throw new NullPointerException("task can't be null");
+        }
+        if (!enabled) return task;
+
+        long parentId = trackContext.get().getCurrentParentId();
+        return () -> {
+            IttTrackContext context = enterTask(parentId);
+            try {
+                return task.call();
+            } finally {
+                exitTask(context);
+            }
+        };
+    }
+
+    /**
+     * Wrap an executor so that every task logs at the position of the thread which submits it.
+     * See {@link #wrap(Runnable)}.
+     *
+     * @param executor The executor to wrap.
+     * @return The wrapped executor, or the executor itself if the logger is disabled.
+     */
+    public Executor wrap(Executor executor) {
+        if (executor == null) {
+            throw new NullPointerException("executor can't be null");
+        }
+        if (!enabled) return executor;
+
+        return task -> executor.execute(wrap(task));
+    }
+
+    /**
+     * Wrap an executor service so that every task logs at the position of the thread which submits it.
+     * Works with any executor service, including the virtual thread executor of recent Java versions.
+     * See {@link #wrap(Runnable)}.
+     *
+     * @param executorService The executor service to wrap. Shutting down the wrapper shuts it down.
+     * @return The wrapped executor service, or the executor service itself if the logger is disabled.
+     */
+    public ExecutorService wrap(ExecutorService executorService) {
+        if (executorService == null) {
+            throw new NullPointerException("executorService can't be null");
+        }
+        if (!enabled) return executorService;
+
+        return new IttPropagatingExecutorService(this, executorService);
+    }
+
+    /**
+     * Start a {@link CompletableFuture} whose supplier logs at the current position of the calling thread.
+     * Asynchronous stages depending on it log at the same position if they run on an executor wrapped by
+     * {@link #wrap(Executor)}, for example {@code future.thenApplyAsync(function, logger.wrap(executor))}.
+     *
+     * @param supplier The supplier of the result.
+     * @param executor The executor which runs the supplier.
+     * @param <T>      The result type.
+     * @return The future result.
+     */
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+        if (supplier == null) {
+            throw new NullPointerException("supplier can't be null");
+        }
+        return CompletableFuture.supplyAsync(supplier, wrap(executor));
+    }
+
+    /**
+     * Start a {@link CompletableFuture} whose action logs at the current position of the calling thread.
+     * See {@link #supplyAsync(Supplier, Executor)}.
+     *
+     * @param action   The action to run.
+     * @param executor The executor which runs the action.
+     * @return The future completion of the action.
+     */
+    public CompletableFuture<Void> runAsync(Runnable action, Executor executor) {
+        if (action == null) {
+            throw new NullPointerException("action can't be null");
+        }
+        return CompletableFuture.runAsync(action, wrap(executor));
+    }
+
+    /**
+     * Ends the whole execution and closes the output stream.
+     * The instance can't be used after this.
+     */
+    public void endExecution() {
+        if (!enabled) return;
+
         synchronized (this) {
-            if (!execution.isActive()) {
+            if (!execution.isActive() || ending) {
                 throw new IllegalStateException("Execution is not active. Start an execution before ending it.");
             }
+            ending = true;
+        }
+        finishExecution();
+    }
 
+    /**
+     * Write what the staging areas hold, then the footer. The execution must be marked as ending.
+     */
+    private void finishExecution() {
+        // Outside of the write section, which staging areas take while they write. Logs staged from now on are
+        // written synchronously, until the footer.
+        IttStagingArea stagingArea;
+        while ((stagingArea = stagingAreas.poll()) != null) {
+            stagingArea.close(this);
+        }
+
+        // Synchronize all logging logic to ensure safe state between threads.
+        synchronized (this) {
             execution.setActive(false);
+            endingArea = null;
 
             try {
-                generator.writeEndArray();
-                generator.writeEndObject();
-                generator.close();
-            } catch (IOException e) {
-                handleIoException(e);
+                if (pooledOutput != null) {
+                    // The writer thread writes the footer after the logs it holds
+                    IOException failure = spanRollup.isEmpty() ? pooledOutput.finish(null, null)
+                            : pooledOutput.finish(spanRollup.getStatusTotals(), spanRollup.getTagTotals());
+                    if (failure != null) {
+                        handleIoException(failure);
+                    }
+                } else {
+                    endOutput();
+                }
+            } finally {
+                if (metrics != null) {
+                    metrics.unregisterMBean();
+                }
+
+                enabled = false;
+                // The contexts of the other threads are only touched by their thread, and collected with it
+                trackContext.remove();
+                if (endListener != null) {
+                    endListener.run();
+                }
+            }
+        }
+    }
+
+    private void endOutput() {
+        if (flusher != null) {
+            flusher.stopTimer();
+        }
+        if (asyncWriter != null) {
+            asyncWriter.stop();
+            if (asyncWriter.getFailure() != null) {
+                handleIoException(asyncWriter.getFailure());
             }
+        }
 
-            enabled = false;
+        try {
+            if (!spanRollup.isEmpty()) {
+                writer.writeSpanTotals(spanRollup.getStatusTotals(), spanRollup.getTagTotals());
+            }
+            writer.writeFooter();
+            if (flusher != null) {
+                flusher.beforeClose();
+            }
+            writer.close();
+        } catch (IOException e) {
+            handleIoException(e);
+        }
+    }
+
+    /**
+     * Perform the flush of the timer in synchronous mode. Called by the timer thread.
+     */
+    private synchronized void flushIfDue() {
+        if (!execution.isActive()) {
+            return;
+        }
+        try {
+            flusher.flushIfDue();
+        } catch (IOException e) {
+            // Not rethrown: the timer thread would stop flushing
+            if (metrics != null) {
+                metrics.ioExceptionThrown();
+            }
+            e.printStackTrace();
         }
     }
 
@@ -407,6 +1160,414 @@ public class IttLogger {
         return new IttTagValue(tag, value != null ? value : "");
     }
 
+    /**
+     * Allocate an ID for a new log and send it to the output.
+     * IDs are allocated without locking; the output is the only point shared between logging threads.
+     *
+     * @param record   The log to add, with every field but the IDs filled. Only read during this call.
+     * @param parentId The ID of the parent log, or {@link #CURRENT_TRACK} to add the log at the current track
+     *                 of the calling thread.
+     * @return The ID of the new log, or 0 if the logger is disabled.
+     */
+    long emit(IttLogRecord record, long parentId) {
+        return emit(record, parentId, null, null);
+    }
+
+    /**
+     * Filter a log, then allocate an ID for it and send it to the output.
+     *
+     * @param record   The log to add, with every field but the IDs filled. Only read during this call.
+     * @param parentId The ID of the parent log, or {@link #CURRENT_TRACK} to add the log at the current track
+     *                 of the calling thread.
+     * @param title    Supplier of the title, called if the log is accepted, or null if the record has its title.
+     * @param message  Supplier of the message, called if the log is accepted, or null if the record has its message.
+     * @return The ID of the new log, the ID its children are attached to if it was rejected by the filter,
+     * or 0 if the logger is disabled.
+     */
+    long emit(IttLogRecord record, long parentId, Supplier<String> title, Supplier<String> message) {
+        return emit(record, parentId, title, message, true);
+    }
+
+    /**
+     * Filter a log and allocate an ID for it, sending it to the output unless it is written later, as spans are.
+     *
+     * @param write Whether to send the log to the output, or only give it its IDs.
+     * @see #emit(IttLogRecord, long, Supplier, Supplier)
+     */
+    private long emit(IttLogRecord record, long parentId, Supplier<String> title, Supplier<String> message,
+                     boolean write) {
+        if (!enabled) return 0;
+
+        IttTrackContext context = null;
+        if (parentId == CURRENT_TRACK) {
+            context = trackContext.get();
+            parentId = context.getCurrentParentId();
+        }
+
+        if (parentId == DROPPED_LOG_ID || (filter != null && !filter.accept(record))) {
+            long childrenParentId = filterPolicy == IttFilterPolicy.DROP ? DROPPED_LOG_ID : parentId;
+            if (context != null) {
+                // A track started under this log stays at its parent's level, or is dropped
+                context.logAdded(childrenParentId);
+            }
+            return childrenParentId;
+        }
+        if (title != null) {
+            String value = title.get();
+            record.setTitle(value != null ? value : "");
+        }
+        if (message != null) {
+            String value = message.get();
+            record.setMessage(value != null ? value : "");
+        }
+
+        long id = maxLogId.incrementAndGet();
+        record.setIds(parentId, id);
+
+        if (write && (context == null || samplingPolicy == null
+                || !buffer(context.getSampleBuffer(samplingPolicy), record))) {
+            write(record);
+        }
+
+        if (context != null) {
+            context.logAdded(id);
+        }
+        return id;
+    }
+
+    /**
+     * End the track of a span, then write its log with its timing.
+     *
+     * @param span     The span, which was not closed before.
+     * @param endNanos Value of {@link System#nanoTime()} when the span was closed.
+     */
+    void closeSpan(IttSpan span, long endNanos) {
+        if (!enabled) return;
+
+        IttTrackContext context = span.getContext();
+        if (context != trackContext.get() || context.getDepth() < span.getDepth()) {
+            throw new IllegalStateException("A span must be closed on the thread which opened it, " +
+                    "after the spans opened inside it.");
+        }
+        while (context.getDepth() > span.getDepth()) {
+            // Tracks started inside the span and left open
+            endTrack(context);
+        }
+        if (span.isTracked()) {
+            endTrack(context);
+        }
+
+        IttLogRecord record = span.getRecord();
+        record.setTiming(span.getStartNanos() - startNanos, endNanos - span.getStartNanos());
+        spanRollup.add(record);
+        if (span.isAccepted() && (samplingPolicy == null
+                || !buffer(context.getSampleBuffer(samplingPolicy), record))) {
+            write(record);
+        }
+    }
+
+    /**
+     * Move the calling thread to the position captured by {@link #wrap(Runnable)} to run a task.
+     *
+     * @param parentId The captured parent ID.
+     * @return The context of the calling thread, to give to {@link #exitTask(IttTrackContext)}.
+     */
+    private IttTrackContext enterTask(long parentId) {
+        IttTrackContext context = trackContext.get();
+        context.enterTask(parentId);
+        return context;
+    }
+
+    /**
+     * End the tracks left open by a task, then return the thread to its position before the task.
+     */
+    private void exitTask(IttTrackContext context) {
+        while (context.getDepth() > context.getBaseDepth()) {
+            endTrack(context);
+        }
+        context.exitTask();
+    }
+
+    private boolean startTrack(IttTrackContext context) {
+        if (!context.startTrack()) {
+            return false;
+        }
+        if (samplingPolicy != null) {
+            context.getSampleBuffer(samplingPolicy).startTrack();
+        }
+        if (metrics != null) {
+            metrics.trackStarted(context.getDepth());
+        }
+        return true;
+    }
+
+    private void endTrack(IttTrackContext context) {
+        if (context.endTrack()) {
+            if (samplingPolicy != null) {
+                context.getSampleBuffer(samplingPolicy).endTrack(this);
+            }
+            if (metrics != null) {
+                metrics.trackEnded();
+            }
+        }
+    }
+
+    /**
+     * Hold a log in the sample buffer of its thread if one of its tracks is undecided.
+     *
+     * @return true if the log was buffered, false if it must be written.
+     */
+    private boolean buffer(IttSampleBuffer sampleBuffer, IttLogRecord record) {
+        if (!sampleBuffer.isSampling()) {
+            return false;
+        }
+        if (sampleBuffer.add(record)) {
+            return true;
+        }
+        // The buffer is full: its logs are written before this one, which keeps parents before their children
+        sampleBuffer.flush(this);
+        return false;
+    }
+
+    /**
+     * Send a log with its IDs to the output.
+     *
+     * @param record The log to write. Only read during this call.
+     */
+    void write(IttLogRecord record) {
+        if (directBufferSize > 0) {
+            if (metrics != null) {
+                long start = System.nanoTime();
+                stage(record);
+                metrics.logWritten(0, System.nanoTime() - start);
+            } else {
+                stage(record);
+            }
+        } else if (pooledOutput != null) {
+            pooledOutput.publish(record);
+        } else if (ringBuffer != null) {
+            // Serialization and output happen on the writer thread.
+            ringBuffer.publish(record);
+        } else if (metrics != null) {
+            long start = System.nanoTime();
+            long locked;
+            long written;
+            synchronized (this) {
+                locked = System.nanoTime();
+                try {
+                    writer.writeLog(record);
+                } catch (IOException e) {
+                    handleIoException(e);
+                }
+                written = System.nanoTime();
+                logWritten(record);
+            }
+            metrics.logWritten(locked - start, written - locked);
+        } else {
+            // Synchronize the output to ensure logs are not interleaved.
+            synchronized (this) {
+                try {
+                    writer.writeLog(record);
+                } catch (IOException e) {
+                    handleIoException(e);
+                }
+                logWritten(record);
+            }
+        }
+    }
+
+    /**
+     * Encode a log into the staging area of the calling thread, or write it synchronously if the execution is ending.
+     */
+    private void stage(IttLogRecord record) {
+        IttTrackContext context = trackContext.get();
+        IttStagingArea stagingArea = context.getStagingArea();
+        if (stagingArea == null) {
+            stagingArea = newStagingArea();
+            context.setStagingArea(stagingArea);
+        }
+        if (stagingArea == null || !stagingArea.stage(record, this)) {
+            writeEnding(record);
+        }
+    }
+
+    /**
+     * Create the staging area of the calling thread, after closing the areas of the threads which died.
+     *
+     * @return The area, or null if the execution is ending.
+     */
+    private IttStagingArea newStagingArea() {
+        for (IttStagingArea stagingArea : stagingAreas) {
+            if (stagingArea.isOwnerDead() && stagingAreas.remove(stagingArea)) {
+                stagingArea.close(this);
+            }
+        }
+        synchronized (this) {
+            if (ending) {
+                return null;
+            }
+            IttStagingArea stagingArea = new IttStagingArea(directBufferSize, directBufferCount);
+            stagingAreas.add(stagingArea);
+            return stagingArea;
+        }
+    }
+
+    /**
+     * @return The number of staging areas which are not closed. For tests.
+     */
+    int getStagingAreaCount() {
+        return stagingAreas.size();
+    }
+
+    /**
+     * Write a log with direct buffers while the staging areas are closed, unless the footer was written.
+     */
+    private synchronized void writeEnding(IttLogRecord record) {
+        if (!execution.isActive()) {
+            return;
+        }
+        if (endingArea == null) {
+            endingArea = new IttStagingArea(directBufferSize, 1);
+        }
+        endingArea.stage(record, this);
+        endingArea.drain(this);
+    }
+
+    /**
+     * Apply the flush policy after a log was written in synchronous mode. Called under the write section.
+     */
+    private void logWritten(IttLogRecord record) {
+        if (flusher != null) {
+            try {
+                flusher.logWritten(record);
+            } catch (IOException e) {
+                handleIoException(e);
+            }
+        }
+    }
+
+    /**
+     * Write the logs staged in direct buffers to the file, in a single gathering write. The buffers are cleared.
+     *
+     * @param buffers Buffers in write mode, the first count of which hold logs.
+     */
+    synchronized void writeStaged(ByteBuffer[] buffers, int count) {
+        for (int i = 0; i < count; i++) {
+            buffers[i].flip();
+        }
+        if (!stagedLogsWritten) {
+            // The first log follows the start of the logs array, not another log
+            buffers[0].position(1);
+            stagedLogsWritten = true;
+        }
+        try {
+            long written = 0;
+            while (buffers[count - 1].hasRemaining()) {
+                written += channel.write(buffers, 0, count);
+            }
+            ((IttCountingOutputStream) outputStream).addCount(written);
+        } catch (IOException e) {
+            handleIoException(e);
+        } finally {
+            for (int i = 0; i < count; i++) {
+                buffers[i].clear();
+            }
+        }
+    }
+
+    /**
+     * Write the logs through the shared writer threads of a registry. Must be done before the execution starts.
+     *
+     * @param writerPool  The writer threads.
+     * @param endListener Called once when the execution ends, or when the logger is discarded.
+     */
+    synchronized void enableWriterPool(IttWriterPool writerPool, Runnable endListener) {
+        if (execution != null) {
+            throw new IllegalStateException("The writer pool must be enabled before the execution is started.");
+        }
+        this.writerPool = writerPool;
+        this.endListener = endListener;
+    }
+
+    /**
+     * End the execution if it is active, or close the output of a logger whose execution was never started.
+     * Does nothing if the execution already ended.
+     */
+    void endOrDiscard() {
+        synchronized (this) {
+            if (!enabled || ending) {
+                return;
+            }
+            if (execution == null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    handleIoException(e);
+                } finally {
+                    enabled = false;
+                    trackContext.remove();
+                    if (endListener != null) {
+                        endListener.run();
+                    }
+                }
+                return;
+            }
+            if (!execution.isActive()) {
+                return;
+            }
+            ending = true;
+        }
+        // Outside of the write section, like endExecution
+        finishExecution();
+    }
+
+    /**
+     * @return The time of the last log written through the writer pool, or of the start of the execution,
+     * in milliseconds, or -1 if the execution didn't start.
+     */
+    long getLastActiveMillis() {
+        IttPooledOutput pooledOutput = this.pooledOutput;
+        return pooledOutput != null ? pooledOutput.getLastActiveMillis() : -1;
+    }
+
+    /**
+     * @return true if the execution was started and not ended yet.
+     */
+    synchronized boolean isExecutionActive() {
+        return execution != null && execution.isActive();
+    }
+
+    /**
+     * @return The ID of the last log added.
+     */
+    long getMaxLogId() {
+        return maxLogId.get();
+    }
+
+    /**
+     * Set the ID of the last log added, so that the next log gets the following ID. Lets the tests reach IDs past
+     * the int range without adding billions of logs first.
+     */
+    void setMaxLogId(long maxLogId) {
+        this.maxLogId.set(maxLogId);
+    }
+
+    /**
+     * Find a registered status from its name.
+     *
+     * @param statusName Name of the status.
+     * @return The status instance.
+     * @throws IllegalArgumentException Thrown if the status was not registered.
+     */
+    IttStatus getStatus(String statusName) {
+        IttStatus status = statusMap.get(statusName);
+        if (status == null) {
+            throw new IllegalArgumentException("Status with name \"" + statusName + "\" was not registered. Register a status with" +
+                    " addStatus before using it.");
+        }
+        return status;
+    }
+
     /**
      * Helper method to create a file from a given filename if it doesn't exist and return an OutputStream.
      *
@@ -426,6 +1587,9 @@ public class IttLogger {
      * @param ioException IOException to handle.
      */
     private void handleIoException(IOException ioException) {
+        if (metrics != null) {
+            metrics.ioExceptionThrown();
+        }
         if (throwUncheckedIoException) {
             throw new UncheckedIOException(ioException);
         } else {
@@ -433,4 +1597,30 @@ public class IttLogger {
         }
     }
 
+    /**
+     * Handler of the writer thread which applies the flush policy after the logs it writes.
+     */
+    private static class FlushingHandler implements IttRingBuffer.Handler {
+
+        private final IttRingBuffer.Handler handler;
+        private final IttFlusher flusher;
+
+        FlushingHandler(IttRingBuffer.Handler handler, IttFlusher flusher) {
+            this.handler = handler;
+            this.flusher = flusher;
+        }
+
+        @Override
+        public void onLog(IttLogRecord record) throws IOException {
+            handler.onLog(record);
+            flusher.logWritten(record);
+        }
+
+        @Override
+        public void afterDrain() throws IOException {
+            flusher.flushIfDue();
+        }
+
+    }
+
 }
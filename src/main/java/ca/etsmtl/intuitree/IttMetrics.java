@@ -0,0 +1,274 @@
+package ca.etsmtl.intuitree;
+
+import ca.etsmtl.intuitree.io.IttCountingOutputStream;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of a logger, enabled with {@link IttLogger#enableMetrics()}. Counters are striped {@link LongAdder}s
+ * updated without locking, outside of the logger's synchronized write section, so the metrics can be left on.
+ * Read them with {@link #snapshot()}, or through JMX once {@link #registerMBean(String)} was called.
+ * <p>
+ * Write durations are counted in a histogram of power of two buckets: bucket 0 counts writes of 0 ns and bucket
+ * {@code i} counts writes of {@code 2^(i-1)} to {@code 2^i - 1} ns. The last bucket also counts longer writes.
+ * Flushes made by an {@link IttFlushPolicy} are counted by cause, with the time spent flushing and forcing.
+ */
+public class IttMetrics implements IttMetricsMXBean {
+
+    /**
+     * Number of buckets of the write duration histogram, the last one counting writes of 2^38 ns (about 4.6
+     * minutes) and more.
+     */
+    public static final int HISTOGRAM_BUCKETS = 40;
+
+    /**
+     * JMX domain of the registered metrics.
+     */
+    public static final String JMX_DOMAIN = "ca.etsmtl.intuitree";
+
+    private final IttLogger logger;
+
+    /**
+     * Output whose bytes are counted, null if the logger was created with its own writer.
+     */
+    private final IttCountingOutputStream outputStream;
+
+    private final LongAdder logsWritten = new LongAdder();
+    private final LongAdder ioExceptions = new LongAdder();
+    private final LongAdder lockWaitNanos = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+    private final LongAdder[] writeNanosHistogram = new LongAdder[HISTOGRAM_BUCKETS];
+    private final LongAdder trackDepth = new LongAdder();
+    private final LongAccumulator maxTrackDepth = new LongAccumulator(Math::max, 0);
+    private final LongAdder[] flushCounts = new LongAdder[IttFlushCause.values().length];
+    private final LongAdder flushNanos = new LongAdder();
+    private final LongAdder forceCount = new LongAdder();
+    private final LongAdder forceNanos = new LongAdder();
+
+    private ObjectName objectName;
+
+    IttMetrics(IttLogger logger, IttCountingOutputStream outputStream) {
+        this.logger = logger;
+        this.outputStream = outputStream;
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            writeNanosHistogram[i] = new LongAdder();
+        }
+        for (int i = 0; i < flushCounts.length; i++) {
+            flushCounts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Register these metrics with the platform MBean server, as "ca.etsmtl.intuitree:type=IttLogger,name=" followed
+     * by the given name. They are unregistered when the execution ends, or with {@link #unregisterMBean()}.
+     *
+     * @param name Name of the logger, unique among the registered loggers.
+     * @return The name of the registered MBean.
+     * @throws IllegalArgumentException Thrown if the name is already registered.
+     * @throws IllegalStateException    Thrown if these metrics are already registered.
+     */
+    public synchronized ObjectName registerMBean(String name) {
+        if (objectName != null) {
+            throw new IllegalStateException("The metrics are already registered as " + objectName);
+        }
+        try {
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=" + IttLogger.class.getSimpleName()
+                    + ",name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+            return objectName;
+        } catch (MalformedObjectNameException | InstanceAlreadyExistsException e) {
+            throw new IllegalArgumentException("Can't register the metrics as " + name, e);
+        } catch (MBeanRegistrationException | NotCompliantMBeanException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Unregister these metrics from the platform MBean server. Does nothing if they are not registered.
+     */
+    public synchronized void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (InstanceNotFoundException e) {
+            // Already unregistered by someone else
+        } catch (MBeanRegistrationException e) {
+            throw new IllegalStateException(e);
+        }
+        objectName = null;
+    }
+
+    /**
+     * @return The current value of every metric. Values are read one by one while logging goes on,
+     * so they may be slightly inconsistent with each other.
+     */
+    public IttMetricsSnapshot snapshot() {
+        long[] histogram = new long[HISTOGRAM_BUCKETS];
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            histogram[i] = writeNanosHistogram[i].sum();
+        }
+        long[] flushes = new long[flushCounts.length];
+        for (int i = 0; i < flushCounts.length; i++) {
+            flushes[i] = flushCounts[i].sum();
+        }
+        return new IttMetricsSnapshot(logsWritten.sum(), getBytesWritten(), ioExceptions.sum(), lockWaitNanos.sum(),
+                writeNanos.sum(), histogram, trackDepth.sum(), maxTrackDepth.get(), logger.getMaxLogId(),
+                flushes, flushNanos.sum(), forceCount.sum(), forceNanos.sum());
+    }
+
+    @Override
+    public long getLogsWritten() {
+        return logsWritten.sum();
+    }
+
+    /**
+     * @return The number of bytes written to the output stream, or 0 if the logger was created with its own writer.
+     */
+    @Override
+    public long getBytesWritten() {
+        return outputStream != null ? outputStream.getCount() : 0;
+    }
+
+    @Override
+    public long getIoExceptionCount() {
+        return ioExceptions.sum();
+    }
+
+    /**
+     * @return The total time logging threads waited to enter the write section, in synchronous mode.
+     */
+    @Override
+    public long getLockWaitNanos() {
+        return lockWaitNanos.sum();
+    }
+
+    /**
+     * @return The total time spent writing logs, inside the write section or on the writer thread.
+     */
+    @Override
+    public long getWriteNanos() {
+        return writeNanos.sum();
+    }
+
+    @Override
+    public long[] getWriteNanosHistogram() {
+        return snapshot().getWriteNanosHistogram();
+    }
+
+    @Override
+    public long getWriteNanosP50() {
+        return snapshot().getWriteNanosPercentile(50);
+    }
+
+    @Override
+    public long getWriteNanosP99() {
+        return snapshot().getWriteNanosPercentile(99);
+    }
+
+    /**
+     * @return The sum of the depths of the current tracks of every thread, which is the current depth of the tree
+     * when a single thread logs.
+     */
+    @Override
+    public long getTrackDepth() {
+        return trackDepth.sum();
+    }
+
+    /**
+     * @return The deepest track reached by any thread.
+     */
+    @Override
+    public long getMaxTrackDepth() {
+        return maxTrackDepth.get();
+    }
+
+    @Override
+    public long getMaxLogId() {
+        return logger.getMaxLogId();
+    }
+
+    /**
+     * @return The number of flushes made by the flush policy, whatever their cause.
+     */
+    @Override
+    public long getFlushCount() {
+        long count = 0;
+        for (LongAdder flushCount : flushCounts) {
+            count += flushCount.sum();
+        }
+        return count;
+    }
+
+    /**
+     * @return The total time spent flushing the writer for the flush policy, forces excluded.
+     */
+    @Override
+    public long getFlushNanos() {
+        return flushNanos.sum();
+    }
+
+    @Override
+    public long getForceCount() {
+        return forceCount.sum();
+    }
+
+    /**
+     * @return The total time spent forcing the output file to its device.
+     */
+    @Override
+    public long getForceNanos() {
+        return forceNanos.sum();
+    }
+
+    /**
+     * Record a log written by the logger.
+     *
+     * @param lockWaitNanos Time waited to enter the write section, 0 on the writer thread.
+     * @param writeNanos    Time spent writing the log.
+     */
+    void logWritten(long lockWaitNanos, long writeNanos) {
+        logsWritten.increment();
+        this.lockWaitNanos.add(lockWaitNanos);
+        this.writeNanos.add(writeNanos);
+        int bucket = 64 - Long.numberOfLeadingZeros(Math.max(writeNanos, 0));
+        writeNanosHistogram[Math.min(bucket, HISTOGRAM_BUCKETS - 1)].increment();
+    }
+
+    /**
+     * Record a flush made by the flush policy.
+     *
+     * @param flushNanos Time spent flushing the writer.
+     * @param forceNanos Time spent forcing the output file, or -1 if it was not forced.
+     */
+    void flushed(IttFlushCause cause, long flushNanos, long forceNanos) {
+        flushCounts[cause.ordinal()].increment();
+        this.flushNanos.add(flushNanos);
+        if (forceNanos >= 0) {
+            forceCount.increment();
+            this.forceNanos.add(forceNanos);
+        }
+    }
+
+    void ioExceptionThrown() {
+        ioExceptions.increment();
+    }
+
+    /**
+     * @param depth Depth of the calling thread once the track started.
+     */
+    void trackStarted(int depth) {
+        trackDepth.increment();
+        maxTrackDepth.accumulate(depth);
+    }
+
+    void trackEnded() {
+        trackDepth.decrement();
+    }
+
+}
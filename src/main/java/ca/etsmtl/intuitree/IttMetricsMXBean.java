@@ -0,0 +1,41 @@
+package ca.etsmtl.intuitree;
+
+/**
+ * Attributes of the metrics of a logger as seen through JMX, see {@link IttMetrics#registerMBean(String)}.
+ */
+public interface IttMetricsMXBean {
+
+    long getLogsWritten();
+
+    long getBytesWritten();
+
+    long getIoExceptionCount();
+
+    long getLockWaitNanos();
+
+    long getWriteNanos();
+
+    /**
+     * @return The number of writes by duration, see {@link IttMetricsSnapshot#getWriteNanosHistogram()}.
+     */
+    long[] getWriteNanosHistogram();
+
+    long getWriteNanosP50();
+
+    long getWriteNanosP99();
+
+    long getTrackDepth();
+
+    long getMaxTrackDepth();
+
+    long getMaxLogId();
+
+    long getFlushCount();
+
+    long getFlushNanos();
+
+    long getForceCount();
+
+    long getForceNanos();
+
+}
@@ -0,0 +1,120 @@
+package ca.etsmtl.intuitree;
+
+/**
+ * Values of the metrics of a logger at one point in time, see {@link IttMetrics}.
+ */
+public class IttMetricsSnapshot {
+
+    private final long logsWritten;
+    private final long bytesWritten;
+    private final long ioExceptionCount;
+    private final long lockWaitNanos;
+    private final long writeNanos;
+    private final long[] writeNanosHistogram;
+    private final long trackDepth;
+    private final long maxTrackDepth;
+    private final long maxLogId;
+    private final long[] flushCounts;
+    private final long flushNanos;
+    private final long forceCount;
+    private final long forceNanos;
+
+    public IttMetricsSnapshot(long logsWritten, long bytesWritten, long ioExceptionCount, long lockWaitNanos,
+                              long writeNanos, long[] writeNanosHistogram, long trackDepth, long maxTrackDepth,
+                              long maxLogId, long[] flushCounts, long flushNanos, long forceCount, long forceNanos) {
+        this.logsWritten = logsWritten;
+        this.bytesWritten = bytesWritten;
+        this.ioExceptionCount = ioExceptionCount;
+        this.lockWaitNanos = lockWaitNanos;
+        this.writeNanos = writeNanos;
+        this.writeNanosHistogram = writeNanosHistogram.clone();
+        this.trackDepth = trackDepth;
+        this.maxTrackDepth = maxTrackDepth;
+        this.maxLogId = maxLogId;
+        this.flushCounts = flushCounts.clone();
+        this.flushNanos = flushNanos;
+        this.forceCount = forceCount;
+        this.forceNanos = forceNanos;
+    }
+
+    public long getLogsWritten() {
+        return logsWritten;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getIoExceptionCount() {
+        return ioExceptionCount;
+    }
+
+    public long getLockWaitNanos() {
+        return lockWaitNanos;
+    }
+
+    public long getWriteNanos() {
+        return writeNanos;
+    }
+
+    /**
+     * @return The number of writes in each power of two bucket of duration, see {@link IttMetrics}.
+     */
+    public long[] getWriteNanosHistogram() {
+        return writeNanosHistogram.clone();
+    }
+
+    /**
+     * @param percentile Percentile, from 0 to 100.
+     * @return The upper bound of the histogram bucket containing the percentile of the write durations,
+     * in nanoseconds, or 0 if nothing was written.
+     */
+    public long getWriteNanosPercentile(double percentile) {
+        long count = 0;
+        for (long bucketCount : writeNanosHistogram) {
+            count += bucketCount;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < writeNanosHistogram.length; i++) {
+            seen += writeNanosHistogram[i];
+            if (seen >= rank && seen > 0) {
+                return i == 0 ? 0 : (1L << i) - 1;
+            }
+        }
+        return 0;
+    }
+
+    public long getTrackDepth() {
+        return trackDepth;
+    }
+
+    public long getMaxTrackDepth() {
+        return maxTrackDepth;
+    }
+
+    public long getMaxLogId() {
+        return maxLogId;
+    }
+
+    /**
+     * @param cause What made the logger flush.
+     * @return The number of flushes made by the flush policy for this cause.
+     */
+    public long getFlushCount(IttFlushCause cause) {
+        return flushCounts[cause.ordinal()];
+    }
+
+    public long getFlushNanos() {
+        return flushNanos;
+    }
+
+    public long getForceCount() {
+        return forceCount;
+    }
+
+    public long getForceNanos() {
+        return forceNanos;
+    }
+
+}
@@ -0,0 +1,181 @@
+package ca.etsmtl.intuitree;
+
+import ca.etsmtl.intuitree.format.IttWriter;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttSpanTotal;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Output of one execution through a ring buffer of an {@link IttWriterPool}. Logs are published to the shared ring
+ * with this output as their owner, and written by the writer thread of the ring. The end of the execution is
+ * published as a record with no ID, after which the writer thread writes the footer and closes the writer, so the
+ * writer is only ever used by that thread once the execution started. Flushes made due by the timer of a flush policy
+ * are queued to the same thread.
+ */
+class IttPooledOutput {
+
+    private final IttRingBuffer ring;
+    private final IttWriter writer;
+    private final IttMetrics metrics;
+    private final IttFlusher flusher;
+    private final Queue<IttPooledOutput> dueOutputs;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    /**
+     * Time of the last log written, or of the start of the execution, in milliseconds.
+     */
+    private volatile long lastActiveMillis = System.currentTimeMillis();
+
+    /**
+     * Totals written before the footer, set before the end is published.
+     */
+    private List<IttSpanTotal> statusTotals;
+    private List<IttSpanTotal> tagTotals;
+
+    /**
+     * State of the writer thread: the first IOException thrown by the writer, and whether the writer is closed.
+     * Read by the ending thread once the end was handled.
+     */
+    private IOException failure;
+    private boolean closed;
+
+    IttPooledOutput(IttRingBuffer ring, Queue<IttPooledOutput> dueOutputs, IttWriter writer, IttMetrics metrics,
+                    IttFlusher flusher) {
+        this.ring = ring;
+        this.dueOutputs = dueOutputs;
+        this.writer = writer;
+        this.metrics = metrics;
+        this.flusher = flusher;
+    }
+
+    /**
+     * Start the timer of the flush policy, if any.
+     */
+    void startFlushTimer() {
+        if (flusher != null) {
+            flusher.startTimer(() -> dueOutputs.offer(this));
+        }
+    }
+
+    /**
+     * Publish a log from a logging thread.
+     */
+    void publish(IttLogRecord record) {
+        if (!ring.publish(record, this, true)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Publish the end of the execution, then wait until the writer thread wrote every log before it and closed the
+     * writer.
+     *
+     * @param statusTotals Span totals by status, or null if no span was closed.
+     * @param tagTotals    Span totals by tag value, or null if no span was closed.
+     * @return The first IOException thrown by the writer, or null if there was none.
+     */
+    IOException finish(List<IttSpanTotal> statusTotals, List<IttSpanTotal> tagTotals) {
+        this.statusTotals = statusTotals;
+        this.tagTotals = tagTotals;
+        ring.publish(new IttLogRecord(), this, false);
+
+        boolean interrupted = false;
+        while (finished.getCount() > 0) {
+            try {
+                finished.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return failure;
+    }
+
+    /**
+     * Write a log, or end the execution if the record has no ID. Called by the writer thread only.
+     */
+    void onLog(IttLogRecord record) {
+        if (closed) {
+            // Logged after the end of the execution
+            return;
+        }
+        lastActiveMillis = System.currentTimeMillis();
+        if (record.getId() == 0) {
+            close();
+        } else if (failure == null) {
+            try {
+                long start = metrics != null ? System.nanoTime() : 0;
+                writer.writeLog(record);
+                if (metrics != null) {
+                    metrics.logWritten(0, System.nanoTime() - start);
+                }
+                if (flusher != null) {
+                    flusher.logWritten(record);
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * Perform the flush of the timer, if it is due. Called by the writer thread only.
+     */
+    void flushIfDue() {
+        if (closed || failure != null) {
+            return;
+        }
+        try {
+            flusher.flushIfDue();
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private void close() {
+        if (flusher != null) {
+            flusher.stopTimer();
+        }
+        try {
+            if (statusTotals != null) {
+                writer.writeSpanTotals(statusTotals, tagTotals);
+            }
+            writer.writeFooter();
+            if (flusher != null) {
+                flusher.beforeClose();
+            }
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        } finally {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+            closed = true;
+            finished.countDown();
+        }
+    }
+
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    long getLastActiveMillis() {
+        return lastActiveMillis;
+    }
+
+}
@@ -0,0 +1,237 @@
+package ca.etsmtl.intuitree;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of loggers by key, for example one execution per request, which all write through a small shared set of
+ * writer threads. Each writer thread drains one ring buffer of preallocated records shared by its loggers, so
+ * memory and threads are bounded by the registry, not by the number of executions: at most maxLoggers executions
+ * are registered at once, and the rings hold threadCount * capacity logs.
+ * <p>
+ * A logger is registered by {@link #create(String, String)} and configured and started like any other logger.
+ * It leaves the registry when its execution ends, when it is ended with {@link #end(String)}, or when it has been
+ * idle for too long if {@link #enableIdleClosing(long, TimeUnit)} was called.
+ * Loggers of a registry can't use {@link IttLogger#enableAsync(int, IttWaitStrategy)}: they are already asynchronous.
+ */
+public class IttRegistry implements AutoCloseable {
+
+    private final IttWriterPool writerPool;
+    private final Semaphore permits;
+    private final int maxLoggers;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService idleCloser;
+    private volatile boolean closed;
+
+    /**
+     * @param threadCount  Number of writer threads shared by the loggers.
+     * @param capacity     Number of logs the ring buffer of each writer thread can hold, rounded up to the next
+     *                     power of two.
+     * @param waitStrategy What logging threads do when a ring buffer is full.
+     * @param maxLoggers   Maximal number of loggers registered at once.
+     */
+    public IttRegistry(int threadCount, int capacity, IttWaitStrategy waitStrategy, int maxLoggers) {
+        if (waitStrategy == null) {
+            throw new NullPointerException("waitStrategy can't be null");
+        }
+        if (maxLoggers < 1) {
+            throw new IllegalArgumentException("maxLoggers must be positive");
+        }
+        this.writerPool = new IttWriterPool(threadCount, capacity, waitStrategy);
+        this.permits = new Semaphore(maxLoggers);
+        this.maxLoggers = maxLoggers;
+    }
+
+    /**
+     * Create and register an enabled logger which sends its output to the given filename.
+     *
+     * @param key      Key of the logger, which must not be registered already.
+     * @param filename Filename to output to.
+     * @return The logger, whose execution must still be started.
+     * @throws IOException Thrown if the file can't be created.
+     */
+    public IttLogger create(String key, String filename) throws IOException {
+        if (filename == null) {
+            throw new NullPointerException("filename can't be null");
+        }
+        return create(key, () -> new FileOutputStream(filename));
+    }
+
+    /**
+     * Create and register an enabled logger which sends its output to the given output stream.
+     *
+     * @param key          Key of the logger, which must not be registered already.
+     * @param outputStream Output stream to output to. It is closed when the execution ends.
+     * @return The logger, whose execution must still be started.
+     */
+    public IttLogger create(String key, OutputStream outputStream) {
+        if (outputStream == null) {
+            throw new NullPointerException("outputStream can't be null");
+        }
+        try {
+            return create(key, () -> outputStream);
+        } catch (IOException e) {
+            // The output stream is given, nothing is opened
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param key Key of a logger.
+     * @return The registered logger, or null if there is no logger with this key.
+     */
+    public IttLogger get(String key) {
+        Entry entry = entries.get(key);
+        return entry != null ? entry.logger : null;
+    }
+
+    /**
+     * End the execution of a logger, or close its output if its execution was not started, and unregister it.
+     *
+     * @param key Key of the logger.
+     * @return false if there is no logger with this key.
+     */
+    public boolean end(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.logger == null) {
+            return false;
+        }
+        entry.logger.endOrDiscard();
+        return true;
+    }
+
+    /**
+     * End the loggers which didn't write any log for the given time, as with {@link #end(String)}.
+     * Loggers whose execution was not started are idle since their creation.
+     *
+     * @param timeout Idle time after which a logger is ended.
+     * @param unit    Unit of the timeout.
+     * @return The number of ended loggers.
+     */
+    public int endIdle(long timeout, TimeUnit unit) {
+        long limit = System.currentTimeMillis() - unit.toMillis(timeout);
+        int count = 0;
+        for (Entry entry : entries.values()) {
+            IttLogger logger = entry.logger;
+            if (logger == null) {
+                continue;
+            }
+            long lastActive = logger.getLastActiveMillis();
+            if ((lastActive >= 0 ? lastActive : entry.createdMillis) <= limit) {
+                logger.endOrDiscard();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * End idle loggers in the background, checking them every tenth of the timeout.
+     * See {@link #endIdle(long, TimeUnit)}.
+     *
+     * @param timeout Idle time after which a logger is ended.
+     * @param unit    Unit of the timeout.
+     */
+    public synchronized void enableIdleClosing(long timeout, TimeUnit unit) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("timeout must be positive");
+        }
+        if (idleCloser != null) {
+            idleCloser.shutdownNow();
+        }
+        idleCloser = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "intuitree-idle-closer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, unit.toMillis(timeout) / 10);
+        idleCloser.scheduleWithFixedDelay(() -> endIdle(timeout, unit), period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return The number of registered loggers.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * End every registered logger, then stop the writer threads. No logger can be created afterwards.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (idleCloser != null) {
+                idleCloser.shutdownNow();
+            }
+        }
+        for (String key : entries.keySet()) {
+            end(key);
+        }
+        writerPool.close();
+    }
+
+    private IttLogger create(String key, OutputOpener opener) throws IOException {
+        if (key == null) {
+            throw new NullPointerException("key can't be null");
+        }
+        if (closed) {
+            throw new IllegalStateException("The registry is closed.");
+        }
+        if (!permits.tryAcquire()) {
+            throw new IllegalStateException("The registry already holds " + maxLoggers + " loggers. " +
+                    "End executions or enable idle closing before creating more.");
+        }
+        // Reserve the key before opening the output, so an existing file is never truncated
+        Entry entry = new Entry();
+        if (entries.putIfAbsent(key, entry) != null) {
+            permits.release();
+            throw new IllegalArgumentException("A logger with key \"" + key + "\" is already registered.");
+        }
+
+        IttLogger logger;
+        try {
+            logger = new IttLogger(opener.open(), true);
+        } catch (IOException | RuntimeException e) {
+            unregister(key, entry);
+            throw e;
+        }
+        logger.enableWriterPool(writerPool, () -> unregister(key, entry));
+        entry.logger = logger;
+        return logger;
+    }
+
+    private void unregister(String key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            permits.release();
+        }
+    }
+
+    private interface OutputOpener {
+        OutputStream open() throws IOException;
+    }
+
+    private static class Entry {
+
+        private final long createdMillis = System.currentTimeMillis();
+
+        /**
+         * The logger, null while it is created.
+         */
+        private volatile IttLogger logger;
+
+    }
+
+}
@@ -0,0 +1,260 @@
+package ca.etsmtl.intuitree;
+
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded multi-producer, single-consumer ring of preallocated log records.
+ * Logging threads claim a sequence with a CAS, fill the matching slot and publish it;
+ * a single writer thread drains published slots in order.
+ * A ring can be shared by several loggers, each publishing with its own owner, which is given back to the handler.
+ */
+class IttRingBuffer {
+
+    /**
+     * Number of busy-spin iterations before a waiting thread starts yielding, then parking.
+     */
+    private static final int SPIN_TRIES = 100;
+
+    /**
+     * Callback used by the consumer to process a published record.
+     */
+    interface Handler {
+        void onLog(IttLogRecord record) throws IOException;
+
+        /**
+         * Process a record published with an owner, ignoring the owner by default.
+         */
+        default void onLog(Object owner, IttLogRecord record) throws IOException {
+            onLog(record);
+        }
+
+        /**
+         * Called by the writer thread after each drain attempt, whether records were handled or not.
+         */
+        default void afterDrain() throws IOException {
+        }
+    }
+
+    private final IttLogRecord[] slots;
+
+    /**
+     * Owner given with the record of each slot, null if none was given.
+     */
+    private final Object[] owners;
+    private final int mask;
+    private final IttWaitStrategy waitStrategy;
+
+    /**
+     * Sequence number published in each slot, -1 if the slot was never published.
+     */
+    private final AtomicLongArray published;
+
+    /**
+     * Last sequence number claimed by a producer.
+     */
+    private final AtomicLong claimed = new AtomicLong(-1);
+
+    /**
+     * Last sequence number processed by the consumer.
+     */
+    private volatile long consumed = -1;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final ReentrantLock notFullLock = new ReentrantLock();
+    private final Condition notFull = notFullLock.newCondition();
+    private final AtomicInteger blockedProducers = new AtomicInteger();
+
+    private volatile Thread consumerThread;
+    private volatile boolean consumerWaiting;
+
+    /**
+     * @param capacity     Number of slots, rounded up to the next power of two.
+     * @param waitStrategy What producers do when the ring is full.
+     */
+    IttRingBuffer(int capacity, IttWaitStrategy waitStrategy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+
+        this.slots = new IttLogRecord[size];
+        this.owners = new Object[size];
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new IttLogRecord();
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * Claim a slot, copy the log into it and make it visible to the consumer.
+     *
+     * @return false if the log was dropped because the ring was full, true otherwise.
+     */
+    boolean publish(IttLogRecord record) {
+        return publish(record, null, true);
+    }
+
+    /**
+     * Claim a slot, copy the log into it along with its owner and make it visible to the consumer.
+     *
+     * @param owner   Owner given back to {@link Handler#onLog(Object, IttLogRecord)}.
+     * @param mayDrop Whether the record may be dropped when the ring is full with {@link IttWaitStrategy#DROP},
+     *                false to wait as with {@link IttWaitStrategy#SPIN_THEN_PARK} instead.
+     * @return false if the log was dropped because the ring was full, true otherwise.
+     */
+    boolean publish(IttLogRecord record, Object owner, boolean mayDrop) {
+        long sequence = claim(mayDrop);
+        if (sequence < 0) {
+            dropped.incrementAndGet();
+            return false;
+        }
+
+        int index = (int) sequence & mask;
+        slots[index].copyFrom(record);
+        owners[index] = owner;
+        published.set(index, sequence);
+
+        if (consumerWaiting) {
+            LockSupport.unpark(consumerThread);
+        }
+        return true;
+    }
+
+    /**
+     * Claim the next sequence number, waiting according to the wait strategy if the ring is full.
+     *
+     * @return The claimed sequence, or -1 if the ring is full and the strategy is {@link IttWaitStrategy#DROP}.
+     */
+    private long claim(boolean mayDrop) {
+        int tries = 0;
+        while (true) {
+            long current = claimed.get();
+            long next = current + 1;
+            if (next - slots.length > consumed) {
+                if (waitStrategy == IttWaitStrategy.DROP && mayDrop) {
+                    return -1;
+                }
+                waitForSpace(next, tries++);
+            } else if (claimed.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    private void waitForSpace(long sequence, int tries) {
+        if (waitStrategy == IttWaitStrategy.BLOCK) {
+            blockedProducers.incrementAndGet();
+            notFullLock.lock();
+            try {
+                // Re-check under the lock: the consumer signals after advancing the consumed sequence
+                if (sequence - slots.length > consumed) {
+                    notFull.awaitNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                notFullLock.unlock();
+                blockedProducers.decrementAndGet();
+            }
+        } else if (tries < SPIN_TRIES) {
+            // Busy spin
+        } else if (tries < SPIN_TRIES * 2) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(1000);
+        }
+    }
+
+    /**
+     * Process up to maxBatch published records, in sequence order. Must only be called by the consumer thread.
+     *
+     * @return The number of records processed.
+     */
+    int drain(Handler handler, int maxBatch) throws IOException {
+        long next = consumed + 1;
+        int count = 0;
+        try {
+            while (count < maxBatch) {
+                int index = (int) next & mask;
+                if (published.get(index) != next) {
+                    break;
+                }
+                IttLogRecord record = slots[index];
+                try {
+                    handler.onLog(owners[index], record);
+                } finally {
+                    record.clear();
+                    owners[index] = null;
+                }
+                next++;
+                count++;
+            }
+        } finally {
+            if (count > 0) {
+                consumed = next - 1;
+                if (blockedProducers.get() > 0) {
+                    notFullLock.lock();
+                    try {
+                        notFull.signalAll();
+                    } finally {
+                        notFullLock.unlock();
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Park the consumer thread until a producer publishes, or until the timeout expires.
+     */
+    void awaitPublished(long timeoutNanos) {
+        consumerThread = Thread.currentThread();
+        consumerWaiting = true;
+        try {
+            // Re-check after advertising that we wait, so a concurrent publish can't be missed
+            if (!hasPublished()) {
+                LockSupport.parkNanos(this, timeoutNanos);
+            }
+        } finally {
+            consumerWaiting = false;
+        }
+    }
+
+    private boolean hasPublished() {
+        long next = consumed + 1;
+        return published.get((int) next & mask) == next;
+    }
+
+    /**
+     * @return true if every claimed sequence has been processed by the consumer.
+     */
+    boolean isEmpty() {
+        return consumed == claimed.get();
+    }
+
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    int getCapacity() {
+        return slots.length;
+    }
+
+}
@@ -0,0 +1,138 @@
+package ca.etsmtl.intuitree;
+
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+
+/**
+ * Logs of the open tracks of one thread, held until the tracks end and the sampling policy decides to keep them.
+ * A discarded track removes its logs, which are always the last ones buffered, and a kept track leaves them
+ * for the enclosing track to decide. Only the end of a root-level track sends the buffered logs to the output,
+ * so a log is never written without its ancestors.
+ * The rate is drawn once per root-level track, when it starts, and applies to its nested tracks: a root-level track
+ * kept by rate is written whole, and one which is not only keeps the tracks leading to a keep status. Drawing at
+ * every level would leave random holes in kept trees, and make the observed rate compound with the depth.
+ * Records are preallocated and reused. Confined to its thread, like {@link IttTrackContext}.
+ */
+class IttSampleBuffer {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int INITIAL_DEPTH = 16;
+
+    private final IttSamplingPolicy policy;
+
+    private IttLogRecord[] records = new IttLogRecord[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * For each open track, the index of its first log in the buffer, and whether one of its logs has a keep status.
+     */
+    private int[] trackStarts = new int[INITIAL_DEPTH];
+    private boolean[] keepStatusSeen = new boolean[INITIAL_DEPTH];
+    private int depth;
+
+    /**
+     * Whether the current root-level track and its nested tracks are kept by rate.
+     */
+    private boolean keptByRate;
+
+    /**
+     * Whether the buffer overflowed during the current root-level track, whose logs are then written directly.
+     */
+    private boolean overflowed;
+
+    IttSampleBuffer(IttSamplingPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * @return true if logs must be buffered rather than written.
+     */
+    boolean isSampling() {
+        return depth > 0 && !overflowed;
+    }
+
+    void startTrack() {
+        if (depth == trackStarts.length) {
+            int[] newStarts = new int[depth * 2];
+            boolean[] newSeen = new boolean[depth * 2];
+            System.arraycopy(trackStarts, 0, newStarts, 0, depth);
+            System.arraycopy(keepStatusSeen, 0, newSeen, 0, depth);
+            trackStarts = newStarts;
+            keepStatusSeen = newSeen;
+        }
+        if (depth == 0) {
+            keptByRate = policy.keepByRate();
+        }
+        trackStarts[depth] = size;
+        keepStatusSeen[depth] = false;
+        depth++;
+    }
+
+    /**
+     * Buffer a log of the current track.
+     *
+     * @param record The log, copied into the buffer.
+     * @return false if the buffer is full, in which case the log is not buffered and the buffered logs must be
+     * written with {@link #flush(IttLogger)}.
+     */
+    boolean add(IttLogRecord record) {
+        if (size == policy.getMaxBufferedLogs()) {
+            overflowed = true;
+            return false;
+        }
+        if (size == records.length) {
+            IttLogRecord[] newRecords = new IttLogRecord[Math.min(size * 2, policy.getMaxBufferedLogs())];
+            System.arraycopy(records, 0, newRecords, 0, size);
+            records = newRecords;
+        }
+        if (records[size] == null) {
+            records[size] = new IttLogRecord();
+        }
+        records[size++].copyFrom(record);
+        if (policy.isKeepStatus(record.getStatus())) {
+            keepStatusSeen[depth - 1] = true;
+        }
+        return true;
+    }
+
+    /**
+     * End the current track and decide whether to keep it.
+     *
+     * @param logger Logger to write the buffered logs to when a root-level track is kept.
+     */
+    void endTrack(IttLogger logger) {
+        depth--;
+        if (overflowed) {
+            // Logs are already written, there is nothing left to decide
+            overflowed = depth > 0;
+            return;
+        }
+
+        boolean keep = keepStatusSeen[depth] || keptByRate;
+        if (!keep) {
+            discardFrom(trackStarts[depth]);
+        } else if (depth > 0) {
+            keepStatusSeen[depth - 1] |= keepStatusSeen[depth];
+        } else {
+            flush(logger);
+        }
+    }
+
+    /**
+     * Write every buffered log, in the order they were added.
+     */
+    void flush(IttLogger logger) {
+        for (int i = 0; i < size; i++) {
+            logger.write(records[i]);
+        }
+        discardFrom(0);
+    }
+
+    private void discardFrom(int start) {
+        for (int i = start; i < size; i++) {
+            // Release the strings of the discarded logs
+            records[i].clear();
+        }
+        size = start;
+    }
+
+}
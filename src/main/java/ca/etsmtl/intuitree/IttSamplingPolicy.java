@@ -0,0 +1,80 @@
+package ca.etsmtl.intuitree;
+
+import ca.etsmtl.intuitree.pojo.IttStatus;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides which tracks are kept when a logger samples its subtrees
+ * (see {@link IttLogger#setSampling(IttSamplingPolicy)}).
+ * A track is kept if one of its logs, at any depth, has one of the keep statuses, and otherwise at the given rate.
+ * The rate is drawn once per root-level track, so a root-level track kept by rate is kept with all its nested tracks.
+ */
+public class IttSamplingPolicy {
+
+    /**
+     * Default number of logs a thread can buffer before its tracks are written without sampling.
+     */
+    public static final int DEFAULT_MAX_BUFFERED_LOGS = 64 * 1024;
+
+    private final int keepPercent;
+    private final int maxBufferedLogs;
+    private final Set<String> keepStatusNames = new HashSet<>();
+
+    /**
+     * Create a policy with the default buffer size.
+     *
+     * @param keepPercent  Percentage of the root-level tracks which are kept whole, from 0 to 100.
+     * @param keepStatuses Statuses which make a track and its enclosing tracks always kept.
+     */
+    public IttSamplingPolicy(int keepPercent, IttStatus... keepStatuses) {
+        this(keepPercent, DEFAULT_MAX_BUFFERED_LOGS, keepStatuses);
+    }
+
+    /**
+     * @param keepPercent     Percentage of the root-level tracks which are kept whole, from 0 to 100.
+     * @param maxBufferedLogs Number of logs a thread can buffer while its tracks are undecided. When it is exceeded,
+     *                        the buffered logs are written and the rest of the current root-level track is written
+     *                        as it is logged, which keeps memory bounded at the cost of sampling.
+     * @param keepStatuses    Statuses which make a track and its enclosing tracks always kept.
+     */
+    public IttSamplingPolicy(int keepPercent, int maxBufferedLogs, IttStatus... keepStatuses) {
+        if (keepPercent < 0 || keepPercent > 100) {
+            throw new IllegalArgumentException("keepPercent must be between 0 and 100");
+        }
+        if (maxBufferedLogs < 1) {
+            throw new IllegalArgumentException("maxBufferedLogs must be positive");
+        }
+        this.keepPercent = keepPercent;
+        this.maxBufferedLogs = maxBufferedLogs;
+        for (IttStatus status : keepStatuses) {
+            keepStatusNames.add(status.getName());
+        }
+    }
+
+    public int getKeepPercent() {
+        return keepPercent;
+    }
+
+    public int getMaxBufferedLogs() {
+        return maxBufferedLogs;
+    }
+
+    /**
+     * @param status Status of a log.
+     * @return true if the tracks containing a log with this status must be kept.
+     */
+    boolean isKeepStatus(IttStatus status) {
+        return keepStatusNames.contains(status.getName());
+    }
+
+    /**
+     * @return true if a root-level track must be kept with its nested tracks, whatever their statuses.
+     */
+    boolean keepByRate() {
+        return keepPercent == 100 || (keepPercent > 0 && ThreadLocalRandom.current().nextInt(100) < keepPercent);
+    }
+
+}
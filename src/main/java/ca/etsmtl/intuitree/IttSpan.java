@@ -0,0 +1,141 @@
+package ca.etsmtl.intuitree;
+
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+
+/**
+ * A timed log, opened with {@link IttLogger#span(String, String, IttStatus, ca.etsmtl.intuitree.pojo.IttTagValue...)}
+ * and meant to be closed with try-with-resources. Opening it adds the log and starts a track under it, so logs
+ * and spans added on the same thread until it is closed are its children. Closing it ends the track and writes
+ * the log with its start, in nanoseconds since the execution started, and its duration, both measured with
+ * {@link System#nanoTime()}.
+ * <p>
+ * The log of a span is written when the span is closed, after its children, which readers such as
+ * {@link ca.etsmtl.intuitree.format.IttTreeBuilder} accept. A span must be closed on the thread which opened it,
+ * after the spans opened inside it; tracks started inside it and left open are ended when it is closed.
+ */
+public class IttSpan implements AutoCloseable {
+
+    /**
+     * Span returned by disabled loggers, which does nothing when closed.
+     */
+    static final IttSpan DISABLED = new IttSpan(null, null, true);
+
+    private final IttLogger logger;
+    private final IttTrackContext context;
+    private final IttLogRecord record = new IttLogRecord();
+
+    /**
+     * ID returned when the span was opened, and whether the log was accepted by the filter of the logger.
+     */
+    private long id;
+    private boolean accepted;
+
+    /**
+     * Whether opening the span started a track, which closing it must end.
+     */
+    private boolean tracked;
+
+    /**
+     * Depth of the track of the thread inside the span.
+     */
+    private int depth;
+
+    private long startNanos;
+    private boolean closed;
+
+    IttSpan(IttLogger logger, IttTrackContext context, boolean closed) {
+        this.logger = logger;
+        this.context = context;
+        this.closed = closed;
+    }
+
+    /**
+     * @return The ID of the log of the span, the ID its children are attached to if it was rejected by the filter
+     * of the logger, or 0 if the logger is disabled.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Change the status of the span, for example when the timed operation fails. The filter of the logger only
+     * sees the status given when the span was opened.
+     *
+     * @param status The new status.
+     * @return This span.
+     */
+    public IttSpan setStatus(IttStatus status) {
+        if (status == null) {
+            throw new NullPointerException("status can't be null");
+        }
+        if (!closed) {
+            record.setStatus(status);
+        }
+        return this;
+    }
+
+    /**
+     * Change the status of the span. See {@link #setStatus(IttStatus)}.
+     *
+     * @param statusName The name of the new status, which must have been registered with the logger.
+     * @return This span.
+     */
+    public IttSpan setStatus(String statusName) {
+        if (statusName == null) {
+            throw new NullPointerException("statusName can't be null");
+        }
+        if (!closed) {
+            record.setStatus(logger.getStatus(statusName));
+        }
+        return this;
+    }
+
+    /**
+     * End the track of the span and write its log with its duration. Does nothing if the span is already closed.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        logger.closeSpan(this, System.nanoTime());
+    }
+
+    IttLogRecord getRecord() {
+        return record;
+    }
+
+    IttTrackContext getContext() {
+        return context;
+    }
+
+    boolean isAccepted() {
+        return accepted;
+    }
+
+    boolean isTracked() {
+        return tracked;
+    }
+
+    int getDepth() {
+        return depth;
+    }
+
+    long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * Record how the span was opened.
+     */
+    void opened(long id, boolean accepted, boolean tracked, int depth, long startNanos) {
+        this.id = id;
+        this.accepted = accepted;
+        this.tracked = tracked;
+        this.depth = depth;
+        this.startNanos = startNanos;
+    }
+
+}
@@ -0,0 +1,141 @@
+package ca.etsmtl.intuitree;
+
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttSpanTotal;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Time totals of the closed spans of a logger, by status and by tag value. Spans are added concurrently by the
+ * logging threads; once a status or tag value was seen, adding a span only updates striped counters.
+ * Tags can have many values, such as request IDs, so each tag has at most {@link #MAX_VALUES_PER_TAG} totals:
+ * the spans of the values seen after that are counted under {@link IttSpanTotal#OTHER_VALUE}.
+ */
+class IttSpanRollup {
+
+    static final int MAX_VALUES_PER_TAG = 256;
+
+    private final ConcurrentMap<IttStatus, Total> statusTotals = new ConcurrentHashMap<>();
+    private final ConcurrentMap<IttTag, TagTotals> tagTotals = new ConcurrentHashMap<>();
+
+    /**
+     * @param span A closed span, with its duration.
+     */
+    void add(IttLogRecord span) {
+        long durationNanos = span.getDurationNanos();
+        total(statusTotals, span.getStatus()).add(durationNanos);
+        for (int i = 0; i < span.getTagCount(); i++) {
+            TagTotals totals = tagTotals.get(span.getTag(i));
+            if (totals == null) {
+                tagTotals.putIfAbsent(span.getTag(i), new TagTotals());
+                totals = tagTotals.get(span.getTag(i));
+            }
+            totals.total(span.getTagValue(i)).add(durationNanos);
+        }
+    }
+
+    boolean isEmpty() {
+        return statusTotals.isEmpty();
+    }
+
+    /**
+     * @return The totals by status, from the longest to the shortest.
+     */
+    List<IttSpanTotal> getStatusTotals() {
+        List<IttSpanTotal> totals = new ArrayList<>();
+        for (Map.Entry<IttStatus, Total> entry : statusTotals.entrySet()) {
+            totals.add(entry.getValue().toSpanTotal(entry.getKey().getName(), null));
+        }
+        totals.sort(Comparator.comparingLong(IttSpanTotal::getTotalNanos).reversed());
+        return totals;
+    }
+
+    /**
+     * @return The totals by tag and value, from the longest to the shortest, with the values past the limit of
+     * each tag under {@link IttSpanTotal#OTHER_VALUE}.
+     */
+    List<IttSpanTotal> getTagTotals() {
+        List<IttSpanTotal> totals = new ArrayList<>();
+        for (Map.Entry<IttTag, TagTotals> tagEntry : tagTotals.entrySet()) {
+            String tagName = tagEntry.getKey().getName();
+            TagTotals tag = tagEntry.getValue();
+            for (Map.Entry<String, Total> entry : tag.values.entrySet()) {
+                totals.add(entry.getValue().toSpanTotal(tagName, entry.getKey()));
+            }
+            if (tag.other.count.sum() > 0) {
+                totals.add(tag.other.toSpanTotal(tagName, IttSpanTotal.OTHER_VALUE));
+            }
+        }
+        totals.sort(Comparator.comparingLong(IttSpanTotal::getTotalNanos).reversed());
+        return totals;
+    }
+
+    /**
+     * Find a total without locking once it exists, which computeIfAbsent doesn't guarantee on Java 8.
+     */
+    private static <K> Total total(ConcurrentMap<K, Total> totals, K key) {
+        Total total = totals.get(key);
+        if (total == null) {
+            totals.putIfAbsent(key, new Total());
+            total = totals.get(key);
+        }
+        return total;
+    }
+
+    /**
+     * Totals of the values of one tag, up to {@link #MAX_VALUES_PER_TAG}, and of the values past it.
+     */
+    private static class TagTotals {
+
+        private final ConcurrentMap<String, Total> values = new ConcurrentHashMap<>();
+        private final AtomicInteger valueCount = new AtomicInteger();
+        private final Total other = new Total();
+
+        Total total(String value) {
+            Total total = values.get(value);
+            if (total != null) {
+                return total;
+            }
+            // Reserve a slot first, so concurrent threads can't exceed the limit
+            if (valueCount.incrementAndGet() > MAX_VALUES_PER_TAG) {
+                valueCount.decrementAndGet();
+                return other;
+            }
+            Total added = new Total();
+            total = values.putIfAbsent(value, added);
+            if (total != null) {
+                // Added by another thread meanwhile
+                valueCount.decrementAndGet();
+                return total;
+            }
+            return added;
+        }
+
+    }
+
+    private static class Total {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        void add(long durationNanos) {
+            count.increment();
+            nanos.add(durationNanos);
+        }
+
+        IttSpanTotal toSpanTotal(String name, String value) {
+            return new IttSpanTotal(name, value, count.sum(), nanos.sum());
+        }
+
+    }
+
+}
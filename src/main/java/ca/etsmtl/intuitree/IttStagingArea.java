@@ -0,0 +1,100 @@
+package ca.etsmtl.intuitree;
+
+import ca.etsmtl.intuitree.format.IttDirectJsonEncoder;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+
+/**
+ * Off-heap buffers of one logging thread, into which its logs are encoded without taking the lock of the logger.
+ * Once every buffer is full, they are handed to the logger, which writes them to the file in a single gathering
+ * write. See {@link IttLogger#enableDirectBuffers(int, int)}.
+ * <p>
+ * Only the owning thread stages logs; the lock of the area is only contended when the logger closes it, because
+ * the execution ends or the owning thread died. A closed area writes what it held, drops its buffers so their
+ * direct memory can be freed, and stages no more logs.
+ */
+class IttStagingArea {
+
+    private ByteBuffer[] buffers;
+    private final IttDirectJsonEncoder encoder = new IttDirectJsonEncoder();
+
+    /**
+     * Thread which stages logs into the area, weakly referenced so the area doesn't keep it reachable.
+     */
+    private final WeakReference<Thread> owner;
+
+    /**
+     * Index of the buffer logs are encoded into.
+     */
+    private int current;
+
+    IttStagingArea(int bufferSize, int bufferCount) {
+        buffers = new ByteBuffer[bufferCount];
+        for (int i = 0; i < bufferCount; i++) {
+            buffers[i] = ByteBuffer.allocateDirect(bufferSize);
+        }
+        owner = new WeakReference<>(Thread.currentThread());
+    }
+
+    /**
+     * Encode a log, writing the buffers through the logger first if they are all full.
+     *
+     * @return false if the area is closed, in which case the log was not staged.
+     * @throws IllegalArgumentException Thrown if the log is larger than a buffer.
+     */
+    synchronized boolean stage(IttLogRecord record, IttLogger logger) {
+        if (buffers == null) {
+            return false;
+        }
+        while (!encoder.encode(record, buffers[current])) {
+            if (buffers[current].position() == 0) {
+                throw new IllegalArgumentException("Log " + record.getId() + " \"" + record.getTitle() + "\" is larger " +
+                        "than the direct buffers of " + buffers[current].capacity() + " bytes. " +
+                        "Enable direct buffers with a larger bufferSize.");
+            }
+            if (++current == buffers.length) {
+                logger.writeStaged(buffers, buffers.length);
+                current = 0;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write the logs still held by the buffers through the logger.
+     */
+    synchronized void drain(IttLogger logger) {
+        if (buffers == null) {
+            return;
+        }
+        if (buffers[current].position() > 0) {
+            current++;
+        }
+        if (current > 0) {
+            logger.writeStaged(buffers, current);
+            current = 0;
+        }
+    }
+
+    /**
+     * Write the logs still held by the buffers through the logger, then drop the buffers.
+     */
+    synchronized void close(IttLogger logger) {
+        try {
+            drain(logger);
+        } finally {
+            buffers = null;
+        }
+    }
+
+    /**
+     * @return true if the thread which stages logs into the area ended.
+     */
+    boolean isOwnerDead() {
+        Thread thread = owner.get();
+        return thread == null || !thread.isAlive();
+    }
+
+}
@@ -0,0 +1,208 @@
+package ca.etsmtl.intuitree;
+
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+
+/**
+ * The position of one thread in the log tree. Each thread logging through an {@link IttLogger} gets its own
+ * context, so independent threads can log their own subtrees without corrupting each other's hierarchy.
+ * Instances are confined to their thread and are not thread-safe.
+ */
+class IttTrackContext {
+
+    private static final int INITIAL_DEPTH = 16;
+
+    /**
+     * A stack representing the parent IDs in the order that leads from the root to the first parent.
+     * Kept as a primitive array so deep tracks don't box IDs.
+     */
+    private long[] parentLogIdStack = new long[INITIAL_DEPTH];
+
+    /**
+     * Number of IDs in the parent stack, which is the depth of the current track.
+     */
+    private int depth;
+
+    /**
+     * The current parent ID, which is kept separately to alleviate checks when adding new logs.
+     * 0, the default value, means there is no parent at the current level (root level).
+     */
+    private long currentParentId;
+
+    /**
+     * The current log ID, which is used when creating a new track to add the right parent ID.
+     * 0, the default value, means that creating a new track will have no effect (stays on the same track).
+     */
+    private long currentLogId;
+
+    /**
+     * Depth at which the task running on this thread started, which its tracks can't end, and the parent of its
+     * logs at that depth. Both are 0 outside of tasks, at the root level.
+     */
+    private int baseDepth;
+    private long baseParentId;
+
+    /**
+     * Position of the thread before each task currently running on it, 4 longs per task: the current log ID,
+     * the current parent ID, the base depth and the base parent ID. Tasks nest when one runs another inline.
+     */
+    private long[] taskFrames;
+    private int taskFrameCount;
+
+    /**
+     * Builder returned by {@link IttLogger#log()} on this thread.
+     */
+    private final IttLogBuilder builder;
+
+    /**
+     * Records reused for the logs added on this thread with the addLog methods, one per nesting level: the suppliers
+     * of a lazy log may add logs themselves while the record of the lazy log is filled. Records are cleared when they
+     * are given back, so they don't retain the strings of the logs.
+     */
+    private IttLogRecord[] records = {new IttLogRecord()};
+    private int recordDepth;
+
+    /**
+     * Off-heap buffers the logs of this thread are encoded into, null until the thread logs with direct buffers.
+     */
+    private IttStagingArea stagingArea;
+
+    /**
+     * Logs of the open tracks when the logger samples its subtrees, created on first use.
+     */
+    private IttSampleBuffer sampleBuffer;
+
+    IttTrackContext() {
+        this.builder = new IttLogBuilder();
+    }
+
+    /**
+     * Start a new track under the last added log. Has no effect if no log was added on the current track.
+     *
+     * @return true if a track was started.
+     */
+    boolean startTrack() {
+        if (currentLogId != 0) {
+            if (depth == parentLogIdStack.length) {
+                long[] newStack = new long[depth * 2];
+                System.arraycopy(parentLogIdStack, 0, newStack, 0, depth);
+                parentLogIdStack = newStack;
+            }
+            parentLogIdStack[depth++] = currentLogId;
+            currentParentId = currentLogId;
+            currentLogId = 0;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Return to the previous track. Has no effect at the root level.
+     *
+     * @return true if a track was ended.
+     */
+    boolean endTrack() {
+        if (depth > baseDepth) {
+            currentLogId = parentLogIdStack[--depth];
+            currentParentId = depth > baseDepth ? parentLogIdStack[depth - 1] : baseParentId;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Move to the given parent to run a task submitted from another position, saving the current position.
+     * Tracks of the thread which are open stay on the stack, but the task can't end them.
+     *
+     * @param parentId The parent of the logs which the task adds at its first level.
+     */
+    void enterTask(long parentId) {
+        if (taskFrames == null) {
+            taskFrames = new long[4 * 4];
+        } else if (taskFrameCount == taskFrames.length) {
+            long[] newFrames = new long[taskFrameCount * 2];
+            System.arraycopy(taskFrames, 0, newFrames, 0, taskFrameCount);
+            taskFrames = newFrames;
+        }
+        taskFrames[taskFrameCount++] = currentLogId;
+        taskFrames[taskFrameCount++] = currentParentId;
+        taskFrames[taskFrameCount++] = baseDepth;
+        taskFrames[taskFrameCount++] = baseParentId;
+        baseDepth = depth;
+        baseParentId = parentId;
+        currentParentId = parentId;
+        currentLogId = 0;
+    }
+
+    /**
+     * Return to the position saved by {@link #enterTask(long)}. The tracks started by the task must be ended.
+     */
+    void exitTask() {
+        baseParentId = taskFrames[--taskFrameCount];
+        baseDepth = (int) taskFrames[--taskFrameCount];
+        currentParentId = taskFrames[--taskFrameCount];
+        currentLogId = taskFrames[--taskFrameCount];
+    }
+
+    /**
+     * Record that a log was added on the current track, so that a new track would start under it.
+     */
+    void logAdded(long id) {
+        currentLogId = id;
+    }
+
+    int getDepth() {
+        return depth;
+    }
+
+    int getBaseDepth() {
+        return baseDepth;
+    }
+
+    long getCurrentParentId() {
+        return currentParentId;
+    }
+
+    long getCurrentLogId() {
+        return currentLogId;
+    }
+
+    IttLogBuilder getBuilder() {
+        return builder;
+    }
+
+    /**
+     * Get a record for a log added on this thread, which must be given back with {@link #releaseRecord()} once the log
+     * was emitted.
+     */
+    IttLogRecord acquireRecord() {
+        if (recordDepth == records.length) {
+            IttLogRecord[] newRecords = new IttLogRecord[recordDepth * 2];
+            System.arraycopy(records, 0, newRecords, 0, recordDepth);
+            records = newRecords;
+        }
+        if (records[recordDepth] == null) {
+            records[recordDepth] = new IttLogRecord();
+        }
+        return records[recordDepth++];
+    }
+
+    void releaseRecord() {
+        records[--recordDepth].clear();
+    }
+
+    IttStagingArea getStagingArea() {
+        return stagingArea;
+    }
+
+    void setStagingArea(IttStagingArea stagingArea) {
+        this.stagingArea = stagingArea;
+    }
+
+    IttSampleBuffer getSampleBuffer(IttSamplingPolicy policy) {
+        if (sampleBuffer == null) {
+            sampleBuffer = new IttSampleBuffer(policy);
+        }
+        return sampleBuffer;
+    }
+
+}
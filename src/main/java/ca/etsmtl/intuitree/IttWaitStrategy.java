@@ -0,0 +1,27 @@
+package ca.etsmtl.intuitree;
+
+/**
+ * Determines what a logging thread does when the asynchronous ring buffer is full.
+ * Only used when the logger is in asynchronous mode (see {@link IttLogger#enableAsync(int, IttWaitStrategy)}).
+ */
+public enum IttWaitStrategy {
+
+    /**
+     * Block the logging thread on a condition until the writer thread frees a slot.
+     * No log is ever lost and no CPU is burnt while waiting, at the cost of a lock handoff when the buffer is full.
+     */
+    BLOCK,
+
+    /**
+     * Busy-spin for a short while, then yield and park for short periods until a slot is freed.
+     * No log is ever lost and the latency to resume is lower than {@link #BLOCK}, at the cost of CPU while waiting.
+     */
+    SPIN_THEN_PARK,
+
+    /**
+     * Never wait: if the buffer is full, the log is dropped and a counter is incremented
+     * (see {@link IttLogger#getDroppedLogCount()}). Children of a dropped log will reference a missing parent.
+     */
+    DROP
+
+}
@@ -0,0 +1,91 @@
+package ca.etsmtl.intuitree;
+
+import ca.etsmtl.intuitree.format.IttWriter;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Small fixed set of writer threads shared by many loggers, each thread draining one ring buffer which its loggers
+ * share. Memory is bounded by the rings, whatever the number of loggers, and a logger only costs a thread while its
+ * logs are being written. Loggers are assigned to the threads in turn; each logger always uses the same thread, so
+ * its writer is only called from that thread, including for the flushes of its timer, which are queued to it.
+ */
+class IttWriterPool {
+
+    private final IttRingBuffer[] rings;
+    private final IttAsyncWriter[] writers;
+
+    /**
+     * Outputs of each ring whose timer made a flush due.
+     */
+    private final Queue<IttPooledOutput>[] dueOutputs;
+    private final AtomicInteger nextRing = new AtomicInteger();
+
+    /**
+     * @param threadCount  Number of writer threads.
+     * @param capacity     Number of logs each ring buffer can hold, rounded up to the next power of two.
+     * @param waitStrategy What logging threads do when a ring buffer is full.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    IttWriterPool(int threadCount, int capacity, IttWaitStrategy waitStrategy) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threadCount must be positive");
+        }
+        rings = new IttRingBuffer[threadCount];
+        writers = new IttAsyncWriter[threadCount];
+        dueOutputs = new Queue[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            Queue<IttPooledOutput> due = new ConcurrentLinkedQueue<>();
+            IttRingBuffer.Handler handler = new IttRingBuffer.Handler() {
+                @Override
+                public void onLog(IttLogRecord record) {
+                    throw new IllegalStateException("Logs of a writer pool always have an owner");
+                }
+
+                @Override
+                public void onLog(Object owner, IttLogRecord record) {
+                    ((IttPooledOutput) owner).onLog(record);
+                }
+
+                @Override
+                public void afterDrain() {
+                    IttPooledOutput output;
+                    while ((output = due.poll()) != null) {
+                        output.flushIfDue();
+                    }
+                }
+            };
+            dueOutputs[i] = due;
+            rings[i] = new IttRingBuffer(capacity, waitStrategy);
+            writers[i] = new IttAsyncWriter(rings[i], handler, "intuitree-writer-" + i);
+            writers[i].start();
+        }
+    }
+
+    /**
+     * Attach a started execution to one of the writer threads.
+     *
+     * @param writer  Writer of the execution, whose header is already written.
+     * @param metrics Metrics of the logger, or null.
+     * @param flusher Flusher of the execution, or null if it has no flush policy.
+     * @return The output to publish the logs of the execution to.
+     */
+    IttPooledOutput assign(IttWriter writer, IttMetrics metrics, IttFlusher flusher) {
+        int index = (nextRing.getAndIncrement() & Integer.MAX_VALUE) % rings.length;
+        return new IttPooledOutput(rings[index], dueOutputs[index], writer, metrics, flusher);
+    }
+
+    /**
+     * Write the logs already published, then stop the writer threads. Executions which were not ended are not
+     * written anymore.
+     */
+    void close() {
+        for (IttAsyncWriter writer : writers) {
+            writer.stop();
+        }
+    }
+
+}
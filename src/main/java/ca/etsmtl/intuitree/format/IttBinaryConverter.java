@@ -0,0 +1,74 @@
+package ca.etsmtl.intuitree.format;
+
+import ca.etsmtl.intuitree.pojo.IttExecution;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.*;
+
+/**
+ * Exports a binary execution file (see {@link IttBinaryWriter}) to the version 1 JSON layout read by the UI.
+ * The export is streamed: only the statuses, tags and value dictionary are kept in memory.
+ * A truncated binary file is exported up to its last complete log, as a valid JSON file.
+ * Can be run from the command line with the input and output filenames as arguments.
+ */
+public class IttBinaryConverter {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    /**
+     * Export a binary execution to version 1 JSON. The streams are not closed.
+     *
+     * @param inputStream  Binary execution.
+     * @param outputStream Output for the version 1 execution.
+     * @return true if the binary execution was complete, false if it was truncated.
+     * @throws IOException Thrown if the input can't be read or is not a binary execution, or if the output can't
+     *                     be written.
+     */
+    public static boolean convertToJson(InputStream inputStream, OutputStream outputStream) throws IOException {
+        IttBinaryReader reader = new IttBinaryReader(inputStream);
+        JsonGenerator generator = FACTORY.createGenerator(outputStream, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        IttJsonWriter writer = new IttJsonWriter(generator);
+
+        try {
+            IttExecution execution = reader.readHeader();
+            writer.writeHeader(new IttExecution(execution.getTitle(), execution.getMessage()),
+                    reader.getStatuses(), reader.getTags());
+
+            IttLogRecord record = new IttLogRecord();
+            while (reader.readLog(record)) {
+                writer.writeLog(record);
+            }
+            writer.writeFooter();
+            return reader.isComplete();
+        } finally {
+            generator.close();
+        }
+    }
+
+    /**
+     * Export a binary execution file to version 1 JSON.
+     *
+     * @param args Input filename and output filename.
+     * @throws IOException Thrown if a file can't be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: IttBinaryConverter <binary input file> <v1 output file>");
+            System.exit(1);
+        }
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(args[0]));
+             OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(args[1]))) {
+            if (!convertToJson(inputStream, outputStream)) {
+                System.err.println("Warning: " + args[0] + " was truncated, only its complete logs were exported.");
+            }
+        }
+    }
+
+    private IttBinaryConverter() {
+    }
+
+}
@@ -0,0 +1,286 @@
+package ca.etsmtl.intuitree.format;
+
+import ca.etsmtl.intuitree.pojo.IttExecution;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads an execution written by {@link IttBinaryWriter}, one log at a time.
+ * A file which was truncated because the execution never ended is read up to its last complete record.
+ */
+public class IttBinaryReader implements Closeable {
+
+    private final InputStream inputStream;
+
+    private final byte[] recordHeader = new byte[IttBinaryWriter.RECORD_HEADER_SIZE];
+
+    /**
+     * Payload of the current record.
+     */
+    private byte[] payload = new byte[1024];
+    private int payloadLength;
+    private int position;
+
+    private IttExecution execution;
+    private final List<IttStatus> statuses = new ArrayList<>();
+    private final List<IttTag> tags = new ArrayList<>();
+    private final List<String> values = new ArrayList<>();
+
+    private long previousId;
+    private boolean ended;
+    private boolean complete;
+
+    /**
+     * @param inputStream Binary execution, which should be buffered since records are read in small chunks.
+     */
+    public IttBinaryReader(InputStream inputStream) {
+        this.inputStream = inputStream;
+    }
+
+    /**
+     * Read the header of the execution. Must be called once, before {@link #readLog(IttLogRecord)}.
+     *
+     * @return The execution.
+     * @throws IOException Thrown if the input can't be read or is not a binary execution.
+     */
+    public IttExecution readHeader() throws IOException {
+        byte[] magic = new byte[IttBinaryWriter.MAGIC.length];
+        if (readFully(magic, magic.length) < magic.length) {
+            throw new EOFException("Missing binary execution header");
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (magic[i] != IttBinaryWriter.MAGIC[i]) {
+                throw new IOException("Not a binary execution");
+            }
+        }
+        int layoutVersion = readStreamVarint();
+        if (layoutVersion < 1 || layoutVersion > IttBinaryWriter.LAYOUT_VERSION) {
+            throw new IOException("Unsupported binary layout version " + layoutVersion);
+        }
+
+        if (readRecord() != IttBinaryWriter.HEADER) {
+            throw new IOException("Missing binary execution header");
+        }
+        String title = readString();
+        String message = readString();
+        execution = new IttExecution(title, message, readVarint());
+        int statusCount = readVarint();
+        for (int i = 0; i < statusCount; i++) {
+            statuses.add(new IttStatus(readString(), readString()));
+        }
+        int tagCount = readVarint();
+        for (int i = 0; i < tagCount; i++) {
+            tags.add(new IttTag(readString()));
+        }
+        return execution;
+    }
+
+    /**
+     * Read the next log into the given record.
+     *
+     * @param record Record to fill.
+     * @return false if there is no log left, true otherwise.
+     * @throws IOException Thrown if the input can't be read or is corrupted.
+     */
+    public boolean readLog(IttLogRecord record) throws IOException {
+        while (!ended) {
+            int type = readRecord();
+            switch (type) {
+                case IttBinaryWriter.LOG:
+                    decodeLog(record);
+                    return true;
+                case IttBinaryWriter.STATUS:
+                    statuses.add(new IttStatus(readString(), readString()));
+                    break;
+                case IttBinaryWriter.TAG:
+                    tags.add(new IttTag(readString()));
+                    break;
+                case IttBinaryWriter.END:
+                    complete = true;
+                    ended = true;
+                    break;
+                case -1:
+                    ended = true;
+                    break;
+                default:
+                    throw new IOException("Unknown record type " + type);
+            }
+        }
+        return false;
+    }
+
+    private void decodeLog(IttLogRecord record) throws IOException {
+        long id = previousId + unzigzag(readVarLong());
+        long parentId = id - unzigzag(readVarLong());
+        String title = readString();
+        String message = readString();
+        IttStatus status = statuses.get(readVarint());
+        record.set(parentId, id, title, message, status, null);
+
+        int tagCount = readVarint();
+        for (int i = 0; i < tagCount; i++) {
+            IttTag tag = tags.get(readVarint());
+            int code = readVarint();
+            String value;
+            if (code == IttBinaryWriter.VALUE_LITERAL) {
+                value = readString();
+            } else if (code == IttBinaryWriter.VALUE_INTERNED) {
+                value = readString();
+                values.add(value);
+            } else {
+                value = values.get(code - IttBinaryWriter.VALUE_REFERENCE);
+            }
+            record.addTag(tag, value);
+        }
+        if (position < payloadLength) {
+            // Only timed logs have more content after their tags
+            long startNanos = readVarLong();
+            record.setTiming(startNanos, readVarLong());
+        }
+        previousId = id;
+    }
+
+    /**
+     * @return The execution read by {@link #readHeader()}.
+     */
+    public IttExecution getExecution() {
+        return execution;
+    }
+
+    /**
+     * @return The statuses of the execution, including the ones defined after the header and read so far.
+     */
+    public List<IttStatus> getStatuses() {
+        return Collections.unmodifiableList(statuses);
+    }
+
+    /**
+     * @return The tags of the execution, including the ones defined after the header and read so far.
+     */
+    public List<IttTag> getTags() {
+        return Collections.unmodifiableList(tags);
+    }
+
+    /**
+     * @return true if the end of the execution was read, false if there are logs left or the file was truncated.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+
+    /**
+     * Read a whole record into the payload buffer.
+     *
+     * @return The record type, or -1 if the input ends before a complete record.
+     */
+    private int readRecord() throws IOException {
+        byte[] header = recordHeader;
+        if (readFully(header, header.length) < header.length) {
+            return -1;
+        }
+        int length = ((header[1] & 0xFF) << 24) | ((header[2] & 0xFF) << 16) | ((header[3] & 0xFF) << 8) | (header[4] & 0xFF);
+        if (length < 0) {
+            throw new IOException("Invalid record length " + length);
+        }
+        if (payload.length < length) {
+            payload = new byte[Math.max(length, payload.length * 2)];
+        }
+        if (readFully(payload, length) < length) {
+            return -1;
+        }
+        payloadLength = length;
+        position = 0;
+        return header[0];
+    }
+
+    private int readFully(byte[] bytes, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int count = inputStream.read(bytes, read, length - read);
+            if (count < 0) {
+                break;
+            }
+            read += count;
+        }
+        return read;
+    }
+
+    private int readStreamVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = inputStream.read();
+            if (b < 0) {
+                throw new EOFException("Missing binary execution header");
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid varint");
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (position >= payloadLength) {
+                throw new IOException("Record is shorter than its content");
+            }
+            int b = payload[position++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid varint");
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            if (position >= payloadLength) {
+                throw new IOException("Record is shorter than its content");
+            }
+            int b = payload[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid varint");
+    }
+
+    private String readString() throws IOException {
+        int length = readVarint();
+        if (length == 0) {
+            return null;
+        }
+        length--;
+        if (position + length > payloadLength) {
+            throw new IOException("Record is shorter than its content");
+        }
+        String value = new String(payload, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+}
@@ -0,0 +1,191 @@
+package ca.etsmtl.intuitree.format;
+
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Encodes logs as version 1 JSON directly into a {@link ByteBuffer}, which can be off-heap, without going through
+ * a JsonGenerator and its heap buffers. The bytes of a log are the same as the ones {@link IttJsonWriter} writes,
+ * preceded by the comma which separates it from the previous log, so encoded logs can be appended to the logs array
+ * of a version 1 execution. The comma of the first log must be skipped.
+ * Not thread-safe: each thread uses its own encoder, which caches the encoded names of statuses and tags.
+ */
+public class IttDirectJsonEncoder {
+
+    private static final byte[] START_LOG = ascii(",{\"parentId\":");
+    private static final byte[] ID = ascii(",\"id\":");
+    private static final byte[] TITLE = ascii(",\"title\":");
+    private static final byte[] MESSAGE = ascii(",\"message\":");
+    private static final byte[] START_TAGS = ascii(",\"tags\":[");
+    private static final byte[] START_TAG = ascii("{\"value\":");
+    private static final byte[] TAG_NAME = ascii(",\"tagName\":");
+    private static final byte[] STATUS_NAME = ascii("],\"statusName\":");
+    private static final byte[] START_NANOS = ascii(",\"startNanos\":");
+    private static final byte[] DURATION_NANOS = ascii(",\"durationNanos\":");
+
+    private static final byte[] HEX = ascii("0123456789ABCDEF");
+
+    /**
+     * Escape of each ASCII char, as written by Jackson: 0 for none, a letter for a short escape, -1 for \\u00XX.
+     */
+    private static final int[] ESCAPES = new int[128];
+
+    static {
+        for (int i = 0; i < 32; i++) {
+            ESCAPES[i] = -1;
+        }
+        ESCAPES['"'] = '"';
+        ESCAPES['\\'] = '\\';
+        ESCAPES['\b'] = 'b';
+        ESCAPES['\t'] = 't';
+        ESCAPES['\f'] = 'f';
+        ESCAPES['\n'] = 'n';
+        ESCAPES['\r'] = 'r';
+    }
+
+    /**
+     * Encoded names of the statuses and tags, with their quotes.
+     */
+    private final Map<Object, byte[]> encodedNames = new IdentityHashMap<>();
+
+    /**
+     * Scratch buffer for the digits of numbers.
+     */
+    private final byte[] digits = new byte[20];
+
+    /**
+     * Append a log to the buffer.
+     *
+     * @param log    The log to encode.
+     * @param buffer Buffer to append to, from its position.
+     * @return false if the log doesn't fit in the remaining bytes of the buffer, which is then left unchanged.
+     */
+    public boolean encode(IttLogRecord log, ByteBuffer buffer) {
+        int start = buffer.position();
+        try {
+            buffer.put(START_LOG);
+            putLong(buffer, log.getParentId());
+            buffer.put(ID);
+            putLong(buffer, log.getId());
+            buffer.put(TITLE);
+            putString(buffer, log.getTitle());
+            buffer.put(MESSAGE);
+            putString(buffer, log.getMessage());
+
+            buffer.put(START_TAGS);
+            for (int i = 0; i < log.getTagCount(); i++) {
+                IttTag tag = log.getTag(i);
+                if (i > 0) {
+                    buffer.put((byte) ',');
+                }
+                buffer.put(START_TAG);
+                putString(buffer, log.getTagValue(i));
+                buffer.put(TAG_NAME);
+                buffer.put(encodedName(tag, tag.getName()));
+                buffer.put((byte) '}');
+            }
+
+            IttStatus status = log.getStatus();
+            buffer.put(STATUS_NAME);
+            buffer.put(encodedName(status, status.getName()));
+            if (log.isTimed()) {
+                buffer.put(START_NANOS);
+                putLong(buffer, log.getStartNanos());
+                buffer.put(DURATION_NANOS);
+                putLong(buffer, log.getDurationNanos());
+            }
+            buffer.put((byte) '}');
+            return true;
+        } catch (BufferOverflowException e) {
+            buffer.position(start);
+            return false;
+        }
+    }
+
+    private byte[] encodedName(Object key, String name) {
+        byte[] encoded = encodedNames.get(key);
+        if (encoded == null) {
+            ByteBuffer buffer = ByteBuffer.allocate(name.length() * 6 + 2);
+            putString(buffer, name);
+            encoded = new byte[buffer.position()];
+            buffer.flip();
+            buffer.get(encoded);
+            encodedNames.put(key, encoded);
+        }
+        return encoded;
+    }
+
+    private void putLong(ByteBuffer buffer, long value) {
+        if (value < 0) {
+            buffer.put((byte) '-');
+            if (value == Long.MIN_VALUE) {
+                buffer.put(ascii("9223372036854775808"));
+                return;
+            }
+            value = -value;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (count > 0) {
+            buffer.put(digits[--count]);
+        }
+    }
+
+    /**
+     * Write a JSON string with the escapes of Jackson, so the output is identical to {@link IttJsonWriter}'s.
+     * Surrogates are escaped one char at a time, like Jackson does.
+     */
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.put((byte) 'n').put((byte) 'u').put((byte) 'l').put((byte) 'l');
+            return;
+        }
+        buffer.put((byte) '"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                int escape = ESCAPES[c];
+                if (escape == 0) {
+                    buffer.put((byte) c);
+                } else if (escape > 0) {
+                    buffer.put((byte) '\\').put((byte) escape);
+                } else {
+                    putUnicodeEscape(buffer, c);
+                }
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                putUnicodeEscape(buffer, c);
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        buffer.put((byte) '"');
+    }
+
+    private static void putUnicodeEscape(ByteBuffer buffer, char c) {
+        buffer.put((byte) '\\').put((byte) 'u');
+        buffer.put(HEX[(c >> 12) & 0xF]);
+        buffer.put(HEX[(c >> 8) & 0xF]);
+        buffer.put(HEX[(c >> 4) & 0xF]);
+        buffer.put(HEX[c & 0xF]);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+}
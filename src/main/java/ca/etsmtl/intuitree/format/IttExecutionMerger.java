@@ -0,0 +1,189 @@
+package ca.etsmtl.intuitree.format;
+
+import ca.etsmtl.intuitree.pojo.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Merges version 1 executions, for example one per process of a distributed job, into a single execution where
+ * the logs of each source are nested under a synthetic root log with the {@link #SOURCE_STATUS} status.
+ * The statuses and tags are the union of the ones of every source, by name; the first color found is kept for
+ * statuses with the same name.
+ * <p>
+ * Log IDs are remapped into a single ID space by interleaving the sources: the synthetic roots take IDs 1 to N,
+ * and log {@code id} of source {@code i} (from 0) takes {@code id * N + i + 1}. This needs no knowledge of the
+ * number of logs of each source, so the sources are streamed at once and merged by their remapped IDs, k-way, with
+ * a single record per source in memory. The merged logs are in the order of their IDs when every source is.
+ * Timed logs keep their timing, relative to the start of their own source, and the span totals of the sources
+ * are summed by status and by tag value.
+ * Can be run from the command line with the output filename followed by the source filenames.
+ */
+public class IttExecutionMerger {
+
+    /**
+     * Status of the synthetic root logs of the sources.
+     */
+    public static final IttStatus SOURCE_STATUS = new IttStatus("source", "#9E9E9E");
+
+    /**
+     * Merge executions. The writer is not closed.
+     *
+     * @param sourceFiles Version 1 execution files.
+     * @param execution   The merged execution.
+     * @param writer      Writer for the merged execution.
+     * @throws IOException Thrown if a source can't be read or is not a version 1 execution, if a log ID is too
+     *                     large to be remapped, or if the writer fails.
+     */
+    public static void merge(List<File> sourceFiles, IttExecution execution, IttWriter writer) throws IOException {
+        if (sourceFiles.isEmpty()) {
+            throw new IllegalArgumentException("At least one source is needed");
+        }
+
+        List<Source> sources = new ArrayList<>();
+        try {
+            Map<String, IttStatus> statuses = new LinkedHashMap<>();
+            Map<String, IttTag> tags = new LinkedHashMap<>();
+            statuses.put(SOURCE_STATUS.getName(), SOURCE_STATUS);
+            for (File sourceFile : sourceFiles) {
+                Source source = new Source(sourceFile, sources.size(), sourceFiles.size());
+                sources.add(source);
+                source.reader.readHeader();
+                for (IttStatus status : source.reader.getStatuses()) {
+                    statuses.putIfAbsent(status.getName(), status);
+                }
+                for (IttTag tag : source.reader.getTags()) {
+                    tags.putIfAbsent(tag.getName(), tag);
+                }
+            }
+            writer.writeHeader(execution, statuses.values(), tags.values());
+
+            IttLogRecord record = new IttLogRecord();
+            for (Source source : sources) {
+                record.set(0, source.index + 1, source.reader.getExecution().getTitle(), source.file.getName(),
+                        SOURCE_STATUS, null);
+                writer.writeLog(record);
+            }
+
+            PriorityQueue<Source> heads = new PriorityQueue<>(sources.size(),
+                    Comparator.comparingLong(source -> source.record.getId()));
+            for (Source source : sources) {
+                if (source.next()) {
+                    heads.add(source);
+                }
+            }
+            while (!heads.isEmpty()) {
+                Source source = heads.poll();
+                // The writers look statuses and tags up by instance, so the merged instances are used
+                IttLogRecord log = source.record;
+                record.setIds(log.getParentId(), log.getId());
+                record.setTitle(log.getTitle());
+                record.setMessage(log.getMessage());
+                record.setStatus(statuses.get(log.getStatus().getName()));
+                record.setTiming(log.getStartNanos(), log.getDurationNanos());
+                record.clearTags();
+                for (int i = 0; i < log.getTagCount(); i++) {
+                    record.addTag(tags.get(log.getTag(i).getName()), log.getTagValue(i));
+                }
+                writer.writeLog(record);
+
+                if (source.next()) {
+                    heads.add(source);
+                }
+            }
+
+            List<IttSpanTotal> statusTotals = new ArrayList<>();
+            List<IttSpanTotal> tagTotals = new ArrayList<>();
+            for (Source source : sources) {
+                statusTotals.addAll(source.reader.getSpanStatusTotals());
+                tagTotals.addAll(source.reader.getSpanTagTotals());
+            }
+            if (!statusTotals.isEmpty()) {
+                writer.writeSpanTotals(sumTotals(statusTotals), sumTotals(tagTotals));
+            }
+            writer.writeFooter();
+        } finally {
+            for (Source source : sources) {
+                source.reader.close();
+            }
+        }
+    }
+
+    /**
+     * Merge execution files into a single version 1 execution file.
+     *
+     * @param args Output filename followed by the source filenames.
+     * @throws IOException Thrown if a file can't be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: IttExecutionMerger <output file> <source file>...");
+            System.exit(1);
+        }
+        List<File> sourceFiles = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            sourceFiles.add(new File(args[i]));
+        }
+        try (IttWriter writer = IttFormat.JSON_V1.createWriter(new FileOutputStream(args[0]))) {
+            merge(sourceFiles, new IttExecution("Merged execution", sourceFiles.size() + " sources"), writer);
+        }
+    }
+
+    /**
+     * Sum the totals with the same name and value.
+     *
+     * @return The summed totals, from the longest to the shortest.
+     */
+    private static List<IttSpanTotal> sumTotals(List<IttSpanTotal> totals) {
+        Map<List<String>, IttSpanTotal> sums = new LinkedHashMap<>();
+        for (IttSpanTotal total : totals) {
+            sums.merge(Arrays.asList(total.getName(), total.getValue()), total, (sum, added) -> new IttSpanTotal(
+                    sum.getName(), sum.getValue(), sum.getCount() + added.getCount(),
+                    sum.getTotalNanos() + added.getTotalNanos()));
+        }
+        List<IttSpanTotal> summed = new ArrayList<>(sums.values());
+        summed.sort(Comparator.comparingLong(IttSpanTotal::getTotalNanos).reversed());
+        return summed;
+    }
+
+    /**
+     * A source being read, with its next log, whose IDs are remapped.
+     */
+    private static class Source {
+
+        private final File file;
+        private final int index;
+        private final int count;
+        private final IttJsonReader reader;
+        private final IttLogRecord record = new IttLogRecord();
+
+        Source(File file, int index, int count) throws IOException {
+            this.file = file;
+            this.index = index;
+            this.count = count;
+            this.reader = new IttJsonReader(new BufferedInputStream(new FileInputStream(file)));
+        }
+
+        /**
+         * @return false if the source has no log left, true if the next log was read.
+         */
+        boolean next() throws IOException {
+            if (!reader.readLog(record)) {
+                return false;
+            }
+            long parentId = record.getParentId();
+            record.setIds(parentId == 0 ? index + 1 : remap(parentId), remap(record.getId()));
+            return true;
+        }
+
+        private long remap(long id) throws IOException {
+            if (id > (Long.MAX_VALUE - count) / count) {
+                throw new IOException("Log ID " + id + " of " + file + " is too large to be merged with "
+                        + (count - 1) + " other sources");
+            }
+            return id * count + index + 1;
+        }
+
+    }
+
+}
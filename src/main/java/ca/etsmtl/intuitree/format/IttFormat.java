@@ -0,0 +1,84 @@
+package ca.etsmtl.intuitree.format;
+
+import ca.etsmtl.intuitree.pojo.IttExecution;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * The output formats an IttLogger can write, selected with {@link ca.etsmtl.intuitree.IttLogger#setFormat(IttFormat)}.
+ */
+public enum IttFormat {
+
+    /**
+     * Version 1 JSON, read directly by the UI. See {@link IttJsonWriter}.
+     */
+    JSON_V1(IttExecution.VERSION_1) {
+        @Override
+        public IttWriter createWriter(OutputStream outputStream) {
+            return new IttJsonWriter(createGenerator(outputStream));
+        }
+    },
+
+    /**
+     * Compact version 2 JSON, where statuses, tags and repeated tag values are referenced by index.
+     * Must be converted with {@link IttJsonV2Converter} before being opened in the UI. See {@link IttJsonV2Writer}.
+     */
+    JSON_V2(IttJsonV2Writer.VERSION_2) {
+        @Override
+        public IttWriter createWriter(OutputStream outputStream) {
+            return new IttJsonV2Writer(createGenerator(outputStream));
+        }
+    },
+
+    /**
+     * Binary length-prefixed records, the fastest and most compact format.
+     * Must be exported with {@link IttBinaryConverter} before being opened in the UI. See {@link IttBinaryWriter}.
+     */
+    BINARY(IttBinaryWriter.VERSION_BINARY) {
+        @Override
+        public IttWriter createWriter(OutputStream outputStream) {
+            return new IttBinaryWriter(outputStream);
+        }
+    };
+
+    /**
+     * Jackson JsonFactory in order to create a JsonGenerator and stream data.
+     */
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final int version;
+
+    IttFormat(int version) {
+        this.version = version;
+    }
+
+    /**
+     * @return The file format version of executions written in this format.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Create a writer for this format.
+     *
+     * @param outputStream Output stream to write to. It is closed when the writer is closed.
+     * @return A new writer.
+     */
+    public abstract IttWriter createWriter(OutputStream outputStream);
+
+    private static JsonGenerator createGenerator(OutputStream outputStream) {
+        try {
+            return FACTORY.createGenerator(outputStream, JsonEncoding.UTF8);
+        } catch (IOException e) {
+            // The factory doesn't write anything when creating a generator on an OutputStream
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package ca.etsmtl.intuitree.format;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Set of log IDs stored as bits, like a BitSet, but split into pages of {@link #PAGE_BITS} IDs which are allocated
+ * when an ID of their range is added: IDs far above 0, which a BitSet can't hold past the int range, only take
+ * memory for the ranges actually used. Logs are mostly added in the order of their IDs, so the last page is cached.
+ * Not thread-safe.
+ */
+class IttIdSet {
+
+    private static final int PAGE_SHIFT = 16;
+    private static final int PAGE_BITS = 1 << PAGE_SHIFT;
+
+    private final Map<Long, long[]> pages = new HashMap<>();
+    private long lastPageNumber = -1;
+    private long[] lastPage;
+
+    /**
+     * @param id A positive log ID.
+     */
+    void add(long id) {
+        long[] page = page(id >>> PAGE_SHIFT, true);
+        int bit = (int) id & (PAGE_BITS - 1);
+        page[bit >>> 6] |= 1L << bit;
+    }
+
+    /**
+     * @param id A log ID.
+     * @return true if the ID was added.
+     */
+    boolean contains(long id) {
+        if (id < 0) {
+            return false;
+        }
+        long[] page = page(id >>> PAGE_SHIFT, false);
+        int bit = (int) id & (PAGE_BITS - 1);
+        return page != null && (page[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private long[] page(long pageNumber, boolean create) {
+        if (pageNumber != lastPageNumber) {
+            long[] page = pages.get(pageNumber);
+            if (page == null) {
+                if (!create) {
+                    return null;
+                }
+                page = new long[PAGE_BITS / 64];
+                pages.put(pageNumber, page);
+            }
+            lastPageNumber = pageNumber;
+            lastPage = page;
+        }
+        return lastPage;
+    }
+
+}
@@ -0,0 +1,319 @@
+package ca.etsmtl.intuitree.format;
+
+import ca.etsmtl.intuitree.pojo.IttExecution;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttTreeNode;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Reads any log or subtree of a version 1 execution file directly, using the sidecar index written by
+ * {@link IttIndexedJsonWriter}: the file is only read at the offsets of the requested logs.
+ * The index is loaded into primitive arrays when the reader is opened, in which logs are looked up by binary search
+ * on their IDs. The file is read with positional reads, so logs can be read by several threads at once.
+ */
+public class IttIndexedJsonReader implements Closeable {
+
+    /**
+     * Extension appended to the name of an execution file to name its index, see {@link #defaultIndexFile(File)}.
+     */
+    public static final String INDEX_EXTENSION = ".idx";
+
+    private static final long[] NO_CHILDREN = new long[0];
+
+    private final FileChannel channel;
+    private final IttJsonReader headerReader;
+
+    /**
+     * ID, offset and parent ID of every log, sorted by ID.
+     */
+    private long[] ids;
+    private long[] offsets;
+    private long[] parentIds;
+
+    /**
+     * Distinct parent IDs, sorted, and the start of the children of each of them in the children array.
+     */
+    private long[] parents;
+    private int[] childStarts;
+    private long[] children;
+
+    /**
+     * @param executionFile Version 1 execution file.
+     * @param indexFile     Index written with the execution by IttIndexedJsonWriter.
+     * @throws IOException Thrown if a file can't be read or the index is invalid.
+     */
+    public IttIndexedJsonReader(File executionFile, File indexFile) throws IOException {
+        try (DataInputStream index = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            byte[] magic = new byte[IttIndexedJsonWriter.MAGIC.length];
+            index.readFully(magic);
+            if (!Arrays.equals(magic, IttIndexedJsonWriter.MAGIC)) {
+                throw new IOException("Not an execution index");
+            }
+            int layoutVersion = index.readInt();
+            if (layoutVersion == 1) {
+                readLayout1(index);
+            } else if (layoutVersion == IttIndexedJsonWriter.LAYOUT_VERSION) {
+                readLayout2(index);
+            } else {
+                throw new IOException("Unsupported index layout version " + layoutVersion);
+            }
+        }
+        parentIds = new long[ids.length];
+        for (int parent = 0; parent < parents.length; parent++) {
+            for (int i = childStarts[parent]; i < childStarts[parent + 1]; i++) {
+                parentIds[Arrays.binarySearch(ids, children[i])] = parents[parent];
+            }
+        }
+
+        channel = FileChannel.open(executionFile.toPath(), StandardOpenOption.READ);
+        try {
+            // The header is read once, its statuses and tags are shared by every log read afterwards
+            headerReader = new IttJsonReader(new BufferedInputStream(Channels.newInputStream(channel)));
+            headerReader.readHeader();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void readLayout2(DataInputStream index) throws IOException {
+        int logCount = index.readInt();
+        ids = readLongs(index, logCount);
+        offsets = readLongs(index, logCount);
+        int parentCount = index.readInt();
+        parents = readLongs(index, parentCount);
+        childStarts = new int[parentCount + 1];
+        for (int i = 0; i <= parentCount; i++) {
+            childStarts[i] = index.readInt();
+        }
+        children = readLongs(index, logCount);
+    }
+
+    /**
+     * Read an index of layout 1, which is indexed by 32-bit IDs: offsets by ID (-1 for missing IDs), the start of
+     * the children of each ID and the children array.
+     */
+    private void readLayout1(DataInputStream index) throws IOException {
+        int maxId = index.readInt();
+        long[] offsetsById = readLongs(index, maxId + 1);
+        int[] childStartsById = new int[maxId + 2];
+        for (int id = 0; id < childStartsById.length; id++) {
+            childStartsById[id] = index.readInt();
+        }
+
+        int logCount = 0;
+        int parentCount = 0;
+        for (int id = 0; id <= maxId; id++) {
+            if (id > 0 && offsetsById[id] >= 0) {
+                logCount++;
+            }
+            if (childStartsById[id + 1] > childStartsById[id]) {
+                parentCount++;
+            }
+        }
+        ids = new long[logCount];
+        offsets = new long[logCount];
+        parents = new long[parentCount];
+        childStarts = new int[parentCount + 1];
+        logCount = 0;
+        parentCount = 0;
+        for (int id = 0; id <= maxId; id++) {
+            if (id > 0 && offsetsById[id] >= 0) {
+                ids[logCount] = id;
+                offsets[logCount++] = offsetsById[id];
+            }
+            if (childStartsById[id + 1] > childStartsById[id]) {
+                parents[parentCount] = id;
+                childStarts[++parentCount] = childStartsById[id + 1];
+            }
+        }
+        children = new long[childStartsById[maxId + 1]];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = index.readInt();
+        }
+    }
+
+    private static long[] readLongs(DataInputStream index, int count) throws IOException {
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = index.readLong();
+        }
+        return values;
+    }
+
+    /**
+     * @param executionFile Execution file.
+     * @return The file named after the execution file with {@link #INDEX_EXTENSION} appended,
+     * for example "execution.json.idx".
+     */
+    public static File defaultIndexFile(File executionFile) {
+        return new File(executionFile.getPath() + INDEX_EXTENSION);
+    }
+
+    /**
+     * @return The execution.
+     */
+    public IttExecution getExecution() {
+        return headerReader.getExecution();
+    }
+
+    /**
+     * @return The maximal log ID of the execution, 0 if it has no log.
+     */
+    public long getMaxId() {
+        return ids.length > 0 ? ids[ids.length - 1] : 0;
+    }
+
+    /**
+     * @return The number of logs of the execution.
+     */
+    public int getLogCount() {
+        return ids.length;
+    }
+
+    /**
+     * @param index Index of a log in the order of the IDs, from 0 to {@link #getLogCount()} exclusively.
+     * @return The ID of the log.
+     */
+    public long getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * @param id ID of a log, or 0 for the root level.
+     * @return The IDs of the children of the log, sorted by ID.
+     */
+    public long[] getChildIds(long id) {
+        int parent = Arrays.binarySearch(parents, id);
+        if (parent < 0) {
+            return NO_CHILDREN;
+        }
+        return Arrays.copyOfRange(children, childStarts[parent], childStarts[parent + 1]);
+    }
+
+    /**
+     * @param id ID of a log.
+     * @return The ID of the parent of the log, 0 for the root level or if there is no log with this ID.
+     */
+    public long getParentId(long id) {
+        int index = Arrays.binarySearch(ids, id);
+        return index < 0 ? 0 : parentIds[index];
+    }
+
+    /**
+     * @param id ID of a log.
+     * @return The byte offset of the log in the execution file, or -1 if there is no log with this ID.
+     */
+    public long getOffset(long id) {
+        int index = Arrays.binarySearch(ids, id);
+        return index < 0 ? -1 : offsets[index];
+    }
+
+    /**
+     * Read a single log.
+     *
+     * @param id     ID of the log.
+     * @param record Record to fill.
+     * @return false if there is no log with this ID, true otherwise.
+     * @throws IOException Thrown if the file can't be read.
+     */
+    public boolean readLog(long id, IttLogRecord record) throws IOException {
+        try (IttJsonReader reader = openAt(id)) {
+            return reader != null && reader.readLog(record);
+        }
+    }
+
+    /**
+     * Open a reader for the logs in the order of the file, from the given log to the end of the execution.
+     * It must be closed, which leaves this reader open.
+     *
+     * @param id ID of the first log to read.
+     * @return The reader, or null if there is no log with this ID.
+     * @throws IOException Thrown if the file can't be read.
+     */
+    public IttJsonReader openAt(long id) throws IOException {
+        long offset = getOffset(id);
+        if (offset < 0) {
+            return null;
+        }
+        return new IttJsonReader(new PositionalInputStream(channel, offset), headerReader);
+    }
+
+    /**
+     * Read the subtree of a log.
+     *
+     * @param id ID of the log.
+     * @return The log with its descendants, or null if there is no log with this ID.
+     * @throws IOException Thrown if the file can't be read.
+     */
+    public IttTreeNode readSubtree(long id) throws IOException {
+        IttLogRecord record = new IttLogRecord();
+        if (!readLog(id, record)) {
+            return null;
+        }
+        IttTreeNode root = new IttTreeNode(record.toLog());
+
+        // Iterative traversal, so that deep trees don't overflow the stack
+        Deque<IttTreeNode> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            IttTreeNode node = pending.pop();
+            for (long childId : getChildIds(node.getLog().getId())) {
+                if (readLog(childId, record)) {
+                    IttTreeNode child = new IttTreeNode(record.toLog());
+                    node.addChild(child);
+                    pending.push(child);
+                }
+            }
+        }
+        return root;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Stream reading the channel from a given position without moving the channel, and which doesn't close it.
+     */
+    private static class PositionalInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private long position;
+
+        PositionalInputStream(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = channel.read(ByteBuffer.wrap(b, off, len), position);
+            if (count > 0) {
+                position += count;
+            }
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
@@ -0,0 +1,181 @@
+package ca.etsmtl.intuitree.format;
+
+import ca.etsmtl.intuitree.io.IttCountingOutputStream;
+import ca.etsmtl.intuitree.pojo.IttExecution;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttSpanTotal;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Writes a version 1 execution, exactly as {@link IttJsonWriter}, along with a sidecar index which gives the byte
+ * offset of every log and the children of every log, so that {@link IttIndexedJsonReader} can read any log or
+ * subtree without scanning the logs before it.
+ * The index is kept in primitive arrays while logging, 24 bytes per log, and written after the footer.
+ * <p>
+ * Index layout, big-endian: the magic "ITTI", the layout version and the number of logs N as ints, then
+ * the N log IDs in ascending order as longs, the offset of the opening brace of each of these logs as longs,
+ * the number P of distinct parent IDs as an int, the P parent IDs in ascending order as longs (0 for the root level),
+ * P + 1 ints giving the start of the children of each parent in the children array, and the children array itself,
+ * as N longs, where the children of each parent are sorted by ID.
+ * Layout 1, which {@link IttIndexedJsonReader} still reads, was indexed by 32-bit IDs instead.
+ */
+public class IttIndexedJsonWriter implements IttWriter {
+
+    static final byte[] MAGIC = {'I', 'T', 'T', 'I'};
+    static final int LAYOUT_VERSION = 2;
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final IttCountingOutputStream outputStream;
+    private final JsonGenerator generator;
+    private final IttJsonWriter writer;
+    private final OutputStream indexOutputStream;
+
+    /**
+     * ID, offset and parent ID of every log, in the order they were written.
+     */
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] offsets = new long[INITIAL_CAPACITY];
+    private long[] parentIds = new long[INITIAL_CAPACITY];
+    private int logCount;
+
+    /**
+     * @param outputStream      Output for the execution. It is closed when the writer is closed.
+     * @param indexOutputStream Output for the index. It is closed when the writer is closed.
+     */
+    public IttIndexedJsonWriter(OutputStream outputStream, OutputStream indexOutputStream) {
+        this.outputStream = new IttCountingOutputStream(outputStream);
+        try {
+            this.generator = FACTORY.createGenerator(this.outputStream, JsonEncoding.UTF8);
+        } catch (IOException e) {
+            // The factory doesn't write anything when creating a generator on an OutputStream
+            throw new UncheckedIOException(e);
+        }
+        this.writer = new IttJsonWriter(generator);
+        this.indexOutputStream = indexOutputStream;
+    }
+
+    @Override
+    public int getVersion() {
+        return writer.getVersion();
+    }
+
+    @Override
+    public void writeHeader(IttExecution execution, Collection<IttStatus> statuses, Collection<IttTag> tags) throws IOException {
+        writer.writeHeader(execution, statuses, tags);
+    }
+
+    @Override
+    public void writeLog(IttLogRecord log) throws IOException {
+        if (logCount == ids.length) {
+            ids = Arrays.copyOf(ids, logCount * 2);
+            offsets = Arrays.copyOf(offsets, logCount * 2);
+            parentIds = Arrays.copyOf(parentIds, logCount * 2);
+        }
+
+        // The generator writes a comma before every log but the first
+        long position = outputStream.getCount() + generator.getOutputBuffered();
+        ids[logCount] = log.getId();
+        offsets[logCount] = logCount > 0 ? position + 1 : position;
+        parentIds[logCount] = log.getParentId();
+        logCount++;
+
+        writer.writeLog(log);
+    }
+
+    @Override
+    public void writeSpanTotals(List<IttSpanTotal> statusTotals, List<IttSpanTotal> tagTotals) {
+        writer.writeSpanTotals(statusTotals, tagTotals);
+    }
+
+    @Override
+    public void writeFooter() throws IOException {
+        writer.writeFooter();
+        writeIndex();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+        indexOutputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.close();
+        } finally {
+            indexOutputStream.close();
+        }
+    }
+
+    private void writeIndex() throws IOException {
+        // Logs are mostly written in the order of their IDs; the others are moved to their position by binary search
+        long[] sortedIds = Arrays.copyOf(ids, logCount);
+        Arrays.sort(sortedIds);
+        long[] sortedOffsets = new long[logCount];
+        long[] sortedParentIds = new long[logCount];
+        for (int i = 0; i < logCount; i++) {
+            int position = ids[i] == sortedIds[i] ? i : Arrays.binarySearch(sortedIds, ids[i]);
+            sortedOffsets[position] = offsets[i];
+            sortedParentIds[position] = parentIds[i];
+        }
+
+        // Group the children by parent with a counting sort, which keeps them sorted by ID
+        long[] parents = Arrays.copyOf(sortedParentIds, logCount);
+        Arrays.sort(parents);
+        int parentCount = 0;
+        for (int i = 0; i < logCount; i++) {
+            if (parentCount == 0 || parents[parentCount - 1] != parents[i]) {
+                parents[parentCount++] = parents[i];
+            }
+        }
+        int[] parentIndexes = new int[logCount];
+        int[] childStarts = new int[parentCount + 1];
+        for (int i = 0; i < logCount; i++) {
+            parentIndexes[i] = Arrays.binarySearch(parents, 0, parentCount, sortedParentIds[i]);
+            childStarts[parentIndexes[i] + 1]++;
+        }
+        for (int i = 1; i <= parentCount; i++) {
+            childStarts[i] += childStarts[i - 1];
+        }
+        long[] children = new long[logCount];
+        int[] next = Arrays.copyOf(childStarts, parentCount);
+        for (int i = 0; i < logCount; i++) {
+            children[next[parentIndexes[i]]++] = sortedIds[i];
+        }
+
+        DataOutputStream index = new DataOutputStream(new BufferedOutputStream(indexOutputStream));
+        index.write(MAGIC);
+        index.writeInt(LAYOUT_VERSION);
+        index.writeInt(logCount);
+        for (long id : sortedIds) {
+            index.writeLong(id);
+        }
+        for (long offset : sortedOffsets) {
+            index.writeLong(offset);
+        }
+        index.writeInt(parentCount);
+        for (int i = 0; i < parentCount; i++) {
+            index.writeLong(parents[i]);
+        }
+        for (int childStart : childStarts) {
+            index.writeInt(childStart);
+        }
+        for (long child : children) {
+            index.writeLong(child);
+        }
+        index.flush();
+    }
+
+}
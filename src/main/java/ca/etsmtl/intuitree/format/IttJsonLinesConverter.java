@@ -0,0 +1,148 @@
+package ca.etsmtl.intuitree.format;
+
+import com.fasterxml.jackson.core.*;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Joins the frames written by {@link IttJsonLinesWriter} back into a version 1 execution, as they arrive.
+ * The conversion is streamed, one frame at a time. A last line which doesn't end with a newline is an incomplete
+ * frame and is ignored. If the frames stop before the end of the execution, the logs received so far are closed
+ * into a valid execution, without span totals.
+ * Can be run from the command line with the input and output filenames as arguments.
+ */
+public class IttJsonLinesConverter {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final InputStream inputStream;
+    private final JsonGenerator generator;
+
+    /**
+     * The line being read, without its newline.
+     */
+    private byte[] line = new byte[1024];
+    private int lineLength;
+
+    private IttJsonLinesConverter(InputStream inputStream, JsonGenerator generator) {
+        this.inputStream = inputStream;
+        this.generator = generator;
+    }
+
+    /**
+     * Convert frames to a version 1 execution. The streams are not closed.
+     *
+     * @param inputStream  Frames of an execution.
+     * @param outputStream Output for the version 1 execution.
+     * @return true if the frames reached the end of the execution, false if they stopped before.
+     * @throws IOException Thrown if the input can't be read or doesn't start with a header, or if the output can't
+     *                     be written.
+     */
+    public static boolean convertToV1(InputStream inputStream, OutputStream outputStream) throws IOException {
+        JsonGenerator generator = FACTORY.createGenerator(outputStream, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        try {
+            return new IttJsonLinesConverter(inputStream, generator).convert();
+        } finally {
+            generator.close();
+        }
+    }
+
+    /**
+     * Convert a file of frames to a version 1 execution file.
+     *
+     * @param args Input filename and output filename.
+     * @throws IOException Thrown if a file can't be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: IttJsonLinesConverter <frames input file> <v1 output file>");
+            System.exit(1);
+        }
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(args[0]));
+             OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(args[1]))) {
+            convertToV1(inputStream, outputStream);
+        }
+    }
+
+    private boolean convert() throws IOException {
+        if (!readLine()) {
+            throw new IOException("The frames end before the header of the execution");
+        }
+        try (JsonParser parser = FACTORY.createParser(line, 0, lineLength)) {
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            expect(parser, parser.nextToken(), JsonToken.FIELD_NAME);
+            if (!IttJsonWriter.EXECUTION.getValue().equals(parser.getCurrentName())) {
+                throw new IOException("The first frame is not the header of an execution");
+            }
+            generator.writeStartObject();
+            copyFields(parser);
+        }
+        generator.writeFieldName(IttJsonWriter.LOGS);
+        generator.writeStartArray();
+
+        while (readLine()) {
+            if (lineLength == 0) {
+                continue;
+            }
+            try (JsonParser parser = FACTORY.createParser(line, 0, lineLength)) {
+                expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+                expect(parser, parser.nextToken(), JsonToken.FIELD_NAME);
+                if (IttJsonLinesWriter.END.getValue().equals(parser.getCurrentName())) {
+                    // The span totals follow the logs
+                    parser.nextToken();
+                    generator.writeEndArray();
+                    if (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        copyFields(parser);
+                    }
+                    generator.writeEndObject();
+                    return true;
+                }
+                generator.writeStartObject();
+                copyFields(parser);
+                generator.writeEndObject();
+            }
+        }
+
+        generator.writeEndArray();
+        generator.writeEndObject();
+        return false;
+    }
+
+    /**
+     * Copy the field the parser is on and the following ones, up to the end of their object.
+     */
+    private void copyFields(JsonParser parser) throws IOException {
+        do {
+            generator.copyCurrentStructure(parser);
+        } while (parser.nextToken() == JsonToken.FIELD_NAME);
+    }
+
+    /**
+     * Read the next complete line.
+     *
+     * @return false if there is no complete line left.
+     */
+    private boolean readLine() throws IOException {
+        lineLength = 0;
+        int b;
+        while ((b = inputStream.read()) != -1) {
+            if (b == '\n') {
+                return true;
+            }
+            if (lineLength == line.length) {
+                line = Arrays.copyOf(line, line.length * 2);
+            }
+            line[lineLength++] = (byte) b;
+        }
+        return false;
+    }
+
+    private static void expect(JsonParser parser, JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new JsonParseException(parser, "Expected " + expected + " but found " + actual);
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+package ca.etsmtl.intuitree.format;
+
+import ca.etsmtl.intuitree.pojo.*;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Writes an execution as newline-delimited JSON frames, so it can be read while it is being written, for example
+ * by a live viewer. Every frame is a JSON object on its own line:
+ * <pre>
+ * {"execution":{"title":"...","message":"...","version":1},"statuses":[...],"tags":[...]}
+ * {"parentId":0,"id":1,"title":"...","message":"...","tags":[...],"statusName":"..."}
+ * ...
+ * {"end":true,"spanTotals":{...}}
+ * </pre>
+ * The first frame is the header, the last one marks the end of the execution and holds the span totals if there
+ * are some, and every other frame is a log, in the version 1 layout of {@link IttJsonWriter}.
+ * {@link IttJsonLinesConverter} joins the frames back into a version 1 execution.
+ */
+public class IttJsonLinesWriter implements IttWriter {
+
+    static final SerializedString END = new SerializedString("end");
+
+    private final JsonGenerator generator;
+
+    /**
+     * Writes the parts the frames share with version 1 JSON.
+     */
+    private final IttJsonWriter jsonWriter;
+
+    public IttJsonLinesWriter(JsonGenerator generator) {
+        this.generator = generator;
+        // Frames are delimited by the newline which ends them, not by a separator before them
+        generator.setRootValueSeparator(null);
+        this.jsonWriter = new IttJsonWriter(generator);
+    }
+
+    @Override
+    public int getVersion() {
+        return IttExecution.VERSION_1;
+    }
+
+    @Override
+    public void writeHeader(IttExecution execution, Collection<IttStatus> statuses, Collection<IttTag> tags) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(IttJsonWriter.EXECUTION);
+        jsonWriter.writeExecution(execution);
+        jsonWriter.writeStatusesAndTags(statuses, tags);
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    @Override
+    public void writeLog(IttLogRecord log) throws IOException {
+        jsonWriter.writeLog(log);
+        generator.writeRaw('\n');
+    }
+
+    @Override
+    public void writeSpanTotals(List<IttSpanTotal> statusTotals, List<IttSpanTotal> tagTotals) {
+        jsonWriter.writeSpanTotals(statusTotals, tagTotals);
+    }
+
+    @Override
+    public void writeFooter() throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(END);
+        generator.writeBoolean(true);
+        jsonWriter.writeSpanTotalsField();
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        generator.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+
+}
@@ -0,0 +1,429 @@
+package ca.etsmtl.intuitree.format;
+
+import ca.etsmtl.intuitree.pojo.IttExecution;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttSpanTotal;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Reads a version 1 execution (see {@link IttJsonWriter}) one log at a time, with Jackson's streaming parser,
+ * so memory use doesn't depend on the number of logs. The execution, statuses and tags must come before the logs,
+ * as written by IttJsonWriter. A file which was truncated because the execution never ended is read up to its last
+ * complete log.
+ */
+public class IttJsonReader implements Closeable {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final JsonParser parser;
+
+    private final EndTrackingInputStream inputStream;
+
+    private IttExecution execution;
+    private final List<IttStatus> statuses;
+    private final List<IttTag> tags;
+    private final Map<String, IttStatus> statusesByName;
+    private final Map<String, IttTag> tagsByName;
+
+    private final List<IttSpanTotal> statusTotals = new ArrayList<>();
+    private final List<IttSpanTotal> tagTotals = new ArrayList<>();
+
+    private boolean inLogs;
+
+    /**
+     * Whether the input starts at a log rather than at the beginning of the execution.
+     */
+    private final boolean positioned;
+    private boolean ended;
+    private boolean complete;
+
+    /**
+     * @param inputStream Version 1 execution. It is closed when the reader is closed.
+     * @throws IOException Thrown if the parser can't be created.
+     */
+    public IttJsonReader(InputStream inputStream) throws IOException {
+        this.inputStream = new EndTrackingInputStream(inputStream);
+        this.parser = FACTORY.createParser(this.inputStream);
+        this.positioned = false;
+        this.statuses = new ArrayList<>();
+        this.tags = new ArrayList<>();
+        this.statusesByName = new HashMap<>();
+        this.tagsByName = new HashMap<>();
+    }
+
+    /**
+     * Create a reader for the logs from a given log to the end of the execution, using the header of another reader.
+     *
+     * @param inputStream  Input positioned at the opening brace of a log. It is closed when the reader is closed.
+     * @param headerReader Reader of the execution containing the log, whose header was read.
+     * @throws IOException Thrown if the parser can't be created.
+     */
+    IttJsonReader(InputStream inputStream, IttJsonReader headerReader) throws IOException {
+        // The logs are read as the elements of an array, which accepts the commas between them
+        this.inputStream = new EndTrackingInputStream(new SequenceInputStream(
+                new ByteArrayInputStream(new byte[]{'['}), inputStream));
+        this.parser = FACTORY.createParser(this.inputStream);
+        this.positioned = true;
+        expect(parser.nextToken(), JsonToken.START_ARRAY);
+        this.inLogs = true;
+        // The header is shared rather than copied, since it is not modified once read
+        this.execution = headerReader.execution;
+        this.statuses = headerReader.statuses;
+        this.tags = headerReader.tags;
+        this.statusesByName = headerReader.statusesByName;
+        this.tagsByName = headerReader.tagsByName;
+    }
+
+    /**
+     * Read the execution, statuses and tags. Must be called once, before {@link #readLog(IttLogRecord)}.
+     *
+     * @return The execution.
+     * @throws IOException Thrown if the input can't be read or is not a version 1 execution.
+     */
+    public IttExecution readHeader() throws IOException {
+        expect(parser.nextToken(), JsonToken.START_OBJECT);
+        while (nextField()) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (IttJsonWriter.EXECUTION.getValue().equals(field)) {
+                readExecution();
+            } else if (IttJsonWriter.STATUSES.getValue().equals(field)) {
+                expect(token, JsonToken.START_ARRAY);
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    readStatus();
+                }
+            } else if (IttJsonWriter.TAGS.getValue().equals(field)) {
+                expect(token, JsonToken.START_ARRAY);
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    readTag();
+                }
+            } else if (IttJsonWriter.LOGS.getValue().equals(field)) {
+                expect(token, JsonToken.START_ARRAY);
+                inLogs = true;
+                break;
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (execution == null) {
+            throw new JsonParseException(parser, "Missing execution before the logs");
+        }
+        if (!inLogs) {
+            // An execution without logs
+            ended = true;
+            complete = true;
+        }
+        return execution;
+    }
+
+    /**
+     * Read the next log into the given record.
+     *
+     * @param record Record to fill.
+     * @return false if there is no log left, true otherwise.
+     * @throws IOException Thrown if the input can't be read or is not a valid execution.
+     */
+    public boolean readLog(IttLogRecord record) throws IOException {
+        if (ended) {
+            return false;
+        }
+        try {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT) {
+                readLogFields(record);
+                return true;
+            }
+            expect(token, JsonToken.END_ARRAY);
+            ended = true;
+            if (positioned) {
+                // The end of the root object doesn't match the array opened by this reader
+                complete = true;
+                return false;
+            }
+            // The execution is complete once the root object ends
+            while (nextField()) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (IttJsonWriter.SPAN_TOTALS.getValue().equals(field)) {
+                    readSpanTotals();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            complete = true;
+        } catch (JsonParseException e) {
+            if (!inputStream.ended) {
+                throw e;
+            }
+            // Truncated execution which never ended
+            ended = true;
+        }
+        return false;
+    }
+
+    /**
+     * @return The execution read by {@link #readHeader()}.
+     */
+    public IttExecution getExecution() {
+        return execution;
+    }
+
+    /**
+     * @return The statuses of the execution.
+     */
+    public List<IttStatus> getStatuses() {
+        return Collections.unmodifiableList(statuses);
+    }
+
+    /**
+     * @return The tags of the execution.
+     */
+    public List<IttTag> getTags() {
+        return Collections.unmodifiableList(tags);
+    }
+
+    /**
+     * @return The time totals of the spans by status, written after the logs, so only available once every log
+     * was read. Empty if the execution has no spans.
+     */
+    public List<IttSpanTotal> getSpanStatusTotals() {
+        return Collections.unmodifiableList(statusTotals);
+    }
+
+    /**
+     * @return The time totals of the spans by tag and value, written after the logs, so only available once every
+     * log was read. Empty if the execution has no spans.
+     */
+    public List<IttSpanTotal> getSpanTagTotals() {
+        return Collections.unmodifiableList(tagTotals);
+    }
+
+    /**
+     * @return true if the end of the execution was read, false if there are logs left or the file was truncated.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    private void readExecution() throws IOException {
+        expect(parser.getCurrentToken(), JsonToken.START_OBJECT);
+        String title = null;
+        String message = null;
+        int version = IttExecution.VERSION_1;
+        while (nextField()) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (IttJsonWriter.TITLE.getValue().equals(field)) {
+                title = parser.getValueAsString();
+            } else if (IttJsonWriter.MESSAGE.getValue().equals(field)) {
+                message = parser.getValueAsString();
+            } else if (IttJsonWriter.VERSION.getValue().equals(field)) {
+                version = parser.getValueAsInt();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (version != IttExecution.VERSION_1) {
+            throw new JsonParseException(parser, "Unsupported execution version " + version);
+        }
+        execution = new IttExecution(title, message, version);
+    }
+
+    private void readStatus() throws IOException {
+        String name = null;
+        String color = null;
+        while (nextField()) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (IttJsonWriter.NAME.getValue().equals(field)) {
+                name = parser.getValueAsString();
+            } else if (IttJsonWriter.COLOR.getValue().equals(field)) {
+                color = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        IttStatus status = new IttStatus(name, color);
+        statuses.add(status);
+        statusesByName.put(name, status);
+    }
+
+    private void readTag() throws IOException {
+        String name = null;
+        while (nextField()) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (IttJsonWriter.NAME.getValue().equals(field)) {
+                name = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        IttTag tag = new IttTag(name);
+        tags.add(tag);
+        tagsByName.put(name, tag);
+    }
+
+    private void readLogFields(IttLogRecord record) throws IOException {
+        record.clear();
+        long parentId = 0;
+        long id = 0;
+        long startNanos = 0;
+        long durationNanos = IttLogRecord.NO_DURATION;
+        while (nextField()) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (IttJsonWriter.PARENT_ID.getValue().equals(field)) {
+                parentId = parser.getLongValue();
+            } else if (IttJsonWriter.ID.getValue().equals(field)) {
+                id = parser.getLongValue();
+            } else if (IttJsonWriter.TITLE.getValue().equals(field)) {
+                record.setTitle(parser.getValueAsString());
+            } else if (IttJsonWriter.MESSAGE.getValue().equals(field)) {
+                record.setMessage(parser.getValueAsString());
+            } else if (IttJsonWriter.STATUS_NAME.getValue().equals(field)) {
+                String statusName = parser.getValueAsString();
+                IttStatus status = statusesByName.get(statusName);
+                if (status == null) {
+                    throw new JsonParseException(parser, "Unknown status " + statusName);
+                }
+                record.setStatus(status);
+            } else if (IttJsonWriter.TAGS.getValue().equals(field)) {
+                expect(token, JsonToken.START_ARRAY);
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    readTagValue(record);
+                }
+            } else if (IttJsonWriter.START_NANOS.getValue().equals(field)) {
+                startNanos = parser.getLongValue();
+            } else if (IttJsonWriter.DURATION_NANOS.getValue().equals(field)) {
+                durationNanos = parser.getLongValue();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        record.setIds(parentId, id);
+        record.setTiming(startNanos, durationNanos);
+    }
+
+    private void readTagValue(IttLogRecord record) throws IOException {
+        String tagName = null;
+        String value = null;
+        while (nextField()) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (IttJsonWriter.TAG_NAME.getValue().equals(field)) {
+                tagName = parser.getValueAsString();
+            } else if (IttJsonWriter.VALUE.getValue().equals(field)) {
+                value = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        IttTag tag = tagsByName.get(tagName);
+        if (tag == null) {
+            throw new JsonParseException(parser, "Unknown tag " + tagName);
+        }
+        record.addTag(tag, value);
+    }
+
+    private void readSpanTotals() throws IOException {
+        expect(parser.getCurrentToken(), JsonToken.START_OBJECT);
+        while (nextField()) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (IttJsonWriter.STATUSES.getValue().equals(field)) {
+                expect(token, JsonToken.START_ARRAY);
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    statusTotals.add(readSpanTotal());
+                }
+            } else if (IttJsonWriter.TAGS.getValue().equals(field)) {
+                expect(token, JsonToken.START_ARRAY);
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    tagTotals.add(readSpanTotal());
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private IttSpanTotal readSpanTotal() throws IOException {
+        String name = null;
+        String value = null;
+        long count = 0;
+        long totalNanos = 0;
+        while (nextField()) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (IttJsonWriter.NAME.getValue().equals(field) || IttJsonWriter.TAG_NAME.getValue().equals(field)) {
+                name = parser.getValueAsString();
+            } else if (IttJsonWriter.VALUE.getValue().equals(field)) {
+                value = parser.getValueAsString();
+            } else if (IttJsonWriter.COUNT.getValue().equals(field)) {
+                count = parser.getLongValue();
+            } else if (IttJsonWriter.TOTAL_NANOS.getValue().equals(field)) {
+                totalNanos = parser.getLongValue();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new IttSpanTotal(name, value, count, totalNanos);
+    }
+
+    private boolean nextField() throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.FIELD_NAME) {
+            return true;
+        }
+        expect(token, JsonToken.END_OBJECT);
+        return false;
+    }
+
+    private void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new JsonParseException(parser, "Expected " + expected + ", got " + actual);
+        }
+    }
+
+    /**
+     * Remembers whether the end of the input was reached, so that a parse error at the end of the input is
+     * recognized as a truncated execution rather than an invalid one.
+     */
+    private static class EndTrackingInputStream extends FilterInputStream {
+
+        private boolean ended;
+
+        EndTrackingInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            ended |= b < 0;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            ended |= count < 0;
+            return count;
+        }
+
+    }
+
+}
@@ -0,0 +1,270 @@
+package ca.etsmtl.intuitree.format;
+
+import ca.etsmtl.intuitree.pojo.IttExecution;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+import com.fasterxml.jackson.core.*;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts a version 2 execution file (see {@link IttJsonV2Writer}) to the version 1 layout read by the UI.
+ * The conversion is streamed: only the statuses, tags and value dictionary are kept in memory.
+ * Can be run from the command line with the input and output filenames as arguments.
+ */
+public class IttJsonV2Converter {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final JsonParser parser;
+    private final IttJsonWriter writer;
+
+    private String title;
+    private String message;
+    private final List<IttStatus> statuses = new ArrayList<>();
+    private final List<IttTag> tags = new ArrayList<>();
+    private final Map<String, IttStatus> statusesByName = new HashMap<>();
+    private final Map<String, IttTag> tagsByName = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    private final IttLogRecord record = new IttLogRecord();
+
+    /**
+     * Tag and value references of the log being read, which are resolved once the whole log is read.
+     */
+    private final List<Object> tagRefs = new ArrayList<>();
+
+    private IttJsonV2Converter(JsonParser parser, IttJsonWriter writer) {
+        this.parser = parser;
+        this.writer = writer;
+    }
+
+    /**
+     * Convert a version 2 execution to version 1. The streams are not closed.
+     *
+     * @param inputStream  Version 2 execution.
+     * @param outputStream Output for the version 1 execution.
+     * @throws IOException Thrown if the input can't be read or is not a version 2 execution, or if the output can't
+     *                     be written.
+     */
+    public static void convertToV1(InputStream inputStream, OutputStream outputStream) throws IOException {
+        JsonParser parser = FACTORY.createParser(inputStream);
+        parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        JsonGenerator generator = FACTORY.createGenerator(outputStream, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        try {
+            new IttJsonV2Converter(parser, new IttJsonWriter(generator)).convert();
+        } finally {
+            parser.close();
+            generator.close();
+        }
+    }
+
+    /**
+     * Convert a version 2 execution file to version 1.
+     *
+     * @param args Input filename and output filename.
+     * @throws IOException Thrown if a file can't be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: IttJsonV2Converter <v2 input file> <v1 output file>");
+            System.exit(1);
+        }
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(args[0]));
+             OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(args[1]))) {
+            convertToV1(inputStream, outputStream);
+        }
+    }
+
+    private void convert() throws IOException {
+        expect(parser.nextToken(), JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "execution":
+                    readExecution();
+                    break;
+                case "statuses":
+                    readStatuses();
+                    break;
+                case "tags":
+                    readTags();
+                    break;
+                case "logs":
+                    convertLogs();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+    }
+
+    private void readExecution() throws IOException {
+        expect(parser.currentToken(), JsonToken.START_OBJECT);
+        int version = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "title":
+                    title = parser.getValueAsString();
+                    break;
+                case "message":
+                    message = parser.getValueAsString();
+                    break;
+                case "version":
+                    version = parser.getIntValue();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        if (version != IttJsonV2Writer.VERSION_2) {
+            throw new IOException("Expected an execution of version " + IttJsonV2Writer.VERSION_2 + ", got " + version);
+        }
+    }
+
+    private void readStatuses() throws IOException {
+        expect(parser.currentToken(), JsonToken.START_ARRAY);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String name = null;
+            String color = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("name".equals(field)) {
+                    name = parser.getValueAsString();
+                } else if ("color".equals(field)) {
+                    color = parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            IttStatus status = new IttStatus(name, color);
+            statuses.add(status);
+            statusesByName.put(name, status);
+        }
+    }
+
+    private void readTags() throws IOException {
+        expect(parser.currentToken(), JsonToken.START_ARRAY);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String name = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("name".equals(field)) {
+                    name = parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            IttTag tag = new IttTag(name);
+            tags.add(tag);
+            tagsByName.put(name, tag);
+        }
+    }
+
+    private void convertLogs() throws IOException {
+        expect(parser.currentToken(), JsonToken.START_ARRAY);
+        writer.writeHeader(new IttExecution(title, message), statuses, tags);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            readLog();
+            writer.writeLog(record);
+        }
+        writer.writeFooter();
+    }
+
+    private void readLog() throws IOException {
+        long parentId = 0;
+        long id = 0;
+        String logTitle = "";
+        String logMessage = "";
+        IttStatus status = null;
+        long startNanos = 0;
+        long durationNanos = IttLogRecord.NO_DURATION;
+        tagRefs.clear();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "p":
+                    parentId = parser.getLongValue();
+                    break;
+                case "i":
+                    id = parser.getLongValue();
+                    break;
+                case "t":
+                    logTitle = parser.getValueAsString();
+                    break;
+                case "m":
+                    logMessage = parser.getValueAsString();
+                    break;
+                case "s":
+                    if (token == JsonToken.VALUE_STRING) {
+                        // Status added after the header, which the version 1 layout can still reference by name
+                        status = statusesByName.computeIfAbsent(parser.getText(), name -> new IttStatus(name, ""));
+                    } else {
+                        status = statuses.get(parser.getIntValue());
+                    }
+                    break;
+                case "d":
+                    expect(token, JsonToken.START_ARRAY);
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        values.add(parser.getText());
+                    }
+                    break;
+                case "g":
+                    expect(token, JsonToken.START_ARRAY);
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        tagRefs.add(readScalar());
+                    }
+                    break;
+                case "b":
+                    startNanos = parser.getLongValue();
+                    break;
+                case "u":
+                    durationNanos = parser.getLongValue();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+
+        record.set(parentId, id, logTitle, logMessage, status, null);
+        record.setTiming(startNanos, durationNanos);
+        for (int i = 0; i + 1 < tagRefs.size(); i += 2) {
+            Object tagRef = tagRefs.get(i);
+            Object valueRef = tagRefs.get(i + 1);
+            IttTag tag = tagRef instanceof Integer
+                    ? tags.get((Integer) tagRef) : tagsByName.computeIfAbsent((String) tagRef, IttTag::new);
+            record.addTag(tag, valueRef instanceof Integer ? values.get((Integer) valueRef) : (String) valueRef);
+        }
+    }
+
+    /**
+     * @return The current token as an Integer if it is a number, or as a String otherwise.
+     */
+    private Object readScalar() throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getIntValue();
+        }
+        return parser.getValueAsString();
+    }
+
+    private void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new JsonParseException(parser, "Expected " + expected + ", got " + actual);
+        }
+    }
+
+}
@@ -0,0 +1,214 @@
+package ca.etsmtl.intuitree.format;
+
+import ca.etsmtl.intuitree.pojo.*;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Writes an execution as compact version 2 JSON, where logs reference statuses, tags and repeated tag values
+ * by index instead of repeating their names. Use {@link IttJsonV2Converter} to convert it back to version 1
+ * for the UI. The layout is:
+ * <pre>
+ * {"execution":{"title":"...","message":"...","version":2},
+ *  "statuses":[{"name":"...","color":"..."},...],
+ *  "tags":[{"name":"..."},...],
+ *  "logs":[{"p":parentId,"i":id,"t":"title","m":"message","s":status,"d":["value",...],"g":[tag,value,...]},...]}
+ * </pre>
+ * <ul>
+ * <li>"s" is the index of the status in "statuses", or its name if it was added after the header.</li>
+ * <li>"g" is a flat list of tag and value pairs, omitted if the log has no tags. A tag is its index in "tags",
+ * or its name if it was added after the header. A value is either a string, or the index of an interned value.</li>
+ * <li>"d" lists the values interned by this log, omitted if there are none. They are appended to the value
+ * dictionary, in order, before the references in "g" are resolved.</li>
+ * <li>"b" and "u" are the start and duration in nanoseconds of timed logs, omitted for other logs.</li>
+ * </ul>
+ */
+public class IttJsonV2Writer implements IttWriter {
+
+    public static final int VERSION_2 = 2;
+
+    /**
+     * Values longer than this are always written as strings, since they are unlikely to repeat.
+     */
+    static final int MAX_INTERNED_LENGTH = 64;
+
+    /**
+     * Maximum size of the value dictionary, which bounds the memory used by writers and readers.
+     */
+    static final int MAX_INTERNED_VALUES = 1 << 16;
+
+    static final SerializedString PARENT_ID = new SerializedString("p");
+    static final SerializedString ID = new SerializedString("i");
+    static final SerializedString TITLE = new SerializedString("t");
+    static final SerializedString MESSAGE = new SerializedString("m");
+    static final SerializedString STATUS = new SerializedString("s");
+    static final SerializedString DEFINITIONS = new SerializedString("d");
+    static final SerializedString TAGS = new SerializedString("g");
+    static final SerializedString START_NANOS = new SerializedString("b");
+    static final SerializedString DURATION_NANOS = new SerializedString("u");
+
+    private final JsonGenerator generator;
+    private final IttJsonWriter headerWriter;
+    private final boolean internTagValues;
+
+    private final Map<IttStatus, Integer> statusIndexes = new IdentityHashMap<>();
+    private final Map<IttTag, Integer> tagIndexes = new IdentityHashMap<>();
+    private final Map<String, Integer> valueIndexes = new HashMap<>();
+
+    /**
+     * Value reference of each tag of the log being written, -1 for values written as strings.
+     */
+    private int[] valueRefs = new int[8];
+
+    /**
+     * Create a writer which interns repeated tag values.
+     *
+     * @param generator Generator to write to.
+     */
+    public IttJsonV2Writer(JsonGenerator generator) {
+        this(generator, true);
+    }
+
+    /**
+     * @param generator       Generator to write to.
+     * @param internTagValues If true, repeated tag values are written once and referenced by index afterwards.
+     */
+    public IttJsonV2Writer(JsonGenerator generator, boolean internTagValues) {
+        this.generator = generator;
+        this.headerWriter = new IttJsonWriter(generator);
+        this.internTagValues = internTagValues;
+    }
+
+    @Override
+    public int getVersion() {
+        return VERSION_2;
+    }
+
+    @Override
+    public void writeHeader(IttExecution execution, Collection<IttStatus> statuses, Collection<IttTag> tags) throws IOException {
+        // The header is the same as version 1, only the logs differ.
+        headerWriter.writeHeader(execution, statuses, tags);
+
+        for (IttStatus status : statuses) {
+            statusIndexes.put(status, statusIndexes.size());
+        }
+        for (IttTag tag : tags) {
+            tagIndexes.put(tag, tagIndexes.size());
+        }
+    }
+
+    @Override
+    public void writeLog(IttLogRecord log) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(PARENT_ID);
+        generator.writeNumber(log.getParentId());
+        generator.writeFieldName(ID);
+        generator.writeNumber(log.getId());
+        generator.writeFieldName(TITLE);
+        generator.writeString(log.getTitle());
+        generator.writeFieldName(MESSAGE);
+        generator.writeString(log.getMessage());
+
+        generator.writeFieldName(STATUS);
+        Integer statusIndex = statusIndexes.get(log.getStatus());
+        if (statusIndex != null) {
+            generator.writeNumber(statusIndex);
+        } else {
+            generator.writeString(log.getStatus().getName());
+        }
+
+        int tagCount = log.getTagCount();
+        if (tagCount > 0) {
+            internValues(log);
+
+            generator.writeFieldName(TAGS);
+            generator.writeStartArray();
+            for (int i = 0; i < tagCount; i++) {
+                IttTag tag = log.getTag(i);
+                Integer tagIndex = tagIndexes.get(tag);
+                if (tagIndex != null) {
+                    generator.writeNumber(tagIndex);
+                } else {
+                    generator.writeString(tag.getName());
+                }
+
+                if (valueRefs[i] >= 0) {
+                    generator.writeNumber(valueRefs[i]);
+                } else {
+                    generator.writeString(log.getTagValue(i));
+                }
+            }
+            generator.writeEndArray();
+        }
+
+        if (log.isTimed()) {
+            generator.writeFieldName(START_NANOS);
+            generator.writeNumber(log.getStartNanos());
+            generator.writeFieldName(DURATION_NANOS);
+            generator.writeNumber(log.getDurationNanos());
+        }
+
+        generator.writeEndObject();
+    }
+
+    /**
+     * Resolve the value references of every tag of the log, and write the "d" field
+     * for the values which are interned for the first time.
+     */
+    private void internValues(IttLogRecord log) throws IOException {
+        int tagCount = log.getTagCount();
+        if (valueRefs.length < tagCount) {
+            valueRefs = new int[Math.max(tagCount, valueRefs.length * 2)];
+        }
+
+        boolean definitionsStarted = false;
+        for (int i = 0; i < tagCount; i++) {
+            valueRefs[i] = -1;
+            String value = log.getTagValue(i);
+            if (!internTagValues || value == null) {
+                continue;
+            }
+
+            Integer valueIndex = valueIndexes.get(value);
+            if (valueIndex == null && value.length() <= MAX_INTERNED_LENGTH && valueIndexes.size() < MAX_INTERNED_VALUES) {
+                valueIndex = valueIndexes.size();
+                valueIndexes.put(value, valueIndex);
+                if (!definitionsStarted) {
+                    generator.writeFieldName(DEFINITIONS);
+                    generator.writeStartArray();
+                    definitionsStarted = true;
+                }
+                generator.writeString(value);
+            }
+            if (valueIndex != null) {
+                valueRefs[i] = valueIndex;
+            }
+        }
+
+        if (definitionsStarted) {
+            generator.writeEndArray();
+        }
+    }
+
+    @Override
+    public void writeFooter() throws IOException {
+        headerWriter.writeFooter();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        generator.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+
+}
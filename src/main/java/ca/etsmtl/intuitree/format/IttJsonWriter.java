@@ -0,0 +1,263 @@
+package ca.etsmtl.intuitree.format;
+
+import ca.etsmtl.intuitree.pojo.*;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes an execution as version 1 JSON, which is the format read by the Intuitree UI.
+ * Every field is written directly on the JsonGenerator, in the same order as the POJO getters
+ * would be serialized by a databind ObjectMapper, so jackson-databind is not needed at runtime.
+ */
+public class IttJsonWriter implements IttWriter {
+
+    static final SerializedString EXECUTION = new SerializedString("execution");
+    static final SerializedString STATUSES = new SerializedString("statuses");
+    static final SerializedString TAGS = new SerializedString("tags");
+    static final SerializedString LOGS = new SerializedString("logs");
+    static final SerializedString TITLE = new SerializedString("title");
+    static final SerializedString MESSAGE = new SerializedString("message");
+    static final SerializedString VERSION = new SerializedString("version");
+    static final SerializedString NAME = new SerializedString("name");
+    static final SerializedString COLOR = new SerializedString("color");
+    static final SerializedString PARENT_ID = new SerializedString("parentId");
+    static final SerializedString ID = new SerializedString("id");
+    static final SerializedString VALUE = new SerializedString("value");
+    static final SerializedString TAG_NAME = new SerializedString("tagName");
+    static final SerializedString STATUS_NAME = new SerializedString("statusName");
+    static final SerializedString START_NANOS = new SerializedString("startNanos");
+    static final SerializedString DURATION_NANOS = new SerializedString("durationNanos");
+    static final SerializedString SPAN_TOTALS = new SerializedString("spanTotals");
+    static final SerializedString COUNT = new SerializedString("count");
+    static final SerializedString TOTAL_NANOS = new SerializedString("totalNanos");
+
+    /**
+     * Marker for names which can't be pre-encoded.
+     */
+    private static final SerializedString UNENCODABLE = new SerializedString("");
+
+    /**
+     * Jackson JsonGenerator in order to generate JSON in a stream.
+     */
+    private final JsonGenerator generator;
+
+    /**
+     * Pre-encoded names of the statuses and tags of the execution, so they are only escaped and encoded once.
+     */
+    private final Map<Object, SerializableString> encodedNames = new IdentityHashMap<>();
+
+    /**
+     * Span totals written with the footer, null if there are none.
+     */
+    private List<IttSpanTotal> statusTotals;
+    private List<IttSpanTotal> tagTotals;
+
+    public IttJsonWriter(JsonGenerator generator) {
+        this.generator = generator;
+    }
+
+    @Override
+    public int getVersion() {
+        return IttExecution.VERSION_1;
+    }
+
+    @Override
+    public void writeHeader(IttExecution execution, Collection<IttStatus> statuses, Collection<IttTag> tags) throws IOException {
+        generator.writeStartObject();
+
+        generator.writeFieldName(EXECUTION);
+        writeExecution(execution);
+        writeStatusesAndTags(statuses, tags);
+
+        generator.writeFieldName(LOGS);
+        generator.writeStartArray();
+    }
+
+    /**
+     * Write the statuses and tags fields of the header.
+     */
+    void writeStatusesAndTags(Collection<IttStatus> statuses, Collection<IttTag> tags) throws IOException {
+        generator.writeFieldName(STATUSES);
+        generator.writeStartArray();
+        for (IttStatus status : statuses) {
+            generator.writeStartObject();
+            generator.writeFieldName(NAME);
+            writeName(status, status.getName());
+            generator.writeFieldName(COLOR);
+            generator.writeString(status.getColor());
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+
+        generator.writeFieldName(TAGS);
+        generator.writeStartArray();
+        for (IttTag tag : tags) {
+            generator.writeStartObject();
+            generator.writeFieldName(NAME);
+            writeName(tag, tag.getName());
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+    }
+
+    /**
+     * Write the execution object, without the field name.
+     */
+    void writeExecution(IttExecution execution) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(TITLE);
+        generator.writeString(execution.getTitle());
+        generator.writeFieldName(MESSAGE);
+        generator.writeString(execution.getMessage());
+        generator.writeFieldName(VERSION);
+        generator.writeNumber(execution.getVersion());
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void writeLog(IttLogRecord log) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(PARENT_ID);
+        generator.writeNumber(log.getParentId());
+        generator.writeFieldName(ID);
+        generator.writeNumber(log.getId());
+        generator.writeFieldName(TITLE);
+        generator.writeString(log.getTitle());
+        generator.writeFieldName(MESSAGE);
+        generator.writeString(log.getMessage());
+
+        generator.writeFieldName(TAGS);
+        generator.writeStartArray();
+        for (int i = 0; i < log.getTagCount(); i++) {
+            IttTag tag = log.getTag(i);
+            generator.writeStartObject();
+            generator.writeFieldName(VALUE);
+            generator.writeString(log.getTagValue(i));
+            generator.writeFieldName(TAG_NAME);
+            writeName(tag, tag.getName());
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+
+        IttStatus status = log.getStatus();
+        generator.writeFieldName(STATUS_NAME);
+        writeName(status, status.getName());
+        if (log.isTimed()) {
+            // Only timed logs have these fields, so other logs are unchanged for the UI
+            generator.writeFieldName(START_NANOS);
+            generator.writeNumber(log.getStartNanos());
+            generator.writeFieldName(DURATION_NANOS);
+            generator.writeNumber(log.getDurationNanos());
+        }
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void writeSpanTotals(List<IttSpanTotal> statusTotals, List<IttSpanTotal> tagTotals) {
+        this.statusTotals = statusTotals;
+        this.tagTotals = tagTotals;
+    }
+
+    /**
+     * End the logs, followed by the span totals if there are some:
+     * {@code "spanTotals":{"statuses":[{"name":...,"count":...,"totalNanos":...}],
+     * "tags":[{"tagName":...,"value":...,"count":...,"totalNanos":...}]}}.
+     */
+    @Override
+    public void writeFooter() throws IOException {
+        generator.writeEndArray();
+        writeSpanTotalsField();
+        generator.writeEndObject();
+    }
+
+    /**
+     * Write the span totals field, if there are span totals.
+     */
+    void writeSpanTotalsField() throws IOException {
+        if (statusTotals != null) {
+            generator.writeFieldName(SPAN_TOTALS);
+            generator.writeStartObject();
+            generator.writeFieldName(STATUSES);
+            generator.writeStartArray();
+            for (IttSpanTotal total : statusTotals) {
+                generator.writeStartObject();
+                generator.writeFieldName(NAME);
+                generator.writeString(total.getName());
+                writeTotal(total);
+            }
+            generator.writeEndArray();
+            generator.writeFieldName(TAGS);
+            generator.writeStartArray();
+            for (IttSpanTotal total : tagTotals) {
+                generator.writeStartObject();
+                generator.writeFieldName(TAG_NAME);
+                generator.writeString(total.getName());
+                generator.writeFieldName(VALUE);
+                generator.writeString(total.getValue());
+                writeTotal(total);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Write the count and total time of a span total, and end its object.
+     */
+    private void writeTotal(IttSpanTotal total) throws IOException {
+        generator.writeFieldName(COUNT);
+        generator.writeNumber(total.getCount());
+        generator.writeFieldName(TOTAL_NANOS);
+        generator.writeNumber(total.getTotalNanos());
+        generator.writeEndObject();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        generator.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+
+    /**
+     * Write the name of a status or a tag as a string value, using its pre-encoded form.
+     *
+     * @param key  The IttStatus or IttTag instance.
+     * @param name Its name.
+     */
+    private void writeName(Object key, String name) throws IOException {
+        SerializableString encoded = encodedNames.get(key);
+        if (encoded == null) {
+            // Pre-encoding writes surrogate pairs as raw UTF-8 while the generator escapes them,
+            // so those names are left to the generator to keep the output identical.
+            encoded = hasSurrogate(name) ? UNENCODABLE : new SerializedString(name);
+            encodedNames.put(key, encoded);
+        }
+
+        if (encoded != UNENCODABLE) {
+            generator.writeString(encoded);
+        } else {
+            generator.writeString(name);
+        }
+    }
+
+    private static boolean hasSurrogate(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.isSurrogate(value.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,166 @@
+package ca.etsmtl.intuitree.format;
+
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttTreeNode;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Builds the tree of an execution as its logs are read, materializing only the requested subtrees.
+ * Logs outside the requested subtrees are neither copied nor remembered, so memory use is proportional to the
+ * requested subtrees only. Logs are usually added after their parent, which is the order in which they are written,
+ * but the log of a span ({@link ca.etsmtl.intuitree.IttSpan}) is written after its children: logs whose parent was
+ * not added yet are held until it is, then attached to it or forgotten with it.
+ * <p>
+ * Example: {@code IttTreeBuilder builder = new IttTreeBuilder(42); while (reader.readLog(record)) builder.add(record);}
+ */
+public class IttTreeBuilder {
+
+    /**
+     * IDs of the requested subtree roots, or null to materialize the whole tree.
+     */
+    private final Set<Long> rootIds;
+
+    private final List<IttTreeNode> roots = new ArrayList<>();
+    private final Map<Long, IttTreeNode> nodes = new HashMap<>();
+
+    /**
+     * IDs of the logs added so far, materialized or not.
+     */
+    private final IttIdSet addedIds = new IttIdSet();
+
+    /**
+     * Logs whose parent was not added yet, by ID, and the top of their subtrees by parent ID.
+     */
+    private final Map<Long, IttTreeNode> pendingNodes = new HashMap<>();
+    private final Map<Long, List<IttTreeNode>> orphans = new LinkedHashMap<>();
+
+    /**
+     * Create a builder which materializes the whole tree.
+     */
+    public IttTreeBuilder() {
+        this.rootIds = null;
+    }
+
+    /**
+     * Create a builder which materializes the subtrees of the given logs.
+     *
+     * @param rootIds IDs of the logs whose subtrees are materialized.
+     */
+    public IttTreeBuilder(long... rootIds) {
+        this.rootIds = new HashSet<>();
+        for (long rootId : rootIds) {
+            this.rootIds.add(rootId);
+        }
+    }
+
+    /**
+     * Read every log of an execution into a new builder.
+     *
+     * @param reader  Reader whose header was read.
+     * @param rootIds IDs of the logs whose subtrees are materialized, or none for the whole tree.
+     * @return The builder with the materialized subtrees.
+     * @throws IOException Thrown if the execution can't be read.
+     */
+    public static IttTreeBuilder build(IttJsonReader reader, long... rootIds) throws IOException {
+        IttTreeBuilder builder = rootIds.length > 0 ? new IttTreeBuilder(rootIds) : new IttTreeBuilder();
+        IttLogRecord record = new IttLogRecord();
+        while (reader.readLog(record)) {
+            builder.add(record);
+        }
+        return builder;
+    }
+
+    /**
+     * Add a log, which is materialized if it belongs to a requested subtree.
+     *
+     * @param log The log. Copied if materialized, so it can be reused after this call.
+     * @return true if the log was materialized.
+     */
+    public boolean add(IttLogRecord log) {
+        long id = log.getId();
+        long parentId = log.getParentId();
+        addedIds.add(id);
+        IttTreeNode parent = nodes.get(parentId);
+        boolean root = rootIds == null ? parentId == 0 : rootIds.contains(id);
+
+        IttTreeNode node;
+        if (parent != null || root) {
+            node = new IttTreeNode(log.toLog());
+            nodes.put(id, node);
+            if (parent != null) {
+                parent.addChild(node);
+            } else {
+                roots.add(node);
+            }
+        } else if (parentId != 0 && !addedIds.contains(parentId)) {
+            // The parent may be a span, which comes after its children
+            node = new IttTreeNode(log.toLog());
+            pendingNodes.put(id, node);
+            orphans.computeIfAbsent(parentId, key -> new ArrayList<>()).add(node);
+        } else if (pendingNodes.containsKey(parentId)) {
+            node = new IttTreeNode(log.toLog());
+            pendingNodes.put(id, node);
+            pendingNodes.get(parentId).addChild(node);
+        } else {
+            node = null;
+        }
+
+        boolean materialized = parent != null || root;
+        List<IttTreeNode> children = orphans.remove(id);
+        if (children != null) {
+            for (IttTreeNode child : children) {
+                if (node != null) {
+                    node.addChild(child);
+                }
+                if (materialized || node == null) {
+                    resolve(child, materialized);
+                }
+            }
+        }
+        return materialized;
+    }
+
+    /**
+     * Move a held subtree whose parent was materialized to the materialized nodes, or forget it with its parent.
+     */
+    private void resolve(IttTreeNode node, boolean materialized) {
+        pendingNodes.remove(node.getLog().getId());
+        if (materialized) {
+            nodes.put(node.getLog().getId(), node);
+        }
+        for (IttTreeNode child : node.getChildren()) {
+            resolve(child, materialized);
+        }
+    }
+
+    /**
+     * @return The subtrees whose parent was not added, which happens when an execution is cut before spans were
+     * closed, in the order they were added. These logs are not materialized.
+     */
+    public List<IttTreeNode> getOrphans() {
+        List<IttTreeNode> result = new ArrayList<>();
+        for (List<IttTreeNode> children : orphans.values()) {
+            result.addAll(children);
+        }
+        return result;
+    }
+
+    /**
+     * @return The materialized root nodes: the root-level logs when building the whole tree,
+     * the requested logs which are not inside another requested subtree otherwise, in the order they were added.
+     */
+    public List<IttTreeNode> getRoots() {
+        return Collections.unmodifiableList(roots);
+    }
+
+    /**
+     * @param id ID of a log.
+     * @return The node of the log, or null if it was not materialized.
+     */
+    public IttTreeNode getNode(long id) {
+        return nodes.get(id);
+    }
+
+}
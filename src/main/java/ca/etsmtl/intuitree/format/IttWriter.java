@@ -0,0 +1,64 @@
+package ca.etsmtl.intuitree.format;
+
+import ca.etsmtl.intuitree.pojo.IttExecution;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttSpanTotal;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Serializes an execution to its output. The calls always follow the same order:
+ * {@link #writeHeader(IttExecution, Collection, Collection)} once, {@link #writeLog(IttLogRecord)} for every log,
+ * then {@link #writeSpanTotals(List, List)} if spans were logged, {@link #writeFooter()} and {@link #close()}.
+ * Implementations don't need to be thread-safe: the IttLogger never calls a writer from two threads at once.
+ */
+public interface IttWriter extends Closeable, Flushable {
+
+    /**
+     * @return The file format version written by this writer, which is recorded in the execution.
+     */
+    int getVersion();
+
+    /**
+     * Write the execution information and the available statuses and tags, before any log.
+     *
+     * @param execution The execution instance.
+     * @param statuses  All the statuses which can be referenced by logs.
+     * @param tags      All the tags which can be referenced by logs.
+     * @throws IOException Thrown if the output can't be written.
+     */
+    void writeHeader(IttExecution execution, Collection<IttStatus> statuses, Collection<IttTag> tags) throws IOException;
+
+    /**
+     * Write a single log. The record may be reused as soon as this method returns.
+     *
+     * @param log The log to write.
+     * @throws IOException Thrown if the output can't be written.
+     */
+    void writeLog(IttLogRecord log) throws IOException;
+
+    /**
+     * Record the time totals of the spans of the execution, to be written with the footer. Formats which have no
+     * place for them ignore them, which is the default.
+     *
+     * @param statusTotals Totals by status.
+     * @param tagTotals    Totals by tag and value.
+     * @throws IOException Thrown if the output can't be written.
+     */
+    default void writeSpanTotals(List<IttSpanTotal> statusTotals, List<IttSpanTotal> tagTotals) throws IOException {
+    }
+
+    /**
+     * Write whatever is needed after the last log to complete the execution.
+     *
+     * @throws IOException Thrown if the output can't be written.
+     */
+    void writeFooter() throws IOException;
+
+}
@@ -0,0 +1,27 @@
+package ca.etsmtl.intuitree.io;
+
+/**
+ * Determines what an {@link IttSocketWriter} does with a log when its outbound buffer is full because the receiver
+ * reads slower than the execution logs.
+ */
+public enum IttBackpressurePolicy {
+
+    /**
+     * Wait until the sender thread frees enough of the buffer. No log is lost, but a slow receiver slows down the
+     * thread which writes the logs, and so the logging threads in synchronous mode.
+     */
+    BLOCK,
+
+    /**
+     * Never wait: the log is dropped and counted (see {@link IttSocketWriter#getDroppedLogCount()}).
+     * Children of a dropped log reference a missing parent.
+     */
+    DROP,
+
+    /**
+     * Never wait and never lose a log: logs which don't fit are appended to a temporary spill file, which the sender
+     * thread sends once the buffer is drained, before any later log. Disk usage is only bounded by the backlog.
+     */
+    SPILL
+
+}
@@ -0,0 +1,47 @@
+package ca.etsmtl.intuitree.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * OutputStream which counts the bytes written to the underlying stream.
+ * Not thread-safe, like the writers which use it, but the count can be read from any thread.
+ */
+public class IttCountingOutputStream extends FilterOutputStream {
+
+    private volatile long count;
+
+    public IttCountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        count += len;
+    }
+
+    /**
+     * Count bytes which were written to the underlying output by other means, such as the channel of its file.
+     *
+     * @param length Number of bytes written.
+     */
+    public void addCount(long length) {
+        count += length;
+    }
+
+    /**
+     * @return The number of bytes written so far.
+     */
+    public long getCount() {
+        return count;
+    }
+
+}
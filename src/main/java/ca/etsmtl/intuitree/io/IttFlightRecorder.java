@@ -0,0 +1,455 @@
+package ca.etsmtl.intuitree.io;
+
+import ca.etsmtl.intuitree.format.IttFormat;
+import ca.etsmtl.intuitree.format.IttWriter;
+import ca.etsmtl.intuitree.pojo.IttExecution;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writer which keeps the most recent logs in memory and writes them only when a dump is triggered:
+ * by {@link #dump()}, when a log has one of the trigger statuses, or when the JVM shuts down if
+ * {@link #enableDumpOnShutdown()} was called. Nothing is written otherwise, so it can be left on at all times.
+ * Each dump is a complete execution file, named after the given filename with the dump index before the extension.
+ * The kept logs are copied while the recorder is locked, and the file is written afterwards: on the calling thread
+ * by {@link #dump()}, and on a background thread for a trigger status, so the logging thread doesn't wait for it.
+ * Triggers are coalesced: while a triggered dump is being written, further triggers only cause one more dump,
+ * taken once it is written, so a burst of trigger statuses writes at most two files. Triggered dumps are copied
+ * into preallocated records. Closing the recorder waits for the triggered dumps to be written.
+ * <p>
+ * Logs are copied into a ring of preallocated records. A log leaving the ring while some of the kept logs are its
+ * descendants is moved to a separate pool of ancestors, so that dumps contain the whole chain from the root to every
+ * kept log. If the ancestor pool is full, the logs whose parent is missing are dumped at the root level, as are
+ * the children of spans which were not closed yet, since the log of a span is written after its children.
+ * Use it with {@link ca.etsmtl.intuitree.IttLogger#IttLogger(IttWriter, boolean, boolean)}.
+ */
+public class IttFlightRecorder implements IttWriter {
+
+    /**
+     * Value returned by the location map for logs which are not kept.
+     */
+    private static final int MISSING = Integer.MIN_VALUE;
+
+    private final String filename;
+    private final IttFormat format;
+    private final Set<String> triggerStatusNames = new HashSet<>();
+
+    private IttExecution execution;
+    private Collection<IttStatus> statuses;
+    private Collection<IttTag> tags;
+
+    /**
+     * Most recent logs, from oldest at head to newest, with the number of their direct children which are kept.
+     */
+    private final IttLogRecord[] ring;
+    private final int[] ringChildCounts;
+    private int head;
+    private int size;
+
+    /**
+     * Logs which left the ring but have kept descendants, with the number of their direct children which are kept.
+     */
+    private final IttLogRecord[] ancestors;
+    private final int[] ancestorChildCounts;
+    private final int[] freeAncestors;
+    private int freeAncestorCount;
+
+    /**
+     * Location of every kept log from its ID: its index in the ring if positive, -(index + 1) in the ancestors if
+     * negative.
+     */
+    private final IttLongIntMap locations;
+
+    private int dumpCount;
+    private Thread shutdownHook;
+
+    /**
+     * IDs of the kept ancestors, sorted when a dump is taken.
+     */
+    private final long[] ancestorIds;
+
+    /**
+     * Thread writing the dumps of trigger statuses, started by the first one. It runs a single task at a time.
+     */
+    private ExecutorService dumpExecutor;
+
+    /**
+     * Records the triggered dumps are copied into, owned by the dump thread while a triggered dump is pending.
+     */
+    private IttLogRecord[] triggeredRecords;
+
+    /**
+     * Whether a triggered dump is being written, and whether a trigger status was logged meanwhile.
+     */
+    private boolean triggeredDumpPending;
+    private boolean triggeredAgain;
+
+    /**
+     * Create a recorder with an ancestor pool as large as its ring.
+     *
+     * @param filename        Base filename of the dumps, for example "execution.json" gives "execution.00000.json", ...
+     * @param format          Format of the dumps.
+     * @param capacity        Number of recent logs kept in memory.
+     * @param triggerStatuses Statuses which trigger a dump when a log has them.
+     */
+    public IttFlightRecorder(String filename, IttFormat format, int capacity, IttStatus... triggerStatuses) {
+        this(filename, format, capacity, capacity, triggerStatuses);
+    }
+
+    /**
+     * @param filename         Base filename of the dumps, for example "execution.json" gives "execution.00000.json", ...
+     * @param format           Format of the dumps.
+     * @param capacity         Number of recent logs kept in memory.
+     * @param ancestorCapacity Number of older logs which can be kept as ancestors of the recent logs.
+     * @param triggerStatuses  Statuses which trigger a dump when a log has them.
+     */
+    public IttFlightRecorder(String filename, IttFormat format, int capacity, int ancestorCapacity,
+                             IttStatus... triggerStatuses) {
+        if (filename == null || format == null) {
+            throw new NullPointerException("filename and format can't be null");
+        }
+        if (capacity < 1 || ancestorCapacity < 0) {
+            throw new IllegalArgumentException("capacity must be positive and ancestorCapacity can't be negative");
+        }
+        this.filename = filename;
+        this.format = format;
+        for (IttStatus status : triggerStatuses) {
+            triggerStatusNames.add(status.getName());
+        }
+
+        ring = new IttLogRecord[capacity];
+        ringChildCounts = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new IttLogRecord();
+        }
+        ancestors = new IttLogRecord[ancestorCapacity];
+        ancestorChildCounts = new int[ancestorCapacity];
+        freeAncestors = new int[ancestorCapacity];
+        for (int i = 0; i < ancestorCapacity; i++) {
+            ancestors[i] = new IttLogRecord();
+            freeAncestors[i] = ancestorCapacity - 1 - i;
+        }
+        freeAncestorCount = ancestorCapacity;
+        ancestorIds = new long[ancestorCapacity];
+        locations = new IttLongIntMap(capacity + ancestorCapacity);
+    }
+
+    /**
+     * Dump the recorded logs when the JVM shuts down, unless the recorder was closed before.
+     */
+    public synchronized void enableDumpOnShutdown() {
+        if (shutdownHook != null) {
+            return;
+        }
+        shutdownHook = new Thread(() -> {
+            try {
+                dump();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "intuitree-flight-recorder-dump");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    @Override
+    public int getVersion() {
+        return format.getVersion();
+    }
+
+    @Override
+    public synchronized void writeHeader(IttExecution execution, Collection<IttStatus> statuses, Collection<IttTag> tags) {
+        // Keep the live collections, so statuses and tags added later are in the dumps
+        this.execution = execution;
+        this.statuses = statuses;
+        this.tags = tags;
+    }
+
+    @Override
+    public synchronized void writeLog(IttLogRecord log) throws IOException {
+        if (size == ring.length) {
+            evictOldest();
+        }
+        int index = (head + size) % ring.length;
+        ring[index].copyFrom(log);
+        ringChildCounts[index] = 0;
+        size++;
+        locations.put(log.getId(), index);
+        addChild(log.getParentId());
+
+        if (!triggerStatusNames.isEmpty() && triggerStatusNames.contains(log.getStatus().getName())) {
+            trigger();
+        }
+    }
+
+    /**
+     * Hand a dump to the dump thread, or have the pending one followed by another dump.
+     */
+    private void trigger() throws IOException {
+        if (triggeredDumpPending) {
+            triggeredAgain = true;
+            return;
+        }
+        if (triggeredRecords == null) {
+            triggeredRecords = newRecords(ring.length + ancestors.length);
+            // A single pending task, which takes the dumps triggered while it writes
+            dumpExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "intuitree-flight-recorder");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+        Dump dump = snapshot(triggeredRecords);
+        try {
+            dumpExecutor.execute(() -> writeTriggered(dump));
+            triggeredDumpPending = true;
+        } catch (RejectedExecutionException e) {
+            // Logged after the recorder was closed
+            dump.write();
+        }
+    }
+
+    /**
+     * Write triggered dumps until no trigger status was logged during the last one. Runs on the dump thread.
+     */
+    private void writeTriggered(Dump dump) {
+        while (dump != null) {
+            try {
+                dump.write();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            synchronized (this) {
+                if (triggeredAgain) {
+                    triggeredAgain = false;
+                    dump = snapshot(triggeredRecords);
+                } else {
+                    triggeredDumpPending = false;
+                    dump = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the recorded logs and their ancestors to a new execution file, on the calling thread.
+     * The logs stay recorded.
+     *
+     * @return The written file, or null if the execution was not started yet.
+     * @throws IOException Thrown if the file can't be written.
+     */
+    public File dump() throws IOException {
+        Dump dump;
+        synchronized (this) {
+            if (execution == null) {
+                return null;
+            }
+            dump = snapshot(newRecords(ancestors.length - freeAncestorCount + size));
+        }
+        dump.write();
+        return dump.file;
+    }
+
+    /**
+     * Does nothing: logs are only written by dumps.
+     */
+    @Override
+    public void writeFooter() {
+    }
+
+    /**
+     * Does nothing: dumps are written and closed at once.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Stop dumping on shutdown, and wait for the triggered dumps to be written.
+     * The recorded logs can still be dumped with {@link #dump()}.
+     *
+     * @throws IOException Thrown if interrupted while waiting for the triggered dumps.
+     */
+    @Override
+    public void close() throws IOException {
+        ExecutorService executor;
+        synchronized (this) {
+            if (shutdownHook != null) {
+                try {
+                    Runtime.getRuntime().removeShutdownHook(shutdownHook);
+                } catch (IllegalStateException e) {
+                    // Already shutting down, the hook is running
+                }
+                shutdownHook = null;
+            }
+            executor = dumpExecutor;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the dumps to be written");
+            }
+        }
+    }
+
+    /**
+     * Copy the kept logs, ancestors first in the order they were logged, and number the dump.
+     *
+     * @param records Records to copy the logs into, at least as many as the kept logs.
+     */
+    private Dump snapshot(IttLogRecord[] records) {
+        int count = 0;
+        for (int i = 0; i < ancestors.length; i++) {
+            if (ancestorChildCounts[i] > 0) {
+                ancestorIds[count++] = ancestors[i].getId();
+            }
+        }
+        Arrays.sort(ancestorIds, 0, count);
+        int logCount = 0;
+        for (int i = 0; i < count; i++) {
+            copyKept(ancestors[-locations.get(ancestorIds[i], MISSING) - 1], records[logCount++]);
+        }
+        for (int i = 0; i < size; i++) {
+            copyKept(ring[(head + i) % ring.length], records[logCount++]);
+        }
+        return new Dump(IttRollingFileWriter.numberedFile(filename, dumpCount++), execution,
+                new ArrayList<>(statuses), new ArrayList<>(tags), records, logCount);
+    }
+
+    private void copyKept(IttLogRecord log, IttLogRecord copy) {
+        copy.copyFrom(log);
+        long parentId = log.getParentId();
+        if (parentId != 0 && locations.get(parentId, MISSING) == MISSING) {
+            // The parent was lost when the ancestor pool was full
+            copy.setIds(0, log.getId());
+        }
+    }
+
+    private static IttLogRecord[] newRecords(int count) {
+        IttLogRecord[] records = new IttLogRecord[count];
+        for (int i = 0; i < count; i++) {
+            records[i] = new IttLogRecord();
+        }
+        return records;
+    }
+
+    /**
+     * Remove the oldest log from the ring, keeping it as an ancestor if some kept logs are its descendants.
+     */
+    private void evictOldest() {
+        IttLogRecord log = ring[head];
+        int childCount = ringChildCounts[head];
+        head = (head + 1) % ring.length;
+        size--;
+
+        if (childCount > 0 && freeAncestorCount > 0) {
+            int index = freeAncestors[--freeAncestorCount];
+            ancestors[index].copyFrom(log);
+            ancestorChildCounts[index] = childCount;
+            locations.put(log.getId(), -(index + 1));
+        } else {
+            locations.remove(log.getId());
+            removeChild(log.getParentId());
+        }
+        log.clear();
+    }
+
+    private void addChild(long parentId) {
+        int location = parentId != 0 ? locations.get(parentId, MISSING) : MISSING;
+        if (location == MISSING) {
+            return;
+        }
+        if (location >= 0) {
+            ringChildCounts[location]++;
+        } else {
+            ancestorChildCounts[-location - 1]++;
+        }
+    }
+
+    /**
+     * Record that a child of the given log is no longer kept, releasing the ancestors which have no kept
+     * descendants left.
+     */
+    private void removeChild(long parentId) {
+        while (parentId != 0) {
+            int location = locations.get(parentId, MISSING);
+            if (location == MISSING) {
+                return;
+            }
+            if (location >= 0) {
+                ringChildCounts[location]--;
+                return;
+            }
+            int index = -location - 1;
+            if (--ancestorChildCounts[index] > 0) {
+                return;
+            }
+            IttLogRecord ancestor = ancestors[index];
+            locations.remove(parentId);
+            parentId = ancestor.getParentId();
+            ancestor.clear();
+            freeAncestors[freeAncestorCount++] = index;
+        }
+    }
+
+    /**
+     * Copy of the kept logs, written without holding the recorder's lock.
+     */
+    private class Dump {
+
+        private final File file;
+        private final IttExecution execution;
+        private final Collection<IttStatus> statuses;
+        private final Collection<IttTag> tags;
+        private final IttLogRecord[] logs;
+        private final int logCount;
+
+        Dump(File file, IttExecution execution, Collection<IttStatus> statuses, Collection<IttTag> tags,
+             IttLogRecord[] logs, int logCount) {
+            this.file = file;
+            this.execution = execution;
+            this.statuses = statuses;
+            this.tags = tags;
+            this.logs = logs;
+            this.logCount = logCount;
+        }
+
+        /**
+         * Write the dump, then clear its records so they don't retain the strings of the logs.
+         */
+        void write() throws IOException {
+            try (IttWriter writer = format.createWriter(new FileOutputStream(file))) {
+                writer.writeHeader(execution, statuses, tags);
+                for (int i = 0; i < logCount; i++) {
+                    writer.writeLog(logs[i]);
+                }
+                writer.writeFooter();
+            } finally {
+                for (int i = 0; i < logCount; i++) {
+                    logs[i].clear();
+                }
+            }
+        }
+
+    }
+
+}
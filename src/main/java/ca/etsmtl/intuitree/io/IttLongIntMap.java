@@ -0,0 +1,132 @@
+package ca.etsmtl.intuitree.io;
+
+import java.util.Arrays;
+
+/**
+ * Map from positive long keys to int values, backed by primitive arrays with open addressing,
+ * so that adding and removing entries doesn't box or allocate once the map has its capacity.
+ * Not thread-safe.
+ */
+class IttLongIntMap {
+
+    /**
+     * Key of empty slots. Keys must be positive.
+     */
+    private static final long EMPTY = 0;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * @param expectedSize Number of entries the map holds without growing.
+     */
+    IttLongIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @param key          A positive key.
+     * @param defaultValue Value returned if the key is absent.
+     * @return The value of the key, or defaultValue if the key is absent.
+     */
+    int get(long key, int defaultValue) {
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            long current = keys[slot];
+            if (current == key) {
+                return values[slot];
+            }
+            if (current == EMPTY) {
+                return defaultValue;
+            }
+        }
+    }
+
+    /**
+     * Set the value of a key, adding it if it is absent.
+     *
+     * @param key   A positive key.
+     * @param value Its value.
+     */
+    void put(long key, int value) {
+        if (key <= 0) {
+            throw new IllegalArgumentException("Keys must be positive");
+        }
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            if (++size * 2 > keys.length) {
+                values[slot] = value;
+                grow();
+                return;
+            }
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Remove a key if it is present.
+     *
+     * @param key A positive key.
+     */
+    void remove(long key) {
+        int slot = hash(key) & mask;
+        while (keys[slot] != key) {
+            if (keys[slot] == EMPTY) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        size--;
+
+        // Shift back the following entries of the cluster, so lookups never stop at the removed slot
+        int gap = slot;
+        for (slot = (gap + 1) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            int home = hash(keys[slot]) & mask;
+            // Move the entry if its home slot is not between the gap and its current slot
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = keys[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        mask = keys.length - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        // Spread sequential IDs over the table
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+}
@@ -0,0 +1,216 @@
+package ca.etsmtl.intuitree.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * OutputStream which writes a file through memory-mapped chunks instead of write syscalls.
+ * The file is mapped one chunk at a time, growing it as needed, and writes are plain memory copies.
+ * When the stream is closed, the file is truncated to the number of bytes actually written.
+ * <p>
+ * Chunks are unmapped as soon as the stream moves past them, rather than when they are garbage collected, since
+ * Windows can't truncate a file which is still mapped. Java has no public API to unmap a buffer, so this relies on
+ * {@code sun.misc.Unsafe.invokeCleaner} on Java 9+ and on the buffer's cleaner on Java 8. On a JVM which allows
+ * neither, chunks are only unmapped by the garbage collector, and closing the stream can fail on Windows.
+ * Not thread-safe, like the writers which use it.
+ */
+public class IttMappedFileOutputStream extends OutputStream {
+
+    /**
+     * Default size of each mapped chunk.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Unmaps a chunk, or null if the JVM doesn't allow it.
+     */
+    private static final Unmapper UNMAPPER = createUnmapper();
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int chunkSize;
+
+    /**
+     * Position of the current chunk in the file.
+     */
+    private long chunkStart;
+    private MappedByteBuffer chunk;
+
+    private boolean closed;
+
+    /**
+     * Create a stream to the given file with the default chunk size. The file is overwritten if it exists.
+     *
+     * @param filename Filename to output to.
+     * @throws IOException Thrown if the file can't be created or mapped.
+     */
+    public IttMappedFileOutputStream(String filename) throws IOException {
+        this(filename, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Create a stream to the given file. The file is overwritten if it exists.
+     *
+     * @param filename  Filename to output to.
+     * @param chunkSize Number of bytes mapped at once. Larger chunks mean fewer mappings, but more address space.
+     * @throws IOException Thrown if the file can't be created or mapped.
+     */
+    public IttMappedFileOutputStream(String filename, int chunkSize) throws IOException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.file = new RandomAccessFile(new File(filename), "rw");
+        this.channel = file.getChannel();
+        this.chunkSize = chunkSize;
+
+        try {
+            channel.truncate(0);
+            chunk = channel.map(FileChannel.MapMode.READ_WRITE, 0, chunkSize);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (!chunk.hasRemaining()) {
+            mapNextChunk();
+        }
+        chunk.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if ((off | len) < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0) {
+            if (!chunk.hasRemaining()) {
+                mapNextChunk();
+            }
+            int count = Math.min(len, chunk.remaining());
+            chunk.put(b, off, count);
+            off += count;
+            len -= count;
+        }
+    }
+
+    /**
+     * Does nothing: written bytes are already in the page cache, which is what a flush guarantees.
+     * Use {@link #force()} to write them to the storage device.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Force the bytes written so far to the storage device.
+     *
+     * @throws IOException Thrown if the stream is closed.
+     */
+    public void force() throws IOException {
+        ensureOpen();
+        chunk.force();
+        // Previous chunks are unmapped, their dirty pages are written by the channel
+        channel.force(false);
+    }
+
+    /**
+     * @return The number of bytes written so far.
+     */
+    public long getPosition() {
+        return closed ? 0 : chunkStart + chunk.position();
+    }
+
+    /**
+     * @return The channel of the file, for operations such as {@link FileChannel#force(boolean)}.
+     */
+    public FileChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Truncate the file to the number of bytes written and close it.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        long length = chunkStart + chunk.position();
+        closed = true;
+        // The chunk must be unmapped before the file is truncated under it
+        unmap(chunk);
+        chunk = null;
+        try {
+            channel.truncate(length);
+        } finally {
+            file.close();
+        }
+    }
+
+    private void mapNextChunk() throws IOException {
+        long nextStart = chunkStart + chunk.position();
+        MappedByteBuffer next = channel.map(FileChannel.MapMode.READ_WRITE, nextStart, chunkSize);
+        unmap(chunk);
+        chunk = next;
+        chunkStart = nextStart;
+    }
+
+    /**
+     * Unmap a chunk which is no longer used, or leave it to the garbage collector if it can't be unmapped.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        if (UNMAPPER != null) {
+            try {
+                UNMAPPER.unmap(buffer);
+            } catch (Exception e) {
+                // Unmapped when the buffer is garbage collected
+            }
+        }
+    }
+
+    private static Unmapper createUnmapper() {
+        try {
+            // Java 9+
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            return buffer -> invokeCleaner.invoke(unsafe, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Java 8, or an Unsafe without invokeCleaner
+        }
+        try {
+            Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> clean.invoke(cleaner.invoke(buffer));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    private interface Unmapper {
+
+        void unmap(MappedByteBuffer buffer) throws Exception;
+
+    }
+
+}
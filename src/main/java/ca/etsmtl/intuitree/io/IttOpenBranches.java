@@ -0,0 +1,117 @@
+package ca.etsmtl.intuitree.io;
+
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Open branches of the most recent trees of an execution: for each tree, the chain of logs from its root-level log
+ * to the last log written under it, which are the logs that can still get children when logging with tracks.
+ * A log extends the branch holding its parent, cutting the branch after the parent, and a root-level log starts a
+ * new branch, replacing the least recently extended one once there are {@link #MAX_BRANCHES}. A log whose parent is
+ * on no branch, such as a child of a span whose log is not written yet, leaves the branches as they are.
+ * Not thread-safe.
+ */
+class IttOpenBranches {
+
+    /**
+     * Number of trees followed at once, enough for as many threads logging their own trees.
+     */
+    static final int MAX_BRANCHES = 16;
+
+    /**
+     * Branches from the least to the most recently extended.
+     */
+    private final List<Branch> branches = new ArrayList<>();
+
+    /**
+     * Add a log to the branch of its parent.
+     *
+     * @param log Log which was just written. It is copied.
+     */
+    void add(IttLogRecord log) {
+        Branch branch = null;
+        int depth = 0;
+        if (log.getParentId() == 0) {
+            branch = branches.size() < MAX_BRANCHES ? new Branch() : branches.remove(0);
+        } else {
+            for (int i = branches.size() - 1; i >= 0 && branch == null; i--) {
+                depth = branches.get(i).indexOf(log.getParentId()) + 1;
+                if (depth > 0) {
+                    branch = branches.remove(i);
+                }
+            }
+            if (branch == null) {
+                return;
+            }
+        }
+        branch.set(depth, log);
+        branches.add(branch);
+    }
+
+    /**
+     * @return Whether the log is on one of the branches.
+     */
+    boolean contains(long id) {
+        for (Branch branch : branches) {
+            if (branch.indexOf(id) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The logs of every branch, from the least to the most recently extended branch, each from its
+     * root-level log down, so that every log comes after its parent.
+     */
+    List<IttLogRecord> getLogs() {
+        List<IttLogRecord> logs = new ArrayList<>();
+        for (Branch branch : branches) {
+            for (int i = 0; i < branch.depth; i++) {
+                logs.add(branch.logs[i]);
+            }
+        }
+        return logs;
+    }
+
+    private static class Branch {
+
+        private IttLogRecord[] logs = new IttLogRecord[8];
+        private int depth;
+
+        /**
+         * @return The depth of the log on this branch, or -1 if it is not on it.
+         */
+        int indexOf(long id) {
+            for (int i = depth - 1; i >= 0; i--) {
+                if (logs[i].getId() == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Put a log at a depth, cutting the logs below it.
+         */
+        void set(int depth, IttLogRecord log) {
+            if (depth == logs.length) {
+                IttLogRecord[] grown = new IttLogRecord[logs.length * 2];
+                System.arraycopy(logs, 0, grown, 0, logs.length);
+                logs = grown;
+            }
+            for (int i = depth + 1; i < this.depth; i++) {
+                logs[i].clear();
+            }
+            if (logs[depth] == null) {
+                logs[depth] = new IttLogRecord();
+            }
+            logs[depth].copyFrom(log);
+            this.depth = depth + 1;
+        }
+
+    }
+
+}
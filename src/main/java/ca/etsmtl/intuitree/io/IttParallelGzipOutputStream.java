@@ -0,0 +1,353 @@
+package ca.etsmtl.intuitree.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * OutputStream which gzips its output on several cores. Written bytes are cut into fixed-size blocks, each block is
+ * compressed on a worker thread into its own gzip member, and the members are written in order.
+ * Concatenated gzip members form a valid gzip file, which is read by any gzip reader, including
+ * {@link java.util.zip.GZIPInputStream} and the gzip command.
+ * Blocks are compressed independently, so the output is slightly larger than with a single GZIPOutputStream.
+ * Blocks are pooled with their compressed output, so the stream doesn't allocate once every block is in use.
+ * Use it with {@link ca.etsmtl.intuitree.IttLogger#IttLogger(OutputStream, boolean)}.
+ * Not thread-safe, like the writers which use it.
+ */
+public class IttParallelGzipOutputStream extends OutputStream {
+
+    /**
+     * Default size of the blocks compressed in parallel.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    private static final byte[] MEMBER_HEADER = {
+            0x1F, (byte) 0x8B, // Magic
+            Deflater.DEFLATED, // Compression method
+            0, // Flags
+            0, 0, 0, 0, // Modification time
+            0, // Extra flags
+            (byte) 0xFF // Unknown operating system
+    };
+    private static final int MEMBER_TRAILER_SIZE = 8;
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final OutputStream outputStream;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final int blockSize;
+    private final int level;
+    private final int maxPendingBlocks;
+
+    /**
+     * Block being filled by the writing thread.
+     */
+    private Block block;
+    private int blockLength;
+
+    /**
+     * Blocks being compressed, in output order.
+     */
+    private final Queue<Future<Block>> pendingBlocks = new ArrayDeque<>();
+
+    /**
+     * Blocks already written, reused for the following blocks. Only accessed by the writing thread.
+     */
+    private final Queue<Block> freeBlocks = new ArrayDeque<>();
+
+    /**
+     * Deflaters not in use by a worker thread.
+     */
+    private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+
+    private boolean memberWritten;
+
+    /**
+     * Read by the worker threads, which end their Deflater instead of pooling it once the stream is closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Create a stream with the default block size and compression level, compressing on as many threads as there are
+     * available processors.
+     *
+     * @param outputStream Output stream to write the gzip file to. It is closed when this stream is closed.
+     */
+    public IttParallelGzipOutputStream(OutputStream outputStream) {
+        this(outputStream, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a stream which compresses on its own threads, stopped when the stream is closed.
+     *
+     * @param outputStream Output stream to write the gzip file to. It is closed when this stream is closed.
+     * @param blockSize    Number of bytes compressed by each task. Smaller blocks compress worse.
+     * @param level        Compression level, from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}.
+     * @param threadCount  Number of compression threads.
+     */
+    public IttParallelGzipOutputStream(OutputStream outputStream, int blockSize, int level, int threadCount) {
+        this(outputStream, blockSize, level, createExecutor(threadCount), true, threadCount);
+    }
+
+    /**
+     * Create a stream which compresses on the given executor, which can be shared and is not shut down.
+     *
+     * @param outputStream Output stream to write the gzip file to. It is closed when this stream is closed.
+     * @param blockSize    Number of bytes compressed by each task. Smaller blocks compress worse.
+     * @param level        Compression level, from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}.
+     * @param executor     Executor running the compression tasks.
+     * @param parallelism  Number of blocks compressed at the same time by this stream. Memory use is about
+     *                     twice this number of blocks.
+     */
+    public IttParallelGzipOutputStream(OutputStream outputStream, int blockSize, int level,
+                                       ExecutorService executor, int parallelism) {
+        this(outputStream, blockSize, level, executor, false, parallelism);
+    }
+
+    private IttParallelGzipOutputStream(OutputStream outputStream, int blockSize, int level,
+                                        ExecutorService executor, boolean ownsExecutor, int parallelism) {
+        if (outputStream == null || executor == null) {
+            throw new NullPointerException("outputStream and executor can't be null");
+        }
+        if (blockSize < 1 || parallelism < 1) {
+            throw new IllegalArgumentException("blockSize and parallelism must be positive");
+        }
+        if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level " + level);
+        }
+        this.outputStream = outputStream;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.blockSize = blockSize;
+        this.level = level;
+        // Enough blocks in flight to keep every thread busy while the previous ones are written
+        this.maxPendingBlocks = parallelism * 2;
+        this.block = new Block(blockSize);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (blockLength == blockSize) {
+            submitBlock();
+        }
+        block.input[blockLength++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if ((off | len) < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0) {
+            if (blockLength == blockSize) {
+                submitBlock();
+            }
+            int count = Math.min(len, blockSize - blockLength);
+            System.arraycopy(b, off, block.input, blockLength, count);
+            blockLength += count;
+            off += count;
+            len -= count;
+        }
+    }
+
+    /**
+     * Compress the bytes written so far as a member of their own, wait until every member is written,
+     * and flush the underlying stream. Frequent flushes make the output larger.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        writePendingBlocks();
+        outputStream.flush();
+    }
+
+    /**
+     * Compress and write the remaining bytes, then close the underlying stream and the compression threads.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            writePendingBlocks();
+            if (!memberWritten) {
+                // An empty gzip file still has one member
+                submitBlock();
+                writePendingBlocks();
+            }
+        } finally {
+            closed = true;
+            for (Future<Block> pending : pendingBlocks) {
+                pending.cancel(false);
+            }
+            if (ownsExecutor) {
+                executor.shutdown();
+            }
+            try {
+                outputStream.close();
+            } finally {
+                // Deflaters in use are ended by their worker thread
+                endDeflaters();
+            }
+        }
+    }
+
+    /**
+     * Submit the current block, if not empty, and wait until every pending block is written.
+     */
+    private void writePendingBlocks() throws IOException {
+        if (blockLength > 0) {
+            submitBlock();
+        }
+        while (!pendingBlocks.isEmpty()) {
+            writeOldestBlock();
+        }
+    }
+
+    /**
+     * Hand the current block to a worker thread and start a new one, waiting for the oldest block to be written
+     * if too many are pending.
+     */
+    private void submitBlock() throws IOException {
+        if (pendingBlocks.size() >= maxPendingBlocks) {
+            writeOldestBlock();
+        }
+
+        Block input = block;
+        int length = blockLength;
+        try {
+            pendingBlocks.add(executor.submit(() -> compress(input, length)));
+        } catch (RejectedExecutionException e) {
+            throw new IOException("Compression executor rejected the block", e);
+        }
+
+        Block free = freeBlocks.poll();
+        block = free != null ? free : new Block(blockSize);
+        blockLength = 0;
+    }
+
+    private void writeOldestBlock() throws IOException {
+        Block written;
+        try {
+            written = pendingBlocks.remove().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a compressed block");
+        } catch (ExecutionException e) {
+            throw new IOException("Block compression failed", e.getCause());
+        }
+        outputStream.write(written.output, 0, written.outputLength);
+        freeBlocks.add(written);
+        memberWritten = true;
+    }
+
+    /**
+     * Compress a block into a complete gzip member, in the output buffer of the block. Runs on a worker thread.
+     */
+    private Block compress(Block block, int length) {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+        }
+        try {
+            deflater.setInput(block.input, 0, length);
+            deflater.finish();
+
+            byte[] output = block.output;
+            int position = MEMBER_HEADER.length;
+            while (!deflater.finished()) {
+                if (position == output.length - MEMBER_TRAILER_SIZE) {
+                    // Kept with the block, so the following members compressed from it fit
+                    byte[] larger = new byte[output.length * 2];
+                    System.arraycopy(output, 0, larger, 0, position);
+                    output = larger;
+                    block.output = larger;
+                }
+                position += deflater.deflate(output, position, output.length - MEMBER_TRAILER_SIZE - position);
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(block.input, 0, length);
+            position = writeIntLittleEndian(output, position, (int) crc.getValue());
+            position = writeIntLittleEndian(output, position, length);
+            block.outputLength = position;
+            return block;
+        } finally {
+            if (closed) {
+                deflater.end();
+            } else {
+                deflater.reset();
+                deflaters.add(deflater);
+                // The stream may have been closed after the check, while its idle Deflaters were ended
+                if (closed) {
+                    endDeflaters();
+                }
+            }
+        }
+    }
+
+    /**
+     * End the idle Deflaters. Each one is polled by a single thread, so it is ended once.
+     */
+    private void endDeflaters() {
+        Deflater deflater;
+        while ((deflater = deflaters.poll()) != null) {
+            deflater.end();
+        }
+    }
+
+    private static int writeIntLittleEndian(byte[] bytes, int position, int value) {
+        bytes[position] = (byte) value;
+        bytes[position + 1] = (byte) (value >>> 8);
+        bytes[position + 2] = (byte) (value >>> 16);
+        bytes[position + 3] = (byte) (value >>> 24);
+        return position + 4;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    private static ExecutorService createExecutor(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threadCount must be positive");
+        }
+        return Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(runnable, "intuitree-gzip-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * A block of written bytes, and the buffer of the gzip member it is compressed into.
+     * The output starts with the member header, which is written once.
+     */
+    private static class Block {
+
+        private final byte[] input;
+        private byte[] output;
+        private int outputLength;
+
+        Block(int blockSize) {
+            input = new byte[blockSize];
+            // Incompressible data grows by 5 bytes every 16 KB stored block
+            output = new byte[MEMBER_HEADER.length + blockSize + (blockSize >> 12) + 64 + MEMBER_TRAILER_SIZE];
+            System.arraycopy(MEMBER_HEADER, 0, output, 0, MEMBER_HEADER.length);
+        }
+
+    }
+
+}
@@ -0,0 +1,168 @@
+package ca.etsmtl.intuitree.io;
+
+import ca.etsmtl.intuitree.format.IttFormat;
+import ca.etsmtl.intuitree.format.IttWriter;
+import ca.etsmtl.intuitree.pojo.IttExecution;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttSpanTotal;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Writer which splits an execution into segment files, rolling to a new segment once the current one
+ * reaches a size or an age limit. Every segment is a complete execution file of the given format: it repeats
+ * the execution, statuses and tags, and its logs are closed when the writer rolls.
+ * Rolling is driven by the logs: the limits are checked after each log is written, so a segment stays open past its
+ * age limit until the next log.
+ * <p>
+ * Log IDs and parent IDs are kept as-is across segments. So that each segment can be viewed on its own, a new
+ * segment starts with a copy of the logs which may still get children: the chain from the root level to the last
+ * log of each of the most recent trees (see {@link IttOpenBranches}). A log written under an older tree, or the
+ * child of a span whose log is written in a later segment, since the log of a span comes after its children,
+ * still references a parent which is not in its segment. {@link IttSegmentStitcher} joins the segments back into one
+ * execution, leaving out the copies but those of the oldest segment it is given, so that the logs which follow
+ * segments deleted by the retention limit keep their ancestors.
+ * Use it with {@link ca.etsmtl.intuitree.IttLogger#IttLogger(IttWriter, boolean, boolean)}.
+ */
+public class IttRollingFileWriter implements IttWriter {
+
+    private final String filename;
+    private final IttFormat format;
+    private final long maxBytes;
+    private final long maxMillis;
+    private final int maxSegments;
+
+    private IttExecution execution;
+    private Collection<IttStatus> statuses;
+    private Collection<IttTag> tags;
+
+    private IttWriter segmentWriter;
+    private IttCountingOutputStream segmentOutput;
+    private long segmentStartMillis;
+    private int segmentIndex = -1;
+    private final IttOpenBranches openBranches = new IttOpenBranches();
+
+    /**
+     * Segment files which were not deleted by the retention limit, from oldest to newest.
+     */
+    private final Deque<File> segments = new ArrayDeque<>();
+
+    /**
+     * @param filename    Base filename. Segments are named after it with their index before the extension,
+     *                    for example "execution.json" gives "execution.00000.json", "execution.00001.json", ...
+     * @param format      Format of every segment.
+     * @param maxBytes    Size after which a segment is rolled, or 0 for no size limit. A segment can exceed it by
+     *                    the output buffer of the format's writer, since bytes are counted as they reach the file.
+     * @param maxMillis   Age after which a segment is rolled by the next log, or 0 for no age limit.
+     * @param maxSegments Number of segments kept on disk; older segments are deleted. 0 to keep every segment.
+     */
+    public IttRollingFileWriter(String filename, IttFormat format, long maxBytes, long maxMillis, int maxSegments) {
+        if (filename == null || format == null) {
+            throw new NullPointerException("filename and format can't be null");
+        }
+        if (maxBytes < 0 || maxMillis < 0 || maxSegments < 0) {
+            throw new IllegalArgumentException("maxBytes, maxMillis and maxSegments can't be negative");
+        }
+        this.filename = filename;
+        this.format = format;
+        this.maxBytes = maxBytes;
+        this.maxMillis = maxMillis;
+        this.maxSegments = maxSegments;
+    }
+
+    @Override
+    public int getVersion() {
+        return format.getVersion();
+    }
+
+    @Override
+    public void writeHeader(IttExecution execution, Collection<IttStatus> statuses, Collection<IttTag> tags) throws IOException {
+        // Keep the live collections, so statuses and tags added later are in the headers of the next segments
+        this.execution = execution;
+        this.statuses = statuses;
+        this.tags = tags;
+        openSegment();
+    }
+
+    @Override
+    public void writeLog(IttLogRecord log) throws IOException {
+        segmentWriter.writeLog(log);
+        openBranches.add(log);
+
+        if ((maxBytes > 0 && segmentOutput.getCount() >= maxBytes)
+                || (maxMillis > 0 && System.currentTimeMillis() - segmentStartMillis >= maxMillis)) {
+            segmentWriter.writeFooter();
+            segmentWriter.close();
+            openSegment();
+        }
+    }
+
+    /**
+     * The totals of the whole execution are written with the last segment.
+     */
+    @Override
+    public void writeSpanTotals(List<IttSpanTotal> statusTotals, List<IttSpanTotal> tagTotals) throws IOException {
+        segmentWriter.writeSpanTotals(statusTotals, tagTotals);
+    }
+
+    @Override
+    public void writeFooter() throws IOException {
+        segmentWriter.writeFooter();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        segmentWriter.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        segmentWriter.close();
+    }
+
+    /**
+     * @return The segment files currently on disk, from oldest to newest.
+     */
+    public List<File> getSegmentFiles() {
+        return new ArrayList<>(segments);
+    }
+
+    private void openSegment() throws IOException {
+        File file = numberedFile(filename, ++segmentIndex);
+        segmentOutput = new IttCountingOutputStream(new FileOutputStream(file));
+        segmentWriter = format.createWriter(segmentOutput);
+        segmentStartMillis = System.currentTimeMillis();
+        segments.addLast(file);
+        segmentWriter.writeHeader(execution, statuses, tags);
+        for (IttLogRecord log : openBranches.getLogs()) {
+            segmentWriter.writeLog(log);
+        }
+
+        while (maxSegments > 0 && segments.size() > maxSegments) {
+            File oldest = segments.removeFirst();
+            if (!oldest.delete() && oldest.exists()) {
+                throw new IOException("Can't delete old segment " + oldest);
+            }
+        }
+    }
+
+    /**
+     * @return The file named after the given filename with an index before its extension.
+     */
+    static File numberedFile(String filename, int index) {
+        String suffix = String.format(".%05d", index);
+        int extension = filename.lastIndexOf('.');
+        if (extension > filename.lastIndexOf(File.separatorChar)) {
+            return new File(filename.substring(0, extension) + suffix + filename.substring(extension));
+        }
+        return new File(filename + suffix);
+    }
+
+}
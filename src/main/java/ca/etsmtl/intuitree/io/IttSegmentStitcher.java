@@ -0,0 +1,199 @@
+package ca.etsmtl.intuitree.io;
+
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import com.fasterxml.jackson.core.*;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Joins version 1 JSON segments written by {@link IttRollingFileWriter} back into a single execution file.
+ * The header is taken from the last segment, since its statuses and tags include the ones of every previous
+ * segment, and the logs of every segment are copied in order, followed by the span totals of the last segment,
+ * which are the totals of the whole execution. The segments are streamed, one at a time, in a single pass: the
+ * copies of the open branches at the top of each segment are left out by following the same branches as the writer,
+ * so the memory used doesn't grow with the number of logs. The copies at the top of the first segment are kept, so
+ * that its logs have their ancestors when the segments before it were deleted by the retention limit.
+ * A last segment which was truncated because the execution never ended is copied up to its last complete log;
+ * any other segment must be complete.
+ * Can be run from the command line with the output filename followed by the segment filenames.
+ */
+public class IttSegmentStitcher {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    /**
+     * Join segments into a single execution. The output stream is not closed.
+     *
+     * @param segmentFiles Segment files, from oldest to newest.
+     * @param outputStream Output for the joined execution.
+     * @throws IOException Thrown if a segment can't be read or is not a version 1 execution, if a segment other
+     *                     than the last one is truncated, or if the output can't be written.
+     */
+    public static void stitch(List<File> segmentFiles, OutputStream outputStream) throws IOException {
+        if (segmentFiles.isEmpty()) {
+            throw new IllegalArgumentException("At least one segment is needed");
+        }
+
+        JsonGenerator generator = FACTORY.createGenerator(outputStream, JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        try {
+            generator.writeStartObject();
+            try (JsonParser parser = FACTORY.createParser(segmentFiles.get(segmentFiles.size() - 1))) {
+                copyHeader(parser, generator);
+            }
+
+            generator.writeArrayFieldStart("logs");
+            IttOpenBranches openBranches = new IttOpenBranches();
+            for (int i = 0; i < segmentFiles.size(); i++) {
+                try (JsonParser parser = FACTORY.createParser(segmentFiles.get(i))) {
+                    boolean last = i == segmentFiles.size() - 1;
+                    boolean complete = copyLogs(parser, generator, openBranches, last);
+                    if (last) {
+                        generator.writeEndArray();
+                        if (complete) {
+                            copyTrailer(parser, generator);
+                        }
+                    }
+                }
+            }
+            generator.writeEndObject();
+        } finally {
+            generator.close();
+        }
+    }
+
+    /**
+     * Join segment files into a single execution file.
+     *
+     * @param args Output filename followed by the segment filenames, from oldest to newest.
+     * @throws IOException Thrown if a file can't be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: IttSegmentStitcher <output file> <segment file>...");
+            System.exit(1);
+        }
+        List<File> segmentFiles = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            segmentFiles.add(new File(args[i]));
+        }
+        try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(args[0]))) {
+            stitch(segmentFiles, outputStream);
+        }
+    }
+
+    /**
+     * Copy every top-level field but the logs.
+     */
+    private static void copyHeader(JsonParser parser, JsonGenerator generator) throws IOException {
+        expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            if ("logs".equals(field)) {
+                return;
+            }
+            generator.copyCurrentStructure(parser);
+        }
+    }
+
+    /**
+     * Copy every complete log of a segment, but the copies of logs of the open branches at its top.
+     *
+     * @return false if the segment was truncated, true if its logs ended.
+     */
+    private static boolean copyLogs(JsonParser parser, JsonGenerator generator, IttOpenBranches openBranches,
+                                    boolean last) throws IOException {
+        if (!findLogs(parser)) {
+            return false;
+        }
+        ByteArrayOutputStream log = new ByteArrayOutputStream(256);
+        IttLogRecord ids = new IttLogRecord();
+        boolean top = true;
+        try {
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                // Read the whole log before writing it, so a truncated log is not copied partially
+                log.reset();
+                long parentId = 0;
+                long id = 0;
+                try (JsonGenerator buffer = FACTORY.createGenerator(log, JsonEncoding.UTF8)) {
+                    buffer.writeStartObject();
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String field = parser.getCurrentName();
+                        parser.nextToken();
+                        buffer.writeFieldName(field);
+                        if ("parentId".equals(field)) {
+                            parentId = parser.getLongValue();
+                        } else if ("id".equals(field)) {
+                            id = parser.getLongValue();
+                        }
+                        buffer.copyCurrentStructure(parser);
+                    }
+                    buffer.writeEndObject();
+                }
+                // The logs already on a branch were copied from a previous segment
+                top = top && openBranches.contains(id);
+                if (!top) {
+                    ids.setIds(parentId, id);
+                    openBranches.add(ids);
+                    generator.writeRawValue(log.toString("UTF-8"));
+                }
+            }
+        } catch (JsonParseException e) {
+            if (!last) {
+                throw e;
+            }
+            // Truncated segment of an execution which never ended
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Move the parser to the start of the logs array.
+     *
+     * @return false if the segment has no logs.
+     */
+    private static boolean findLogs(JsonParser parser) throws IOException {
+        expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            JsonToken token = parser.nextToken();
+            if ("logs".equals(parser.getCurrentName())) {
+                expect(parser, token, JsonToken.START_ARRAY);
+                return true;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    /**
+     * Copy the top-level fields which follow the logs, such as the span totals. A field which was truncated is
+     * not copied.
+     */
+    private static void copyTrailer(JsonParser parser, JsonGenerator generator) throws IOException {
+        ByteArrayOutputStream value = new ByteArrayOutputStream(256);
+        try {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                value.reset();
+                try (JsonGenerator buffer = FACTORY.createGenerator(value, JsonEncoding.UTF8)) {
+                    buffer.copyCurrentStructure(parser);
+                }
+                generator.writeFieldName(field);
+                generator.writeRawValue(value.toString("UTF-8"));
+            }
+        } catch (JsonParseException e) {
+            // Truncated segment of an execution which never ended
+        }
+    }
+
+    private static void expect(JsonParser parser, JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new JsonParseException(parser, "Expected " + expected + ", got " + actual);
+        }
+    }
+
+}
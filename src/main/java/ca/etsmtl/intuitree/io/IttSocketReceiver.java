@@ -0,0 +1,59 @@
+package ca.etsmtl.intuitree.io;
+
+import ca.etsmtl.intuitree.format.IttJsonLinesConverter;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Local receiver for an {@link IttSocketWriter}: accepts one connection and joins its frames back into a version 1
+ * execution file with {@link IttJsonLinesConverter}, writing each log as it arrives. If the connection ends before
+ * the execution, the logs received so far are still written as a valid execution.
+ * <p>
+ * The server channel can listen on TCP or, on Java 16 and later, on a Unix-domain socket opened with
+ * {@code ServerSocketChannel.open(StandardProtocolFamily.UNIX)}.
+ * Can be run from the command line with the TCP port and the output filename as arguments.
+ */
+public class IttSocketReceiver {
+
+    /**
+     * Accept one connection and write the execution it sends. The server channel is not closed.
+     *
+     * @param serverChannel Bound server channel to accept the connection from.
+     * @param outputStream  Output for the version 1 execution. It is not closed.
+     * @return true if the execution ended, false if the connection ended before.
+     * @throws IOException Thrown if the connection can't be accepted or read, or if the output can't be written.
+     */
+    public static boolean receive(ServerSocketChannel serverChannel, OutputStream outputStream) throws IOException {
+        serverChannel.configureBlocking(true);
+        try (SocketChannel channel = serverChannel.accept();
+             InputStream inputStream = new BufferedInputStream(Channels.newInputStream(channel))) {
+            return IttJsonLinesConverter.convertToV1(inputStream, outputStream);
+        }
+    }
+
+    /**
+     * Receive one execution on a local TCP port into a file.
+     *
+     * @param args TCP port and output filename.
+     * @throws IOException Thrown if the port can't be listened on or the file can't be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: IttSocketReceiver <port> <output file>");
+            System.exit(1);
+        }
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open();
+             OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(args[1]))) {
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(args[0])));
+            if (!receive(serverChannel, outputStream)) {
+                System.err.println("The connection ended before the execution");
+            }
+        }
+    }
+
+}
@@ -0,0 +1,361 @@
+package ca.etsmtl.intuitree.io;
+
+import ca.etsmtl.intuitree.format.IttJsonLinesWriter;
+import ca.etsmtl.intuitree.format.IttWriter;
+import ca.etsmtl.intuitree.pojo.IttExecution;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttSpanTotal;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+
+import java.io.*;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Writer which streams an execution live to a socket, as the newline-delimited frames of
+ * {@link IttJsonLinesWriter}, so a viewer can follow it before it ends. {@link IttSocketReceiver} receives the frames
+ * back into an execution file.
+ * <p>
+ * Frames are serialized by the thread which writes the logs and copied into a bounded outbound buffer, from which a
+ * sender thread writes them to the socket without blocking, waiting on a selector while the socket is full. When the
+ * buffer is full, the {@link IttBackpressurePolicy} decides whether the log waits, is dropped or is spilled to disk.
+ * The header and the end of the execution are never dropped. {@link #close()} waits until every frame was sent.
+ * If the connection fails, the following logs are dropped and the failure is thrown by {@link #close()}.
+ * <p>
+ * Any address a {@link SocketChannel} can connect to is accepted: an {@link java.net.InetSocketAddress} for TCP, or
+ * on Java 16 and later a {@code java.net.UnixDomainSocketAddress} for a Unix-domain socket.
+ * Use it with {@link ca.etsmtl.intuitree.IttLogger#IttLogger(IttWriter, boolean, boolean)}.
+ */
+public class IttSocketWriter implements IttWriter {
+
+    /**
+     * Default size of the outbound buffer.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    /**
+     * Upper bound on a single wait of the sender thread for the socket, as a safety net against a missed wake-up.
+     */
+    private static final long SELECT_MILLIS = 100;
+
+    private final SocketChannel channel;
+    private final Selector selector;
+    private final IttBackpressurePolicy policy;
+    private final File spillDirectory;
+    private final Thread sender;
+
+    /**
+     * Frame being serialized by the writing thread.
+     */
+    private final FrameOutputStream frame = new FrameOutputStream();
+    private final IttJsonLinesWriter framesWriter;
+
+    /**
+     * Frames waiting to be sent, in write mode. Guarded by this writer, like the fields below.
+     */
+    private final ByteBuffer outbound;
+
+    /**
+     * Spill file, opened on first use, and the range of its bytes which were not sent yet.
+     */
+    private FileChannel spill;
+    private File spillFile;
+    private long spillReadPosition;
+    private long spillWritePosition;
+
+    private long droppedLogCount;
+    private long spilledBytes;
+    private boolean closing;
+    private IOException failure;
+
+    /**
+     * Connect to a receiver with an outbound buffer of the default size.
+     *
+     * @param address Address of the receiver.
+     * @param policy  What to do with a log which doesn't fit in the outbound buffer.
+     * @throws IOException Thrown if the connection can't be established.
+     */
+    public IttSocketWriter(SocketAddress address, IttBackpressurePolicy policy) throws IOException {
+        this(address, DEFAULT_BUFFER_SIZE, policy, null);
+    }
+
+    /**
+     * Connect to a receiver.
+     *
+     * @param address        Address of the receiver.
+     * @param bufferSize     Size of the outbound buffer in bytes.
+     * @param policy         What to do with a log which doesn't fit in the outbound buffer.
+     * @param spillDirectory Directory of the spill file with {@link IttBackpressurePolicy#SPILL}, or null for the
+     *                       default temporary-file directory.
+     * @throws IOException Thrown if the connection can't be established.
+     */
+    public IttSocketWriter(SocketAddress address, int bufferSize, IttBackpressurePolicy policy, File spillDirectory)
+            throws IOException {
+        if (address == null || policy == null) {
+            throw new NullPointerException("address and policy can't be null");
+        }
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be positive");
+        }
+        this.policy = policy;
+        this.spillDirectory = spillDirectory;
+        this.outbound = ByteBuffer.allocateDirect(bufferSize);
+        this.framesWriter = new IttJsonLinesWriter(FACTORY.createGenerator(frame, JsonEncoding.UTF8));
+
+        channel = SocketChannel.open(address);
+        try {
+            channel.configureBlocking(false);
+            selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        sender = new Thread(this::send, "intuitree-socket-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    @Override
+    public int getVersion() {
+        return IttExecution.VERSION_1;
+    }
+
+    @Override
+    public void writeHeader(IttExecution execution, Collection<IttStatus> statuses, Collection<IttTag> tags) throws IOException {
+        framesWriter.writeHeader(execution, statuses, tags);
+        enqueueFrame(false);
+    }
+
+    @Override
+    public void writeLog(IttLogRecord log) throws IOException {
+        framesWriter.writeLog(log);
+        enqueueFrame(true);
+    }
+
+    @Override
+    public void writeSpanTotals(List<IttSpanTotal> statusTotals, List<IttSpanTotal> tagTotals) {
+        framesWriter.writeSpanTotals(statusTotals, tagTotals);
+    }
+
+    @Override
+    public void writeFooter() throws IOException {
+        framesWriter.writeFooter();
+        enqueueFrame(false);
+    }
+
+    /**
+     * Does nothing: every frame is handed to the sender thread as soon as it is written.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Wait until every frame was sent, then close the connection and delete the spill file.
+     *
+     * @throws IOException The failure of the connection, if it failed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closing = true;
+            notifyAll();
+        }
+        boolean interrupted = false;
+        while (sender.isAlive()) {
+            try {
+                sender.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            selector.close();
+            channel.close();
+        } finally {
+            if (spill != null) {
+                spill.close();
+                spillFile.delete();
+            }
+        }
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * @return The number of logs dropped because the outbound buffer was full, or because the connection failed.
+     */
+    public synchronized long getDroppedLogCount() {
+        return droppedLogCount;
+    }
+
+    /**
+     * @return The number of bytes written to the spill file because the outbound buffer was full.
+     */
+    public synchronized long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    /**
+     * Hand the serialized frame to the sender thread according to the policy.
+     *
+     * @param isLog false for the header and the end, which are never dropped.
+     */
+    private void enqueueFrame(boolean isLog) throws IOException {
+        framesWriter.flush();
+        try {
+            enqueue(frame.getBuffer(), frame.size(), isLog);
+        } finally {
+            frame.reset();
+        }
+    }
+
+    private synchronized void enqueue(byte[] bytes, int length, boolean isLog) throws IOException {
+        if (failure != null) {
+            if (isLog) {
+                droppedLogCount++;
+            }
+            return;
+        }
+        if (spillReadPosition == spillWritePosition && outbound.remaining() >= length) {
+            outbound.put(bytes, 0, length);
+            notifyAll();
+        } else if (policy == IttBackpressurePolicy.SPILL) {
+            // Once logs are spilled, the following ones are spilled after them to keep the order
+            spill(bytes, length);
+            notifyAll();
+        } else if (policy == IttBackpressurePolicy.DROP && isLog) {
+            droppedLogCount++;
+        } else {
+            // The frame may be larger than the buffer, so it is copied as the sender frees room
+            int offset = 0;
+            while (offset < length) {
+                while (!outbound.hasRemaining() && failure == null) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for the receiver");
+                    }
+                }
+                if (failure != null) {
+                    return;
+                }
+                int count = Math.min(outbound.remaining(), length - offset);
+                outbound.put(bytes, offset, count);
+                offset += count;
+                notifyAll();
+            }
+        }
+    }
+
+    private void spill(byte[] bytes, int length) throws IOException {
+        if (spill == null) {
+            spillFile = File.createTempFile("intuitree-spill", ".ndjson", spillDirectory);
+            spill = FileChannel.open(spillFile.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+        while (buffer.hasRemaining()) {
+            spillWritePosition += spill.write(buffer, spillWritePosition);
+        }
+        spilledBytes += length;
+    }
+
+    /**
+     * Move spilled bytes back into the outbound buffer, as far as it has room. Called by the sender thread.
+     */
+    private void unspill() throws IOException {
+        if (spillReadPosition == spillWritePosition || !outbound.hasRemaining()) {
+            return;
+        }
+        int limit = outbound.limit();
+        outbound.limit(outbound.position() + (int) Math.min(outbound.remaining(), spillWritePosition - spillReadPosition));
+        try {
+            while (outbound.hasRemaining()) {
+                spillReadPosition += spill.read(outbound, spillReadPosition);
+            }
+        } finally {
+            outbound.limit(limit);
+        }
+        if (spillReadPosition == spillWritePosition) {
+            // Everything was read back: reuse the file from its start
+            spill.truncate(0);
+            spillReadPosition = 0;
+            spillWritePosition = 0;
+        }
+    }
+
+    /**
+     * Loop of the sender thread: write the outbound buffer to the socket until the writer is closed and every frame
+     * was sent.
+     */
+    private void send() {
+        try {
+            while (true) {
+                boolean stalled;
+                synchronized (this) {
+                    while (outbound.position() == 0 && spillReadPosition == spillWritePosition && !closing) {
+                        wait();
+                    }
+                    if (outbound.position() == 0 && spillReadPosition == spillWritePosition) {
+                        return;
+                    }
+                    unspill();
+                    outbound.flip();
+                    int written = channel.write(outbound);
+                    outbound.compact();
+                    notifyAll();
+                    stalled = written == 0;
+                }
+                if (stalled) {
+                    // The receiver is slower than the execution: wait until the socket can take more
+                    selector.select(SELECT_MILLIS);
+                    selector.selectedKeys().clear();
+                }
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e;
+                outbound.clear();
+                notifyAll();
+            }
+        } catch (InterruptedException e) {
+            synchronized (this) {
+                failure = new InterruptedIOException("The sender thread was interrupted");
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Buffer of the frame being serialized, whose bytes are copied without another array copy.
+     */
+    private static class FrameOutputStream extends ByteArrayOutputStream {
+
+        byte[] getBuffer() {
+            return buf;
+        }
+
+    }
+
+}
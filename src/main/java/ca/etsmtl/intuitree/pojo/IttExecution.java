@@ -4,10 +4,15 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 
 public class IttExecution {
 
+    /**
+     * File format version read by the UI app, which is the default.
+     */
+    public static final int VERSION_1 = 1;
+
     /**
      * Represents the file format version which is used to ensure forward compatibility with the UI app.
      */
-    private static final int version = 1;
+    private final int version;
 
     /**
      * Active is true when the execution is being logged and must be set to false when the logging is done.
@@ -18,8 +23,13 @@ public class IttExecution {
     private String message;
 
     public IttExecution(String title, String message) {
+        this(title, message, VERSION_1);
+    }
+
+    public IttExecution(String title, String message, int version) {
         this.title = title;
         this.message = message;
+        this.version = version;
     }
 
     public int getVersion() {
@@ -4,28 +4,38 @@ import java.util.List;
 
 public class IttLog {
 
-    private int parentId;
-    private int id;
+    private long parentId;
+    private long id;
 
     private String title;
     private String message;
     private IttStatus status;
     private List<IttTagValue> tags;
 
-    public IttLog(int parentId, int id, String title, String message, IttStatus status, List<IttTagValue> tags) {
+    private long startNanos;
+    private long durationNanos;
+
+    public IttLog(long parentId, long id, String title, String message, IttStatus status, List<IttTagValue> tags) {
+        this(parentId, id, title, message, status, tags, 0, IttLogRecord.NO_DURATION);
+    }
+
+    public IttLog(long parentId, long id, String title, String message, IttStatus status, List<IttTagValue> tags,
+                  long startNanos, long durationNanos) {
         this.parentId = parentId;
         this.id = id;
         this.title = title;
         this.message = message;
         this.status = status;
         this.tags = tags;
+        this.startNanos = startNanos;
+        this.durationNanos = durationNanos;
     }
 
-    public int getParentId() {
+    public long getParentId() {
         return parentId;
     }
 
-    public int getId() {
+    public long getId() {
         return id;
     }
 
@@ -45,4 +55,18 @@ public class IttLog {
         return tags;
     }
 
+    /**
+     * @return The start of the log in nanoseconds since the start of the execution, if it is timed.
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * @return The duration of the log in nanoseconds, or {@link IttLogRecord#NO_DURATION} if it is not timed.
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
 }
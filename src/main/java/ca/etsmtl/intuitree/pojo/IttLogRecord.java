@@ -0,0 +1,199 @@
+package ca.etsmtl.intuitree.pojo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mutable counterpart of {@link IttLog}. Instances are preallocated and reused by the logging pipeline
+ * so that capturing a log does not require allocating a new IttLog.
+ * Tags are kept in parallel arrays which only grow, so a reused record doesn't allocate once warmed up.
+ */
+public class IttLogRecord {
+
+    private static final int INITIAL_TAG_CAPACITY = 4;
+
+    /**
+     * Duration of a log which is not timed.
+     */
+    public static final long NO_DURATION = -1;
+
+    private long parentId;
+    private long id;
+
+    private String title;
+    private String message;
+    private IttStatus status;
+
+    /**
+     * Start of a timed log, in nanoseconds since the start of the execution, and its duration in nanoseconds,
+     * or {@link #NO_DURATION} if the log is not timed.
+     */
+    private long startNanos;
+    private long durationNanos = NO_DURATION;
+
+    private IttTag[] tags = new IttTag[INITIAL_TAG_CAPACITY];
+    private String[] tagValues = new String[INITIAL_TAG_CAPACITY];
+    private int tagCount;
+
+    public void set(long parentId, long id, String title, String message, IttStatus status, IttTagValue[] tagValues) {
+        this.parentId = parentId;
+        this.id = id;
+        this.title = title;
+        this.message = message;
+        this.status = status;
+        this.startNanos = 0;
+        this.durationNanos = NO_DURATION;
+        clearTags();
+        if (tagValues != null) {
+            for (IttTagValue tagValue : tagValues) {
+                addTag(tagValue.getTag(), tagValue.getValue());
+            }
+        }
+    }
+
+    /**
+     * Copy every field of another record into this one.
+     *
+     * @param other The record to copy.
+     */
+    public void copyFrom(IttLogRecord other) {
+        this.parentId = other.parentId;
+        this.id = other.id;
+        this.title = other.title;
+        this.message = other.message;
+        this.status = other.status;
+        this.startNanos = other.startNanos;
+        this.durationNanos = other.durationNanos;
+        clearTags();
+        for (int i = 0; i < other.tagCount; i++) {
+            addTag(other.tags[i], other.tagValues[i]);
+        }
+    }
+
+    /**
+     * Release the references held by this record so that a reused slot doesn't retain garbage.
+     */
+    public void clear() {
+        set(0, 0, null, null, null, null);
+    }
+
+    public void setIds(long parentId, long id) {
+        this.parentId = parentId;
+        this.id = id;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public void setStatus(IttStatus status) {
+        this.status = status;
+    }
+
+    /**
+     * Make this record a timed log.
+     *
+     * @param startNanos    Start of the log, in nanoseconds since the start of the execution.
+     * @param durationNanos Duration of the log in nanoseconds, or {@link #NO_DURATION} if the log is not timed.
+     */
+    public void setTiming(long startNanos, long durationNanos) {
+        this.startNanos = startNanos;
+        this.durationNanos = durationNanos;
+    }
+
+    /**
+     * Add a tag value to this record.
+     *
+     * @param tag   The tag.
+     * @param value The value of the tag.
+     */
+    public void addTag(IttTag tag, String value) {
+        if (tagCount == tags.length) {
+            IttTag[] newTags = new IttTag[tagCount * 2];
+            String[] newTagValues = new String[tagCount * 2];
+            System.arraycopy(tags, 0, newTags, 0, tagCount);
+            System.arraycopy(tagValues, 0, newTagValues, 0, tagCount);
+            tags = newTags;
+            tagValues = newTagValues;
+        }
+        tags[tagCount] = tag;
+        tagValues[tagCount] = value;
+        tagCount++;
+    }
+
+    /**
+     * Remove all the tag values from this record.
+     */
+    public void clearTags() {
+        for (int i = 0; i < tagCount; i++) {
+            tags[i] = null;
+            tagValues[i] = null;
+        }
+        tagCount = 0;
+    }
+
+    /**
+     * Create an immutable IttLog from the current state of this record.
+     *
+     * @return A new IttLog instance.
+     */
+    public IttLog toLog() {
+        List<IttTagValue> tagList = new ArrayList<>(tagCount);
+        for (int i = 0; i < tagCount; i++) {
+            tagList.add(new IttTagValue(tags[i], tagValues[i]));
+        }
+        return new IttLog(parentId, id, title, message, status, tagList, startNanos, durationNanos);
+    }
+
+    public long getParentId() {
+        return parentId;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public IttStatus getStatus() {
+        return status;
+    }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return true if the log has a start and a duration.
+     */
+    public boolean isTimed() {
+        return durationNanos != NO_DURATION;
+    }
+
+    public int getTagCount() {
+        return tagCount;
+    }
+
+    public IttTag getTag(int index) {
+        return tags[index];
+    }
+
+    public String getTagValue(int index) {
+        return tagValues[index];
+    }
+
+}
@@ -0,0 +1,49 @@
+package ca.etsmtl.intuitree.pojo;
+
+/**
+ * Total time of the spans having a status, or a tag with a value, over a whole execution.
+ * Durations are inclusive: the time of a span includes the time of the spans nested in it.
+ */
+public class IttSpanTotal {
+
+    /**
+     * Value of the total of the spans whose tag value was not counted on its own, because the tag had too many
+     * distinct values.
+     */
+    public static final String OTHER_VALUE = "(other)";
+
+    private final String name;
+    private final String value;
+    private final long count;
+    private final long totalNanos;
+
+    /**
+     * @param name       Name of the status or the tag.
+     * @param value      Value of the tag, or null for a status.
+     * @param count      Number of spans.
+     * @param totalNanos Sum of the durations of the spans.
+     */
+    public IttSpanTotal(String name, String value, long count, long totalNanos) {
+        this.name = name;
+        this.value = value;
+        this.count = count;
+        this.totalNanos = totalNanos;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+}
@@ -1,5 +1,7 @@
 package ca.etsmtl.intuitree.pojo;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 public class IttTagValue {
 
     private IttTag tag;
@@ -10,6 +12,11 @@ public class IttTagValue {
         this.value = value;
     }
 
+    @JsonIgnore
+    public IttTag getTag() {
+        return tag;
+    }
+
     public String getTagName() {
         return tag.getName();
     }
@@ -0,0 +1,31 @@
+package ca.etsmtl.intuitree.pojo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A log read from an execution, with its children in the order they were read.
+ */
+public class IttTreeNode {
+
+    private final IttLog log;
+    private final List<IttTreeNode> children = new ArrayList<>();
+
+    public IttTreeNode(IttLog log) {
+        this.log = log;
+    }
+
+    public IttLog getLog() {
+        return log;
+    }
+
+    public List<IttTreeNode> getChildren() {
+        return Collections.unmodifiableList(children);
+    }
+
+    public void addChild(IttTreeNode child) {
+        children.add(child);
+    }
+
+}
@@ -0,0 +1,118 @@
+package ca.etsmtl.intuitree.query;
+
+import ca.etsmtl.intuitree.IttLogFilter;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Predicate;
+
+/**
+ * Predicates on the logs of executions, run by {@link IttQueryEngine}. A log matches when it matches every
+ * predicate added to the query; an empty query matches every log.
+ * <p>
+ * Example: {@code new IttQuery().status("error").tag("region", "eu").under(42)}
+ */
+public class IttQuery {
+
+    private IttLogFilter filter;
+
+    /**
+     * IDs of the logs whose descendants match, or null to match logs anywhere in the tree.
+     */
+    private Set<Long> ancestorIds;
+
+    /**
+     * Match the logs having a status with one of the given names.
+     *
+     * @param statusNames Status names.
+     * @return This query.
+     */
+    public IttQuery status(String... statusNames) {
+        return where(IttLogFilter.statusNames(statusNames));
+    }
+
+    /**
+     * Match the logs having a tag with the given name and value.
+     *
+     * @param tagName Tag name.
+     * @param value   Tag value.
+     * @return This query.
+     */
+    public IttQuery tag(String tagName, String value) {
+        return tag(tagName, value::equals);
+    }
+
+    /**
+     * Match the logs having a tag with the given name and a value matching the predicate.
+     *
+     * @param tagName        Tag name.
+     * @param valuePredicate Predicate on the value of the tag.
+     * @return This query.
+     */
+    public IttQuery tag(String tagName, Predicate<String> valuePredicate) {
+        return where(IttLogFilter.tag(tagName, valuePredicate));
+    }
+
+    /**
+     * Match the logs accepted by a filter.
+     *
+     * @param filter Filter, which must be thread-safe since logs are matched on several threads.
+     * @return This query.
+     */
+    public IttQuery where(IttLogFilter filter) {
+        this.filter = this.filter == null ? filter : this.filter.and(filter);
+        return this;
+    }
+
+    /**
+     * Match the descendants of the given logs, excluding the logs themselves. Calling it again adds more logs.
+     *
+     * @param ids IDs of the logs, which are the same in every file of a query.
+     * @return This query.
+     */
+    public IttQuery under(long... ids) {
+        if (ancestorIds == null) {
+            ancestorIds = new HashSet<>();
+        }
+        for (long id : ids) {
+            ancestorIds.add(id);
+        }
+        return this;
+    }
+
+    /**
+     * @param log      Log to match.
+     * @param parentOf Gives the parent ID of any log of the execution, 0 for the root level.
+     * @return true if the log matches the query.
+     */
+    boolean matches(IttLogRecord log, LongUnaryOperator parentOf) {
+        return matchesFields(log) && isUnder(log.getParentId(), parentOf);
+    }
+
+    /**
+     * @return true if the log matches the predicates on its own fields, ignoring {@link #under(long...)}.
+     */
+    boolean matchesFields(IttLogRecord log) {
+        return filter == null || filter.accept(log);
+    }
+
+    /**
+     * @param parentId ID of the parent of a log.
+     * @param parentOf Gives the parent ID of any log by ID.
+     * @return true if a log with the given parent is under one of the logs given to {@link #under(long...)}.
+     */
+    boolean isUnder(long parentId, LongUnaryOperator parentOf) {
+        if (ancestorIds == null) {
+            return true;
+        }
+        for (long id = parentId; id != 0; id = parentOf.applyAsLong(id)) {
+            if (ancestorIds.contains(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
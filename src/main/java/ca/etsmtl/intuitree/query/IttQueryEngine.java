@@ -0,0 +1,317 @@
+package ca.etsmtl.intuitree.query;
+
+import ca.etsmtl.intuitree.format.IttIndexedJsonReader;
+import ca.etsmtl.intuitree.format.IttJsonReader;
+import ca.etsmtl.intuitree.pojo.IttLog;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Runs queries over version 1 execution files on a fork-join pool, streaming the matching logs with their ancestors.
+ * Every file is queried in parallel. A file with an index named after it (see
+ * {@link IttIndexedJsonReader#defaultIndexFile(File)}) is also split into segments which are read in parallel, and
+ * the ancestors of its matches are read directly. A file without an index is read twice: once to match its logs
+ * while remembering the parent of every log, in a primitive array, and once more to read the ancestors of the
+ * matches, if any.
+ * <p>
+ * The segments of an execution written by {@link ca.etsmtl.intuitree.io.IttRollingFileWriter} are separate files,
+ * so they are queried in parallel as well. Each segment starts with a copy of the open branches of the previous one,
+ * so the chain of a log is usually found within its segment, and a match among these copies is found in each segment.
+ */
+public class IttQueryEngine {
+
+    /**
+     * Default number of logs per segment of an indexed file.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+
+    private final ForkJoinPool pool;
+    private final int segmentSize;
+
+    /**
+     * Create an engine running on the common pool, with the default segment size.
+     */
+    public IttQueryEngine() {
+        this(ForkJoinPool.commonPool(), DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param pool        Pool running the queries.
+     * @param segmentSize Number of logs per segment of an indexed file.
+     */
+    public IttQueryEngine(ForkJoinPool pool, int segmentSize) {
+        if (pool == null) {
+            throw new NullPointerException("pool can't be null");
+        }
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException("segmentSize must be positive");
+        }
+        this.pool = pool;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Run a query and collect its matches.
+     *
+     * @param query Query to run.
+     * @param files Version 1 execution files.
+     * @return The matches, sorted by file in the given order, then by log ID.
+     * @throws IOException Thrown if a file can't be read.
+     */
+    public List<IttQueryMatch> query(IttQuery query, List<File> files) throws IOException {
+        List<IttQueryMatch> matches = new ArrayList<>();
+        query(query, files, matches::add);
+
+        Map<File, Integer> fileOrder = new HashMap<>();
+        for (int i = 0; i < files.size(); i++) {
+            fileOrder.putIfAbsent(files.get(i), i);
+        }
+        matches.sort(Comparator.<IttQueryMatch>comparingInt(match -> fileOrder.get(match.getFile()))
+                .thenComparingLong(match -> match.getLog().getId()));
+        return matches;
+    }
+
+    /**
+     * Run a query, giving every match to the consumer as soon as it is found. Matches are found in no particular
+     * order, on the threads of the pool, and the consumer is called by one thread at a time.
+     *
+     * @param query    Query to run.
+     * @param files    Version 1 execution files.
+     * @param consumer Consumer of the matches.
+     * @throws IOException Thrown if a file can't be read.
+     */
+    public void query(IttQuery query, List<File> files, Consumer<IttQueryMatch> consumer) throws IOException {
+        Object lock = new Object();
+        Consumer<IttQueryMatch> serializedConsumer = match -> {
+            synchronized (lock) {
+                consumer.accept(match);
+            }
+        };
+
+        List<FileTask> tasks = new ArrayList<>();
+        for (File file : files) {
+            tasks.add(new FileTask(query, file, serializedConsumer));
+        }
+        try {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // The pool may rethrow a copy of the exception, whose cause is the original one
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Queries a single file, split into segments if it has an index.
+     */
+    @SuppressWarnings("serial")
+    private class FileTask extends RecursiveAction {
+
+        private final IttQuery query;
+        private final File file;
+        private final Consumer<IttQueryMatch> consumer;
+
+        /**
+         * Parent ID of every log read so far, by ID, when the file has no index.
+         */
+        private final ParentIds parentIds = new ParentIds();
+
+        FileTask(IttQuery query, File file, Consumer<IttQueryMatch> consumer) {
+            this.query = query;
+            this.file = file;
+            this.consumer = consumer;
+        }
+
+        @Override
+        protected void compute() {
+            File indexFile = IttIndexedJsonReader.defaultIndexFile(file);
+            try {
+                if (indexFile.isFile()) {
+                    queryIndexed(indexFile);
+                } else {
+                    queryUnindexed();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void queryIndexed(File indexFile) throws IOException {
+            try (IttIndexedJsonReader reader = new IttIndexedJsonReader(file, indexFile)) {
+                // Logs are not exactly in the order of their IDs in the file, so segments start at the first log of
+                // the file and at every segmentSize-th log by ID, sorted by offset
+                if (reader.getLogCount() == 0) {
+                    return;
+                }
+                long firstId = reader.getId(0);
+                for (int i = 1; i < reader.getLogCount(); i++) {
+                    if (reader.getOffset(reader.getId(i)) < reader.getOffset(firstId)) {
+                        firstId = reader.getId(i);
+                    }
+                }
+                List<Long> startIds = new ArrayList<>();
+                startIds.add(firstId);
+                for (int i = 0; i < reader.getLogCount(); i += segmentSize) {
+                    if (reader.getId(i) != firstId) {
+                        startIds.add(reader.getId(i));
+                    }
+                }
+                startIds.sort(Comparator.comparingLong(reader::getOffset));
+
+                List<SegmentTask> segments = new ArrayList<>();
+                for (int i = 0; i < startIds.size(); i++) {
+                    long endOffset = i + 1 < startIds.size() ? reader.getOffset(startIds.get(i + 1)) : Long.MAX_VALUE;
+                    segments.add(new SegmentTask(reader, startIds.get(i), endOffset));
+                }
+                invokeAll(segments);
+            }
+        }
+
+        private void queryUnindexed() throws IOException {
+            List<IttLog> matches = new ArrayList<>();
+            Set<Long> ancestorIds = new HashSet<>();
+            IttLogRecord record = new IttLogRecord();
+            try (IttJsonReader reader = new IttJsonReader(new BufferedInputStream(new FileInputStream(file)))) {
+                reader.readHeader();
+                while (reader.readLog(record)) {
+                    parentIds.put(record.getId(), record.getParentId());
+                    if (query.matchesFields(record)) {
+                        matches.add(record.toLog());
+                    }
+                }
+            }
+            // Spans are written after their children, so ancestors are only known once every log was read
+            matches.removeIf(match -> !query.isUnder(match.getParentId(), parentIds::get));
+            for (IttLog match : matches) {
+                // Ancestors already needed by another match have their own ancestors marked
+                long ancestorId = match.getParentId();
+                while (ancestorId != 0 && ancestorIds.add(ancestorId)) {
+                    ancestorId = parentIds.get(ancestorId);
+                }
+            }
+            if (matches.isEmpty()) {
+                return;
+            }
+
+            Map<Long, IttLog> ancestors = new HashMap<>();
+            if (!ancestorIds.isEmpty()) {
+                try (IttJsonReader reader = new IttJsonReader(new BufferedInputStream(new FileInputStream(file)))) {
+                    reader.readHeader();
+                    while (reader.readLog(record)) {
+                        if (ancestorIds.contains(record.getId())) {
+                            ancestors.put(record.getId(), record.toLog());
+                        }
+                    }
+                }
+            }
+            for (IttLog match : matches) {
+                LinkedList<IttLog> chain = new LinkedList<>();
+                for (long id = match.getParentId(); id != 0; id = parentIds.get(id)) {
+                    IttLog ancestor = ancestors.get(id);
+                    if (ancestor != null) {
+                        chain.addFirst(ancestor);
+                    }
+                }
+                consumer.accept(new IttQueryMatch(file, match, chain));
+            }
+        }
+
+        /**
+         * Queries the logs of an indexed file from a log to an offset.
+         */
+        @SuppressWarnings("serial")
+        private class SegmentTask extends RecursiveAction {
+
+            private final IttIndexedJsonReader reader;
+            private final long startId;
+            private final long endOffset;
+
+            SegmentTask(IttIndexedJsonReader reader, long startId, long endOffset) {
+                this.reader = reader;
+                this.startId = startId;
+                this.endOffset = endOffset;
+            }
+
+            @Override
+            protected void compute() {
+                // Ancestors are often shared by the matches of a segment
+                Map<Long, IttLog> ancestors = new HashMap<>();
+                IttLogRecord record = new IttLogRecord();
+                IttLogRecord ancestorRecord = new IttLogRecord();
+                try (IttJsonReader logs = reader.openAt(startId)) {
+                    while (logs.readLog(record) && reader.getOffset(record.getId()) < endOffset) {
+                        if (!query.matches(record, reader::getParentId)) {
+                            continue;
+                        }
+                        LinkedList<IttLog> chain = new LinkedList<>();
+                        for (long id = record.getParentId(); id != 0; id = reader.getParentId(id)) {
+                            IttLog ancestor = ancestors.get(id);
+                            if (ancestor == null && reader.readLog(id, ancestorRecord)) {
+                                ancestor = ancestorRecord.toLog();
+                                ancestors.put(id, ancestor);
+                            }
+                            if (ancestor != null) {
+                                chain.addFirst(ancestor);
+                            }
+                        }
+                        consumer.accept(new IttQueryMatch(file, record.toLog(), chain));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+        }
+
+    }
+
+    /**
+     * Parent IDs by log ID, in pages of primitive longs which are allocated when an ID of their range is read,
+     * so that files whose IDs start far above 0 only take memory for the ranges actually used.
+     */
+    private static class ParentIds {
+
+        private static final int PAGE_SHIFT = 12;
+        private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+        private final Map<Long, long[]> pages = new HashMap<>();
+
+        /**
+         * Page of the last log read, since logs are mostly read in the order of their IDs.
+         */
+        private long lastPageNumber = -1;
+        private long[] lastPage;
+
+        void put(long id, long parentId) {
+            if (id >>> PAGE_SHIFT != lastPageNumber) {
+                lastPageNumber = id >>> PAGE_SHIFT;
+                lastPage = pages.computeIfAbsent(lastPageNumber, key -> new long[PAGE_MASK + 1]);
+            }
+            lastPage[(int) id & PAGE_MASK] = parentId;
+        }
+
+        /**
+         * @return The parent ID of the log, 0 for the root level or if the log was not read.
+         */
+        long get(long id) {
+            long[] page = pages.get(id >>> PAGE_SHIFT);
+            return page != null ? page[(int) id & PAGE_MASK] : 0;
+        }
+
+    }
+
+}
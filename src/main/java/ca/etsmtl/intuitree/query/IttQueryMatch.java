@@ -0,0 +1,41 @@
+package ca.etsmtl.intuitree.query;
+
+import ca.etsmtl.intuitree.pojo.IttLog;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * A log matching a query, with its ancestors so that it can be shown in the context of its tree.
+ */
+public class IttQueryMatch {
+
+    private final File file;
+    private final IttLog log;
+    private final List<IttLog> ancestors;
+
+    public IttQueryMatch(File file, IttLog log, List<IttLog> ancestors) {
+        this.file = file;
+        this.log = log;
+        this.ancestors = ancestors;
+    }
+
+    /**
+     * @return The execution file containing the log.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    public IttLog getLog() {
+        return log;
+    }
+
+    /**
+     * @return The ancestors of the log, from the root level down to its parent.
+     */
+    public List<IttLog> getAncestors() {
+        return ancestors;
+    }
+
+}
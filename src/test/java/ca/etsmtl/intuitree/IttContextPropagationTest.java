@@ -0,0 +1,222 @@
+package ca.etsmtl.intuitree;
+
+import ca.etsmtl.intuitree.format.IttJsonReader;
+import ca.etsmtl.intuitree.pojo.IttLog;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class IttContextPropagationTest {
+
+    private static final int TASK_COUNT = 5000;
+
+    @Test
+    public void testThousandsOfTasks() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        IttLogger logger = new IttLogger(outputStream, true, true);
+        IttStatus ok = logger.addStatus("ok", "green");
+        logger.startExecution("Execution", "");
+
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        ExecutorService executor = logger.wrap(pool);
+        long rootId = logger.addLog("root", "", ok);
+        logger.startLogTrack();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < TASK_COUNT; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> {
+                logger.addLog("task " + index, "", ok);
+                logger.startLogTrack();
+                logger.addLog("child", "", ok);
+                logger.addLog("child", "", ok);
+                if (index % 2 == 0) {
+                    // Left open: the worker must still get its own position back
+                    logger.endLogTrack();
+                }
+                // Can't leave the position of the task
+                logger.endLogTrack();
+                logger.endLogTrack();
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long afterId = logger.addLog("after", "", ok);
+        logger.endLogTrack();
+
+        // Unwrapped tasks on the same workers are at the root level
+        List<Future<Long>> unwrapped = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            unwrapped.add(pool.submit(() -> logger.addLog("unwrapped", "", ok)));
+        }
+        for (Future<Long> future : unwrapped) {
+            future.get();
+        }
+        pool.shutdown();
+        Assert.assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        logger.endExecution();
+
+        Map<Long, IttLog> logs = readLogs(outputStream.toByteArray());
+        Assert.assertEquals(2 + TASK_COUNT * 3 + 64, logs.size());
+        Assert.assertEquals(rootId, logs.get(afterId).getParentId());
+        int taskCount = 0;
+        for (IttLog log : logs.values()) {
+            if (log.getTitle().startsWith("task ")) {
+                taskCount++;
+                Assert.assertEquals(rootId, log.getParentId());
+            } else if (log.getTitle().equals("child")) {
+                Assert.assertTrue(logs.get(log.getParentId()).getTitle().startsWith("task "));
+            } else if (log.getTitle().equals("unwrapped")) {
+                Assert.assertEquals(0, log.getParentId());
+            }
+        }
+        Assert.assertEquals(TASK_COUNT, taskCount);
+    }
+
+    @Test
+    public void testNestedTasksAndSpans() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        IttLogger logger = new IttLogger(outputStream, true, true);
+        IttStatus ok = logger.addStatus("ok", "green");
+        logger.startExecution("Execution", "");
+
+        // Outer tasks wait for inner tasks, which run on their own pool
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        ExecutorService innerPool = Executors.newFixedThreadPool(8);
+        Executor executor = logger.wrap((Executor) pool);
+        Executor innerExecutor = logger.wrap((Executor) innerPool);
+        List<CompletableFuture<Long>> outer = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            outer.add(logger.supplyAsync(() -> {
+                try (IttSpan span = logger.span("outer", "", ok)) {
+                    List<CompletableFuture<Long>> inner = new ArrayList<>();
+                    for (int j = 0; j < 10; j++) {
+                        inner.add(logger.supplyAsync(() -> logger.addLog("inner", "", ok), innerExecutor)
+                                .thenApplyAsync(id -> logger.addLog("then", "", ok), innerExecutor));
+                    }
+                    CompletableFuture.allOf(inner.toArray(new CompletableFuture<?>[0])).join();
+                    return span.getId();
+                }
+            }, executor));
+        }
+        for (CompletableFuture<Long> future : outer) {
+            future.join();
+        }
+        pool.shutdown();
+        innerPool.shutdown();
+        logger.endExecution();
+
+        Map<Long, IttLog> logs = readLogs(outputStream.toByteArray());
+        Assert.assertEquals(100 * 21, logs.size());
+        for (IttLog log : logs.values()) {
+            if (log.getTitle().equals("outer")) {
+                Assert.assertEquals(0, log.getParentId());
+                Assert.assertTrue(log.getDurationNanos() >= 0);
+            } else {
+                Assert.assertEquals("outer", logs.get(log.getParentId()).getTitle());
+            }
+        }
+    }
+
+    @Test
+    public void testInlineTaskRestoresPosition() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        IttLogger logger = new IttLogger(outputStream, true, true);
+        IttStatus ok = logger.addStatus("ok", "green");
+        logger.startExecution("Execution", "");
+
+        long rootId = logger.addLog("root", "", ok);
+        logger.startLogTrack();
+        Runnable task = logger.wrap(() -> {
+            logger.addLog("task", "", ok);
+        });
+        long childId = logger.addLog("child", "", ok);
+        logger.startLogTrack();
+        task.run();
+        // The thread is back under the child, and a new track would start under the last log of the track
+        long grandchildId = logger.addLog("grandchild", "", ok);
+        logger.endLogTrack();
+        logger.startLogTrack();
+        long lateId = logger.addLog("late", "", ok);
+
+        Callable<Long> callable = logger.wrap(() -> logger.addLog("callable", "", ok));
+        logger.endLogTrack();
+        logger.endLogTrack();
+        long callableId = callable.call();
+        logger.endExecution();
+
+        Map<Long, IttLog> logs = readLogs(outputStream.toByteArray());
+        Assert.assertEquals(rootId, logs.get(childId).getParentId());
+        Assert.assertEquals(rootId, logs.get(childId + 1).getParentId());
+        Assert.assertEquals(childId, logs.get(grandchildId).getParentId());
+        Assert.assertEquals(childId, logs.get(lateId).getParentId());
+        Assert.assertEquals(childId, logs.get(callableId).getParentId());
+    }
+
+    @Test
+    public void testInvokeAll() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        IttLogger logger = new IttLogger(outputStream, true, true);
+        IttStatus ok = logger.addStatus("ok", "green");
+        logger.startExecution("Execution", "");
+
+        ExecutorService executor = logger.wrap(Executors.newFixedThreadPool(4));
+        long rootId = logger.addLog("root", "", ok);
+        logger.startLogTrack();
+        List<Callable<Long>> tasks = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            tasks.add(() -> logger.addLog("task", "", ok));
+        }
+        List<Long> ids = new ArrayList<>();
+        for (Future<Long> future : executor.invokeAll(tasks)) {
+            ids.add(future.get());
+        }
+        executor.shutdown();
+        logger.endExecution();
+
+        Map<Long, IttLog> logs = readLogs(outputStream.toByteArray());
+        for (long id : ids) {
+            Assert.assertEquals(rootId, logs.get(id).getParentId());
+        }
+    }
+
+    @Test
+    public void testDisabledLoggerDoesNotWrap() throws IOException {
+        IttLogger logger = new IttLogger(new ByteArrayOutputStream(), false);
+        Runnable task = () -> {
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Assert.assertSame(task, logger.wrap(task));
+        Assert.assertSame(executor, logger.wrap(executor));
+        executor.shutdown();
+    }
+
+    private static Map<Long, IttLog> readLogs(byte[] execution) throws IOException {
+        Map<Long, IttLog> logs = new HashMap<>();
+        try (IttJsonReader reader = new IttJsonReader(new ByteArrayInputStream(execution))) {
+            reader.readHeader();
+            IttLogRecord record = new IttLogRecord();
+            while (reader.readLog(record)) {
+                logs.put(record.getId(), record.toLog());
+            }
+        }
+        return logs;
+    }
+
+}
@@ -0,0 +1,177 @@
+package ca.etsmtl.intuitree;
+
+import ca.etsmtl.intuitree.format.IttFormat;
+import ca.etsmtl.intuitree.format.IttJsonReader;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class IttDirectBuffersTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testConcurrentThreads() throws Exception {
+        int threadCount = 8;
+        int logsPerThread = 10000;
+        File file = folder.newFile();
+        IttLogger logger = new IttLogger(file.getPath());
+        logger.enableDirectBuffers(4096, 4);
+        IttMetrics metrics = logger.enableMetrics();
+        IttStatus ok = logger.addStatus("ok", "green");
+        logger.startExecution("Execution", "");
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            futures.add(executor.submit(() -> {
+                logger.addLog("root", "", ok);
+                logger.startLogTrack();
+                for (int i = 1; i < logsPerThread; i++) {
+                    logger.addLog("log " + i, "message", ok);
+                }
+                logger.endLogTrack();
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        logger.endExecution();
+
+        // Every log is written once, in chunks which are not in ID order
+        Assert.assertEquals(threadCount * logsPerThread, readIds(file).size());
+        Assert.assertEquals(threadCount * logsPerThread, metrics.snapshot().getLogsWritten());
+        Assert.assertEquals(file.length(), metrics.snapshot().getBytesWritten());
+    }
+
+    @Test
+    public void testAreasOfDeadThreadsAreClosed() throws Exception {
+        File file = folder.newFile();
+        IttLogger logger = new IttLogger(file.getPath());
+        logger.enableDirectBuffers(4096, 4);
+        IttStatus ok = logger.addStatus("ok", "green");
+        logger.startExecution("Execution", "");
+
+        for (int t = 0; t < 20; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10; i++) {
+                    logger.addLog("log " + i, "", ok);
+                }
+            });
+            thread.start();
+            thread.join();
+            // The area of the previous thread was closed when this one started staging
+            Assert.assertEquals(1, logger.getStagingAreaCount());
+        }
+        logger.endExecution();
+
+        Assert.assertEquals(200, readIds(file).size());
+    }
+
+    @Test
+    public void testLogsWhileEnding() throws Exception {
+        File file = folder.newFile();
+        IttLogger logger = new IttLogger(file.getPath());
+        logger.enableDirectBuffers(256, 2);
+        IttStatus ok = logger.addStatus("ok", "green");
+        logger.startExecution("Execution", "");
+
+        AtomicBoolean stop = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; !stop.get(); i++) {
+                    logger.addLog("log " + i, "message", ok);
+                }
+            }));
+        }
+        Thread.sleep(50);
+        logger.endExecution();
+        stop.set(true);
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // Logs staged while the execution ended are written before the footer, or not at all
+        Assert.assertFalse(readIds(file).isEmpty());
+    }
+
+    @Test
+    public void testLogLargerThanBuffer() throws IOException {
+        IttLogger logger = new IttLogger(folder.newFile().getPath());
+        logger.enableDirectBuffers(128, 2);
+        IttStatus ok = logger.addStatus("ok", "green");
+        logger.startExecution("Execution", "");
+        logger.addLog("small", "", ok);
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            message.append("too long ");
+        }
+        try {
+            logger.addLog("large", message.toString(), ok);
+            Assert.fail("The log doesn't fit in a buffer");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("\"large\""));
+            Assert.assertTrue(e.getMessage().contains("128 bytes"));
+        }
+        logger.endExecution();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRequiresFile() throws IOException {
+        new IttLogger(new ByteArrayOutputStream(), true).enableDirectBuffers(4096, 2);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNotAsynchronous() throws IOException {
+        IttLogger logger = new IttLogger(folder.newFile().getPath());
+        logger.enableAsync(64, IttWaitStrategy.BLOCK);
+        logger.enableDirectBuffers(4096, 2);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRequiresJsonV1() throws IOException {
+        IttLogger logger = new IttLogger(folder.newFile().getPath());
+        logger.setFormat(IttFormat.BINARY);
+        logger.enableDirectBuffers(4096, 2);
+        logger.addStatus("ok", "green");
+        logger.startExecution("Execution", "");
+    }
+
+    /**
+     * Read a complete execution, checking that every log is written once.
+     */
+    private static Set<Long> readIds(File file) throws IOException {
+        Set<Long> ids = new HashSet<>();
+        try (IttJsonReader reader = new IttJsonReader(new FileInputStream(file))) {
+            reader.readHeader();
+            IttLogRecord record = new IttLogRecord();
+            while (reader.readLog(record)) {
+                Assert.assertTrue(ids.add(record.getId()));
+            }
+            Assert.assertTrue(reader.isComplete());
+        }
+        return ids;
+    }
+
+}
@@ -0,0 +1,174 @@
+package ca.etsmtl.intuitree;
+
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class IttFlushPolicyTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFlushEveryLogs() throws IOException {
+        for (boolean async : new boolean[]{false, true}) {
+            FlushCountingOutputStream outputStream = new FlushCountingOutputStream();
+            IttLogger logger = new IttLogger(outputStream, true, true);
+            if (async) {
+                logger.enableAsync(64, IttWaitStrategy.BLOCK);
+            }
+            IttMetrics metrics = logger.enableMetrics();
+            logger.setFlushPolicy(new IttFlushPolicy(10, 0, false));
+            IttStatus ok = logger.addStatus("ok", "green");
+            logger.startExecution("Execution", "");
+            for (int i = 0; i < 105; i++) {
+                logger.addLog("log " + i, "", ok);
+            }
+            logger.endExecution();
+
+            IttMetricsSnapshot snapshot = metrics.snapshot();
+            Assert.assertEquals(10, snapshot.getFlushCount(IttFlushCause.LOG_COUNT));
+            Assert.assertEquals(0, snapshot.getFlushCount(IttFlushCause.END));
+            Assert.assertEquals(10, metrics.getFlushCount());
+            Assert.assertEquals(0, snapshot.getForceCount());
+            Assert.assertTrue(snapshot.getFlushNanos() > 0);
+            Assert.assertTrue(outputStream.flushCount >= 10);
+        }
+    }
+
+    @Test
+    public void testFlushOnStatus() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        IttLogger logger = new IttLogger(outputStream, true, true);
+        IttStatus ok = logger.addStatus("ok", "green");
+        IttStatus error = logger.addStatus("error", "red");
+        IttMetrics metrics = logger.enableMetrics();
+        logger.setFlushPolicy(new IttFlushPolicy(0, 0, false, error));
+        logger.startExecution("Execution", "");
+        for (int i = 0; i < 50; i++) {
+            logger.addLog("log " + i, "", ok);
+        }
+        Assert.assertFalse(contains(outputStream, "log 49"));
+        logger.addLog("failure", "", error);
+        // Everything logged up to the error is out of the buffers of the writer
+        Assert.assertTrue(contains(outputStream, "failure"));
+        logger.endExecution();
+
+        Assert.assertEquals(1, metrics.snapshot().getFlushCount(IttFlushCause.STATUS));
+        Assert.assertEquals(1, metrics.getFlushCount());
+    }
+
+    @Test
+    public void testTimerFlush() throws Exception {
+        for (int mode = 0; mode < 3; mode++) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            IttRegistry registry = mode == 2 ? new IttRegistry(2, 64, IttWaitStrategy.BLOCK, 10) : null;
+            IttLogger logger = registry != null ? registry.create("key", outputStream)
+                    : new IttLogger(outputStream, true, true);
+            if (mode == 1) {
+                logger.enableAsync(64, IttWaitStrategy.BLOCK);
+            }
+            IttMetrics metrics = logger.enableMetrics();
+            logger.setFlushPolicy(new IttFlushPolicy(0, 20, false));
+            IttStatus ok = logger.addStatus("ok", "green");
+            logger.startExecution("Execution", "");
+            logger.addLog("timed", "", ok);
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while (!contains(outputStream, "timed") && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            Assert.assertTrue(contains(outputStream, "timed"));
+            long flushCount = metrics.snapshot().getFlushCount(IttFlushCause.TIMER);
+            Assert.assertEquals(1, flushCount);
+
+            // Nothing is flushed while no log is written
+            Thread.sleep(100);
+            Assert.assertEquals(flushCount, metrics.snapshot().getFlushCount(IttFlushCause.TIMER));
+            logger.endExecution();
+            if (registry != null) {
+                registry.close();
+            }
+        }
+    }
+
+    @Test
+    public void testForceToFile() throws IOException {
+        for (boolean memoryMapped : new boolean[]{false, true}) {
+            File file = folder.newFile();
+            IttLogger logger = new IttLogger(file.getPath(), true, memoryMapped);
+            IttMetrics metrics = logger.enableMetrics();
+            logger.setFlushPolicy(new IttFlushPolicy(5, 0, true));
+            IttStatus ok = logger.addStatus("ok", "green");
+            logger.startExecution("Execution", "");
+            for (int i = 0; i < 20; i++) {
+                logger.addLog("log " + i, "", ok);
+            }
+            logger.endExecution();
+
+            // One force per group of logs, and one for the footer
+            IttMetricsSnapshot snapshot = metrics.snapshot();
+            Assert.assertEquals(4, snapshot.getFlushCount(IttFlushCause.LOG_COUNT));
+            Assert.assertEquals(1, snapshot.getFlushCount(IttFlushCause.END));
+            Assert.assertEquals(5, snapshot.getForceCount());
+            Assert.assertTrue(snapshot.getForceNanos() > 0);
+            Assert.assertEquals(snapshot.getBytesWritten(), file.length());
+        }
+    }
+
+    @Test
+    public void testForceToRegistryFile() throws IOException {
+        File file = folder.newFile();
+        IttMetrics metrics;
+        try (IttRegistry registry = new IttRegistry(1, 64, IttWaitStrategy.BLOCK, 1)) {
+            IttLogger logger = registry.create("key", file.getPath());
+            metrics = logger.enableMetrics();
+            logger.setFlushPolicy(new IttFlushPolicy(10, 0, true));
+            IttStatus ok = logger.addStatus("ok", "green");
+            logger.startExecution("Execution", "");
+            for (int i = 0; i < 30; i++) {
+                logger.addLog("log " + i, "", ok);
+            }
+            logger.endExecution();
+        }
+        Assert.assertEquals(3, metrics.snapshot().getFlushCount(IttFlushCause.LOG_COUNT));
+        Assert.assertEquals(4, metrics.snapshot().getForceCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testForceRequiresFile() throws IOException {
+        IttLogger logger = new IttLogger(new ByteArrayOutputStream(), true);
+        logger.setFlushPolicy(new IttFlushPolicy(10, 0, true));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testPolicySetBeforeStart() throws IOException {
+        IttLogger logger = new IttLogger(new ByteArrayOutputStream(), true);
+        logger.addStatus("ok", "green");
+        logger.startExecution("Execution", "");
+        logger.setFlushPolicy(new IttFlushPolicy(10, 0, false));
+    }
+
+    private static boolean contains(ByteArrayOutputStream outputStream, String text) {
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8).contains(text);
+    }
+
+    private static class FlushCountingOutputStream extends ByteArrayOutputStream {
+
+        private int flushCount;
+
+        @Override
+        public void flush() {
+            flushCount++;
+        }
+
+    }
+
+}
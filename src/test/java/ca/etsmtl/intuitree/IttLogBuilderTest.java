@@ -0,0 +1,127 @@
+package ca.etsmtl.intuitree;
+
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+
+public class IttLogBuilderTest {
+
+    private static final int WARMUP_LOGS = 200_000;
+    private static final int MEASURED_LOGS = 100_000;
+
+    @Test
+    public void testBuilderMatchesAddLog() throws IOException {
+        ByteArrayOutputStream addLogOutput = new ByteArrayOutputStream();
+        IttLogger addLogLogger = new IttLogger(addLogOutput, true);
+        IttStatus status = addLogLogger.addStatus("status", "#F00");
+        IttTag tag = addLogLogger.addTag("foo");
+        addLogLogger.startExecution("Execution title", "Execution message");
+        addLogLogger.addLog("foo1", "foo1--.", status, addLogLogger.tagValue(tag, "1"), addLogLogger.tagValue(tag, "2"));
+        addLogLogger.startLogTrack();
+        addLogLogger.addLog("bar1", null, status);
+        addLogLogger.endLogTrack();
+        addLogLogger.addLog(1, "baz1", "baz1--.", status);
+        addLogLogger.endExecution();
+
+        ByteArrayOutputStream builderOutput = new ByteArrayOutputStream();
+        IttLogger builderLogger = new IttLogger(builderOutput, true);
+        status = builderLogger.addStatus("status", "#F00");
+        tag = builderLogger.addTag("foo");
+        builderLogger.startExecution("Execution title", "Execution message");
+        long foo1 = builderLogger.log().title("foo1").message("foo1--.").status(status).tag(tag, "1").tag(tag, "2").emit();
+        builderLogger.startLogTrack();
+        builderLogger.log().title("bar1").status("status").emit();
+        builderLogger.endLogTrack();
+        builderLogger.log().parent(foo1).title("baz1").message("baz1--.").status(status).emit();
+        builderLogger.endExecution();
+
+        Assert.assertEquals(addLogOutput.toString(), builderOutput.toString());
+    }
+
+    @Test
+    public void testZeroAllocationPerLog() throws IOException {
+        runZeroAllocationTest(false, 0);
+    }
+
+    @Test
+    public void testZeroAllocationPerLogAsync() throws IOException {
+        runZeroAllocationTest(true, 0);
+    }
+
+    @Test
+    public void testZeroAllocationPerLogPastIntIds() throws IOException {
+        // The measured logs all have IDs past the int range
+        runZeroAllocationTest(false, Integer.MAX_VALUE - WARMUP_LOGS);
+    }
+
+    /**
+     * Log through the builder with deep tracks and tags, and check with the JVM's thread allocation counter
+     * that the logging thread doesn't allocate once warmed up.
+     *
+     * @param firstId ID after which the IDs of the logs start.
+     */
+    private static void runZeroAllocationTest(boolean async, long firstId) throws IOException {
+        java.lang.management.ThreadMXBean threadMxBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadMxBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocationMxBean = (com.sun.management.ThreadMXBean) threadMxBean;
+        Assume.assumeTrue(allocationMxBean.isThreadAllocatedMemorySupported());
+        allocationMxBean.setThreadAllocatedMemoryEnabled(true);
+
+        IttLogger logger = new IttLogger(new NullOutputStream(), true, true);
+        logger.setMaxLogId(firstId);
+        if (async) {
+            logger.enableAsync(1024, IttWaitStrategy.BLOCK);
+        }
+        IttStatus status = logger.addStatus("status", "#F00");
+        IttTag fooTag = logger.addTag("foo");
+        IttTag barTag = logger.addTag("bar");
+        logger.startExecution("Execution title", "Execution message");
+
+        logTree(logger, status, fooTag, barTag, WARMUP_LOGS);
+
+        long threadId = Thread.currentThread().getId();
+        long before = allocationMxBean.getThreadAllocatedBytes(threadId);
+        logTree(logger, status, fooTag, barTag, MEASURED_LOGS);
+        long allocated = allocationMxBean.getThreadAllocatedBytes(threadId) - before;
+
+        Assert.assertEquals(firstId + WARMUP_LOGS + MEASURED_LOGS, logger.getMaxLogId());
+        logger.endExecution();
+
+        // Allow for a constant overhead from the measurement itself, but not a single byte per log
+        Assert.assertTrue("Allocated " + allocated + " bytes for " + MEASURED_LOGS + " logs", allocated < MEASURED_LOGS);
+    }
+
+    private static void logTree(IttLogger logger, IttStatus status, IttTag fooTag, IttTag barTag, int count) {
+        for (int i = 0; i < count; i++) {
+            logger.log().title("title").message("message").status(status).tag(fooTag, "foo").tag(barTag, "bar").emit();
+            if (i % 64 < 32) {
+                logger.startLogTrack();
+            } else {
+                logger.endLogTrack();
+            }
+        }
+    }
+
+    /**
+     * OutputStream which discards everything, so the measurement doesn't include a growing buffer.
+     */
+    private static class NullOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+
+    }
+
+}
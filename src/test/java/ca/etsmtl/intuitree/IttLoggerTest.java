@@ -6,6 +6,7 @@ import ca.etsmtl.intuitree.pojo.IttTag;
 import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Assert;
 import org.junit.Before;
@@ -14,6 +15,10 @@ import org.junit.Test;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -166,4 +171,404 @@ public class IttLoggerTest {
                 outputStream.toString());
     }
 
+    @Test
+    public void testAsyncMatchesSync() throws IOException {
+        ByteArrayOutputStream syncOutput = new ByteArrayOutputStream();
+        logTree(new IttLogger(syncOutput, true));
+
+        ByteArrayOutputStream asyncOutput = new ByteArrayOutputStream();
+        IttLogger asyncLogger = new IttLogger(asyncOutput, true);
+        asyncLogger.enableAsync(4, IttWaitStrategy.BLOCK);
+        logTree(asyncLogger);
+
+        Assert.assertEquals(syncOutput.toString(), asyncOutput.toString());
+        Assert.assertEquals(0, asyncLogger.getDroppedLogCount());
+    }
+
+    @Test
+    public void testAsyncConcurrentLogging() throws Exception {
+        for (IttWaitStrategy waitStrategy : IttWaitStrategy.values()) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            IttLogger asyncLogger = new IttLogger(output, true, true);
+            asyncLogger.enableAsync(64, waitStrategy);
+            IttStatus status = asyncLogger.addStatus("status", "#F00");
+            asyncLogger.startExecution("Execution title", "Execution message");
+
+            int threadCount = 4;
+            int logsPerThread = 5000;
+            Thread[] threads = new Thread[threadCount];
+            for (int i = 0; i < threadCount; i++) {
+                threads[i] = new Thread(() -> {
+                    for (int j = 0; j < logsPerThread; j++) {
+                        asyncLogger.addLog("title", "message", status);
+                    }
+                });
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            asyncLogger.endExecution();
+
+            JsonNode logs = MAPPER.readTree(output.toByteArray()).get("logs");
+            Assert.assertEquals(threadCount * logsPerThread, logs.size() + asyncLogger.getDroppedLogCount());
+            Set<Integer> ids = new HashSet<>();
+            for (JsonNode log : logs) {
+                Assert.assertTrue(ids.add(log.get("id").asInt()));
+            }
+            if (waitStrategy != IttWaitStrategy.DROP) {
+                Assert.assertEquals(0, asyncLogger.getDroppedLogCount());
+            }
+        }
+    }
+
+    @Test
+    public void testAddLogWithParentId() throws IOException {
+        IttStatus status = logger.addStatus("status", "#F00");
+        logger.startExecution("Execution title", "Execution message");
+
+        long foo1 = logger.addLog("foo1", "foo1--.", status);
+        long foo2 = logger.addLog("foo2", "foo2--.", status);
+        // Attaching elsewhere doesn't move the current track
+        long bar1 = logger.addLog(foo1, "bar1", "bar1--.", "status");
+        logger.startLogTrack();
+        long bar2 = logger.addLog("bar2", "bar2--.", status);
+        logger.endLogTrack();
+        logger.endExecution();
+
+        Assert.assertEquals(1, foo1);
+        Assert.assertEquals(2, foo2);
+        Assert.assertEquals(3, bar1);
+        Assert.assertEquals(4, bar2);
+        JsonNode logs = MAPPER.readTree(outputStream.toString()).get("logs");
+        Assert.assertEquals(foo1, logs.get(2).get("parentId").asInt());
+        Assert.assertEquals(foo2, logs.get(3).get("parentId").asInt());
+    }
+
+    @Test
+    public void testPerThreadTracks() throws Exception {
+        IttStatus status = logger.addStatus("status", "#F00");
+        logger.startExecution("Execution title", "Execution message");
+
+        int threadCount = 8;
+        int depth = 50;
+        long[] rootIds = new long[threadCount];
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            int threadIndex = i;
+            threads[i] = new Thread(() -> {
+                rootIds[threadIndex] = logger.addLog("root", "", status);
+                for (int j = 0; j < depth; j++) {
+                    logger.startLogTrack();
+                    logger.addLog("child", String.valueOf(threadIndex), status);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        logger.endExecution();
+
+        // Each thread must have produced a single chain under its own root
+        Map<Long, Long> parentById = new HashMap<>();
+        Map<Long, String> threadById = new HashMap<>();
+        for (JsonNode log : MAPPER.readTree(outputStream.toString()).get("logs")) {
+            parentById.put(log.get("id").asLong(), log.get("parentId").asLong());
+            threadById.put(log.get("id").asLong(), log.get("message").asText());
+        }
+        Assert.assertEquals(threadCount * (depth + 1), parentById.size());
+        for (Map.Entry<Long, Long> entry : parentById.entrySet()) {
+            long parentId = entry.getValue();
+            if (parentId != 0 && !threadById.get(parentId).isEmpty()) {
+                Assert.assertEquals(threadById.get(parentId), threadById.get(entry.getKey()));
+            }
+        }
+        for (int i = 0; i < threadCount; i++) {
+            Assert.assertEquals(0, (long) parentById.get(rootIds[i]));
+        }
+    }
+
+    @Test
+    public void testFilterReparent() throws IOException {
+        IttStatus red = logger.addStatus("red", "#F00");
+        IttStatus green = logger.addStatus("green", "#0F0");
+        logger.setFilter(IttLogFilter.statuses(red), IttFilterPolicy.REPARENT);
+        logger.startExecution("Execution title", "Execution message");
+
+        long root = logger.addLog("root", "", red);
+        logger.startLogTrack();
+        long filtered = logger.addLog("filtered", "", green);
+        logger.startLogTrack();
+        long child = logger.addLog("child", "", red);
+        logger.endLogTrack();
+        logger.endLogTrack();
+        long explicitChild = logger.addLog(filtered, "explicit child", "", red);
+        long rootFiltered = logger.addLog("root filtered", "", green);
+        logger.startLogTrack();
+        long rootChild = logger.addLog("root child", "", red);
+        logger.endLogTrack();
+        logger.endExecution();
+
+        // Rejected logs don't use IDs and hand their parent to their children
+        Assert.assertEquals(root, filtered);
+        Assert.assertEquals(0, rootFiltered);
+        JsonNode logs = MAPPER.readTree(outputStream.toString()).get("logs");
+        Assert.assertEquals(4, logs.size());
+        Assert.assertEquals(child, logs.get(1).get("id").asInt());
+        Assert.assertEquals(root, logs.get(1).get("parentId").asInt());
+        Assert.assertEquals(explicitChild, logs.get(2).get("id").asInt());
+        Assert.assertEquals(root, logs.get(2).get("parentId").asInt());
+        Assert.assertEquals(rootChild, logs.get(3).get("id").asInt());
+        Assert.assertEquals(0, logs.get(3).get("parentId").asInt());
+    }
+
+    @Test
+    public void testFilterDrop() throws IOException {
+        IttStatus red = logger.addStatus("red", "#F00");
+        IttStatus green = logger.addStatus("green", "#0F0");
+        IttTag region = logger.addTag("region");
+        logger.setFilter(IttLogFilter.tag(region, "eu"::equals).negate(), IttFilterPolicy.DROP);
+        logger.startExecution("Execution title", "Execution message");
+
+        long root = logger.addLog("root", "", red);
+        logger.startLogTrack();
+        long dropped = logger.addLog("dropped", "", red, logger.tagValue(region, "eu"));
+        logger.startLogTrack();
+        logger.addLog("child", "", green);
+        logger.startLogTrack();
+        logger.addLog("grandchild", "", green);
+        logger.endLogTrack();
+        logger.endLogTrack();
+        logger.addLog(dropped, "explicit child", "", red);
+        logger.log().title("builder child").status(red).parent(dropped).emit();
+        logger.addLog("sibling", "", green, logger.tagValue(region, "us"));
+        logger.endLogTrack();
+        logger.endExecution();
+
+        Assert.assertEquals(IttLogger.DROPPED_LOG_ID, dropped);
+        JsonNode logs = MAPPER.readTree(outputStream.toString()).get("logs");
+        Assert.assertEquals(2, logs.size());
+        Assert.assertEquals("sibling", logs.get(1).get("title").asText());
+        Assert.assertEquals(root, logs.get(1).get("parentId").asInt());
+    }
+
+    @Test
+    public void testLazyLogIsOnlyMaterializedWhenAccepted() throws IOException {
+        IttStatus red = logger.addStatus("red", "#F00");
+        IttStatus green = logger.addStatus("green", "#0F0");
+        logger.setFilter(IttLogFilter.statuses(red), IttFilterPolicy.REPARENT);
+        logger.startExecution("Execution title", "Execution message");
+
+        int[] calls = new int[1];
+        logger.addLazyLog(() -> "rejected", () -> {
+            calls[0]++;
+            return "rejected";
+        }, green);
+        logger.log().lazyTitle(() -> "rejected").lazyMessage(() -> {
+            calls[0]++;
+            return "rejected";
+        }).status(green).emit();
+        Assert.assertEquals(0, calls[0]);
+
+        logger.addLazyLog(() -> "accepted", () -> {
+            calls[0]++;
+            return "accepted message";
+        }, "red");
+        logger.log().lazyTitle(() -> null).lazyMessage(() -> "builder message").status(red).emit();
+        logger.endExecution();
+
+        Assert.assertEquals(1, calls[0]);
+        JsonNode logs = MAPPER.readTree(outputStream.toString()).get("logs");
+        Assert.assertEquals(2, logs.size());
+        Assert.assertEquals("accepted", logs.get(0).get("title").asText());
+        Assert.assertEquals("accepted message", logs.get(0).get("message").asText());
+        Assert.assertEquals("", logs.get(1).get("title").asText());
+        Assert.assertEquals("builder message", logs.get(1).get("message").asText());
+    }
+
+    @Test
+    public void testLazyLogSupplierWhichLogs() throws IOException {
+        IttStatus ok = logger.addStatus("ok", "#0F0");
+        IttStatus error = logger.addStatus("error", "#F00");
+        IttTag tag = logger.addTag("tag");
+        logger.startExecution("Execution title", "Execution message");
+
+        // The message supplier logs, as the toString() of a traced object may
+        long outer = logger.addLazyLog(() -> "outer", () -> {
+            logger.addLazyLog(() -> "inner", () -> "inner message", error, logger.tagValue(tag, "inner"));
+            return "outer message";
+        }, ok, logger.tagValue(tag, "outer"));
+        logger.endExecution();
+
+        JsonNode logs = MAPPER.readTree(outputStream.toString()).get("logs");
+        Assert.assertEquals(2, logs.size());
+        Assert.assertEquals("inner", logs.get(0).get("title").asText());
+        Assert.assertEquals("inner message", logs.get(0).get("message").asText());
+        Assert.assertEquals("error", logs.get(0).get("statusName").asText());
+        JsonNode outerLog = logs.get(1);
+        Assert.assertEquals(outer, outerLog.get("id").asLong());
+        Assert.assertEquals("outer", outerLog.get("title").asText());
+        Assert.assertEquals("outer message", outerLog.get("message").asText());
+        Assert.assertEquals("ok", outerLog.get("statusName").asText());
+        Assert.assertEquals(1, outerLog.get("tags").size());
+        Assert.assertEquals("outer", outerLog.get("tags").get(0).get("value").asText());
+    }
+
+    @Test
+    public void testSamplingKeepsFailingSubtrees() throws IOException {
+        IttStatus ok = logger.addStatus("ok", "#0F0");
+        IttStatus error = logger.addStatus("error", "#F00");
+        logger.setSampling(new IttSamplingPolicy(0, error));
+        logger.startExecution("Execution title", "Execution message");
+
+        Set<String> expectedTitles = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            boolean failing = i % 3 == 0;
+            logger.addLog("root" + i, "", ok);
+            expectedTitles.add("root" + i);
+            logger.startLogTrack();
+            for (int j = 0; j < 3; j++) {
+                logger.addLog("child" + i + "-" + j, "", ok);
+                logger.startLogTrack();
+                boolean failingLeaf = failing && j == 1;
+                logger.addLog("leaf" + i + "-" + j, "", failingLeaf ? error : ok);
+                logger.endLogTrack();
+                if (failingLeaf) {
+                    // The failing track and its enclosing tracks are kept, but not their successful siblings
+                    expectedTitles.add("child" + i + "-" + j);
+                    expectedTitles.add("leaf" + i + "-" + j);
+                } else if (failing) {
+                    expectedTitles.add("child" + i + "-" + j);
+                }
+            }
+            logger.endLogTrack();
+        }
+        logger.endExecution();
+
+        Map<Long, String> titleById = new HashMap<>();
+        Map<Long, Long> parentById = new HashMap<>();
+        for (JsonNode log : MAPPER.readTree(outputStream.toString()).get("logs")) {
+            titleById.put(log.get("id").asLong(), log.get("title").asText());
+            parentById.put(log.get("id").asLong(), log.get("parentId").asLong());
+        }
+        Assert.assertEquals(expectedTitles, new HashSet<>(titleById.values()));
+        for (long parentId : parentById.values()) {
+            Assert.assertTrue(parentId == 0 || titleById.containsKey(parentId));
+        }
+    }
+
+    @Test
+    public void testSamplingKeepsWholeTreesAtRate() throws IOException {
+        IttStatus ok = logger.addStatus("ok", "#0F0");
+        logger.setSampling(new IttSamplingPolicy(30));
+        logger.startExecution("Execution title", "Execution message");
+
+        int rootCount = 2000;
+        for (int i = 0; i < rootCount; i++) {
+            logger.addLog("root" + i, "", ok);
+            logger.startLogTrack();
+            for (int j = 0; j < 3; j++) {
+                logger.addLog("child" + i + "-" + j, "", ok);
+                logger.startLogTrack();
+                logger.addLog("leaf" + i + "-" + j + "-0", "", ok);
+                logger.addLog("leaf" + i + "-" + j + "-1", "", ok);
+                logger.endLogTrack();
+            }
+            logger.endLogTrack();
+        }
+        logger.endExecution();
+
+        Map<Long, Integer> childCounts = new HashMap<>();
+        Set<Long> rootIds = new HashSet<>();
+        for (JsonNode log : MAPPER.readTree(outputStream.toString()).get("logs")) {
+            long parentId = log.get("parentId").asLong();
+            if (parentId == 0) {
+                rootIds.add(log.get("id").asLong());
+            } else {
+                childCounts.merge(parentId, 1, Integer::sum);
+            }
+        }
+        Assert.assertEquals(rootCount, rootIds.size());
+
+        // A kept root-level track has every child and every leaf
+        int keptCount = 0;
+        for (long rootId : rootIds) {
+            if (childCounts.containsKey(rootId)) {
+                keptCount++;
+                Assert.assertEquals(3, childCounts.get(rootId).intValue());
+            }
+        }
+        for (Map.Entry<Long, Integer> entry : childCounts.entrySet()) {
+            if (!rootIds.contains(entry.getKey())) {
+                Assert.assertEquals(2, entry.getValue().intValue());
+            }
+        }
+        Assert.assertEquals(keptCount * 3, childCounts.size() - keptCount);
+        Assert.assertEquals(0.3, keptCount / (double) rootCount, 0.05);
+    }
+
+    @Test
+    public void testSamplingKeepAllMatchesUnsampled() throws IOException {
+        ByteArrayOutputStream unsampled = new ByteArrayOutputStream();
+        logTree(new IttLogger(unsampled, true, true));
+
+        ByteArrayOutputStream sampled = new ByteArrayOutputStream();
+        IttLogger sampledLogger = new IttLogger(sampled, true, true);
+        sampledLogger.setSampling(new IttSamplingPolicy(100));
+        logTree(sampledLogger);
+
+        Assert.assertEquals(unsampled.toString(), sampled.toString());
+    }
+
+    @Test
+    public void testSamplingBufferOverflowWritesTrack() throws IOException {
+        IttStatus ok = logger.addStatus("ok", "#0F0");
+        logger.setSampling(new IttSamplingPolicy(0, 10));
+        logger.startExecution("Execution title", "Execution message");
+
+        logger.addLog("root", "", ok);
+        for (int i = 0; i < 50; i++) {
+            logger.startLogTrack();
+            logger.addLog("child" + i, "", ok);
+        }
+        for (int i = 0; i < 50; i++) {
+            logger.endLogTrack();
+        }
+        // The buffer is empty again, so the next track is sampled
+        logger.addLog("root2", "", ok);
+        logger.startLogTrack();
+        logger.addLog("discarded", "", ok);
+        logger.endLogTrack();
+        logger.endExecution();
+
+        JsonNode logs = MAPPER.readTree(outputStream.toString()).get("logs");
+        Assert.assertEquals(52, logs.size());
+        for (int i = 1; i <= 50; i++) {
+            Assert.assertEquals(logs.get(i - 1).get("id").asInt(), logs.get(i).get("parentId").asInt());
+        }
+        Assert.assertEquals("root2", logs.get(51).get("title").asText());
+    }
+
+    /**
+     * Log a small tree with a few levels of nesting on the given logger, from start to end of execution.
+     */
+    private static void logTree(IttLogger logger) {
+        IttStatus redStatus = logger.addStatus("red", "#F00");
+        IttStatus greenStatus = logger.addStatus("green", "#0F0");
+        IttTag fooTag = logger.addTag("foo");
+
+        logger.startExecution("Execution title", "Execution message");
+        for (int i = 0; i < 20; i++) {
+            logger.addLog("foo" + i, "foo" + i + " is red.", redStatus, logger.tagValue(fooTag, String.valueOf(i)));
+            logger.startLogTrack();
+            logger.addLog("bar" + i, "bar" + i + " is green.", greenStatus);
+            logger.startLogTrack();
+            logger.addLog("baz" + i, "baz" + i + " is red.", "red", logger.tagValue("foo", "baz"));
+            logger.endLogTrack();
+            logger.endLogTrack();
+        }
+        logger.endExecution();
+    }
+
 }
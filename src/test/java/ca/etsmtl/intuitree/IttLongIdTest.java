@@ -0,0 +1,144 @@
+package ca.etsmtl.intuitree;
+
+import ca.etsmtl.intuitree.format.IttBinaryConverter;
+import ca.etsmtl.intuitree.format.IttFormat;
+import ca.etsmtl.intuitree.format.IttIndexedJsonReader;
+import ca.etsmtl.intuitree.format.IttJsonReader;
+import ca.etsmtl.intuitree.format.IttJsonV2Converter;
+import ca.etsmtl.intuitree.format.IttTreeBuilder;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTreeNode;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Logs with IDs past the int range, which the logger reaches by starting its IDs just below it.
+ */
+public class IttLongIdTest {
+
+    private static final long FIRST_ID = Integer.MAX_VALUE - 100L;
+    private static final int DEPTH = 300;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testJsonV1() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        logDeepTree(new IttLogger(outputStream, true, true));
+        assertDeepTree(new ByteArrayInputStream(outputStream.toByteArray()));
+    }
+
+    @Test
+    public void testJsonV2() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        IttLogger logger = new IttLogger(outputStream, true, true);
+        logger.setFormat(IttFormat.JSON_V2);
+        logDeepTree(logger);
+
+        ByteArrayOutputStream v1 = new ByteArrayOutputStream();
+        IttJsonV2Converter.convertToV1(new ByteArrayInputStream(outputStream.toByteArray()), v1);
+        assertDeepTree(new ByteArrayInputStream(v1.toByteArray()));
+    }
+
+    @Test
+    public void testBinary() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        IttLogger logger = new IttLogger(outputStream, true, true);
+        logger.setFormat(IttFormat.BINARY);
+        logDeepTree(logger);
+
+        ByteArrayOutputStream v1 = new ByteArrayOutputStream();
+        Assert.assertTrue(IttBinaryConverter.convertToJson(new ByteArrayInputStream(outputStream.toByteArray()), v1));
+        assertDeepTree(new ByteArrayInputStream(v1.toByteArray()));
+    }
+
+    @Test
+    public void testIndex() throws IOException {
+        File file = folder.newFile();
+        File indexFile = IttIndexedJsonReader.defaultIndexFile(file);
+        IttLogger logger = new IttLogger(file.getPath());
+        logger.enableIndex(new FileOutputStream(indexFile));
+        long lastId = logDeepTree(logger);
+
+        try (IttIndexedJsonReader reader = new IttIndexedJsonReader(file, indexFile)) {
+            Assert.assertEquals(lastId, reader.getMaxId());
+            Assert.assertEquals(lastId - FIRST_ID + 1, reader.getLogCount());
+            Assert.assertArrayEquals(new long[]{FIRST_ID + 1, FIRST_ID + DEPTH},
+                    reader.getChildIds(FIRST_ID));
+            for (long id = FIRST_ID + 1; id < FIRST_ID + DEPTH; id++) {
+                Assert.assertEquals(id - 1, reader.getParentId(id));
+            }
+
+            IttTreeNode node = reader.readSubtree(FIRST_ID);
+            for (int depth = 1; depth < DEPTH; depth++) {
+                node = node.getChildren().get(0);
+                Assert.assertEquals(FIRST_ID + depth, node.getLog().getId());
+            }
+            Assert.assertTrue(node.getChildren().isEmpty());
+        }
+    }
+
+    /**
+     * Log a track of {@link #DEPTH} logs, each under the previous one, which crosses the end of the int range,
+     * then a log under the first one and a span with a child.
+     *
+     * @return The ID of the last log.
+     */
+    private static long logDeepTree(IttLogger logger) {
+        logger.setMaxLogId(FIRST_ID - 1);
+        IttStatus ok = logger.addStatus("ok", "green");
+        logger.startExecution("Execution", "");
+        for (int depth = 0; depth < DEPTH; depth++) {
+            Assert.assertEquals(FIRST_ID + depth, logger.addLog("log " + depth, "", ok));
+            logger.startLogTrack();
+        }
+        for (int depth = 0; depth < DEPTH; depth++) {
+            logger.endLogTrack();
+        }
+        Assert.assertEquals(FIRST_ID + DEPTH, logger.addLog(FIRST_ID, "late child", "", ok));
+        try (IttSpan span = logger.span("span", "", ok)) {
+            Assert.assertEquals(FIRST_ID + DEPTH + 1, span.getId());
+            logger.addLog("in span", "", ok);
+        }
+        long lastId = logger.getMaxLogId();
+        logger.endExecution();
+        return lastId;
+    }
+
+    private static void assertDeepTree(InputStream inputStream) throws IOException {
+        IttTreeBuilder builder;
+        try (IttJsonReader reader = new IttJsonReader(inputStream)) {
+            reader.readHeader();
+            builder = IttTreeBuilder.build(reader);
+            Assert.assertTrue(reader.isComplete());
+        }
+
+        Assert.assertEquals(2, builder.getRoots().size());
+        IttTreeNode node = builder.getRoots().get(0);
+        Assert.assertEquals(FIRST_ID, node.getLog().getId());
+        Assert.assertEquals(2, node.getChildren().size());
+        Assert.assertEquals(FIRST_ID + DEPTH, node.getChildren().get(1).getLog().getId());
+        for (int depth = 1; depth < DEPTH; depth++) {
+            node = node.getChildren().get(0);
+            Assert.assertEquals(FIRST_ID + depth, node.getLog().getId());
+            Assert.assertEquals(FIRST_ID + depth - 1, node.getLog().getParentId());
+        }
+
+        // The span is written after its child
+        IttTreeNode span = builder.getNode(FIRST_ID + DEPTH + 1);
+        Assert.assertEquals("span", span.getLog().getTitle());
+        Assert.assertEquals(FIRST_ID + DEPTH + 2, span.getChildren().get(0).getLog().getId());
+        Assert.assertTrue(builder.getOrphans().isEmpty());
+    }
+
+}
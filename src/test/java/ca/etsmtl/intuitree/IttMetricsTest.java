@@ -0,0 +1,127 @@
+package ca.etsmtl.intuitree;
+
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+
+public class IttMetricsTest {
+
+    @Test
+    public void testSynchronousMetrics() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        IttLogger logger = new IttLogger(outputStream, true);
+        IttMetrics metrics = logger.enableMetrics();
+        logTree(logger);
+
+        IttMetricsSnapshot snapshot = metrics.snapshot();
+        Assert.assertEquals(300, snapshot.getLogsWritten());
+        Assert.assertEquals(300, snapshot.getMaxLogId());
+        Assert.assertEquals(10, snapshot.getTrackDepth());
+        Assert.assertEquals(10, snapshot.getMaxTrackDepth());
+        Assert.assertEquals(0, snapshot.getIoExceptionCount());
+        Assert.assertTrue(snapshot.getWriteNanos() > 0);
+        Assert.assertTrue(snapshot.getLockWaitNanos() >= 0);
+        Assert.assertEquals(300, sum(snapshot.getWriteNanosHistogram()));
+        Assert.assertTrue(snapshot.getWriteNanosPercentile(50) <= snapshot.getWriteNanosPercentile(99));
+        Assert.assertTrue(snapshot.getWriteNanosPercentile(99) > 0);
+
+        for (int i = 0; i < 10; i++) {
+            logger.endLogTrack();
+        }
+        logger.endExecution();
+        snapshot = metrics.snapshot();
+        Assert.assertEquals(0, snapshot.getTrackDepth());
+        Assert.assertEquals(outputStream.size(), snapshot.getBytesWritten());
+    }
+
+    @Test
+    public void testAsynchronousMetrics() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        IttLogger logger = new IttLogger(outputStream, true);
+        logger.enableAsync(64, IttWaitStrategy.BLOCK);
+        IttMetrics metrics = logger.enableMetrics();
+        logTree(logger);
+        logger.endExecution();
+
+        IttMetricsSnapshot snapshot = metrics.snapshot();
+        Assert.assertEquals(300, snapshot.getLogsWritten());
+        Assert.assertEquals(0, snapshot.getLockWaitNanos());
+        Assert.assertEquals(300, sum(snapshot.getWriteNanosHistogram()));
+        Assert.assertEquals(outputStream.size(), snapshot.getBytesWritten());
+    }
+
+    @Test
+    public void testIoExceptionCount() throws IOException {
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Disk full");
+            }
+        };
+        IttLogger logger = new IttLogger(failing, true, true);
+        IttMetrics metrics = logger.enableMetrics();
+        logger.addStatus("status", "#F00");
+        try {
+            logger.startExecution("Execution", "Failing");
+            logger.endExecution();
+            Assert.fail();
+        } catch (UncheckedIOException e) {
+            Assert.assertEquals(1, metrics.snapshot().getIoExceptionCount());
+        }
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        IttLogger logger = new IttLogger(new ByteArrayOutputStream(), true);
+        ObjectName name = logger.enableMetrics().registerMBean("test logger");
+        logTree(logger);
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        Assert.assertEquals(300L, server.getAttribute(name, "LogsWritten"));
+        Assert.assertEquals(300L, server.getAttribute(name, "MaxLogId"));
+        long[] histogram = (long[]) server.getAttribute(name, "WriteNanosHistogram");
+        Assert.assertEquals(IttMetrics.HISTOGRAM_BUCKETS, histogram.length);
+
+        logger.endExecution();
+        Assert.assertFalse(server.isRegistered(name));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMetricsAfterStart() throws IOException {
+        IttLogger logger = new IttLogger(new ByteArrayOutputStream(), true);
+        logger.addStatus("status", "#F00");
+        logger.startExecution("Execution", "Started");
+        logger.enableMetrics();
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    /**
+     * Log 30 logs at each of 10 nested tracks, leaving the tracks open.
+     */
+    private static void logTree(IttLogger logger) {
+        IttStatus status = logger.addStatus("status", "#F00");
+        logger.startExecution("Execution", "Metrics");
+        for (int depth = 0; depth < 10; depth++) {
+            for (int i = 0; i < 30; i++) {
+                logger.addLog("log", "message", status);
+            }
+            logger.startLogTrack();
+        }
+    }
+
+}
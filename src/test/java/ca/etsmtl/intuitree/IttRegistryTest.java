@@ -0,0 +1,204 @@
+package ca.etsmtl.intuitree;
+
+import ca.etsmtl.intuitree.format.IttJsonReader;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class IttRegistryTest {
+
+    @Test
+    public void testThousandsOfConcurrentExecutions() throws Exception {
+        int executionCount = 2000;
+        ByteArrayOutputStream[] outputs = new ByteArrayOutputStream[executionCount];
+        try (IttRegistry registry = new IttRegistry(4, 1024, IttWaitStrategy.BLOCK, executionCount)) {
+            ExecutorService requests = Executors.newFixedThreadPool(32);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < executionCount; i++) {
+                int index = i;
+                outputs[i] = new ByteArrayOutputStream();
+                futures.add(requests.submit(() -> {
+                    IttLogger logger = registry.create("request-" + index, outputs[index]);
+                    Assert.assertSame(logger, registry.get("request-" + index));
+                    IttStatus ok = logger.addStatus("ok", "green");
+                    logger.startExecution("Request " + index, "");
+                    try (IttSpan span = logger.span("handle", "", ok)) {
+                        for (int j = 0; j < 20; j++) {
+                            logger.addLog(span.getId(), "log " + j, "", ok);
+                        }
+                    }
+                    logger.endExecution();
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            requests.shutdown();
+            Assert.assertEquals(0, registry.size());
+        }
+
+        for (int i = 0; i < executionCount; i++) {
+            Assert.assertEquals(21, countLogs(outputs[i].toByteArray(), true));
+        }
+    }
+
+    @Test
+    public void testBoundedRegistration() {
+        try (IttRegistry registry = new IttRegistry(1, 64, IttWaitStrategy.BLOCK, 2)) {
+            registry.create("a", new ByteArrayOutputStream());
+            try {
+                registry.create("a", new ByteArrayOutputStream());
+                Assert.fail("Duplicate keys must be rejected");
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+            registry.create("b", new ByteArrayOutputStream());
+            try {
+                registry.create("c", new ByteArrayOutputStream());
+                Assert.fail("The registry is full");
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+
+            // A logger whose execution never started is discarded
+            Assert.assertTrue(registry.end("a"));
+            Assert.assertFalse(registry.end("a"));
+            Assert.assertNull(registry.get("a"));
+            registry.create("c", new ByteArrayOutputStream());
+            Assert.assertEquals(2, registry.size());
+        }
+    }
+
+    @Test
+    public void testIdleExecutionsAreEnded() throws Exception {
+        ByteArrayOutputStream idleOutput = new ByteArrayOutputStream();
+        ByteArrayOutputStream activeOutput = new ByteArrayOutputStream();
+        try (IttRegistry registry = new IttRegistry(2, 64, IttWaitStrategy.BLOCK, 10)) {
+            IttLogger idle = registry.create("idle", idleOutput);
+            IttStatus ok = idle.addStatus("ok", "green");
+            idle.startExecution("Idle", "");
+            idle.addLog("log", "", ok);
+            registry.create("never-started", new ByteArrayOutputStream());
+
+            IttLogger active = registry.create("active", activeOutput);
+            IttStatus activeOk = active.addStatus("ok", "green");
+            active.startExecution("Active", "");
+
+            registry.enableIdleClosing(200, TimeUnit.MILLISECONDS);
+            long deadline = System.currentTimeMillis() + 10000;
+            while (registry.size() > 1 && System.currentTimeMillis() < deadline) {
+                active.addLog("log", "", activeOk);
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(1, registry.size());
+            Assert.assertSame(active, registry.get("active"));
+            Assert.assertEquals(1, countLogs(idleOutput.toByteArray(), true));
+        }
+        // Closing the registry ends the remaining executions
+        Assert.assertTrue(countLogs(activeOutput.toByteArray(), true) > 0);
+    }
+
+    @Test
+    public void testEndedLoggerIsCollectable() throws Exception {
+        ExecutorService requests = Executors.newSingleThreadExecutor();
+        try (IttRegistry registry = new IttRegistry(1, 64, IttWaitStrategy.BLOCK, 10)) {
+            // The thread of the executor outlives the logger, as the threads of a request pool do
+            WeakReference<IttLogger> reference = requests.submit(() -> {
+                IttLogger logger = registry.create("request", new ByteArrayOutputStream());
+                IttStatus ok = logger.addStatus("ok", "green");
+                logger.setSampling(new IttSamplingPolicy(100));
+                logger.startExecution("Request", "");
+                logger.log().title("built").status(ok).emit();
+                try (IttSpan span = logger.span("handle", "", ok)) {
+                    logger.addLog("log " + span.getId(), "", ok);
+                }
+                logger.endExecution();
+                return new WeakReference<>(logger);
+            }).get();
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while (reference.get() != null && System.currentTimeMillis() < deadline) {
+                System.gc();
+                Thread.sleep(10);
+            }
+            Assert.assertNull("The ended logger is still reachable", reference.get());
+        } finally {
+            requests.shutdown();
+        }
+    }
+
+    @Test
+    public void testContextOfEndedThreadIsCollectable() throws Exception {
+        IttLogger logger = new IttLogger(new ByteArrayOutputStream(), true);
+        IttStatus ok = logger.addStatus("ok", "green");
+        logger.startExecution("Execution", "");
+
+        // The builder is only referenced by the context of its thread
+        AtomicReference<WeakReference<IttLogBuilder>> reference = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            IttLogBuilder builder = logger.log();
+            builder.title("built").status(ok).emit();
+            reference.set(new WeakReference<>(builder));
+        });
+        thread.start();
+        thread.join();
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (reference.get().get() != null && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertNull("The context of the ended thread is still reachable", reference.get().get());
+        logger.endExecution();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRegistryLoggersAreAlreadyAsynchronous() {
+        try (IttRegistry registry = new IttRegistry(1, 64, IttWaitStrategy.BLOCK, 1)) {
+            registry.create("key", new ByteArrayOutputStream()).enableAsync(64, IttWaitStrategy.BLOCK);
+        }
+    }
+
+    @Test
+    public void testSingletonIsNotReplacedWhileActive() throws IOException {
+        IttLogger logger = Intuitree.create(new ByteArrayOutputStream(), true);
+        logger.addStatus("ok", "green");
+        logger.startExecution("Execution", "");
+        try {
+            Intuitree.create(new ByteArrayOutputStream(), true);
+            Assert.fail("The active singleton must not be replaced");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        Assert.assertSame(logger, Intuitree.get());
+        logger.endExecution();
+        Assert.assertNotSame(logger, Intuitree.create(new ByteArrayOutputStream(), true));
+    }
+
+    private static int countLogs(byte[] execution, boolean expectComplete) throws IOException {
+        int count = 0;
+        try (IttJsonReader reader = new IttJsonReader(new ByteArrayInputStream(execution))) {
+            reader.readHeader();
+            IttLogRecord record = new IttLogRecord();
+            while (reader.readLog(record)) {
+                count++;
+            }
+            Assert.assertEquals(expectComplete, reader.isComplete());
+        }
+        return count;
+    }
+
+}
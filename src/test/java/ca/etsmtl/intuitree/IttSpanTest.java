@@ -0,0 +1,287 @@
+package ca.etsmtl.intuitree;
+
+import ca.etsmtl.intuitree.format.IttJsonReader;
+import ca.etsmtl.intuitree.format.IttTreeBuilder;
+import ca.etsmtl.intuitree.pojo.IttLog;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttSpanTotal;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+import ca.etsmtl.intuitree.pojo.IttTreeNode;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class IttSpanTest {
+
+    @Test
+    public void testNestedSpans() throws IOException {
+        for (boolean async : new boolean[]{false, true}) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            IttLogger logger = new IttLogger(outputStream, true, true);
+            if (async) {
+                logger.enableAsync(64, IttWaitStrategy.BLOCK);
+            }
+            logSpans(logger);
+            List<IttSpanTotal> statusTotals = logger.getSpanStatusTotals();
+            List<IttSpanTotal> tagTotals = logger.getSpanTagTotals();
+
+            List<IttLog> logs = new ArrayList<>();
+            IttTreeBuilder builder = new IttTreeBuilder();
+            try (IttJsonReader reader = new IttJsonReader(new ByteArrayInputStream(outputStream.toByteArray()))) {
+                reader.readHeader();
+                IttLogRecord record = new IttLogRecord();
+                while (reader.readLog(record)) {
+                    logs.add(record.toLog());
+                    builder.add(record);
+                }
+                Assert.assertTrue(reader.isComplete());
+                assertSameTotals(statusTotals, reader.getSpanStatusTotals());
+                assertSameTotals(tagTotals, reader.getSpanTagTotals());
+            }
+
+            // The log of a span comes after its children
+            Assert.assertEquals(SPAN_COUNT * 4, logs.size());
+            Assert.assertEquals("row", logs.get(0).getTitle());
+            Assert.assertEquals("query", logs.get(1).getTitle());
+            Assert.assertEquals("request 0", logs.get(3).getTitle());
+
+            Assert.assertEquals(SPAN_COUNT, builder.getRoots().size());
+            Assert.assertTrue(builder.getOrphans().isEmpty());
+            for (IttTreeNode root : builder.getRoots()) {
+                IttLog request = root.getLog();
+                Assert.assertEquals(2, root.getChildren().size());
+                IttLog query = root.getChildren().get(0).getLog();
+                IttLog done = root.getChildren().get(1).getLog();
+                Assert.assertEquals("query", query.getTitle());
+                Assert.assertEquals(query.getId(), root.getChildren().get(0).getChildren().get(0).getLog().getParentId());
+
+                Assert.assertTrue(request.getStartNanos() >= 0);
+                Assert.assertTrue(query.getStartNanos() >= request.getStartNanos());
+                Assert.assertTrue(query.getDurationNanos() <= request.getDurationNanos());
+                Assert.assertEquals(IttLogRecord.NO_DURATION, done.getDurationNanos());
+            }
+
+            // Totals are inclusive: the requests contain the queries
+            Assert.assertEquals(2, statusTotals.size());
+            long total = 0;
+            for (IttSpanTotal statusTotal : statusTotals) {
+                Assert.assertNull(statusTotal.getValue());
+                total += statusTotal.getCount();
+            }
+            Assert.assertEquals(SPAN_COUNT * 2, total);
+            Assert.assertTrue(statusTotals.get(0).getTotalNanos() >= statusTotals.get(1).getTotalNanos());
+            Assert.assertEquals(3, tagTotals.size());
+            Assert.assertEquals("route", tagTotals.get(0).getName());
+        }
+    }
+
+    @Test
+    public void testSpanStatusChangedBeforeClose() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        IttLogger logger = new IttLogger(outputStream, true, true);
+        logger.addStatus("ok", "green");
+        logger.addStatus("error", "red");
+        logger.startExecution("Execution", "");
+        try (IttSpan span = logger.span("request", "", "ok")) {
+            span.setStatus("error");
+        }
+        logger.endExecution();
+
+        List<IttLog> logs = readLogs(outputStream.toByteArray());
+        Assert.assertEquals("error", logs.get(0).getStatusName());
+        Assert.assertEquals("error", logger.getSpanStatusTotals().get(0).getName());
+    }
+
+    @Test
+    public void testTagValuesPastLimitAreOther() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        IttLogger logger = new IttLogger(outputStream, true, true);
+        IttStatus ok = logger.addStatus("ok", "green");
+        IttTag request = logger.addTag("request");
+        IttTag route = logger.addTag("route");
+        logger.startExecution("Execution", "");
+        int spanCount = IttSpanRollup.MAX_VALUES_PER_TAG + 100;
+        for (int i = 0; i < spanCount; i++) {
+            logger.span("request", "", ok, logger.tagValue(request, "r" + i), logger.tagValue(route, "/")).close();
+        }
+        logger.endExecution();
+
+        long routeNanos = 0;
+        long requestCount = 0;
+        long requestNanos = 0;
+        IttSpanTotal other = null;
+        List<IttSpanTotal> tagTotals = logger.getSpanTagTotals();
+        for (IttSpanTotal total : tagTotals) {
+            if ("route".equals(total.getName())) {
+                Assert.assertEquals(spanCount, total.getCount());
+                routeNanos = total.getTotalNanos();
+            } else {
+                requestCount += total.getCount();
+                requestNanos += total.getTotalNanos();
+                if (IttSpanTotal.OTHER_VALUE.equals(total.getValue())) {
+                    other = total;
+                }
+            }
+        }
+        Assert.assertEquals(IttSpanRollup.MAX_VALUES_PER_TAG + 2, tagTotals.size());
+        Assert.assertNotNull(other);
+        Assert.assertEquals(100, other.getCount());
+        Assert.assertEquals(spanCount, requestCount);
+        Assert.assertEquals(routeNanos, requestNanos);
+
+        try (IttJsonReader reader = new IttJsonReader(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            reader.readHeader();
+            while (reader.readLog(new IttLogRecord())) {
+                // Skip to the totals
+            }
+            assertSameTotals(tagTotals, reader.getSpanTagTotals());
+        }
+    }
+
+    @Test
+    public void testRejectedSpanKeepsItsChildren() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        IttLogger logger = new IttLogger(outputStream, true, true);
+        IttStatus ok = logger.addStatus("ok", "green");
+        IttStatus debug = logger.addStatus("debug", "gray");
+        logger.setFilter(IttLogFilter.statuses(ok), IttFilterPolicy.REPARENT);
+        logger.startExecution("Execution", "");
+        long rootId = logger.addLog("root", "", ok);
+        logger.startLogTrack();
+        try (IttSpan span = logger.span("hidden", "", debug)) {
+            Assert.assertEquals(rootId, span.getId());
+            logger.addLog("child", "", ok);
+        }
+        logger.addLog("sibling", "", ok);
+        logger.endLogTrack();
+        logger.endExecution();
+
+        List<IttLog> logs = readLogs(outputStream.toByteArray());
+        Assert.assertEquals(3, logs.size());
+        Assert.assertEquals(rootId, logs.get(1).getParentId());
+        Assert.assertEquals(rootId, logs.get(2).getParentId());
+        // The time of rejected spans still counts
+        Assert.assertEquals("debug", logger.getSpanStatusTotals().get(0).getName());
+    }
+
+    @Test
+    public void testUnclosedSpanLeavesOrphans() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        IttLogger logger = new IttLogger(outputStream, true, true);
+        IttStatus ok = logger.addStatus("ok", "green");
+        logger.startExecution("Execution", "");
+        logger.addLog("root", "", ok);
+        IttSpan span = logger.span("unclosed", "", ok);
+        logger.addLog("child", "", ok);
+        logger.startLogTrack();
+        logger.addLog("grandchild", "", ok);
+        logger.endExecution();
+        span.close();
+
+        IttTreeBuilder builder;
+        try (IttJsonReader reader = new IttJsonReader(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            reader.readHeader();
+            builder = IttTreeBuilder.build(reader);
+        }
+        Assert.assertEquals(1, builder.getRoots().size());
+        Assert.assertEquals(1, builder.getOrphans().size());
+        Assert.assertEquals("child", builder.getOrphans().get(0).getLog().getTitle());
+        Assert.assertEquals(1, builder.getOrphans().get(0).getChildren().size());
+        Assert.assertNull(builder.getNode(span.getId()));
+    }
+
+    @Test
+    public void testPartialTreeOfSpans() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        logSpans(new IttLogger(outputStream, true, true));
+
+        IttTreeBuilder builder;
+        try (IttJsonReader reader = new IttJsonReader(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            reader.readHeader();
+            // The third request span and the query span of the fifth one
+            builder = IttTreeBuilder.build(reader, 9, 18);
+        }
+        Assert.assertEquals(2, builder.getRoots().size());
+        Assert.assertEquals("request 2", builder.getRoots().get(0).getLog().getTitle());
+        Assert.assertEquals(2, builder.getRoots().get(0).getChildren().size());
+        Assert.assertEquals("query", builder.getRoots().get(1).getLog().getTitle());
+        Assert.assertEquals(1, builder.getRoots().get(1).getChildren().size());
+        Assert.assertNotNull(builder.getNode(11));
+        Assert.assertNull(builder.getNode(1));
+        Assert.assertTrue(builder.getOrphans().isEmpty());
+    }
+
+    @Test
+    public void testDisabledSpan() throws IOException {
+        IttLogger logger = new IttLogger(new ByteArrayOutputStream(), false);
+        try (IttSpan span = logger.span("title", "message", "unknown")) {
+            span.setStatus("unknown");
+            Assert.assertEquals(0, span.getId());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSpansClosedOutOfOrder() throws IOException {
+        IttLogger logger = new IttLogger(new ByteArrayOutputStream(), true, true);
+        IttStatus ok = logger.addStatus("ok", "green");
+        logger.startExecution("Execution", "");
+        IttSpan outer = logger.span("outer", "", ok);
+        IttSpan inner = logger.span("inner", "", ok);
+        outer.close();
+        inner.close();
+    }
+
+    private static final int SPAN_COUNT = 20;
+
+    /**
+     * Log SPAN_COUNT request spans, each with a query span with one log, then one more log.
+     * Request spans have the IDs 1, 5, 9, ... and query spans the IDs 2, 6, 10, ...
+     */
+    public static void logSpans(IttLogger logger) {
+        IttStatus ok = logger.addStatus("ok", "green");
+        IttStatus slow = logger.addStatus("slow", "orange");
+        IttTag route = logger.addTag("route");
+        logger.startExecution("Spans", "");
+        for (int i = 0; i < SPAN_COUNT; i++) {
+            try (IttSpan request = logger.span("request " + i, "", ok, logger.tagValue(route, "/" + (i % 3)))) {
+                try (IttSpan query = logger.span("query", "", ok)) {
+                    logger.addLog("row", "", ok);
+                    if (i % 4 == 0) {
+                        query.setStatus(slow);
+                    }
+                }
+                logger.addLog(request.getId(), "done", "", ok);
+            }
+        }
+        logger.endExecution();
+    }
+
+    private static List<IttLog> readLogs(byte[] execution) throws IOException {
+        List<IttLog> logs = new ArrayList<>();
+        try (IttJsonReader reader = new IttJsonReader(new ByteArrayInputStream(execution))) {
+            reader.readHeader();
+            IttLogRecord record = new IttLogRecord();
+            while (reader.readLog(record)) {
+                logs.add(record.toLog());
+            }
+        }
+        return logs;
+    }
+
+    private static void assertSameTotals(List<IttSpanTotal> expected, List<IttSpanTotal> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getName(), actual.get(i).getName());
+            Assert.assertEquals(expected.get(i).getValue(), actual.get(i).getValue());
+            Assert.assertEquals(expected.get(i).getCount(), actual.get(i).getCount());
+            Assert.assertEquals(expected.get(i).getTotalNanos(), actual.get(i).getTotalNanos());
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+package ca.etsmtl.intuitree.format;
+
+import ca.etsmtl.intuitree.IttLogger;
+import ca.etsmtl.intuitree.IttSpanTest;
+import ca.etsmtl.intuitree.IttWaitStrategy;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+public class IttBinaryWriterTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void testRoundTripGoldenFile() throws IOException {
+        ByteArrayOutputStream binaryOutput = new ByteArrayOutputStream();
+        IttLogger logger = new IttLogger(binaryOutput, true, true);
+        logger.setFormat(IttFormat.BINARY);
+        IttJsonWriterTest.logGoldenTree(logger);
+
+        Assert.assertEquals(IttJsonWriterTest.readResource("golden-v1.json"), convertToJson(binaryOutput.toByteArray(), true));
+    }
+
+    @Test
+    public void testRoundTripRandomTree() throws IOException {
+        for (boolean async : new boolean[]{false, true}) {
+            ByteArrayOutputStream jsonOutput = new ByteArrayOutputStream();
+            logRandomTree(new IttLogger(jsonOutput, true, true), IttFormat.JSON_V1, async);
+
+            ByteArrayOutputStream binaryOutput = new ByteArrayOutputStream();
+            logRandomTree(new IttLogger(binaryOutput, true, true), IttFormat.BINARY, async);
+
+            Assert.assertEquals(jsonOutput.toString("UTF-8"), convertToJson(binaryOutput.toByteArray(), true));
+            Assert.assertTrue("binary is " + binaryOutput.size() + " bytes, JSON is " + jsonOutput.size(),
+                    binaryOutput.size() * 3 < jsonOutput.size());
+        }
+    }
+
+    @Test
+    public void testTruncatedFile() throws IOException {
+        ByteArrayOutputStream binaryOutput = new ByteArrayOutputStream();
+        logRandomTree(new IttLogger(binaryOutput, true, true), IttFormat.BINARY, false);
+        byte[] binary = binaryOutput.toByteArray();
+
+        // Cut in the middle of a record: the export must still be valid JSON, with the logs before the cut
+        byte[] truncated = Arrays.copyOf(binary, binary.length / 2);
+        JsonNode exported = MAPPER.readTree(convertToJson(truncated, false));
+        JsonNode logs = exported.get("logs");
+        Assert.assertTrue(logs.size() > 0);
+        for (int i = 0; i < logs.size(); i++) {
+            Assert.assertEquals(i + 1, logs.get(i).get("id").asInt());
+        }
+    }
+
+    @Test
+    public void testRoundTripSpans() throws IOException {
+        ByteArrayOutputStream binaryOutput = new ByteArrayOutputStream();
+        IttLogger logger = new IttLogger(binaryOutput, true, true);
+        logger.setFormat(IttFormat.BINARY);
+        IttSpanTest.logSpans(logger);
+
+        assertOnlySpansTimed(convertToJson(binaryOutput.toByteArray(), true));
+    }
+
+    /**
+     * Check that the logs of spans, and only them, have their timing in a version 1 execution.
+     */
+    static void assertOnlySpansTimed(String json) throws IOException {
+        JsonNode logs = MAPPER.readTree(json).get("logs");
+        Assert.assertTrue(logs.size() > 0);
+        for (JsonNode log : logs) {
+            boolean span = log.get("title").asText().startsWith("request") || log.get("title").asText().equals("query");
+            Assert.assertEquals(span, log.has("startNanos"));
+            Assert.assertEquals(span, log.has("durationNanos"));
+            if (span) {
+                Assert.assertTrue(log.get("durationNanos").asLong() >= 0);
+            }
+        }
+    }
+
+    /**
+     * Log a deterministic pseudo-random tree, with late statuses and tags which are not in the header.
+     */
+    private static void logRandomTree(IttLogger logger, IttFormat format, boolean async) {
+        logger.setFormat(format);
+        if (async) {
+            logger.enableAsync(128, IttWaitStrategy.BLOCK);
+        }
+        IttStatus[] statuses = {logger.addStatus("ok", "green"), logger.addStatus("warning", "orange"), logger.addStatus("error", "red")};
+        IttTag[] tags = {logger.addTag("region"), logger.addTag("host"), logger.addTag("request")};
+        logger.startExecution("Random execution", "Seeded");
+        IttStatus lateStatus = logger.addStatus("late", "black");
+        IttTag lateTag = logger.addTag("late");
+
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            IttStatus status = random.nextInt(100) == 0 ? lateStatus : statuses[random.nextInt(statuses.length)];
+            logger.log().title("log " + i).message(random.nextInt(10) == 0 ? "caf\u00E9 \uD83C\uDF33 " + i : "")
+                    .status(status)
+                    .tag(tags[0], "region-" + random.nextInt(4))
+                    .tag(tags[1], "host-" + random.nextInt(64))
+                    .tag(tags[2], random.nextBoolean() ? Long.toHexString(random.nextLong()) : "")
+                    .tag(lateTag, random.nextInt(50) == 0 ? "late" : "")
+                    .emit();
+            int move = random.nextInt(3);
+            if (move == 0) {
+                logger.startLogTrack();
+            } else if (move == 1) {
+                logger.endLogTrack();
+            }
+        }
+        logger.endExecution();
+    }
+
+    private static String convertToJson(byte[] binary, boolean expectComplete) throws IOException {
+        ByteArrayOutputStream jsonOutput = new ByteArrayOutputStream();
+        boolean complete = IttBinaryConverter.convertToJson(new ByteArrayInputStream(binary), jsonOutput);
+        Assert.assertEquals(expectComplete, complete);
+        return new String(jsonOutput.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,117 @@
+package ca.etsmtl.intuitree.format;
+
+import ca.etsmtl.intuitree.IttLogger;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+public class IttDirectJsonEncoderTest {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testGoldenFile() throws IOException {
+        for (int bufferSize : new int[]{300, 4096}) {
+            File file = folder.newFile();
+            IttLogger logger = new IttLogger(file.getPath());
+            logger.enableDirectBuffers(bufferSize, 2);
+            IttJsonWriterTest.logGoldenTree(logger);
+
+            Assert.assertEquals(IttJsonWriterTest.readResource("golden-v1.json"),
+                    new String(Files.readAllBytes(file.toPath()), "UTF-8"));
+        }
+    }
+
+    @Test
+    public void testSameBytesAsJsonWriter() throws IOException {
+        Random random = new Random(42);
+        IttStatus status = new IttStatus("status", "green");
+        IttTag tag = new IttTag("tag");
+        IttDirectJsonEncoder encoder = new IttDirectJsonEncoder();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        IttLogRecord record = new IttLogRecord();
+
+        for (int i = 0; i < 1000; i++) {
+            record.clear();
+            record.setIds(random.nextInt(i + 1), i + 1);
+            record.setTitle(randomString(random));
+            record.setMessage(randomString(random));
+            record.setStatus(status);
+            for (int j = random.nextInt(3); j > 0; j--) {
+                record.addTag(tag, randomString(random));
+            }
+            if (random.nextBoolean()) {
+                record.setTiming(random.nextLong() & Long.MAX_VALUE, random.nextInt(Integer.MAX_VALUE));
+            }
+
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            expected.write(',');
+            try (JsonGenerator generator = FACTORY.createGenerator(expected, JsonEncoding.UTF8)) {
+                new IttJsonWriter(generator).writeLog(record);
+            }
+
+            buffer.clear();
+            Assert.assertTrue(encoder.encode(record, buffer));
+            byte[] actual = new byte[buffer.position()];
+            buffer.flip();
+            buffer.get(actual);
+            Assert.assertEquals(expected.toString("UTF-8"), new String(actual, "UTF-8"));
+        }
+    }
+
+    @Test
+    public void testLogWhichDoesNotFit() {
+        IttLogRecord record = new IttLogRecord();
+        record.setIds(0, 1);
+        record.setTitle("title");
+        record.setMessage("a message longer than the remaining bytes");
+        record.setStatus(new IttStatus("status", "green"));
+
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        buffer.put((byte) 'x');
+        Assert.assertFalse(new IttDirectJsonEncoder().encode(record, buffer));
+        Assert.assertEquals(1, buffer.position());
+    }
+
+    private static String randomString(Random random) {
+        if (random.nextInt(20) == 0) {
+            return null;
+        }
+        char[] chars = new char[random.nextInt(20)];
+        for (int i = 0; i < chars.length; i++) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    chars[i] = (char) random.nextInt(0x80);
+                    break;
+                case 1:
+                    chars[i] = (char) random.nextInt(0x800);
+                    break;
+                case 2:
+                    chars[i] = (char) (0xD800 + random.nextInt(0x800));
+                    break;
+                default:
+                    chars[i] = (char) random.nextInt(0x10000);
+            }
+        }
+        return new String(chars);
+    }
+
+}
@@ -0,0 +1,204 @@
+package ca.etsmtl.intuitree.format;
+
+import ca.etsmtl.intuitree.IttLogger;
+import ca.etsmtl.intuitree.IttSpanTest;
+import ca.etsmtl.intuitree.pojo.IttExecution;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttSpanTotal;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+import ca.etsmtl.intuitree.pojo.IttTreeNode;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class IttExecutionMergerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMergeNestsEverySource() throws IOException {
+        List<File> sourceFiles = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            File file = folder.newFile("worker-" + i + ".json");
+            IttLogger logger = new IttLogger(file.getPath(), true);
+            logRandomTree(logger, i, 500 + 200 * i);
+            sourceFiles.add(file);
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (IttWriter writer = IttFormat.JSON_V1.createWriter(outputStream)) {
+            IttExecutionMerger.merge(sourceFiles, new IttExecution("Job", "3 workers"), writer);
+        }
+
+        IttTreeBuilder merged;
+        try (IttJsonReader reader = new IttJsonReader(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            Assert.assertEquals("Job", reader.readHeader().getTitle());
+            Set<String> statusNames = new HashSet<>();
+            for (IttStatus status : reader.getStatuses()) {
+                Assert.assertTrue(statusNames.add(status.getName()));
+            }
+            Assert.assertEquals(new HashSet<>(Arrays.asList("source", "ok", "error", "worker-0",
+                    "worker-1", "worker-2")), statusNames);
+            Assert.assertEquals(2, reader.getTags().size());
+
+            // IDs are unique, and parents come before their children
+            merged = new IttTreeBuilder();
+            Set<Long> ids = new HashSet<>();
+            IttLogRecord record = new IttLogRecord();
+            while (reader.readLog(record)) {
+                Assert.assertTrue(ids.add(record.getId()));
+                Assert.assertTrue(record.getParentId() == 0 || ids.contains(record.getParentId()));
+                merged.add(record);
+            }
+            Assert.assertTrue(reader.isComplete());
+        }
+
+        Assert.assertEquals(3, merged.getRoots().size());
+        for (int i = 0; i < 3; i++) {
+            IttTreeNode root = merged.getRoots().get(i);
+            Assert.assertEquals("Worker " + i, root.getLog().getTitle());
+            Assert.assertEquals("worker-" + i + ".json", root.getLog().getMessage());
+            Assert.assertEquals("source", root.getLog().getStatusName());
+
+            IttTreeBuilder source;
+            try (IttJsonReader reader = new IttJsonReader(new FileInputStream(sourceFiles.get(i)))) {
+                reader.readHeader();
+                source = IttTreeBuilder.build(reader);
+            }
+            Assert.assertEquals(source.getRoots().size(), root.getChildren().size());
+            for (int j = 0; j < source.getRoots().size(); j++) {
+                assertSameTree(source.getRoots().get(j), root.getChildren().get(j));
+            }
+        }
+    }
+
+    @Test
+    public void testMergeKeepsSpans() throws IOException {
+        List<File> sourceFiles = new ArrayList<>();
+        Map<Long, IttLogRecord> timedLogs = new HashMap<>();
+        Map<List<String>, Long> countByTotal = new HashMap<>();
+        Map<List<String>, Long> nanosByTotal = new HashMap<>();
+        for (int i = 0; i < 2; i++) {
+            File file = folder.newFile("worker-" + i + ".json");
+            IttSpanTest.logSpans(new IttLogger(file.getPath(), true));
+            sourceFiles.add(file);
+
+            try (IttJsonReader reader = new IttJsonReader(new FileInputStream(file))) {
+                reader.readHeader();
+                IttLogRecord record = new IttLogRecord();
+                while (reader.readLog(record)) {
+                    if (record.isTimed()) {
+                        IttLogRecord timed = new IttLogRecord();
+                        timed.copyFrom(record);
+                        timedLogs.put(record.getId() * 2 + i + 1, timed);
+                    }
+                }
+                List<IttSpanTotal> totals = new ArrayList<>(reader.getSpanStatusTotals());
+                totals.addAll(reader.getSpanTagTotals());
+                for (IttSpanTotal total : totals) {
+                    List<String> key = Arrays.asList(total.getName(), total.getValue());
+                    countByTotal.merge(key, total.getCount(), Long::sum);
+                    nanosByTotal.merge(key, total.getTotalNanos(), Long::sum);
+                }
+            }
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (IttWriter writer = IttFormat.JSON_V1.createWriter(outputStream)) {
+            IttExecutionMerger.merge(sourceFiles, new IttExecution("Job", "2 workers"), writer);
+        }
+
+        try (IttJsonReader reader = new IttJsonReader(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            reader.readHeader();
+            int timedCount = 0;
+            IttLogRecord record = new IttLogRecord();
+            while (reader.readLog(record)) {
+                IttLogRecord expected = timedLogs.get(record.getId());
+                if (expected == null) {
+                    Assert.assertFalse(record.isTimed());
+                    continue;
+                }
+                timedCount++;
+                Assert.assertEquals(expected.getStartNanos(), record.getStartNanos());
+                Assert.assertEquals(expected.getDurationNanos(), record.getDurationNanos());
+            }
+            Assert.assertEquals(timedLogs.size(), timedCount);
+
+            // Totals with the same name and value are summed
+            List<IttSpanTotal> totals = new ArrayList<>(reader.getSpanStatusTotals());
+            totals.addAll(reader.getSpanTagTotals());
+            Assert.assertEquals(countByTotal.size(), totals.size());
+            for (IttSpanTotal total : totals) {
+                List<String> key = Arrays.asList(total.getName(), total.getValue());
+                Assert.assertEquals(countByTotal.get(key).longValue(), total.getCount());
+                Assert.assertEquals(nanosByTotal.get(key).longValue(), total.getTotalNanos());
+            }
+            for (int i = 1; i < reader.getSpanStatusTotals().size(); i++) {
+                Assert.assertTrue(reader.getSpanStatusTotals().get(i - 1).getTotalNanos()
+                        >= reader.getSpanStatusTotals().get(i).getTotalNanos());
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingSource() throws IOException {
+        try (IttWriter writer = IttFormat.JSON_V1.createWriter(new ByteArrayOutputStream())) {
+            IttExecutionMerger.merge(Collections.singletonList(new File(folder.getRoot(), "missing")),
+                    new IttExecution("Job", ""), writer);
+        }
+    }
+
+    private static void assertSameTree(IttTreeNode expected, IttTreeNode actual) {
+        Assert.assertEquals(expected.getLog().getTitle(), actual.getLog().getTitle());
+        Assert.assertEquals(expected.getLog().getStatusName(), actual.getLog().getStatusName());
+        Assert.assertEquals(expected.getLog().getTags().size(), actual.getLog().getTags().size());
+        for (int i = 0; i < expected.getLog().getTags().size(); i++) {
+            Assert.assertEquals(expected.getLog().getTags().get(i).getTagName(),
+                    actual.getLog().getTags().get(i).getTagName());
+            Assert.assertEquals(expected.getLog().getTags().get(i).getValue(),
+                    actual.getLog().getTags().get(i).getValue());
+        }
+        Assert.assertEquals(expected.getChildren().size(), actual.getChildren().size());
+        for (int i = 0; i < expected.getChildren().size(); i++) {
+            assertSameTree(expected.getChildren().get(i), actual.getChildren().get(i));
+        }
+    }
+
+    /**
+     * Log a random tree, with statuses and tags shared by every worker and one status specific to this worker.
+     */
+    private static void logRandomTree(IttLogger logger, int worker, int logCount) {
+        IttStatus[] statuses = {logger.addStatus("ok", "green"), logger.addStatus("error", "red"),
+                logger.addStatus("worker-" + worker, "blue")};
+        IttTag[] tags = {logger.addTag("host"), logger.addTag("step")};
+        logger.startExecution("Worker " + worker, "Seeded");
+
+        Random random = new Random(worker);
+        for (int i = 0; i < logCount; i++) {
+            logger.addLog("log " + i, "", statuses[random.nextInt(statuses.length)],
+                    logger.tagValue(tags[random.nextInt(tags.length)], "value " + random.nextInt(5)));
+            int move = random.nextInt(3);
+            if (move == 0) {
+                logger.startLogTrack();
+            } else if (move == 1) {
+                logger.endLogTrack();
+            }
+        }
+        logger.endExecution();
+    }
+
+}
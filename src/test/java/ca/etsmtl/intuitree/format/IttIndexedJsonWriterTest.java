@@ -0,0 +1,166 @@
+package ca.etsmtl.intuitree.format;
+
+import ca.etsmtl.intuitree.IttLogger;
+import ca.etsmtl.intuitree.IttWaitStrategy;
+import ca.etsmtl.intuitree.pojo.IttLog;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+import ca.etsmtl.intuitree.pojo.IttTreeNode;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.util.Random;
+
+public class IttIndexedJsonWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testOutputMatchesUnindexed() throws IOException {
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        IttJsonWriterTest.logGoldenTree(new IttLogger(plain, true, true));
+
+        ByteArrayOutputStream indexed = new ByteArrayOutputStream();
+        IttLogger logger = new IttLogger(indexed, true, true);
+        logger.enableIndex(new ByteArrayOutputStream());
+        IttJsonWriterTest.logGoldenTree(logger);
+
+        Assert.assertArrayEquals(plain.toByteArray(), indexed.toByteArray());
+    }
+
+    @Test
+    public void testSeekEveryLogAndSubtree() throws IOException {
+        for (boolean async : new boolean[]{false, true}) {
+            File executionFile = folder.newFile();
+            File indexFile = folder.newFile();
+            IttLogger logger = new IttLogger(executionFile.getPath(), true);
+            if (async) {
+                logger.enableAsync(64, IttWaitStrategy.BLOCK);
+            }
+            logger.enableIndex(new FileOutputStream(indexFile));
+            logRandomTree(logger);
+
+            IttTreeBuilder whole;
+            try (IttJsonReader reader = new IttJsonReader(new FileInputStream(executionFile))) {
+                reader.readHeader();
+                whole = IttTreeBuilder.build(reader);
+            }
+
+            try (IttIndexedJsonReader reader = new IttIndexedJsonReader(executionFile, indexFile)) {
+                Assert.assertEquals("Random execution", reader.getExecution().getTitle());
+                Assert.assertEquals(3000, reader.getMaxId());
+                Assert.assertEquals(whole.getRoots().size(), reader.getChildIds(0).length);
+
+                IttLogRecord record = new IttLogRecord();
+                for (long id = reader.getMaxId(); id >= 1; id--) {
+                    Assert.assertTrue(reader.readLog(id, record));
+                    assertSameLog(whole.getNode(id).getLog(), record.toLog());
+                    Assert.assertEquals(whole.getNode(id).getChildren().size(), reader.getChildIds(id).length);
+                }
+                Assert.assertFalse(reader.readLog(reader.getMaxId() + 1, record));
+
+                for (IttTreeNode root : whole.getRoots()) {
+                    assertSameTree(root, reader.readSubtree(root.getLog().getId()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReadsLayout1() throws IOException {
+        File executionFile = folder.newFile();
+        File indexFile = folder.newFile();
+        IttLogger logger = new IttLogger(executionFile.getPath(), true);
+        logger.enableIndex(new FileOutputStream(indexFile));
+        logRandomTree(logger);
+
+        // Layout 1 of the same index, which was indexed by 32-bit IDs
+        File layout1File = folder.newFile();
+        try (IttIndexedJsonReader reader = new IttIndexedJsonReader(executionFile, indexFile);
+             DataOutputStream index = new DataOutputStream(new FileOutputStream(layout1File))) {
+            int maxId = (int) reader.getMaxId();
+            index.write(IttIndexedJsonWriter.MAGIC);
+            index.writeInt(1);
+            index.writeInt(maxId);
+            for (int id = 0; id <= maxId; id++) {
+                index.writeLong(reader.getOffset(id));
+            }
+            int childStart = 0;
+            for (int id = 0; id <= maxId; id++) {
+                index.writeInt(childStart);
+                childStart += reader.getChildIds(id).length;
+            }
+            index.writeInt(childStart);
+            for (int id = 0; id <= maxId; id++) {
+                for (long childId : reader.getChildIds(id)) {
+                    index.writeInt((int) childId);
+                }
+            }
+        }
+
+        try (IttIndexedJsonReader reader = new IttIndexedJsonReader(executionFile, indexFile);
+             IttIndexedJsonReader layout1Reader = new IttIndexedJsonReader(executionFile, layout1File)) {
+            Assert.assertEquals(reader.getLogCount(), layout1Reader.getLogCount());
+            for (long id = 0; id <= reader.getMaxId() + 1; id++) {
+                Assert.assertEquals(reader.getOffset(id), layout1Reader.getOffset(id));
+                Assert.assertEquals(reader.getParentId(id), layout1Reader.getParentId(id));
+                Assert.assertArrayEquals(reader.getChildIds(id), layout1Reader.getChildIds(id));
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testIndexRequiresJsonV1() throws IOException {
+        IttLogger logger = new IttLogger(new ByteArrayOutputStream(), true);
+        logger.setFormat(IttFormat.BINARY);
+        logger.enableIndex(new ByteArrayOutputStream());
+    }
+
+    private static void assertSameTree(IttTreeNode expected, IttTreeNode actual) {
+        assertSameLog(expected.getLog(), actual.getLog());
+        Assert.assertEquals(expected.getChildren().size(), actual.getChildren().size());
+        for (int i = 0; i < expected.getChildren().size(); i++) {
+            assertSameTree(expected.getChildren().get(i), actual.getChildren().get(i));
+        }
+    }
+
+    private static void assertSameLog(IttLog expected, IttLog actual) {
+        Assert.assertEquals(expected.getId(), actual.getId());
+        Assert.assertEquals(expected.getParentId(), actual.getParentId());
+        Assert.assertEquals(expected.getTitle(), actual.getTitle());
+        Assert.assertEquals(expected.getMessage(), actual.getMessage());
+        Assert.assertEquals(expected.getStatusName(), actual.getStatusName());
+        Assert.assertEquals(expected.getTags().size(), actual.getTags().size());
+        for (int i = 0; i < expected.getTags().size(); i++) {
+            Assert.assertEquals(expected.getTags().get(i).getTagName(), actual.getTags().get(i).getTagName());
+            Assert.assertEquals(expected.getTags().get(i).getValue(), actual.getTags().get(i).getValue());
+        }
+    }
+
+    private static void logRandomTree(IttLogger logger) {
+        IttStatus[] statuses = {logger.addStatus("ok", "green"), logger.addStatus("error", "red")};
+        IttTag tag = logger.addTag("region");
+        logger.startExecution("Random execution", "Seeded");
+
+        Random random = new Random(42);
+        for (int i = 0; i < 3000; i++) {
+            logger.log().title("log " + i).message(random.nextInt(10) == 0 ? "caf\u00E9, \"quoted\" " + i : "")
+                    .status(statuses[random.nextInt(statuses.length)])
+                    .tag(tag, "region-" + random.nextInt(4))
+                    .emit();
+            int move = random.nextInt(3);
+            if (move == 0) {
+                logger.startLogTrack();
+            } else if (move == 1) {
+                logger.endLogTrack();
+            }
+        }
+        logger.endExecution();
+    }
+
+}
@@ -0,0 +1,102 @@
+package ca.etsmtl.intuitree.format;
+
+import ca.etsmtl.intuitree.IttLogger;
+import ca.etsmtl.intuitree.IttSpanTest;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class IttJsonLinesWriterTest {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    @Test
+    public void testOneFramePerLine() throws IOException {
+        byte[] frames = logGoldenTree();
+        String[] lines = new String(frames, StandardCharsets.UTF_8).split("\n");
+
+        ObjectMapper mapper = new ObjectMapper();
+        Assert.assertTrue(mapper.readTree(lines[0]).has("execution"));
+        Assert.assertFalse(mapper.readTree(lines[0]).has("logs"));
+        for (int i = 1; i < lines.length - 1; i++) {
+            JsonNode log = mapper.readTree(lines[i]);
+            Assert.assertEquals(i, log.get("id").asInt());
+        }
+        Assert.assertTrue(mapper.readTree(lines[lines.length - 1]).get("end").asBoolean());
+        Assert.assertEquals('\n', frames[frames.length - 1]);
+    }
+
+    @Test
+    public void testConvertGoldenFile() throws IOException {
+        ByteArrayOutputStream v1Output = new ByteArrayOutputStream();
+        Assert.assertTrue(IttJsonLinesConverter.convertToV1(new ByteArrayInputStream(logGoldenTree()), v1Output));
+
+        Assert.assertEquals(IttJsonWriterTest.readResource("golden-v1.json"), v1Output.toString("UTF-8"));
+    }
+
+    @Test
+    public void testConvertSpans() throws IOException {
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        IttSpanTest.logSpans(new IttLogger(new IttJsonLinesWriter(FACTORY.createGenerator(frames, JsonEncoding.UTF8)), true, true));
+
+        ByteArrayOutputStream v1Output = new ByteArrayOutputStream();
+        Assert.assertTrue(IttJsonLinesConverter.convertToV1(new ByteArrayInputStream(frames.toByteArray()), v1Output));
+        IttBinaryWriterTest.assertOnlySpansTimed(v1Output.toString("UTF-8"));
+        try (IttJsonReader reader = new IttJsonReader(new ByteArrayInputStream(v1Output.toByteArray()))) {
+            reader.readHeader();
+            while (reader.readLog(new IttLogRecord())) {
+                // Skip to the span totals
+            }
+            Assert.assertFalse(reader.getSpanStatusTotals().isEmpty());
+        }
+    }
+
+    @Test
+    public void testConvertInterruptedFrames() throws IOException {
+        byte[] frames = logGoldenTree();
+        // Cut in the middle of the third log
+        int cut = 0;
+        for (int newlines = 0; newlines < 3; cut++) {
+            if (frames[cut] == '\n') {
+                newlines++;
+            }
+        }
+        cut += 10;
+
+        ByteArrayOutputStream v1Output = new ByteArrayOutputStream();
+        Assert.assertFalse(IttJsonLinesConverter.convertToV1(new ByteArrayInputStream(Arrays.copyOf(frames, cut)), v1Output));
+        int count = 0;
+        try (IttJsonReader reader = new IttJsonReader(new ByteArrayInputStream(v1Output.toByteArray()))) {
+            reader.readHeader();
+            IttLogRecord record = new IttLogRecord();
+            while (reader.readLog(record)) {
+                count++;
+            }
+            Assert.assertTrue(reader.isComplete());
+        }
+        Assert.assertEquals(2, count);
+    }
+
+    @Test(expected = IOException.class)
+    public void testConvertWithoutHeader() throws IOException {
+        IttJsonLinesConverter.convertToV1(new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream());
+    }
+
+    private static byte[] logGoldenTree() throws IOException {
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        IttLogger logger = new IttLogger(new IttJsonLinesWriter(FACTORY.createGenerator(frames, JsonEncoding.UTF8)), true, true);
+        IttJsonWriterTest.logGoldenTree(logger);
+        return frames.toByteArray();
+    }
+
+}
@@ -0,0 +1,134 @@
+package ca.etsmtl.intuitree.format;
+
+import ca.etsmtl.intuitree.IttLogger;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+import ca.etsmtl.intuitree.pojo.IttTreeNode;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class IttJsonReaderTest {
+
+    @Test
+    public void testRoundTripGoldenFile() throws IOException {
+        byte[] golden = IttJsonWriterTest.readResource("golden-v1.json").getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (IttJsonReader reader = new IttJsonReader(new ByteArrayInputStream(golden));
+             IttWriter writer = IttFormat.JSON_V1.createWriter(outputStream)) {
+            writer.writeHeader(reader.readHeader(), reader.getStatuses(), reader.getTags());
+            IttLogRecord record = new IttLogRecord();
+            while (reader.readLog(record)) {
+                writer.writeLog(record);
+            }
+            writer.writeFooter();
+            Assert.assertTrue(reader.isComplete());
+        }
+
+        Assert.assertEquals(new String(golden, StandardCharsets.UTF_8), outputStream.toString("UTF-8"));
+    }
+
+    @Test
+    public void testTruncatedFile() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        logTree(new IttLogger(outputStream, true, true));
+        byte[] execution = outputStream.toByteArray();
+
+        // Every cut after the header must give the logs before the cut, in order
+        int previousCount = 0;
+        for (int length = execution.length / 10; length < execution.length; length += 97) {
+            try (IttJsonReader reader = new IttJsonReader(new ByteArrayInputStream(Arrays.copyOf(execution, length)))) {
+                reader.readHeader();
+                IttLogRecord record = new IttLogRecord();
+                int count = 0;
+                while (reader.readLog(record)) {
+                    Assert.assertEquals(++count, record.getId());
+                }
+                Assert.assertFalse(reader.isComplete());
+                Assert.assertTrue(count >= previousCount);
+                previousCount = count;
+            }
+        }
+        Assert.assertTrue(previousCount > 1000);
+    }
+
+    @Test
+    public void testTreeBuilderMaterializesRequestedSubtrees() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        logTree(new IttLogger(outputStream, true, true));
+
+        IttTreeBuilder whole;
+        try (IttJsonReader reader = new IttJsonReader(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            reader.readHeader();
+            whole = IttTreeBuilder.build(reader);
+        }
+        Assert.assertEquals(100, whole.getRoots().size());
+
+        IttTreeBuilder partial;
+        try (IttJsonReader reader = new IttJsonReader(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            reader.readHeader();
+            // The 11th root and a log deep in the 21st root
+            partial = IttTreeBuilder.build(reader, 241, 481 + 3);
+        }
+        Assert.assertEquals(2, partial.getRoots().size());
+        Assert.assertEquals("root 10", partial.getRoots().get(0).getLog().getTitle());
+        Assert.assertEquals(count(whole.getNode(241)), count(partial.getRoots().get(0)));
+        Assert.assertEquals(count(whole.getNode(484)), count(partial.getRoots().get(1)));
+        Assert.assertNull(partial.getNode(1));
+        Assert.assertEquals(count(whole.getNode(241)) + count(whole.getNode(484)), countMaterialized(partial, 2400));
+    }
+
+    private static int count(IttTreeNode node) {
+        int count = 1;
+        for (IttTreeNode child : node.getChildren()) {
+            count += count(child);
+        }
+        return count;
+    }
+
+    private static int countMaterialized(IttTreeBuilder builder, int maxId) {
+        int count = 0;
+        for (int id = 1; id <= maxId; id++) {
+            if (builder.getNode(id) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Log 100 roots of 24 logs each: 3 children with 3 children with 1 child each, and 2 more children.
+     */
+    private static void logTree(IttLogger logger) {
+        IttStatus status = logger.addStatus("status", "#F00");
+        IttTag tag = logger.addTag("tag");
+        logger.startExecution("Execution title", "Execution message");
+        for (int i = 0; i < 100; i++) {
+            logger.addLog("root " + i, "message", status, logger.tagValue(tag, "root"));
+            logger.startLogTrack();
+            for (int j = 0; j < 3; j++) {
+                logger.addLog("child " + j, "message", status);
+                logger.startLogTrack();
+                for (int k = 0; k < 3; k++) {
+                    logger.addLog("grandchild " + k, "message", status, logger.tagValue(tag, "\u00E9"));
+                    logger.startLogTrack();
+                    logger.addLog("leaf", "message", status);
+                    logger.endLogTrack();
+                }
+                logger.endLogTrack();
+            }
+            logger.addLog("child 3", "message", status);
+            logger.addLog("child 4", "message", status);
+            logger.endLogTrack();
+        }
+        logger.endExecution();
+    }
+
+}
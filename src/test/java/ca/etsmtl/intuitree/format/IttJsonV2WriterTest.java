@@ -0,0 +1,85 @@
+package ca.etsmtl.intuitree.format;
+
+import ca.etsmtl.intuitree.IttLogger;
+import ca.etsmtl.intuitree.IttSpanTest;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class IttJsonV2WriterTest {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    @Test
+    public void testConvertGoldenFile() throws IOException {
+        ByteArrayOutputStream v2Output = new ByteArrayOutputStream();
+        IttLogger logger = new IttLogger(v2Output, true, true);
+        logger.setFormat(IttFormat.JSON_V2);
+        IttJsonWriterTest.logGoldenTree(logger);
+
+        Assert.assertEquals(IttJsonWriterTest.readResource("golden-v1.json"), convertToV1(v2Output.toByteArray()));
+    }
+
+    @Test
+    public void testConvertWithoutInterning() throws IOException {
+        ByteArrayOutputStream v2Output = new ByteArrayOutputStream();
+        IttLogger logger = new IttLogger(new IttJsonV2Writer(FACTORY.createGenerator(v2Output, JsonEncoding.UTF8), false), true, true);
+        IttJsonWriterTest.logGoldenTree(logger);
+
+        Assert.assertEquals(IttJsonWriterTest.readResource("golden-v1.json"), convertToV1(v2Output.toByteArray()));
+    }
+
+    @Test
+    public void testCompactRepeatedValues() throws IOException {
+        ByteArrayOutputStream v1Output = new ByteArrayOutputStream();
+        logRepetitiveTree(new IttLogger(v1Output, true, true), IttFormat.JSON_V1);
+
+        ByteArrayOutputStream v2Output = new ByteArrayOutputStream();
+        logRepetitiveTree(new IttLogger(v2Output, true, true), IttFormat.JSON_V2);
+
+        Assert.assertEquals(v1Output.toString("UTF-8"), convertToV1(v2Output.toByteArray()));
+        Assert.assertTrue("v2 is " + v2Output.size() + " bytes, v1 is " + v1Output.size(),
+                v2Output.size() * 2 < v1Output.size());
+    }
+
+    @Test
+    public void testConvertSpans() throws IOException {
+        ByteArrayOutputStream v2Output = new ByteArrayOutputStream();
+        IttLogger logger = new IttLogger(v2Output, true, true);
+        logger.setFormat(IttFormat.JSON_V2);
+        IttSpanTest.logSpans(logger);
+
+        IttBinaryWriterTest.assertOnlySpansTimed(convertToV1(v2Output.toByteArray()));
+    }
+
+    private static void logRepetitiveTree(IttLogger logger, IttFormat format) {
+        logger.setFormat(format);
+        IttStatus success = logger.addStatus("SUCCESS_WITH_A_LONG_NAME", "green");
+        IttStatus failure = logger.addStatus("FAILURE_WITH_A_LONG_NAME", "red");
+        IttTag region = logger.addTag("deployment-region");
+        IttTag host = logger.addTag("deployment-host");
+        logger.startExecution("Execution title", "Execution message");
+        for (int i = 0; i < 1000; i++) {
+            logger.log().title("t").status(i % 10 == 0 ? failure : success)
+                    .tag(region, i % 2 == 0 ? "europe-west-1" : "north-america-east-2")
+                    .tag(host, "host-" + (i % 16) + ".example.com")
+                    .emit();
+        }
+        logger.endExecution();
+    }
+
+    private static String convertToV1(byte[] v2) throws IOException {
+        ByteArrayOutputStream v1Output = new ByteArrayOutputStream();
+        IttJsonV2Converter.convertToV1(new ByteArrayInputStream(v2), v1Output);
+        return new String(v1Output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,80 @@
+package ca.etsmtl.intuitree.format;
+
+import ca.etsmtl.intuitree.IttLogger;
+import ca.etsmtl.intuitree.IttWaitStrategy;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+
+public class IttJsonWriterTest {
+
+    /**
+     * Output of {@link #logGoldenTree(IttLogger)} as produced by the databind ObjectMapper serialization
+     * which was used before IttJsonWriter.
+     */
+    private static final String GOLDEN_FILE = "golden-v1.json";
+
+    @Test
+    public void testGoldenFile() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        logGoldenTree(new IttLogger(outputStream, true, true));
+
+        Assert.assertEquals(readResource(GOLDEN_FILE), new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testGoldenFileAsync() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        IttLogger logger = new IttLogger(outputStream, true, true);
+        logger.enableAsync(2, IttWaitStrategy.BLOCK);
+        logGoldenTree(logger);
+
+        Assert.assertEquals(readResource(GOLDEN_FILE), new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Log a tree which covers every field of every record, with strings that need escaping.
+     */
+    static void logGoldenTree(IttLogger logger) {
+        IttStatus ok = logger.addStatus("ok", "#0F0");
+        logger.addStatus("error \"quoted\"", "rgb(255, 0, 0)");
+        logger.addStatus("unicode \u00E9\u6F22\u5B57", "white");
+
+        IttTag region = logger.addTag("region");
+        logger.addTag("tag\twith\ncontrol");
+        logger.addTag("emoji \uD83C\uDF33");
+
+        logger.startExecution("Execution \"title\"", "Line 1\nLine 2\\ \u0001 </script>");
+
+        logger.addLog("root", "no tags", ok);
+        logger.startLogTrack();
+        logger.addLog("child", "one tag", ok, logger.tagValue(region, "eu-west"));
+        logger.addLog("child 2", "three tags", "error \"quoted\"",
+                logger.tagValue(region, "us"),
+                logger.tagValue("tag\twith\ncontrol", "a\tb"),
+                logger.tagValue("emoji \uD83C\uDF33", null));
+        logger.startLogTrack();
+        logger.addLog(null, null, "unicode \u00E9\u6F22\u5B57", logger.tagValue(region, "\u00E9\u2028"));
+        logger.endLogTrack();
+        logger.endLogTrack();
+        logger.addLog(Integer.toString(Integer.MAX_VALUE), "", ok);
+
+        logger.endExecution();
+    }
+
+    static String readResource(String name) throws IOException {
+        try (InputStream inputStream = IttJsonWriterTest.class.getResourceAsStream(name)) {
+            Assert.assertNotNull("Missing resource " + name, inputStream);
+            Scanner scanner = new Scanner(inputStream, "UTF-8").useDelimiter("\\A");
+            return scanner.hasNext() ? scanner.next() : "";
+        }
+    }
+
+}
@@ -0,0 +1,171 @@
+package ca.etsmtl.intuitree.io;
+
+import ca.etsmtl.intuitree.IttLogger;
+import ca.etsmtl.intuitree.format.IttFormat;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+public class IttFlightRecorderTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testNothingWrittenWithoutTrigger() {
+        IttFlightRecorder recorder = new IttFlightRecorder(
+                new File(folder.getRoot(), "execution.json").getPath(), IttFormat.JSON_V1, 10);
+        IttLogger logger = new IttLogger(recorder, true, true);
+        IttStatus ok = logger.addStatus("ok", "#0F0");
+        logger.startExecution("Execution title", "Execution message");
+        for (int i = 0; i < 1000; i++) {
+            logger.addLog("log " + i, "", ok);
+        }
+        logger.endExecution();
+
+        Assert.assertEquals(0, folder.getRoot().listFiles().length);
+    }
+
+    @Test
+    public void testDumpKeepsRecentLogsAndAncestors() throws IOException {
+        IttFlightRecorder recorder = new IttFlightRecorder(
+                new File(folder.getRoot(), "execution.json").getPath(), IttFormat.JSON_V1, 10, 64);
+        IttLogger logger = new IttLogger(recorder, true, true);
+        IttStatus ok = logger.addStatus("ok", "#0F0");
+        logger.startExecution("Execution title", "Execution message");
+
+        // Flat siblings are forgotten, but the chain leading to the recent logs is kept
+        for (int i = 0; i < 100; i++) {
+            logger.addLog("old " + i, "", ok);
+        }
+        for (int depth = 0; depth < 30; depth++) {
+            logger.addLog("chain " + depth, "", ok);
+            logger.startLogTrack();
+            for (int i = 0; i < 5; i++) {
+                logger.addLog("leaf " + depth + "-" + i, "", ok);
+            }
+        }
+        File dump = recorder.dump();
+        logger.endExecution();
+
+        Assert.assertEquals("execution.00000.json", dump.getName());
+        JsonNode logs = MAPPER.readTree(dump).get("logs");
+        Map<Integer, String> titleById = new HashMap<>();
+        for (JsonNode log : logs) {
+            titleById.put(log.get("id").asInt(), log.get("title").asText());
+            int parentId = log.get("parentId").asInt();
+            Assert.assertTrue(parentId == 0 || titleById.containsKey(parentId));
+        }
+        // 10 recent logs, and the chain logs which are not among them
+        Assert.assertEquals(10 + 29, logs.size());
+        for (int depth = 0; depth < 30; depth++) {
+            Assert.assertTrue(titleById.containsValue("chain " + depth));
+        }
+        Assert.assertEquals("leaf 29-4", logs.get(logs.size() - 1).get("title").asText());
+    }
+
+    @Test
+    public void testTriggerStatusDumps() throws IOException {
+        IttStatus ok = new IttStatus("ok", "#0F0");
+        IttStatus error = new IttStatus("error", "#F00");
+        IttFlightRecorder recorder = new IttFlightRecorder(
+                new File(folder.getRoot(), "execution.json").getPath(), IttFormat.JSON_V1, 5, error);
+        IttLogger logger = new IttLogger(recorder, true, true);
+        logger.addStatus("ok", "#0F0");
+        logger.addStatus("error", "#F00");
+        logger.startExecution("Execution title", "Execution message");
+
+        for (int i = 0; i < 20; i++) {
+            logger.addLog("log " + i, "", i == 12 || i == 18 ? "error" : "ok");
+        }
+        logger.endExecution();
+
+        File[] dumps = folder.getRoot().listFiles();
+        Assert.assertEquals(2, dumps.length);
+        JsonNode first = MAPPER.readTree(new File(folder.getRoot(), "execution.00000.json"));
+        Assert.assertEquals("Execution title", first.get("execution").get("title").asText());
+        Assert.assertEquals(2, first.get("statuses").size());
+        JsonNode logs = first.get("logs");
+        Assert.assertEquals(5, logs.size());
+        Assert.assertEquals("log 8", logs.get(0).get("title").asText());
+        Assert.assertEquals("log 12", logs.get(4).get("title").asText());
+        Assert.assertEquals(ok.getName(), logs.get(0).get("statusName").asText());
+    }
+
+    @Test
+    public void testBurstOfTriggersIsCoalesced() throws IOException {
+        IttStatus error = new IttStatus("error", "#F00");
+        IttFlightRecorder recorder = new IttFlightRecorder(
+                new File(folder.getRoot(), "execution.json").getPath(), IttFormat.JSON_V1, 5, error);
+        IttLogger logger = new IttLogger(recorder, true, true);
+        logger.addStatus("error", "#F00");
+        logger.startExecution("Execution title", "Execution message");
+
+        // Holding the recorder keeps the first dump pending, without blocking this thread which already holds it
+        synchronized (recorder) {
+            for (int i = 0; i < 1000; i++) {
+                logger.addLog("log " + i, "", "error");
+            }
+        }
+        logger.endExecution();
+
+        Assert.assertEquals(2, folder.getRoot().listFiles().length);
+        JsonNode first = MAPPER.readTree(new File(folder.getRoot(), "execution.00000.json")).get("logs");
+        Assert.assertEquals("log 0", first.get(0).get("title").asText());
+        JsonNode second = MAPPER.readTree(new File(folder.getRoot(), "execution.00001.json")).get("logs");
+        Assert.assertEquals("log 999", second.get(second.size() - 1).get("title").asText());
+    }
+
+    @Test
+    public void testTriggeredDumpIsWrittenInBackground() {
+        // The dumps can't be written, which only fails the background thread instead of the logging thread
+        IttStatus error = new IttStatus("error", "#F00");
+        IttFlightRecorder recorder = new IttFlightRecorder(
+                new File(folder.getRoot(), "missing/execution.json").getPath(), IttFormat.JSON_V1, 5, error);
+        IttLogger logger = new IttLogger(recorder, true, true);
+        logger.addStatus("error", "#F00");
+        logger.startExecution("Execution title", "Execution message");
+        for (int i = 0; i < 3; i++) {
+            logger.addLog("log " + i, "", "error");
+        }
+        logger.endExecution();
+
+        Assert.assertEquals(0, folder.getRoot().listFiles().length);
+    }
+
+    @Test
+    public void testFullAncestorPoolDumpsOrphansAtRoot() throws IOException {
+        IttFlightRecorder recorder = new IttFlightRecorder(
+                new File(folder.getRoot(), "execution.json").getPath(), IttFormat.JSON_V1, 4, 2);
+        IttLogger logger = new IttLogger(recorder, true, true);
+        IttStatus ok = logger.addStatus("ok", "#0F0");
+        logger.startExecution("Execution title", "Execution message");
+        for (int depth = 0; depth < 20; depth++) {
+            logger.addLog("chain " + depth, "", ok);
+            logger.startLogTrack();
+        }
+        JsonNode logs = MAPPER.readTree(recorder.dump()).get("logs");
+        logger.endExecution();
+
+        // The recent logs are all dumped, with as many ancestors as the pool could keep
+        Assert.assertTrue(logs.size() >= 4 && logs.size() <= 6);
+        Assert.assertEquals(0, logs.get(0).get("parentId").asInt());
+        for (int i = 1; i < logs.size(); i++) {
+            int parentId = logs.get(i).get("parentId").asInt();
+            Assert.assertTrue(parentId == 0 || parentId == logs.get(i - 1).get("id").asInt());
+        }
+        Assert.assertEquals("chain 16", logs.get(logs.size() - 4).get("title").asText());
+    }
+
+}
@@ -0,0 +1,41 @@
+package ca.etsmtl.intuitree.io;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class IttLongIntMapTest {
+
+    @Test
+    public void testMatchesHashMap() {
+        IttLongIntMap map = new IttLongIntMap(16);
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200000; i++) {
+            // Small key range, beyond the int range, so keys are often removed and added again in the same clusters
+            long key = Integer.MAX_VALUE + 1L + random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                map.remove(key);
+                expected.remove(key);
+            } else {
+                map.put(key, i);
+                expected.put(key, i);
+            }
+        }
+
+        Assert.assertEquals(expected.size(), map.size());
+        for (long key = Integer.MAX_VALUE + 1L; key <= Integer.MAX_VALUE + 2000L; key++) {
+            Integer value = expected.get(key);
+            Assert.assertEquals(value != null ? value : -1, map.get(key, -1));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsEmptyKey() {
+        new IttLongIntMap(16).put(0, 1);
+    }
+
+}
@@ -0,0 +1,83 @@
+package ca.etsmtl.intuitree.io;
+
+import ca.etsmtl.intuitree.IttLogger;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class IttMappedFileOutputStreamTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWritesAcrossChunks() throws IOException {
+        File file = folder.newFile();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (IttMappedFileOutputStream outputStream = new IttMappedFileOutputStream(file.getPath(), 100)) {
+            for (int i = 0; i < 1000; i++) {
+                byte[] bytes = ("line " + i + "\n").getBytes("UTF-8");
+                outputStream.write(bytes);
+                expected.write(bytes);
+                outputStream.write('#');
+                expected.write('#');
+            }
+            Assert.assertEquals(expected.size(), outputStream.getPosition());
+        }
+
+        // The file is truncated to what was written, not to the mapped chunks
+        Assert.assertArrayEquals(expected.toByteArray(), Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void testChunksAreUnmapped() throws IOException {
+        // Mappings of the process are listed by Linux only
+        File maps = new File("/proc/self/maps");
+        Assume.assumeTrue(maps.exists());
+
+        File file = folder.newFile();
+        String path = file.getCanonicalPath();
+        try (IttMappedFileOutputStream outputStream = new IttMappedFileOutputStream(file.getPath(), 4096)) {
+            for (int i = 0; i < 10; i++) {
+                outputStream.write(new byte[4096]);
+            }
+            Assert.assertEquals(1, countMappings(maps, path));
+        }
+        Assert.assertEquals(0, countMappings(maps, path));
+        Assert.assertEquals(10 * 4096, file.length());
+    }
+
+    @Test
+    public void testLoggerOutputMatchesFileOutput() throws IOException {
+        File plainFile = folder.newFile();
+        logTree(new IttLogger(plainFile.getPath(), true, false));
+
+        File mappedFile = folder.newFile();
+        logTree(new IttLogger(mappedFile.getPath(), true, true));
+
+        Assert.assertArrayEquals(Files.readAllBytes(plainFile.toPath()), Files.readAllBytes(mappedFile.toPath()));
+    }
+
+    private static long countMappings(File maps, String path) throws IOException {
+        return Files.readAllLines(maps.toPath()).stream().filter(line -> line.endsWith(" " + path)).count();
+    }
+
+    private static void logTree(IttLogger logger) {
+        IttStatus status = logger.addStatus("status", "#F00");
+        logger.startExecution("Execution title", "Execution message");
+        for (int i = 0; i < 10000; i++) {
+            logger.log().title("log " + i).message("message").status(status).emit();
+            logger.startLogTrack();
+        }
+        logger.endExecution();
+    }
+
+}
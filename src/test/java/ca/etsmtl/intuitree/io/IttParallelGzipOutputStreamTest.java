@@ -0,0 +1,103 @@
+package ca.etsmtl.intuitree.io;
+
+import ca.etsmtl.intuitree.IttLogger;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+public class IttParallelGzipOutputStreamTest {
+
+    @Test
+    public void testLoggerOutputDecompresses() throws IOException {
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        logTree(new IttLogger(plain, true, true));
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        logTree(new IttLogger(new IttParallelGzipOutputStream(compressed, 4096, Deflater.DEFAULT_COMPRESSION, 4), true, true));
+
+        Assert.assertTrue(compressed.size() < plain.size() / 4);
+        Assert.assertArrayEquals(plain.toByteArray(), gunzip(compressed.toByteArray()));
+    }
+
+    @Test
+    public void testRandomWritesOnSharedExecutor() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Random random = new Random(42);
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (IttParallelGzipOutputStream outputStream =
+                         new IttParallelGzipOutputStream(compressed, 1000, 1, executor, 2)) {
+                for (int i = 0; i < 2000; i++) {
+                    // Random bytes don't compress, which makes members larger than their block
+                    byte[] bytes = new byte[random.nextInt(3000)];
+                    random.nextBytes(bytes);
+                    outputStream.write(bytes);
+                    expected.write(bytes);
+                    outputStream.write(i);
+                    expected.write(i);
+                    if (i % 500 == 0) {
+                        outputStream.flush();
+                    }
+                }
+            }
+            Assert.assertArrayEquals(expected.toByteArray(), gunzip(compressed.toByteArray()));
+            Assert.assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testEmptyStream() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        new IttParallelGzipOutputStream(compressed).close();
+
+        Assert.assertTrue(compressed.size() > 0);
+        Assert.assertEquals(0, gunzip(compressed.toByteArray()).length);
+    }
+
+    @Test(expected = IOException.class)
+    public void testWriteAfterClose() throws IOException {
+        IttParallelGzipOutputStream outputStream = new IttParallelGzipOutputStream(new ByteArrayOutputStream());
+        outputStream.close();
+        outputStream.write(1);
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = inputStream.read(buffer)) >= 0) {
+                output.write(buffer, 0, count);
+            }
+        }
+        return output.toByteArray();
+    }
+
+    private static void logTree(IttLogger logger) {
+        IttStatus status = logger.addStatus("status", "#F00");
+        IttTag tag = logger.addTag("tag");
+        logger.startExecution("Execution title", "Execution message");
+        for (int i = 0; i < 10000; i++) {
+            logger.addLog("log " + i, "message " + i, status, logger.tagValue(tag, "value " + (i % 7)));
+            if (i % 100 == 0) {
+                logger.startLogTrack();
+            }
+        }
+        logger.endExecution();
+    }
+
+}
@@ -0,0 +1,268 @@
+package ca.etsmtl.intuitree.io;
+
+import ca.etsmtl.intuitree.IttLogger;
+import ca.etsmtl.intuitree.IttSpanTest;
+import ca.etsmtl.intuitree.format.IttFormat;
+import ca.etsmtl.intuitree.format.IttJsonReader;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttSpanTotal;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class IttRollingFileWriterTest {
+
+    private static final int LOG_COUNT = 5000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSegmentsAreCompleteExecutions() throws IOException {
+        IttRollingFileWriter writer = new IttRollingFileWriter(
+                new File(folder.getRoot(), "execution.json").getPath(), IttFormat.JSON_V1, 16 * 1024, 0, 0);
+        logTree(new IttLogger(writer, true, true), true);
+
+        List<File> segments = writer.getSegmentFiles();
+        Assert.assertTrue(segments.size() > 5);
+        Assert.assertEquals("execution.00000.json", segments.get(0).getName());
+
+        ObjectMapper mapper = new ObjectMapper();
+        Set<Integer> ids = new HashSet<>();
+        for (File segment : segments) {
+            JsonNode execution = mapper.readTree(segment);
+            Assert.assertEquals("Execution title", execution.get("execution").get("title").asText());
+            Assert.assertTrue(execution.get("statuses").size() >= 1);
+            assertStandsAlone(execution.get("logs"));
+            for (JsonNode log : execution.get("logs")) {
+                ids.add(log.get("id").asInt());
+            }
+        }
+        Assert.assertEquals(LOG_COUNT, ids.size());
+        // The open branch of the tree is copied at the top of the next segments
+        Assert.assertEquals(1, mapper.readTree(segments.get(1)).get("logs").get(0).get("id").asInt());
+
+        // Statuses added during the execution are in the headers of the following segments
+        Assert.assertEquals(2, mapper.readTree(segments.get(segments.size() - 1)).get("statuses").size());
+    }
+
+    @Test
+    public void testStitchedSegmentsMatchSingleFile() throws IOException {
+        File single = folder.newFile();
+        logTree(new IttLogger(single.getPath(), true), false);
+
+        IttRollingFileWriter writer = new IttRollingFileWriter(
+                new File(folder.getRoot(), "execution.json").getPath(), IttFormat.JSON_V1, 16 * 1024, 0, 0);
+        logTree(new IttLogger(writer, true, true), false);
+
+        ByteArrayOutputStream stitched = new ByteArrayOutputStream();
+        IttSegmentStitcher.stitch(writer.getSegmentFiles(), stitched);
+        Assert.assertArrayEquals(Files.readAllBytes(single.toPath()), stitched.toByteArray());
+    }
+
+    @Test
+    public void testStitchTruncatedLastSegment() throws IOException {
+        IttRollingFileWriter writer = new IttRollingFileWriter(
+                new File(folder.getRoot(), "execution.json").getPath(), IttFormat.JSON_V1, 16 * 1024, 0, 0);
+        logTree(new IttLogger(writer, true, true), false);
+
+        List<File> segments = writer.getSegmentFiles();
+        File last = segments.get(segments.size() - 1);
+        try (RandomAccessFile file = new RandomAccessFile(last, "rw")) {
+            file.setLength(file.length() - 20);
+        }
+
+        ByteArrayOutputStream stitched = new ByteArrayOutputStream();
+        IttSegmentStitcher.stitch(segments, stitched);
+        JsonNode logs = new ObjectMapper().readTree(stitched.toByteArray()).get("logs");
+        Assert.assertEquals(LOG_COUNT - 1, logs.size());
+        Assert.assertEquals(LOG_COUNT - 1, logs.get(logs.size() - 1).get("id").asInt());
+    }
+
+    @Test
+    public void testStitchSpans() throws IOException {
+        IttRollingFileWriter writer = new IttRollingFileWriter(
+                new File(folder.getRoot(), "execution.json").getPath(), IttFormat.JSON_V1, 1024, 0, 0);
+        IttLogger logger = new IttLogger(writer, true, true);
+        IttSpanTest.logSpans(logger);
+        List<IttSpanTotal> statusTotals = logger.getSpanStatusTotals();
+        Assert.assertTrue(writer.getSegmentFiles().size() > 1);
+
+        ByteArrayOutputStream stitched = new ByteArrayOutputStream();
+        IttSegmentStitcher.stitch(writer.getSegmentFiles(), stitched);
+        try (IttJsonReader reader = new IttJsonReader(new ByteArrayInputStream(stitched.toByteArray()))) {
+            reader.readHeader();
+            int timedCount = 0;
+            IttLogRecord record = new IttLogRecord();
+            while (reader.readLog(record)) {
+                if (record.isTimed()) {
+                    timedCount++;
+                }
+            }
+            Assert.assertTrue(reader.isComplete());
+            Assert.assertEquals(statusTotals.get(0).getCount() + statusTotals.get(1).getCount(), timedCount);
+            Assert.assertEquals(statusTotals.size(), reader.getSpanStatusTotals().size());
+            for (int i = 0; i < statusTotals.size(); i++) {
+                Assert.assertEquals(statusTotals.get(i).getName(), reader.getSpanStatusTotals().get(i).getName());
+                Assert.assertEquals(statusTotals.get(i).getTotalNanos(),
+                        reader.getSpanStatusTotals().get(i).getTotalNanos());
+            }
+            Assert.assertEquals(logger.getSpanTagTotals().size(), reader.getSpanTagTotals().size());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testStitchTruncatedEarlierSegment() throws IOException {
+        IttRollingFileWriter writer = new IttRollingFileWriter(
+                new File(folder.getRoot(), "execution.json").getPath(), IttFormat.JSON_V1, 16 * 1024, 0, 0);
+        logTree(new IttLogger(writer, true, true), false);
+
+        List<File> segments = writer.getSegmentFiles();
+        try (RandomAccessFile file = new RandomAccessFile(segments.get(0), "rw")) {
+            file.setLength(file.length() - 20);
+        }
+        IttSegmentStitcher.stitch(segments, new ByteArrayOutputStream());
+    }
+
+    @Test
+    public void testInterleavedTreesStandAlone() throws IOException {
+        IttRollingFileWriter writer = new IttRollingFileWriter(
+                new File(folder.getRoot(), "execution.json").getPath(), IttFormat.JSON_V1, 4 * 1024, 0, 0);
+        IttLogger logger = new IttLogger(writer, true, true);
+        IttStatus status = logger.addStatus("status", "#F00");
+        logger.startExecution("Execution title", "Execution message");
+        long[] parentIds = new long[4];
+        for (int i = 0; i < 4; i++) {
+            parentIds[i] = logger.addLog("tree " + i, "", status);
+        }
+        for (int i = 0; i < 1000; i++) {
+            // Each tree gets one level deeper every 10 of its logs, as if logged by its own thread
+            long id = logger.addLog(parentIds[i % 4], "log " + i, "", status);
+            if (i % 40 < 4) {
+                parentIds[i % 4] = id;
+            }
+        }
+        logger.endExecution();
+
+        List<File> segments = writer.getSegmentFiles();
+        Assert.assertTrue(segments.size() > 5);
+        ObjectMapper mapper = new ObjectMapper();
+        for (File segment : segments) {
+            assertStandsAlone(mapper.readTree(segment).get("logs"));
+        }
+
+        ByteArrayOutputStream stitched = new ByteArrayOutputStream();
+        IttSegmentStitcher.stitch(segments, stitched);
+        JsonNode logs = mapper.readTree(stitched.toByteArray()).get("logs");
+        Assert.assertEquals(1004, logs.size());
+        assertStandsAlone(logs);
+    }
+
+    @Test
+    public void testStitchKeepsAncestorsOfDeletedSegments() throws IOException {
+        IttRollingFileWriter writer = new IttRollingFileWriter(
+                new File(folder.getRoot(), "execution.json").getPath(), IttFormat.JSON_V1, 16 * 1024, 0, 3);
+        logTree(new IttLogger(writer, true, true), false);
+
+        ByteArrayOutputStream stitched = new ByteArrayOutputStream();
+        IttSegmentStitcher.stitch(writer.getSegmentFiles(), stitched);
+        JsonNode logs = new ObjectMapper().readTree(stitched.toByteArray()).get("logs");
+        Assert.assertTrue(logs.size() < LOG_COUNT);
+        assertStandsAlone(logs);
+        // The oldest kept segment starts with the chain of its first logs, from the root of the tree
+        Assert.assertEquals(1, logs.get(0).get("id").asInt());
+        int rootCount = 0;
+        for (JsonNode log : logs) {
+            if (log.get("parentId").asInt() == 0) {
+                rootCount++;
+            }
+        }
+        Assert.assertEquals(1, rootCount);
+    }
+
+    @Test
+    public void testRetention() throws IOException {
+        IttRollingFileWriter writer = new IttRollingFileWriter(
+                new File(folder.getRoot(), "execution").getPath(), IttFormat.BINARY, 4 * 1024, 0, 3);
+        logTree(new IttLogger(writer, true, true), false);
+
+        List<File> segments = writer.getSegmentFiles();
+        Assert.assertEquals(3, segments.size());
+        Assert.assertTrue(segments.get(0).getName().startsWith("execution."));
+        Assert.assertEquals(3, folder.getRoot().listFiles().length);
+        for (File segment : segments) {
+            Assert.assertTrue(segment.exists());
+        }
+    }
+
+    @Test
+    public void testTimeLimit() throws IOException {
+        IttRollingFileWriter writer = new IttRollingFileWriter(
+                new File(folder.getRoot(), "execution.json").getPath(), IttFormat.JSON_V1, 0, 1, 0);
+        IttLogger logger = new IttLogger(writer, true, true);
+        IttStatus status = logger.addStatus("status", "#F00");
+        logger.startExecution("Execution title", "Execution message");
+        for (int i = 0; i < 3; i++) {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            logger.addLog("log " + i, "message", status);
+        }
+        logger.endExecution();
+
+        Assert.assertEquals(4, writer.getSegmentFiles().size());
+    }
+
+    /**
+     * Assert that every log ID is unique and that the parent of every log is before it.
+     */
+    private static void assertStandsAlone(JsonNode logs) {
+        Set<Integer> ids = new HashSet<>();
+        for (JsonNode log : logs) {
+            int parentId = log.get("parentId").asInt();
+            Assert.assertTrue(parentId == 0 || ids.contains(parentId));
+            Assert.assertTrue(ids.add(log.get("id").asInt()));
+        }
+    }
+
+    /**
+     * Log a tree whose logs reference parents in previous segments.
+     *
+     * @param lateStatus Whether a status is added after the start, which version 1 single files can't contain.
+     */
+    private static void logTree(IttLogger logger, boolean lateStatus) {
+        IttStatus status = logger.addStatus("status", "#F00");
+        IttTag tag = logger.addTag("tag");
+        logger.startExecution("Execution title", "Execution message");
+        IttStatus late = null;
+        for (int i = 0; i < LOG_COUNT; i++) {
+            if (lateStatus && i == LOG_COUNT / 2) {
+                late = logger.addStatus("late", "#00F");
+            }
+            logger.addLog("log " + i, "message " + i, i % 2 == 0 || late == null ? status : late,
+                    logger.tagValue(tag, "value " + (i % 7)));
+            if (i % 100 == 0) {
+                logger.startLogTrack();
+            }
+        }
+        logger.endExecution();
+    }
+
+}
@@ -0,0 +1,236 @@
+package ca.etsmtl.intuitree.io;
+
+import ca.etsmtl.intuitree.IttLogger;
+import ca.etsmtl.intuitree.format.IttJsonLinesConverter;
+import ca.etsmtl.intuitree.format.IttJsonReader;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class IttSocketWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testStreamOverTcp() throws Exception {
+        try (ServerSocketChannel serverChannel = openTcpServer()) {
+            assertStreamed(serverChannel, serverChannel.getLocalAddress());
+        }
+    }
+
+    @Test
+    public void testStreamOverUnixSocket() throws Exception {
+        SocketAddress address;
+        ServerSocketChannel serverChannel;
+        try {
+            // Unix-domain sockets need Java 16, while the library targets Java 8
+            Path path = folder.getRoot().toPath().resolve("viewer.sock");
+            address = (SocketAddress) Class.forName("java.net.UnixDomainSocketAddress")
+                    .getMethod("of", Path.class).invoke(null, path);
+            serverChannel = (ServerSocketChannel) ServerSocketChannel.class.getMethod("open", ProtocolFamily.class)
+                    .invoke(null, StandardProtocolFamily.valueOf("UNIX"));
+        } catch (ReflectiveOperationException | IllegalArgumentException e) {
+            Assume.assumeNoException(e);
+            return;
+        }
+        try {
+            serverChannel.bind(address);
+            assertStreamed(serverChannel, address);
+        } finally {
+            serverChannel.close();
+        }
+    }
+
+    @Test
+    public void testLogsVisibleBeforeEnd() throws Exception {
+        try (ServerSocketChannel serverChannel = openTcpServer()) {
+            IttSocketWriter writer = new IttSocketWriter(serverChannel.getLocalAddress(), IttBackpressurePolicy.BLOCK);
+            IttLogger logger = new IttLogger(writer, true, true);
+            IttStatus ok = logger.addStatus("ok", "green");
+            logger.startExecution("Live", "");
+            logger.addLog("first", "", ok);
+
+            try (SocketChannel channel = serverChannel.accept()) {
+                // The header and the first log arrive while the execution is still running
+                StringBuilder received = new StringBuilder();
+                ByteBuffer buffer = ByteBuffer.allocate(4096);
+                while (received.indexOf("first") < 0 && channel.read(buffer) >= 0) {
+                    received.append(new String(buffer.array(), 0, buffer.position(), "UTF-8"));
+                    buffer.clear();
+                }
+                Assert.assertTrue(received.indexOf("\"execution\"") >= 0);
+                Assert.assertTrue(received.indexOf("first") >= 0);
+                logger.endExecution();
+            }
+        }
+    }
+
+    @Test
+    public void testDropWhenReceiverIsSlow() throws Exception {
+        int logCount = 20000;
+        try (ServerSocketChannel serverChannel = openTcpServer()) {
+            IttSocketWriter writer = new IttSocketWriter(serverChannel.getLocalAddress(), 4096,
+                    IttBackpressurePolicy.DROP, null);
+            CountDownLatch logged = new CountDownLatch(1);
+            ExecutorService receiver = Executors.newSingleThreadExecutor();
+            Future<byte[]> received = receiver.submit(() -> {
+                // The viewer doesn't read until the execution was logged
+                try (SocketChannel channel = serverChannel.accept()) {
+                    logged.await();
+                    return receive(channel);
+                }
+            });
+
+            IttLogger logger = new IttLogger(writer, true, true);
+            logBigLogs(logger, logCount);
+            logged.countDown();
+            logger.endExecution();
+
+            Assert.assertTrue(writer.getDroppedLogCount() > 0);
+            Assert.assertEquals(logCount - writer.getDroppedLogCount(), countLogs(received.get(), true));
+            receiver.shutdown();
+        }
+    }
+
+    @Test
+    public void testSpillWhenReceiverIsSlow() throws Exception {
+        int logCount = 20000;
+        try (ServerSocketChannel serverChannel = openTcpServer()) {
+            IttSocketWriter writer = new IttSocketWriter(serverChannel.getLocalAddress(), 4096,
+                    IttBackpressurePolicy.SPILL, folder.getRoot());
+            CountDownLatch logged = new CountDownLatch(1);
+            ExecutorService receiver = Executors.newSingleThreadExecutor();
+            Future<byte[]> received = receiver.submit(() -> {
+                try (SocketChannel channel = serverChannel.accept()) {
+                    logged.await();
+                    return receive(channel);
+                }
+            });
+
+            IttLogger logger = new IttLogger(writer, true, true);
+            logBigLogs(logger, logCount);
+            Assert.assertTrue(writer.getSpilledBytes() > 0);
+            Assert.assertEquals(1, folder.getRoot().listFiles().length);
+            logged.countDown();
+            logger.endExecution();
+
+            Assert.assertEquals(0, writer.getDroppedLogCount());
+            Assert.assertEquals(logCount, countLogs(received.get(), false));
+            // The spill file is deleted with the writer
+            Assert.assertEquals(0, folder.getRoot().listFiles().length);
+            receiver.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailedConnection() throws Exception {
+        try (ServerSocketChannel serverChannel = openTcpServer()) {
+            IttSocketWriter writer = new IttSocketWriter(serverChannel.getLocalAddress(), 4096,
+                    IttBackpressurePolicy.BLOCK, null);
+            serverChannel.accept().close();
+
+            IttLogger logger = new IttLogger(writer, true, true);
+            try {
+                logBigLogs(logger, 20000);
+                logger.endExecution();
+                Assert.fail("The connection was closed by the receiver");
+            } catch (UncheckedIOException e) {
+                // Expected, from endExecution
+            }
+            Assert.assertTrue(writer.getDroppedLogCount() > 0);
+        }
+    }
+
+    private static void assertStreamed(ServerSocketChannel serverChannel, SocketAddress address) throws Exception {
+        ExecutorService receiver = Executors.newSingleThreadExecutor();
+        Future<byte[]> received = receiver.submit(() -> {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            Assert.assertTrue(IttSocketReceiver.receive(serverChannel, outputStream));
+            return outputStream.toByteArray();
+        });
+
+        IttLogger logger = new IttLogger(new IttSocketWriter(address, IttBackpressurePolicy.BLOCK), true, true);
+        logBigLogs(logger, 5000);
+        logger.endExecution();
+
+        Assert.assertEquals(5000, countLogs(received.get(), false));
+        receiver.shutdown();
+    }
+
+    private static ServerSocketChannel openTcpServer() throws IOException {
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        // A small receive buffer, so a receiver which doesn't read fills the socket quickly
+        serverChannel.setOption(StandardSocketOptions.SO_RCVBUF, 4096);
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        return serverChannel;
+    }
+
+    private static void logBigLogs(IttLogger logger, int logCount) {
+        IttStatus ok = logger.addStatus("ok", "green");
+        logger.startExecution("Execution", "");
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            message.append("message ");
+        }
+        for (int i = 0; i < logCount; i++) {
+            logger.addLog("log " + i, message.toString(), ok);
+        }
+    }
+
+    /**
+     * Receive the frames of a connection as a version 1 execution.
+     */
+    private static byte[] receive(SocketChannel channel) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        Assert.assertTrue(IttJsonLinesConverter.convertToV1(
+                new BufferedInputStream(Channels.newInputStream(channel)), outputStream));
+        return outputStream.toByteArray();
+    }
+
+    private static long countLogs(byte[] execution, boolean allowGaps) throws IOException {
+        long count = 0;
+        try (IttJsonReader reader = new IttJsonReader(new ByteArrayInputStream(execution))) {
+            reader.readHeader();
+            IttLogRecord record = new IttLogRecord();
+            long lastId = 0;
+            while (reader.readLog(record)) {
+                // Logs arrive in order, with gaps for dropped logs only
+                Assert.assertTrue(record.getId() > lastId);
+                if (!allowGaps) {
+                    Assert.assertEquals(lastId + 1, record.getId());
+                }
+                lastId = record.getId();
+                count++;
+            }
+            Assert.assertTrue(reader.isComplete());
+        }
+        return count;
+    }
+
+}
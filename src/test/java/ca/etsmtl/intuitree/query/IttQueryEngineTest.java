@@ -0,0 +1,216 @@
+package ca.etsmtl.intuitree.query;
+
+import ca.etsmtl.intuitree.IttLogger;
+import ca.etsmtl.intuitree.IttSpanTest;
+import ca.etsmtl.intuitree.format.IttIndexedJsonReader;
+import ca.etsmtl.intuitree.format.IttJsonReader;
+import ca.etsmtl.intuitree.format.IttTreeBuilder;
+import ca.etsmtl.intuitree.pojo.IttLog;
+import ca.etsmtl.intuitree.pojo.IttLogRecord;
+import ca.etsmtl.intuitree.pojo.IttStatus;
+import ca.etsmtl.intuitree.pojo.IttTag;
+import ca.etsmtl.intuitree.pojo.IttTagValue;
+import ca.etsmtl.intuitree.pojo.IttTreeNode;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+public class IttQueryEngineTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testMatchesBruteForce() throws Exception {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            File file = folder.newFile("execution-" + i + ".json");
+            IttLogger logger = new IttLogger(file.getPath(), true);
+            if (i % 2 == 0) {
+                logger.enableIndex(new FileOutputStream(IttIndexedJsonReader.defaultIndexFile(file)));
+            }
+            logRandomTree(logger, i, i == 2);
+            files.add(file);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // Small segments, so that indexed files are split
+            IttQueryEngine engine = new IttQueryEngine(pool, 100);
+            IttQuery[] queries = {
+                    new IttQuery().status("error").tag("region", "eu"),
+                    new IttQuery().status("error", "warning").under(5, 700),
+                    new IttQuery().tag("region", value -> value.startsWith("a")).under(1),
+                    new IttQuery()
+            };
+            for (IttQuery query : queries) {
+                List<IttQueryMatch> expected = bruteForce(query, files);
+                List<IttQueryMatch> actual = engine.query(query, files);
+                Assert.assertFalse(expected.isEmpty());
+                Assert.assertEquals(expected.size(), actual.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    Assert.assertEquals(expected.get(i).getFile(), actual.get(i).getFile());
+                    assertSameLog(expected.get(i).getLog(), actual.get(i).getLog());
+                    Assert.assertEquals(expected.get(i).getAncestors().size(), actual.get(i).getAncestors().size());
+                    for (int j = 0; j < expected.get(i).getAncestors().size(); j++) {
+                        assertSameLog(expected.get(i).getAncestors().get(j), actual.get(i).getAncestors().get(j));
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testStreamsMatchesOneAtATime() throws Exception {
+        File file = folder.newFile("execution.json");
+        IttLogger logger = new IttLogger(file.getPath(), true);
+        logger.enableIndex(new FileOutputStream(IttIndexedJsonReader.defaultIndexFile(file)));
+        logRandomTree(logger, 0, false);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            int[] inConsumer = new int[1];
+            Set<Long> ids = new HashSet<>();
+            new IttQueryEngine(pool, 50).query(new IttQuery().status("ok"), Collections.singletonList(file), match -> {
+                Assert.assertEquals(1, ++inConsumer[0]);
+                Assert.assertTrue(ids.add(match.getLog().getId()));
+                Assert.assertEquals("ok", match.getLog().getStatusName());
+                inConsumer[0]--;
+            });
+            Assert.assertEquals(bruteForce(new IttQuery().status("ok"), Collections.singletonList(file)).size(),
+                    ids.size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testMatchesUnderSpans() throws IOException {
+        for (boolean indexed : new boolean[]{false, true}) {
+            File file = folder.newFile();
+            IttLogger logger = new IttLogger(file.getPath(), true);
+            if (indexed) {
+                logger.enableIndex(new FileOutputStream(IttIndexedJsonReader.defaultIndexFile(file)));
+            }
+            IttSpanTest.logSpans(logger);
+
+            // The rows of the third and fourth requests, which are written before their request and query spans
+            List<IttQueryMatch> matches = new IttQueryEngine().query(new IttQuery().where(
+                    log -> log.getTitle().equals("row")).under(9, 13), Collections.singletonList(file));
+            Assert.assertEquals(2, matches.size());
+            Assert.assertEquals(11, matches.get(0).getLog().getId());
+            Assert.assertEquals(15, matches.get(1).getLog().getId());
+            Assert.assertEquals(2, matches.get(0).getAncestors().size());
+            Assert.assertEquals("request 2", matches.get(0).getAncestors().get(0).getTitle());
+            Assert.assertEquals("query", matches.get(0).getAncestors().get(1).getTitle());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingFile() throws IOException {
+        new IttQueryEngine().query(new IttQuery(), Collections.singletonList(new File(folder.getRoot(), "missing")));
+    }
+
+    private static List<IttQueryMatch> bruteForce(IttQuery query, List<File> files) throws IOException {
+        List<IttQueryMatch> matches = new ArrayList<>();
+        for (File file : files) {
+            IttTreeBuilder builder;
+            try (IttJsonReader reader = new IttJsonReader(new FileInputStream(file))) {
+                reader.readHeader();
+                builder = IttTreeBuilder.build(reader);
+            }
+            List<IttTreeNode> nodes = new ArrayList<>();
+            Deque<IttTreeNode> pending = new ArrayDeque<>(builder.getRoots());
+            while (!pending.isEmpty()) {
+                IttTreeNode node = pending.pop();
+                nodes.add(node);
+                pending.addAll(node.getChildren());
+            }
+            nodes.sort(Comparator.comparingLong(node -> node.getLog().getId()));
+
+            for (IttTreeNode node : nodes) {
+                IttLog log = node.getLog();
+                LinkedList<IttLog> ancestors = new LinkedList<>();
+                for (long id = log.getParentId(); id != 0; id = builder.getNode(id).getLog().getParentId()) {
+                    ancestors.addFirst(builder.getNode(id).getLog());
+                }
+                if (matches(query, log, ancestors)) {
+                    matches.add(new IttQueryMatch(file, log, ancestors));
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Evaluate the queries used by the tests directly on a log.
+     */
+    private static boolean matches(IttQuery query, IttLog log, List<IttLog> ancestors) {
+        IttLogRecord record = new IttLogRecord();
+        record.set(log.getParentId(), log.getId(), log.getTitle(), log.getMessage(),
+                new IttStatus(log.getStatusName(), null),
+                log.getTags().toArray(new IttTagValue[0]));
+        Map<Long, Long> parents = new HashMap<>();
+        for (IttLog ancestor : ancestors) {
+            parents.put(ancestor.getId(), ancestor.getParentId());
+        }
+        return query.matches(record, id -> parents.getOrDefault(id, 0L));
+    }
+
+    private static void assertSameLog(IttLog expected, IttLog actual) {
+        Assert.assertEquals(expected.getId(), actual.getId());
+        Assert.assertEquals(expected.getParentId(), actual.getParentId());
+        Assert.assertEquals(expected.getTitle(), actual.getTitle());
+        Assert.assertEquals(expected.getStatusName(), actual.getStatusName());
+        Assert.assertEquals(expected.getTags().size(), actual.getTags().size());
+        for (int i = 0; i < expected.getTags().size(); i++) {
+            Assert.assertEquals(expected.getTags().get(i).getTagName(), actual.getTags().get(i).getTagName());
+            Assert.assertEquals(expected.getTags().get(i).getValue(), actual.getTags().get(i).getValue());
+        }
+    }
+
+    /**
+     * Log 2000 logs at random depths, from 2 threads if concurrent, so that logs are not in the order of their IDs.
+     */
+    private static void logRandomTree(IttLogger logger, int seed, boolean concurrent) throws InterruptedException {
+        IttStatus[] statuses = {logger.addStatus("ok", "green"), logger.addStatus("warning", "orange"),
+                logger.addStatus("error", "red")};
+        IttTag tag = logger.addTag("region");
+        String[] regions = {"eu", "us", "asia", "africa"};
+        logger.startExecution("Random execution " + seed, "Seeded");
+
+        int threadCount = concurrent ? 2 : 1;
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; t++) {
+            Random random = new Random(seed * 31 + t);
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 2000 / threadCount; i++) {
+                    logger.addLog("log " + i, "", statuses[random.nextInt(statuses.length)],
+                            logger.tagValue(tag, regions[random.nextInt(regions.length)]));
+                    int move = random.nextInt(3);
+                    if (move == 0) {
+                        logger.startLogTrack();
+                    } else if (move == 1) {
+                        logger.endLogTrack();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        logger.endExecution();
+    }
+
+}